@@ -1,9 +1,17 @@
 #!/bin/bash
 # 脚本功能：使用 cypher-shell 导入 neo4j-import.cypher 文件中的数据到 neo4j 数据库
+# 分片模式：设置 SHARD_DIR（ExportToNeo4jMain --shards N 的输出目录）后，
+#           先导入 schema，再并发导入节点分片，全部完成后并发导入关系分片，最后写入图谱版本标记
+#           并发会话数由 PARALLELISM 控制（默认 4）
+#           关系分片并发写入时可能因目标节点加锁而死锁（TransientException，语句整体回滚），
+#           节点分片和关系分片都用 MERGE 写入、可重复执行，失败的分片会重新执行，最多 RETRIES 次（默认 3）
 
 CYPHER_SHELL="$HOME/Library/Application Support/neo4j-desktop/Application/Data/dbmss/dbms-e097ec7c-8da5-4775-ac55-f1a4accaca94/bin/cypher-shell"
 CYPHER_FILE="extract_out/neo4j-import.cypher"
 NEO4J_PASSWORD="test654321"
+SHARD_DIR="${SHARD_DIR:-}"
+PARALLELISM="${PARALLELISM:-4}"
+RETRIES="${RETRIES:-3}"
 
 echo "==================== Neo4j 批量导入工具 ===================="
 echo "使用 cypher-shell 导入大文件"
@@ -11,7 +19,58 @@ echo ""
 echo "开始导入，这可能需要几分钟..."
 echo ""
 
-"$CYPHER_SHELL" -u neo4j -p "$NEO4J_PASSWORD" -f "$CYPHER_FILE"
+# 并发执行一组分片文件，任一失败则返回非0
+run_shards_parallel() {
+    local phase="$1"
+    shift
+    if [ $# -eq 0 ]; then
+        echo "[$phase] 没有分片文件，跳过"
+        return 0
+    fi
+    echo "[$phase] 共 $# 个分片，并发数 $PARALLELISM"
+    printf '%s\n' "$@" | xargs -P "$PARALLELISM" -I {} \
+        "$CYPHER_SHELL" -u neo4j -p "$NEO4J_PASSWORD" -f {}
+}
+
+# 执行一个分片，失败时等待后重新执行（仅用于可重复执行的节点、关系分片）
+run_shard_with_retry() {
+    local file="$1"
+    local attempt
+    for attempt in $(seq 1 "$RETRIES"); do
+        if "$CYPHER_SHELL" -u neo4j -p "$NEO4J_PASSWORD" -f "$file"; then
+            return 0
+        fi
+        echo "[重试] $file 第 $attempt 次执行失败（并发死锁时可重试）"
+        sleep "$attempt"
+    done
+    return 1
+}
+export -f run_shard_with_retry
+export CYPHER_SHELL NEO4J_PASSWORD RETRIES
+
+# 并发执行一组可重复执行的分片，每个分片失败时单独重试
+run_shards_parallel_with_retry() {
+    local phase="$1"
+    shift
+    if [ $# -eq 0 ]; then
+        echo "[$phase] 没有分片文件，跳过"
+        return 0
+    fi
+    echo "[$phase] 共 $# 个分片，并发数 $PARALLELISM，失败重试 $RETRIES 次"
+    printf '%s\n' "$@" | xargs -P "$PARALLELISM" -I {} \
+        bash -c 'run_shard_with_retry "$1"' _ {}
+}
+
+if [ -n "$SHARD_DIR" ]; then
+    shopt -s nullglob
+    echo "[schema] $SHARD_DIR/00-schema.cypher"
+    "$CYPHER_SHELL" -u neo4j -p "$NEO4J_PASSWORD" -f "$SHARD_DIR/00-schema.cypher" &&
+    run_shards_parallel_with_retry "节点" "$SHARD_DIR"/10-nodes-*.cypher &&
+    run_shards_parallel_with_retry "关系" "$SHARD_DIR"/20-rels-*.cypher &&
+    run_shards_parallel "版本" "$SHARD_DIR"/90-version.cypher
+else
+    "$CYPHER_SHELL" -u neo4j -p "$NEO4J_PASSWORD" -f "$CYPHER_FILE"
+fi
 
 if [ $? -eq 0 ]; then
     echo ""
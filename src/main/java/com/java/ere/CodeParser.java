@@ -2,6 +2,7 @@ package com.java.ere;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -12,9 +13,11 @@ import java.util.Optional;
 import java.util.Set;
 
 import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Range;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -34,11 +37,14 @@ import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeS
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import com.java.ere.config.ExtractionConfig;
 import com.java.ere.config.ResolverConfig;
+import com.java.ere.util.SourceOffsets;
+import com.java.ere.util.SourceSnapshot;
 
 public class CodeParser {
     private Set<String> projectPackages = new HashSet<>();
     private ExtractionConfig extractionConfig = new ExtractionConfig();
     private String projectRoot;  // 项目根目录，用于计算相对路径
+    private SourceSnapshot.Builder snapshotBuilder;  // 非null时记录解析的每个源文件
     
     /**
      * 默认构造函数
@@ -59,6 +65,13 @@ public class CodeParser {
         }
     }
     
+    /**
+     * 设置源码快照构建器，parseFiles 读取的每个文件按相对路径加入快照
+     */
+    public void setSnapshotBuilder(SourceSnapshot.Builder snapshotBuilder) {
+        this.snapshotBuilder = snapshotBuilder;
+    }
+    
     /**
      * 简单初始化（向后兼容）
      */
@@ -187,10 +200,16 @@ public class CodeParser {
         // 阶段1: 提取所有实体（不构建跨文件关系）
         for (File file : javaFiles) {
             try {
-                CompilationUnit cu = StaticJavaParser.parse(file);
+                // 解析读入的字节内容，使记录的位置与文件字节一一对应
+                byte[] content = Files.readAllBytes(file.toPath());
+                SourceOffsets offsets = new SourceOffsets(content);
+                CompilationUnit cu = StaticJavaParser.parse(offsets.getText());
                 // 使用相对路径（相对于项目根目录）
                 String filePath = getRelativePath(file.getAbsolutePath());
-                Map<String, Entity> entities = extractEntitiesFromFile(cu, filePath);
+                if (snapshotBuilder != null) {
+                    snapshotBuilder.add(filePath, content);
+                }
+                Map<String, Entity> entities = extractEntitiesFromFile(cu, filePath, offsets);
                 allEntities.putAll(entities);
                 allCompilationUnits.add(cu);
                 success++;
@@ -216,20 +235,20 @@ public class CodeParser {
     /**
      * 从单个文件提取实体（不构建跨文件关系）
      */
-    private Map<String, Entity> extractEntitiesFromFile(CompilationUnit cu, String filePath) {
+    private Map<String, Entity> extractEntitiesFromFile(CompilationUnit cu, String filePath, SourceOffsets offsets) {
         Map<String, Entity> entities = new HashMap<>();
         
         // 根据配置决定提取哪些实体
         if (extractionConfig.isEntityEnabled("ClassOrInterface")) {
-            extractClassesAndInterfaces(cu, entities, filePath);
+            extractClassesAndInterfaces(cu, entities, filePath, offsets);
         }
         
         if (extractionConfig.isEntityEnabled("Method")) {
-            extractMethods(cu, entities, filePath);
+            extractMethods(cu, entities, filePath, offsets);
         }
         
         if (extractionConfig.isEntityEnabled("Field")) {
-            extractFields(cu, entities, filePath);
+            extractFields(cu, entities, filePath, offsets);
         }
 
         return entities;
@@ -239,12 +258,37 @@ public class CodeParser {
      * 单个文件解析（用于调试）
      */
     public Map<String, Entity> parseFile(File javaFile) throws Exception {
-        CompilationUnit cu = StaticJavaParser.parse(javaFile);
+        SourceOffsets offsets = new SourceOffsets(Files.readAllBytes(javaFile.toPath()));
+        CompilationUnit cu = StaticJavaParser.parse(offsets.getText());
         String filePath = javaFile.getAbsolutePath();
-        return extractEntitiesFromFile(cu, filePath);
+        return extractEntitiesFromFile(cu, filePath, offsets);
+    }
+    
+    /**
+     * 记录实体在源文件中的位置，查询端据此直接切片读取源码，不必重新解析
+     * beginLine/endLine 为声明本身的行号；beginOffset/endOffset 为UTF-8字节区间（右端不含），
+     * 包含声明前的Javadoc/注释，与 toString() 输出的内容范围一致；contentHash 为区间内容的哈希，
+     * 文件修改后区间内容变化，查询端据此发现并回退到解析
+     */
+    private void recordPosition(Entity entity, Node node, SourceOffsets offsets) {
+        if (!node.getRange().isPresent()) {
+            return;
+        }
+        Range range = node.getRange().get();
+        entity.addProperty("beginLine", String.valueOf(range.begin.line));
+        entity.addProperty("endLine", String.valueOf(range.end.line));
+        if (!offsets.hasByteOffsets()) {
+            return;
+        }
+        int beginOffset = offsets.beginOffset(SourceOffsets.declarationBegin(node));
+        int endOffset = offsets.endOffset(range.end);
+        entity.addProperty("beginOffset", String.valueOf(beginOffset));
+        entity.addProperty("endOffset", String.valueOf(endOffset));
+        entity.addProperty("contentHash", offsets.contentHash(beginOffset, endOffset));
     }
 
-    private void extractClassesAndInterfaces(CompilationUnit cu, Map<String, Entity> entities, String filePath) {
+    private void extractClassesAndInterfaces(CompilationUnit cu, Map<String, Entity> entities, String filePath,
+                                             SourceOffsets offsets) {
         cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDecl -> {
             String name = classDecl.getNameAsString();
             String prefix = classDecl.isInterface() ? "iface_" : "class_";
@@ -253,11 +297,13 @@ public class CodeParser {
             entity.addProperty("isInterface", String.valueOf(classDecl.isInterface()));
             entity.addProperty("purpose", extractJavadoc(classDecl.getJavadoc()));
             entity.addProperty("filePath", filePath);
+            recordPosition(entity, classDecl, offsets);
             entities.put(entity.getId(), entity);
         });
     }
 
-    private void extractMethods(CompilationUnit cu, Map<String, Entity> entities, String filePath) {
+    private void extractMethods(CompilationUnit cu, Map<String, Entity> entities, String filePath,
+                                SourceOffsets offsets) {
         cu.findAll(MethodDeclaration.class).forEach(methodDecl -> {
             String methodName = methodDecl.getNameAsString();
             String className = methodDecl.findAncestor(ClassOrInterfaceDeclaration.class)
@@ -278,6 +324,7 @@ public class CodeParser {
             methodEntity.addProperty("signature", methodName + "(" + paramSignature + ")");
             methodEntity.addProperty("is_external", "false");  // 业务代码方法
             methodEntity.addProperty("filePath", filePath);
+            recordPosition(methodEntity, methodDecl, offsets);
             
             // 根据配置决定是否提取Javadoc
             if (extractionConfig.isIncludeJavadoc()) {
@@ -289,8 +336,14 @@ public class CodeParser {
             
             entities.put(id, methodEntity);
 
+            // compact图谱结构：参数/返回值/异常折叠为Method节点上的属性，不再生成独立节点
+            boolean compact = extractionConfig.isCompactSchema();
+            if (compact) {
+                foldSignatureIntoProperties(methodEntity, methodDecl);
+            }
+
             // 根据配置决定是否提取参数
-            if (extractionConfig.isRelationEnabled("has_parameter") && 
+            if (!compact && extractionConfig.isRelationEnabled("has_parameter") && 
                 extractionConfig.isEntityEnabled("Parameter")) {
                 methodDecl.getParameters().forEach(param -> {
                     String paramName = param.getNameAsString();
@@ -306,7 +359,7 @@ public class CodeParser {
             }
 
             // 根据配置决定是否提取返回值
-            if (extractionConfig.isRelationEnabled("returns") && 
+            if (!compact && extractionConfig.isRelationEnabled("returns") && 
                 extractionConfig.isEntityEnabled("Return")) {
                 // 返回值ID包含方法签名以支持重载
                 String returnId = "return_" + className + "_" + methodName + "(" + paramSignature + ")";
@@ -320,7 +373,7 @@ public class CodeParser {
             }
             
             // 根据配置决定是否提取异常
-            if (extractionConfig.isRelationEnabled("throws") && 
+            if (!compact && extractionConfig.isRelationEnabled("throws") && 
                 extractionConfig.isEntityEnabled("Exception")) {
                 methodDecl.getThrownExceptions().forEach(thrownType -> {
                     String exceptionType = thrownType.asString();
@@ -361,7 +414,43 @@ public class CodeParser {
         });
     }
 
-    private void extractFields(CompilationUnit cu, Map<String, Entity> entities, String filePath) {
+    /**
+     * compact图谱结构下，把参数、返回值、异常、注解写成Method节点的属性
+     * 与standard结构使用相同的关系和实体开关（如参数需同时开启 has_parameter 和 Parameter）；注解节点按名称全局共享，数量很少，因此保留节点和has_annotation关系
+     */
+    private void foldSignatureIntoProperties(Entity methodEntity, MethodDeclaration methodDecl) {
+        if (extractionConfig.isRelationEnabled("has_parameter") && extractionConfig.isEntityEnabled("Parameter")) {
+            List<String> parameterTypes = new ArrayList<>();
+            List<String> parameterNames = new ArrayList<>();
+            methodDecl.getParameters().forEach(param -> {
+                parameterTypes.add(param.getType().asString());
+                parameterNames.add(param.getNameAsString());
+            });
+            methodEntity.addListProperty("parameterTypes", parameterTypes);
+            methodEntity.addListProperty("parameterNames", parameterNames);
+        }
+
+        if (extractionConfig.isRelationEnabled("returns") && extractionConfig.isEntityEnabled("Return")) {
+            methodEntity.addProperty("returnType", methodDecl.getType().asString());
+        }
+
+        if (extractionConfig.isRelationEnabled("throws") && extractionConfig.isEntityEnabled("Exception")
+                && !methodDecl.getThrownExceptions().isEmpty()) {
+            List<String> thrownTypes = new ArrayList<>();
+            methodDecl.getThrownExceptions().forEach(thrownType -> thrownTypes.add(thrownType.asString()));
+            methodEntity.addListProperty("thrownTypes", thrownTypes);
+        }
+
+        if (extractionConfig.isRelationEnabled("has_annotation") && extractionConfig.isIncludeAnnotations()
+                && !methodDecl.getAnnotations().isEmpty()) {
+            List<String> annotations = new ArrayList<>();
+            methodDecl.getAnnotations().forEach(annotation -> annotations.add(annotation.getNameAsString()));
+            methodEntity.addListProperty("annotations", annotations);
+        }
+    }
+
+    private void extractFields(CompilationUnit cu, Map<String, Entity> entities, String filePath,
+                               SourceOffsets offsets) {
         cu.findAll(FieldDeclaration.class).forEach(fieldDecl -> {
             String fieldName = fieldDecl.getVariable(0).getNameAsString();
             String className = fieldDecl.findAncestor(ClassOrInterfaceDeclaration.class)
@@ -372,6 +461,7 @@ public class CodeParser {
             fieldEntity.addProperty("name", fieldName);
             fieldEntity.addProperty("type", fieldDecl.getVariable(0).getType().asString());
             fieldEntity.addProperty("filePath", filePath);
+            recordPosition(fieldEntity, fieldDecl, offsets);
             entities.put(id, fieldEntity);
         });
     }
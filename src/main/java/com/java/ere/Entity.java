@@ -6,6 +6,8 @@ public class Entity {
     private String id;
     private String type;
     private Map<String, String> properties = new HashMap<>();
+    // 数组属性（compact模式下方法的参数类型、异常类型、注解等），导出为Neo4j列表属性
+    private Map<String, List<String>> listProperties = new HashMap<>();
     
     // 内部存储：关系类型 -> 目标ID -> 计数
     private Map<String, Map<String, Integer>> relationCounts = new HashMap<>();
@@ -23,10 +25,17 @@ public class Entity {
     public Map<String, String> getProperties() { return properties; }
     public void setProperties(Map<String, String> properties) { this.properties = properties; }
 
+    public Map<String, List<String>> getListProperties() { return listProperties; }
+    public void setListProperties(Map<String, List<String>> listProperties) { this.listProperties = listProperties; }
+
     public void addProperty(String key, String value) {
         properties.put(key, value);
     }
 
+    public void addListProperty(String key, List<String> values) {
+        listProperties.put(key, new ArrayList<>(values));
+    }
+
     /**
      * 添加关系，自动去重并计数
      */
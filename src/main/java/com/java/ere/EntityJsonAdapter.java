@@ -7,6 +7,7 @@ import java.util.*;
 /**
  * Entity的自定义JSON序列化/反序列化适配器
  * 支持带count的关系格式
+ * 序列化时属性、关系类型、关系目标均按字典序输出，保证同一份图谱每次生成的JSON完全一致
  */
 public class EntityJsonAdapter implements JsonSerializer<Entity>, JsonDeserializer<Entity> {
     
@@ -20,16 +21,28 @@ public class EntityJsonAdapter implements JsonSerializer<Entity>, JsonDeserializ
         
         // 序列化properties
         JsonObject properties = new JsonObject();
-        for (Map.Entry<String, String> entry : entity.getProperties().entrySet()) {
-            properties.addProperty(entry.getKey(), entry.getValue());
+        Map<String, Object> sortedProperties = new TreeMap<>(entity.getProperties());
+        sortedProperties.putAll(entity.getListProperties());
+        for (Map.Entry<String, Object> entry : sortedProperties.entrySet()) {
+            if (entry.getValue() instanceof List) {
+                // 数组属性
+                JsonArray values = new JsonArray();
+                for (Object value : (List<?>) entry.getValue()) {
+                    values.add((String) value);
+                }
+                properties.add(entry.getKey(), values);
+            } else {
+                properties.addProperty(entry.getKey(), (String) entry.getValue());
+            }
         }
         jsonObject.add("properties", properties);
         
         // 序列化relations（带count）
         JsonObject relations = new JsonObject();
-        for (Map.Entry<String, List<String>> entry : entity.getRelations().entrySet()) {
+        for (Map.Entry<String, List<String>> entry : new TreeMap<>(entity.getRelations()).entrySet()) {
             String relationType = entry.getKey();
             List<String> targets = entry.getValue();
+            Collections.sort(targets);
             
             JsonArray relationArray = new JsonArray();
             for (String target : targets) {
@@ -63,7 +76,15 @@ public class EntityJsonAdapter implements JsonSerializer<Entity>, JsonDeserializ
         if (jsonObject.has("properties")) {
             JsonObject properties = jsonObject.getAsJsonObject("properties");
             for (Map.Entry<String, JsonElement> entry : properties.entrySet()) {
-                entity.addProperty(entry.getKey(), entry.getValue().getAsString());
+                if (entry.getValue().isJsonArray()) {
+                    List<String> values = new ArrayList<>();
+                    for (JsonElement value : entry.getValue().getAsJsonArray()) {
+                        values.add(value.getAsString());
+                    }
+                    entity.addListProperty(entry.getKey(), values);
+                } else {
+                    entity.addProperty(entry.getKey(), entry.getValue().getAsString());
+                }
             }
         }
         
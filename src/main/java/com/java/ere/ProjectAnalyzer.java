@@ -1,7 +1,9 @@
 package com.java.ere;
 
+import com.java.ere.analytics.GraphAnalytics;
 import com.java.ere.config.AnalysisConfig;
 import com.java.ere.util.FileScanner;
+import com.java.ere.util.SourceSnapshot;
 
 import java.io.File;
 import java.util.List;
@@ -13,6 +15,7 @@ import java.util.stream.Collectors;
  */
 public class ProjectAnalyzer {
     private CodeParser codeParser;
+    private SourceSnapshot.Builder snapshotBuilder;
 
     public ProjectAnalyzer() {
         this.codeParser = new CodeParser();
@@ -40,6 +43,9 @@ public class ProjectAnalyzer {
             config.getProjectPackages(),
             config.getExtractionConfig()
         );
+        snapshotBuilder = config.getExtractionConfig().isSourceSnapshot()
+            ? new SourceSnapshot.Builder(config.getProjectRoot()) : null;
+        codeParser.setSnapshotBuilder(snapshotBuilder);
         
         // 步骤3：初始化符号解析器（使用全部文件）
         System.out.println("[2/4] 初始化符号解析器...");
@@ -59,6 +65,13 @@ public class ProjectAnalyzer {
         // 步骤4：只对目标文件提取实体
         System.out.println("[4/4] 提取实体和关系...");
         Map<String, Entity> entities = codeParser.parseFiles(targetFiles);
+
+        // 可选：预计算图分析指标（度数、强连通分量、入口深度、PageRank）
+        if (config.getExtractionConfig().isGraphAnalytics()) {
+            System.out.println();
+            System.out.println("[图分析] 计算图分析指标...");
+            GraphAnalytics.compute(entities);
+        }
         
         System.out.println();
         System.out.println("===============================================");
@@ -69,6 +82,13 @@ public class ProjectAnalyzer {
         return entities;
     }
 
+    /**
+     * 最近一次分析读取的源文件快照（未开启 extraction.sourceSnapshot 时为null）
+     */
+    public SourceSnapshot.Builder getSnapshotBuilder() {
+        return snapshotBuilder;
+    }
+
     /**
      * 扫描所有Java文件
      */
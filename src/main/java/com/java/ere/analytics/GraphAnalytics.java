@@ -0,0 +1,247 @@
+package com.java.ere.analytics;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.java.ere.Entity;
+import com.java.ere.util.SourceOffsets;
+
+/**
+ * 图分析指标预计算
+ * 在实体提取完成后，基于内存中的图计算常用指标并写入节点属性，
+ * 影响分析看板直接读取属性即可，不必在Neo4j中反复做聚合查询
+ *
+ * 写入的属性：
+ *   in_degree_&lt;关系&gt; / out_degree_&lt;关系&gt;  各关系类型的入度/出度（按不同的对端计，只写非0值）
+ *   scc_id / scc_size                     calls图上的强连通分量编号及大小
+ *   entry_depth                           距最近入口方法（带framework_callbacks）的调用深度
+ *   pagerank                              calls图上的PageRank，按节点数归一化（平均值为1.0）
+ */
+public class GraphAnalytics {
+
+    private static final String CALLS = "calls";
+    private static final double DAMPING = 0.85;
+    private static final int MAX_ITERATIONS = 50;
+    private static final double TOLERANCE = 1e-9;
+
+    private static final Set<String> NUMERIC_PROPERTIES = new HashSet<>(
+        Arrays.asList("scc_id", "scc_size", "entry_depth", "pagerank"));
+
+    private GraphAnalytics() {}
+
+    /**
+     * 是否为数值属性（本类写入的指标及CodeParser写入的位置，导出Cypher时不加引号，便于范围查询和排序）
+     */
+    public static boolean isNumericProperty(String key) {
+        return NUMERIC_PROPERTIES.contains(key) || SourceOffsets.NUMERIC_PROPERTIES.contains(key)
+            || key.startsWith("in_degree_") || key.startsWith("out_degree_");
+    }
+
+    /**
+     * 计算全部指标并写入实体属性
+     */
+    public static void compute(Map<String, Entity> entities) {
+        long startTime = System.currentTimeMillis();
+
+        computeDegrees(entities);
+
+        CallGraph callGraph = new CallGraph(entities);
+        int sccCount = computeStronglyConnectedComponents(callGraph, entities);
+        int reachable = computeEntryDepth(callGraph, entities);
+        computePageRank(callGraph, entities);
+
+        System.out.println("[图分析] 方法数: " + callGraph.size()
+            + ", 强连通分量: " + sccCount
+            + ", 入口可达方法: " + reachable
+            + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * 各关系类型的入度/出度
+     */
+    private static void computeDegrees(Map<String, Entity> entities) {
+        Map<String, Map<String, Integer>> inDegrees = new HashMap<>();  // 目标ID -> 关系类型 -> 入度
+
+        for (Entity entity : entities.values()) {
+            for (String type : entity.getRelations().keySet()) {
+                Map<String, Integer> targets = entity.getRelationsByType(type);
+                if (targets.isEmpty()) {
+                    continue;
+                }
+                entity.addProperty("out_degree_" + type, String.valueOf(targets.size()));
+                for (String targetId : targets.keySet()) {
+                    inDegrees.computeIfAbsent(targetId, k -> new HashMap<>()).merge(type, 1, Integer::sum);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Map<String, Integer>> entry : inDegrees.entrySet()) {
+            Entity target = entities.get(entry.getKey());
+            if (target == null) {
+                continue;  // 未建节点的目标（如mark策略下的第三方方法）
+            }
+            for (Map.Entry<String, Integer> degree : entry.getValue().entrySet()) {
+                target.addProperty("in_degree_" + degree.getKey(), String.valueOf(degree.getValue()));
+            }
+        }
+    }
+
+    /**
+     * calls图上的强连通分量
+     * 节点按ID排序编号，保证同一输入的分量编号稳定
+     *
+     * @return 强连通分量数量
+     */
+    private static int computeStronglyConnectedComponents(CallGraph graph, Map<String, Entity> entities) {
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(graph.successors);
+        for (int i = 0; i < graph.size(); i++) {
+            Entity entity = entities.get(graph.idOf(i));
+            int componentId = scc.componentOf(i);
+            entity.addProperty("scc_id", String.valueOf(componentId));
+            entity.addProperty("scc_size", String.valueOf(scc.componentSize(componentId)));
+        }
+        return scc.componentCount();
+    }
+
+    /**
+     * 从入口方法出发的多源BFS，记录最短调用深度
+     *
+     * @return 可达方法数量（含入口本身）
+     */
+    private static int computeEntryDepth(CallGraph graph, Map<String, Entity> entities) {
+        int n = graph.size();
+        int[] depth = new int[n];
+        Arrays.fill(depth, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int i = 0; i < n; i++) {
+            String callbacks = entities.get(graph.idOf(i)).getProperties().get("framework_callbacks");
+            if (callbacks != null && !callbacks.isEmpty()) {
+                depth[i] = 0;
+                queue.add(i);
+            }
+        }
+
+        int reachable = queue.size();
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int w : graph.successors(v)) {
+                if (depth[w] == -1) {
+                    depth[w] = depth[v] + 1;
+                    queue.add(w);
+                    reachable++;
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (depth[i] >= 0) {
+                entities.get(graph.idOf(i)).addProperty("entry_depth", String.valueOf(depth[i]));
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * PageRank（幂迭代，无出边节点的权重均匀分配给所有节点）
+     */
+    private static void computePageRank(CallGraph graph, Map<String, Entity> entities) {
+        int n = graph.size();
+        if (n == 0) {
+            return;
+        }
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double danglingMass = 0;
+            for (int v = 0; v < n; v++) {
+                if (graph.successors(v).length == 0) {
+                    danglingMass += rank[v];
+                }
+            }
+            Arrays.fill(next, (1 - DAMPING) / n + DAMPING * danglingMass / n);
+            for (int v = 0; v < n; v++) {
+                int[] successors = graph.successors(v);
+                if (successors.length == 0) {
+                    continue;
+                }
+                double share = DAMPING * rank[v] / successors.length;
+                for (int w : successors) {
+                    next[w] += share;
+                }
+            }
+
+            double delta = 0;
+            for (int v = 0; v < n; v++) {
+                delta += Math.abs(next[v] - rank[v]);
+            }
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            if (delta < TOLERANCE) {
+                break;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            entities.get(graph.idOf(i)).addProperty("pagerank", String.format(Locale.ROOT, "%.6f", rank[i] * n));
+        }
+    }
+
+    /**
+     * 方法调用图的紧凑表示：方法ID按字典序编号，邻接表为去重后的被调用方法编号
+     */
+    private static class CallGraph {
+        private final String[] ids;
+        private final int[][] successors;
+
+        CallGraph(Map<String, Entity> entities) {
+            TreeSet<String> methodIds = new TreeSet<>();
+            for (Entity entity : entities.values()) {
+                if ("Method".equals(entity.getType())) {
+                    methodIds.add(entity.getId());
+                }
+            }
+            this.ids = methodIds.toArray(new String[0]);
+
+            Map<String, Integer> indexOf = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                indexOf.put(ids[i], i);
+            }
+
+            this.successors = new int[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                Map<String, Integer> targets = entities.get(ids[i]).getRelationsByType(CALLS);
+                int[] adjacent = new int[targets.size()];
+                int count = 0;
+                for (String targetId : new TreeSet<>(targets.keySet())) {
+                    Integer target = indexOf.get(targetId);
+                    if (target != null) {
+                        adjacent[count++] = target;
+                    }
+                }
+                successors[i] = Arrays.copyOf(adjacent, count);
+            }
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        String idOf(int index) {
+            return ids[index];
+        }
+
+        int[] successors(int index) {
+            return successors[index];
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.java.ere.analytics;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.google.gson.Gson;
+import com.java.ere.Entity;
+import com.java.ere.util.AnalysisResultReader;
+
+/**
+ * 传递影响闭包索引
+ * 预先计算每个方法/字段的完整传递上游集合（"改了它，哪些方法会受影响"），查询时只需遍历位图，无需逐跳查图
+ *
+ * 上游关系与查询服务一致：
+ *   calls / accesses  沿边反向（调用方、访问方是上游）
+ *   overrides         沿边正向（被重写的父类/接口方法是上游，其调用方经由它受影响）
+ *
+ * 构建方式：在"上游一步"图上求强连通分量并缩点成DAG；Tarjan按逆拓扑序产出分量，
+ * 依次把后继分量的可达位图并入自身即得到每个分量的传递闭包。
+ * 位图按分量编号，内存约为 分量数² / 8 字节
+ */
+public class ImpactClosureIndex {
+
+    private final String[] ids;           // 节点ID（字典序）
+    private final int[] component;        // 节点 -> 分量编号
+    private final int[][] members;        // 分量 -> 节点编号（升序）
+    private final BitSet[] reach;         // 分量 -> 可达分量（含自身）
+    private final Map<String, Integer> indexOf = new HashMap<>();
+
+    private ImpactClosureIndex(String[] ids, int[] component, BitSet[] reach) {
+        this.ids = ids;
+        this.component = component;
+        this.reach = reach;
+        for (int i = 0; i < ids.length; i++) {
+            indexOf.put(ids[i], i);
+        }
+
+        int[] sizes = new int[reach.length];
+        for (int c : component) {
+            sizes[c]++;
+        }
+        this.members = new int[reach.length][];
+        for (int c = 0; c < reach.length; c++) {
+            members[c] = new int[sizes[c]];
+        }
+        int[] cursor = new int[reach.length];
+        for (int i = 0; i < ids.length; i++) {
+            members[component[i]][cursor[component[i]]++] = i;
+        }
+    }
+
+    /**
+     * 从内存中的实体构建
+     */
+    public static ImpactClosureIndex build(Map<String, Entity> entities) {
+        Builder builder = new Builder();
+        for (Entity entity : entities.values()) {
+            builder.add(entity);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 从 analysis-result_*.json 流式构建，只保留方法/字段ID和影响关系
+     */
+    public static ImpactClosureIndex build(String analysisResultPath) throws IOException {
+        Builder builder = new Builder();
+        AnalysisResultReader.forEachEntity(analysisResultPath, builder::add);
+        return builder.build();
+    }
+
+    /**
+     * 逐个收集实体的构建器
+     */
+    public static class Builder {
+        private final TreeSet<String> nodeIds = new TreeSet<>();
+        private final List<String[]> steps = new ArrayList<>();  // [节点, 上游]
+
+        public void add(Entity entity) {
+            String type = entity.getType();
+            if (!"Method".equals(type) && !"Field".equals(type)) {
+                return;
+            }
+            String id = entity.getId();
+            nodeIds.add(id);
+            for (String targetId : entity.getRelationsByType("calls").keySet()) {
+                steps.add(new String[]{targetId, id});
+            }
+            for (String targetId : entity.getRelationsByType("accesses").keySet()) {
+                steps.add(new String[]{targetId, id});
+            }
+            for (String targetId : entity.getRelationsByType("overrides").keySet()) {
+                steps.add(new String[]{id, targetId});
+            }
+        }
+
+        public ImpactClosureIndex build() {
+            long startTime = System.currentTimeMillis();
+            String[] ids = nodeIds.toArray(new String[0]);
+            Map<String, Integer> indexOf = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                indexOf.put(ids[i], i);
+            }
+
+            // 上游一步的邻接表（去重、升序）；目标实体不存在的关系忽略
+            List<TreeSet<Integer>> adjacency = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                adjacency.add(new TreeSet<>());
+            }
+            for (String[] step : steps) {
+                Integer from = indexOf.get(step[0]);
+                Integer to = indexOf.get(step[1]);
+                if (from != null && to != null && !from.equals(to)) {
+                    adjacency.get(from).add(to);
+                }
+            }
+            int[][] successors = new int[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                successors[i] = adjacency.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            StronglyConnectedComponents scc = new StronglyConnectedComponents(successors);
+            int[] component = new int[ids.length];
+            List<List<Integer>> componentMembers = new ArrayList<>();
+            for (int c = 0; c < scc.componentCount(); c++) {
+                componentMembers.add(new ArrayList<>());
+            }
+            for (int i = 0; i < ids.length; i++) {
+                component[i] = scc.componentOf(i);
+                componentMembers.get(component[i]).add(i);
+            }
+
+            // 逆拓扑序：后继分量编号更小，已先算好
+            BitSet[] reach = new BitSet[scc.componentCount()];
+            for (int c = 0; c < reach.length; c++) {
+                BitSet bits = new BitSet(c + 1);
+                bits.set(c);
+                for (int v : componentMembers.get(c)) {
+                    for (int w : successors[v]) {
+                        int target = component[w];
+                        if (target != c && !bits.get(target)) {
+                            bits.or(reach[target]);
+                        }
+                    }
+                }
+                reach[c] = bits;
+            }
+
+            ImpactClosureIndex index = new ImpactClosureIndex(ids, component, reach);
+            System.out.println("[影响闭包] 节点数: " + ids.length
+                + ", 分量数: " + reach.length
+                + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+            return index;
+        }
+    }
+
+    /**
+     * 完整的传递上游集合（不含自身；同一强连通分量中的其他节点包含在内），按ID字典序返回
+     * 索引中不存在的ID返回空列表
+     */
+    public List<String> transitiveUpstream(String id) {
+        Integer node = indexOf.get(id);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        BitSet components = reach[component[node]];
+        int[] nodes = new int[upstreamCount(components)];
+        int count = 0;
+        for (int c = components.nextSetBit(0); c >= 0; c = components.nextSetBit(c + 1)) {
+            for (int member : members[c]) {
+                if (member != node) {
+                    nodes[count++] = member;
+                }
+            }
+        }
+        Arrays.sort(nodes, 0, count);
+
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(ids[nodes[i]]);
+        }
+        return result;
+    }
+
+    private int upstreamCount(BitSet components) {
+        int total = 0;
+        for (int c = components.nextSetBit(0); c >= 0; c = components.nextSetBit(c + 1)) {
+            total += members[c].length;
+        }
+        return total;
+    }
+
+    public boolean contains(String id) {
+        return indexOf.containsKey(id);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int componentCount() {
+        return reach.length;
+    }
+
+    // ==================== 持久化 ====================
+
+    /**
+     * 索引文件内容：节点ID、所属分量、每个分量的可达位图（BitSet.toLongArray）
+     */
+    private static class IndexFile {
+        String[] ids;
+        int[] component;
+        long[][] reach;
+    }
+
+    public void save(String path) throws IOException {
+        IndexFile file = new IndexFile();
+        file.ids = ids;
+        file.component = component;
+        file.reach = new long[reach.length][];
+        for (int c = 0; c < reach.length; c++) {
+            file.reach[c] = reach[c].toLongArray();
+        }
+
+        File target = new File(path);
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new FileWriter(target)) {
+            new Gson().toJson(file, writer);
+        }
+    }
+
+    public static ImpactClosureIndex load(String path) throws IOException {
+        try (Reader reader = new FileReader(path)) {
+            IndexFile file = new Gson().fromJson(reader, IndexFile.class);
+            if (file == null || file.ids == null || file.component == null || file.reach == null) {
+                throw new IOException("影响闭包索引文件格式错误: " + path);
+            }
+            BitSet[] reach = new BitSet[file.reach.length];
+            for (int c = 0; c < reach.length; c++) {
+                reach[c] = BitSet.valueOf(file.reach[c]);
+            }
+            return new ImpactClosureIndex(file.ids, file.component, reach);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.java.ere.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Tarjan强连通分量（迭代实现，避免深调用链导致栈溢出）
+ * 输入为按编号表示的邻接表；分量编号按发现顺序递增，即逆拓扑序：
+ * 一个分量能到达的其他分量编号都比它小
+ */
+class StronglyConnectedComponents {
+
+    private final int[] component;
+    private final int[] componentSizes;
+
+    StronglyConnectedComponents(int[][] successors) {
+        int n = successors.length;
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        int[] edgeCursor = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        this.component = new int[n];
+
+        int[] sccStack = new int[n];
+        int sccTop = 0;
+        int[] callStack = new int[n];
+        int nextIndex = 0;
+        int componentCount = 0;
+        int[] sizes = new int[n];
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int callTop = 0;
+            callStack[callTop++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+
+                if (edgeCursor[v] < successors[v].length) {
+                    int w = successors[v][edgeCursor[v]++];
+                    if (index[w] == -1) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // v的后继全部处理完毕，回溯
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+                if (lowLink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = sccStack[--sccTop];
+                        onStack[w] = false;
+                        component[w] = componentCount;
+                        sizes[componentCount]++;
+                    } while (w != v);
+                    componentCount++;
+                }
+            }
+        }
+
+        this.componentSizes = Arrays.copyOf(sizes, componentCount);
+    }
+
+    /**
+     * 节点所属分量编号
+     */
+    int componentOf(int node) {
+        return component[node];
+    }
+
+    int componentCount() {
+        return componentSizes.length;
+    }
+
+    int componentSize(int componentId) {
+        return componentSizes[componentId];
+    }
+}
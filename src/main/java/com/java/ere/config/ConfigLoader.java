@@ -156,6 +156,9 @@ public class ConfigLoader {
         if (extraction.containsKey("includeJavadoc")) {
             extractionConfig.setIncludeJavadoc((Boolean) extraction.get("includeJavadoc"));
         }
+        if (extraction.containsKey("schema")) {
+            extractionConfig.setSchema((String) extraction.get("schema"));
+        }
         
         // 高级选项（在场景之前设置，因为autoCompleteEntities会影响场景应用）
         if (extraction.containsKey("onResolutionFailure")) {
@@ -167,6 +170,12 @@ public class ConfigLoader {
         if (extraction.containsKey("autoCompleteEntities")) {
             extractionConfig.setAutoCompleteEntities((Boolean) extraction.get("autoCompleteEntities"));
         }
+        if (extraction.containsKey("graphAnalytics")) {
+            extractionConfig.setGraphAnalytics((Boolean) extraction.get("graphAnalytics"));
+        }
+        if (extraction.containsKey("sourceSnapshot")) {
+            extractionConfig.setSourceSnapshot((Boolean) extraction.get("sourceSnapshot"));
+        }
         
         // 场景配置（会覆盖entities和relations，除非是custom场景）
         if (extraction.containsKey("scenario")) {
@@ -15,6 +15,9 @@ public class ExtractionConfig {
     // 场景配置
     private String scenario = "impact_analysis";  // call_chain / impact_analysis / full / custom
     
+    // 图谱结构：standard=参数/返回值/异常独立成节点；compact=折叠为Method节点上的属性
+    private String schema = "standard";  // standard / compact
+    
     // 6种实体类型配置
     private Map<String, Boolean> entities = new HashMap<>();
     
@@ -25,6 +28,8 @@ public class ExtractionConfig {
     private String onResolutionFailure = "warn";  // ignore / warn / error
     private boolean enablePerformanceStats = true;
     private boolean autoCompleteEntities = true;
+    private boolean graphAnalytics = false;  // 提取后计算度数/SCC/入口深度/PageRank并写入节点属性
+    private boolean sourceSnapshot = false;  // 保存本次分析读取的源文件快照（.srcpack）
 
     public ExtractionConfig() {
         // 初始化默认场景
@@ -182,6 +187,7 @@ public class ExtractionConfig {
     public void printSummary() {
         System.out.println("\n==================== 提取配置摘要 ====================");
         System.out.println("场景: " + scenario);
+        System.out.println("图谱结构: " + schema);
         
         System.out.println("\n启用的实体:");
         entities.forEach((type, enabled) -> {
@@ -201,6 +207,8 @@ public class ExtractionConfig {
         System.out.println("  - 解析失败策略: " + onResolutionFailure);
         System.out.println("  - 性能统计: " + (enablePerformanceStats ? "开启" : "关闭"));
         System.out.println("  - 自动补全实体: " + (autoCompleteEntities ? "开启" : "关闭"));
+        System.out.println("  - 图分析指标: " + (graphAnalytics ? "开启" : "关闭"));
+        System.out.println("  - 源码快照: " + (sourceSnapshot ? "开启" : "关闭"));
         System.out.println("====================================================\n");
     }
 
@@ -237,6 +245,27 @@ public class ExtractionConfig {
         applyScenario(scenario);
     }
 
+    public String getSchema() {
+        return schema;
+    }
+
+    /**
+     * @throws IllegalArgumentException schema 不是 standard 或 compact
+     */
+    public void setSchema(String schema) {
+        if (!"standard".equals(schema) && !"compact".equals(schema)) {
+            throw new IllegalArgumentException("extraction.schema 只能是 standard 或 compact: " + schema);
+        }
+        this.schema = schema;
+    }
+
+    /**
+     * 是否为compact图谱结构
+     */
+    public boolean isCompactSchema() {
+        return "compact".equals(schema);
+    }
+
     public Map<String, Boolean> getEntities() {
         return entities;
     }
@@ -276,4 +305,20 @@ public class ExtractionConfig {
     public void setAutoCompleteEntities(boolean autoCompleteEntities) {
         this.autoCompleteEntities = autoCompleteEntities;
     }
+
+    public boolean isGraphAnalytics() {
+        return graphAnalytics;
+    }
+
+    public void setGraphAnalytics(boolean graphAnalytics) {
+        this.graphAnalytics = graphAnalytics;
+    }
+
+    public boolean isSourceSnapshot() {
+        return sourceSnapshot;
+    }
+
+    public void setSourceSnapshot(boolean sourceSnapshot) {
+        this.sourceSnapshot = sourceSnapshot;
+    }
 }
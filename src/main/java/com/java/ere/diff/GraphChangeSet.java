@@ -0,0 +1,154 @@
+package com.java.ere.diff;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.java.ere.Entity;
+
+/**
+ * 两个图谱快照之间的结构化变更集
+ * 用于增量同步Neo4j以及生成回归报告
+ */
+public class GraphChangeSet {
+    private String oldSnapshot;
+    private String newSnapshot;
+
+    private List<Entity> addedEntities = new ArrayList<>();             // 新增实体（带完整属性，便于直接建节点）
+    private List<String> removedEntities = new ArrayList<>();           // 删除的实体ID
+    private List<EntityChange> modifiedEntities = new ArrayList<>();    // 属性/类型发生变化的实体
+
+    private List<RelationChange> addedRelations = new ArrayList<>();    // 新增的关系
+    private List<RelationChange> removedRelations = new ArrayList<>();  // 删除的关系
+    private List<RelationChange> countChangedRelations = new ArrayList<>(); // 关系仍存在但count变化
+
+    /**
+     * 单个实体的属性变化
+     */
+    public static class EntityChange {
+        private String id;
+        private String type;
+        private String oldType;                                              // 类型未变化时为null
+        private Map<String, String> changedProperties = new LinkedHashMap<>(); // 新增或修改的属性（新值）
+        private Map<String, List<String>> changedListProperties = new LinkedHashMap<>(); // 新增或修改的列表属性（新值）
+        private List<String> removedProperties = new ArrayList<>();           // 被删除的属性名
+
+        public EntityChange() {}
+
+        public EntityChange(String id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+
+        public String getOldType() { return oldType; }
+        public void setOldType(String oldType) { this.oldType = oldType; }
+
+        public Map<String, String> getChangedProperties() { return changedProperties; }
+        public void setChangedProperties(Map<String, String> changedProperties) { this.changedProperties = changedProperties; }
+
+        public Map<String, List<String>> getChangedListProperties() { return changedListProperties; }
+        public void setChangedListProperties(Map<String, List<String>> changedListProperties) { this.changedListProperties = changedListProperties; }
+
+        public List<String> getRemovedProperties() { return removedProperties; }
+        public void setRemovedProperties(List<String> removedProperties) { this.removedProperties = removedProperties; }
+
+        public boolean isEmpty() {
+            return oldType == null && changedProperties.isEmpty() && changedListProperties.isEmpty()
+                && removedProperties.isEmpty();
+        }
+    }
+
+    /**
+     * 单条关系的变化
+     */
+    public static class RelationChange {
+        private String source;
+        private String type;
+        private String target;
+        private int oldCount;  // 新增关系时为0
+        private int newCount;  // 删除关系时为0
+
+        public RelationChange() {}
+
+        public RelationChange(String source, String type, String target, int oldCount, int newCount) {
+            this.source = source;
+            this.type = type;
+            this.target = target;
+            this.oldCount = oldCount;
+            this.newCount = newCount;
+        }
+
+        public String getSource() { return source; }
+        public void setSource(String source) { this.source = source; }
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+
+        public String getTarget() { return target; }
+        public void setTarget(String target) { this.target = target; }
+
+        public int getOldCount() { return oldCount; }
+        public void setOldCount(int oldCount) { this.oldCount = oldCount; }
+
+        public int getNewCount() { return newCount; }
+        public void setNewCount(int newCount) { this.newCount = newCount; }
+    }
+
+    // Getters and Setters
+    public String getOldSnapshot() { return oldSnapshot; }
+    public void setOldSnapshot(String oldSnapshot) { this.oldSnapshot = oldSnapshot; }
+
+    public String getNewSnapshot() { return newSnapshot; }
+    public void setNewSnapshot(String newSnapshot) { this.newSnapshot = newSnapshot; }
+
+    public List<Entity> getAddedEntities() { return addedEntities; }
+    public void setAddedEntities(List<Entity> addedEntities) { this.addedEntities = addedEntities; }
+
+    public List<String> getRemovedEntities() { return removedEntities; }
+    public void setRemovedEntities(List<String> removedEntities) { this.removedEntities = removedEntities; }
+
+    public List<EntityChange> getModifiedEntities() { return modifiedEntities; }
+    public void setModifiedEntities(List<EntityChange> modifiedEntities) { this.modifiedEntities = modifiedEntities; }
+
+    public List<RelationChange> getAddedRelations() { return addedRelations; }
+    public void setAddedRelations(List<RelationChange> addedRelations) { this.addedRelations = addedRelations; }
+
+    public List<RelationChange> getRemovedRelations() { return removedRelations; }
+    public void setRemovedRelations(List<RelationChange> removedRelations) { this.removedRelations = removedRelations; }
+
+    public List<RelationChange> getCountChangedRelations() { return countChangedRelations; }
+    public void setCountChangedRelations(List<RelationChange> countChangedRelations) { this.countChangedRelations = countChangedRelations; }
+
+    /**
+     * 是否没有任何变化
+     */
+    public boolean isEmpty() {
+        return addedEntities.isEmpty() && removedEntities.isEmpty() && modifiedEntities.isEmpty()
+            && addedRelations.isEmpty() && removedRelations.isEmpty() && countChangedRelations.isEmpty();
+    }
+
+    /**
+     * 打印变更摘要（回归报告）
+     */
+    public void printSummary() {
+        System.out.println("\n==================== 图谱变更摘要 ====================");
+        System.out.println("旧快照: " + oldSnapshot);
+        System.out.println("新快照: " + newSnapshot);
+        System.out.println("\n实体:");
+        System.out.println("  + 新增: " + addedEntities.size());
+        System.out.println("  - 删除: " + removedEntities.size());
+        System.out.println("  ~ 修改: " + modifiedEntities.size());
+        System.out.println("\n关系:");
+        System.out.println("  + 新增: " + addedRelations.size());
+        System.out.println("  - 删除: " + removedRelations.size());
+        System.out.println("  ~ count变化: " + countChangedRelations.size());
+        System.out.println("====================================================\n");
+    }
+}
@@ -0,0 +1,221 @@
+package com.java.ere.diff;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.java.ere.Entity;
+import com.java.ere.util.AnalysisResultReader;
+
+/**
+ * 图谱快照结构化diff
+ * 比较两个 analysis-result_*.json，输出实体增删改、关系增删以及关系count变化
+ *
+ * 两个快照都按实体ID排序时（ConfigFileMain的输出即为有序），采用归并方式同时流式读取，
+ * 内存只保留当前比较的两个实体；遇到无序的旧快照时退化为"旧快照建索引 + 新快照流式比较"
+ */
+public class GraphSnapshotDiffer {
+
+    /**
+     * 比较两个快照
+     */
+    public GraphChangeSet diff(String oldJsonPath, String newJsonPath) throws IOException {
+        GraphChangeSet changeSet;
+        try {
+            changeSet = mergeDiff(oldJsonPath, newJsonPath);
+        } catch (UnsortedSnapshotException e) {
+            System.out.println("[图谱diff] 快照未按ID排序，改用索引模式比较");
+            changeSet = indexedDiff(oldJsonPath, newJsonPath);
+        }
+        changeSet.setOldSnapshot(oldJsonPath);
+        changeSet.setNewSnapshot(newJsonPath);
+        return changeSet;
+    }
+
+    /**
+     * 归并比较：要求两个快照均按实体ID升序
+     */
+    private GraphChangeSet mergeDiff(String oldJsonPath, String newJsonPath) throws IOException {
+        GraphChangeSet changeSet = new GraphChangeSet();
+
+        try (AnalysisResultReader oldReader = new AnalysisResultReader(oldJsonPath);
+             AnalysisResultReader newReader = new AnalysisResultReader(newJsonPath)) {
+            Entity oldEntity = nextInOrder(oldReader, null);
+            Entity newEntity = nextInOrder(newReader, null);
+
+            while (oldEntity != null || newEntity != null) {
+                int cmp;
+                if (oldEntity == null) {
+                    cmp = 1;
+                } else if (newEntity == null) {
+                    cmp = -1;
+                } else {
+                    cmp = oldEntity.getId().compareTo(newEntity.getId());
+                }
+
+                if (cmp == 0) {
+                    compareEntity(oldEntity, newEntity, changeSet);
+                    oldEntity = nextInOrder(oldReader, oldEntity.getId());
+                    newEntity = nextInOrder(newReader, newEntity.getId());
+                } else if (cmp < 0) {
+                    recordRemoved(oldEntity, changeSet);
+                    oldEntity = nextInOrder(oldReader, oldEntity.getId());
+                } else {
+                    recordAdded(newEntity, changeSet);
+                    newEntity = nextInOrder(newReader, newEntity.getId());
+                }
+            }
+        }
+
+        return changeSet;
+    }
+
+    /**
+     * 索引比较：旧快照按ID建索引，新快照流式读取逐个比较
+     */
+    private GraphChangeSet indexedDiff(String oldJsonPath, String newJsonPath) throws IOException {
+        GraphChangeSet changeSet = new GraphChangeSet();
+
+        Map<String, Entity> oldEntities = new HashMap<>();
+        AnalysisResultReader.forEachEntity(oldJsonPath, entity -> oldEntities.put(entity.getId(), entity));
+
+        AnalysisResultReader.forEachEntity(newJsonPath, newEntity -> {
+            Entity oldEntity = oldEntities.remove(newEntity.getId());
+            if (oldEntity == null) {
+                recordAdded(newEntity, changeSet);
+            } else {
+                compareEntity(oldEntity, newEntity, changeSet);
+            }
+        });
+
+        // 剩下的都是新快照中不存在的实体（按ID排序，保证输出稳定）
+        for (Entity removed : new TreeMap<>(oldEntities).values()) {
+            recordRemoved(removed, changeSet);
+        }
+
+        return changeSet;
+    }
+
+    /**
+     * 读取下一个实体，并校验ID严格递增
+     */
+    private Entity nextInOrder(AnalysisResultReader reader, String previousId) {
+        if (!reader.hasNext()) {
+            return null;
+        }
+        Entity entity = reader.next();
+        if (previousId != null && previousId.compareTo(entity.getId()) >= 0) {
+            throw new UnsortedSnapshotException();
+        }
+        return entity;
+    }
+
+    private void recordAdded(Entity entity, GraphChangeSet changeSet) {
+        changeSet.getAddedEntities().add(entity);
+        forEachRelation(entity, (type, target, count) ->
+            changeSet.getAddedRelations().add(
+                new GraphChangeSet.RelationChange(entity.getId(), type, target, 0, count)));
+    }
+
+    private void recordRemoved(Entity entity, GraphChangeSet changeSet) {
+        changeSet.getRemovedEntities().add(entity.getId());
+        // 删除节点时DETACH DELETE会一并删除其关系，这里仍然记录，方便回归报告统计
+        forEachRelation(entity, (type, target, count) ->
+            changeSet.getRemovedRelations().add(
+                new GraphChangeSet.RelationChange(entity.getId(), type, target, count, 0)));
+    }
+
+    /**
+     * 比较同一ID在两个快照中的实体
+     */
+    private void compareEntity(Entity oldEntity, Entity newEntity, GraphChangeSet changeSet) {
+        String id = newEntity.getId();
+
+        // 1. 类型与属性
+        GraphChangeSet.EntityChange entityChange = new GraphChangeSet.EntityChange(id, newEntity.getType());
+        if (!newEntity.getType().equals(oldEntity.getType())) {
+            entityChange.setOldType(oldEntity.getType());
+        }
+        Map<String, String> oldProps = oldEntity.getProperties();
+        for (Map.Entry<String, String> prop : new TreeMap<>(newEntity.getProperties()).entrySet()) {
+            String oldValue = oldProps.get(prop.getKey());
+            if (oldValue == null ? prop.getValue() != null : !oldValue.equals(prop.getValue())) {
+                entityChange.getChangedProperties().put(prop.getKey(), prop.getValue());
+            }
+        }
+        Map<String, List<String>> oldListProps = oldEntity.getListProperties();
+        for (Map.Entry<String, List<String>> prop : new TreeMap<>(newEntity.getListProperties()).entrySet()) {
+            if (!prop.getValue().equals(oldListProps.get(prop.getKey()))) {
+                entityChange.getChangedListProperties().put(prop.getKey(), prop.getValue());
+            }
+        }
+        // 属性名在新实体的普通属性和列表属性中都不存在时才算删除
+        TreeSet<String> oldKeys = new TreeSet<>(oldProps.keySet());
+        oldKeys.addAll(oldListProps.keySet());
+        for (String key : oldKeys) {
+            if (!newEntity.getProperties().containsKey(key) && !newEntity.getListProperties().containsKey(key)) {
+                entityChange.getRemovedProperties().add(key);
+            }
+        }
+        if (!entityChange.isEmpty()) {
+            changeSet.getModifiedEntities().add(entityChange);
+        }
+
+        // 2. 关系（按类型、目标逐一比较count）
+        TreeSet<String> relationTypes = new TreeSet<>(oldEntity.getRelations().keySet());
+        relationTypes.addAll(newEntity.getRelations().keySet());
+        for (String type : relationTypes) {
+            Map<String, Integer> oldTargets = oldEntity.getRelationsByType(type);
+            Map<String, Integer> newTargets = newEntity.getRelationsByType(type);
+
+            TreeSet<String> targets = new TreeSet<>(oldTargets.keySet());
+            targets.addAll(newTargets.keySet());
+            for (String target : targets) {
+                int oldCount = oldTargets.getOrDefault(target, 0);
+                int newCount = newTargets.getOrDefault(target, 0);
+                if (oldCount == newCount) {
+                    continue;
+                }
+                GraphChangeSet.RelationChange change =
+                    new GraphChangeSet.RelationChange(id, type, target, oldCount, newCount);
+                if (oldCount == 0) {
+                    changeSet.getAddedRelations().add(change);
+                } else if (newCount == 0) {
+                    changeSet.getRemovedRelations().add(change);
+                } else {
+                    changeSet.getCountChangedRelations().add(change);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按类型、目标的字典序遍历实体的所有关系
+     */
+    private void forEachRelation(Entity entity, RelationVisitor visitor) {
+        for (String type : new TreeSet<>(entity.getRelations().keySet())) {
+            for (Map.Entry<String, Integer> target : new TreeMap<>(entity.getRelationsByType(type)).entrySet()) {
+                visitor.visit(type, target.getKey(), target.getValue());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RelationVisitor {
+        void visit(String type, String target, int count);
+    }
+
+    /**
+     * 快照未按ID排序，无法归并比较
+     */
+    private static class UnsortedSnapshotException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsortedSnapshotException() {
+            super(null, null, false, false);
+        }
+    }
+}
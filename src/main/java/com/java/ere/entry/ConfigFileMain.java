@@ -7,12 +7,14 @@ import com.java.ere.EntityJsonAdapter;
 import com.java.ere.ProjectAnalyzer;
 import com.java.ere.config.AnalysisConfig;
 import com.java.ere.config.ConfigLoader;
+import com.java.ere.util.SourceSnapshot;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * 使用配置文件的示例程序
@@ -77,7 +79,14 @@ public class ConfigFileMain {
             System.out.println("\n完成！总共 " + result.size() + " 个实体");
             
             // 保存结果到文件
-            saveResultToFile(result, config.getProjectName(), gson);
+            String resultFile = saveResultToFile(result, config.getProjectName(), gson);
+            
+            // 源码快照与结果JSON同名，保存在旁边
+            if (resultFile != null && analyzer.getSnapshotBuilder() != null) {
+                String snapshotFile = resultFile.substring(0, resultFile.length() - ".json".length())
+                    + SourceSnapshot.FILE_SUFFIX;
+                analyzer.getSnapshotBuilder().writeTo(snapshotFile);
+            }
             
         } catch (Exception e) {
             System.err.println("错误: " + e.getMessage());
@@ -90,8 +99,10 @@ public class ConfigFileMain {
     
     /**
      * 保存分析结果到文件
+     *
+     * @return 结果文件路径，保存失败时返回null
      */
-    private static void saveResultToFile(Map<String, Entity> result, String projectName, Gson gson) {
+    private static String saveResultToFile(Map<String, Entity> result, String projectName, Gson gson) {
         try {
             // 确保输出目录存在
             java.io.File outputDir = new java.io.File("extract_out");
@@ -107,16 +118,18 @@ public class ConfigFileMain {
             
             System.out.println("\n正在保存结果到文件: " + fileName);
             
-            // 写入文件
+            // 写入文件（按实体ID排序输出，便于快照之间做结构化diff）
             try (FileWriter writer = new FileWriter(fileName)) {
-                writer.write(gson.toJson(result));
+                gson.toJson(new TreeMap<>(result), writer);
             }
             
             System.out.println("✓ 结果已保存到: " + fileName);
             System.out.println("文件大小: " + new java.io.File(fileName).length() / 1024 + " KB");
+            return fileName;
             
         } catch (IOException e) {
             System.err.println("保存文件失败: " + e.getMessage());
+            return null;
         }
     }
 }
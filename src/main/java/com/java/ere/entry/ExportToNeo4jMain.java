@@ -1,8 +1,10 @@
 package com.java.ere.entry;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 import com.java.ere.export.Neo4jExporter;
 
@@ -19,6 +21,18 @@ public class ExportToNeo4jMain {
             String jsonFile;
             String cypherFile;
             
+            // 分片模式：--shards N，第二个位置参数变为输出目录
+            int shardCount = 0;
+            List<String> positional = new ArrayList<>();
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--shards") && i + 1 < args.length) {
+                    shardCount = Integer.parseInt(args[++i]);
+                } else {
+                    positional.add(args[i]);
+                }
+            }
+            args = positional.toArray(new String[0]);
+            
             // 如果用户提供了参数
             if (args.length >= 1) {
                 jsonFile = args[0];
@@ -33,12 +47,20 @@ public class ExportToNeo4jMain {
             
             if (args.length >= 2) {
                 cypherFile = args[1];
+            } else if (shardCount > 0) {
+                // 分片脚本输出到extract_out下的独立目录
+                cypherFile = "extract_out/neo4j-shards";
             } else {
                 // Cypher文件也输出到extract_out目录
                 cypherFile = "extract_out/neo4j-import.cypher";
             }
             
             // 执行导出
+            if (shardCount > 0) {
+                // 分片模式的导入方式由导出器打印（先schema，再并发节点分片，最后并发关系分片）
+                Neo4jExporter.exportToCypherShards(jsonFile, cypherFile, shardCount);
+                return;
+            }
             Neo4jExporter.exportToCypher(jsonFile, cypherFile);
             
             // 使用说明
@@ -81,6 +103,7 @@ public class ExportToNeo4jMain {
             System.err.println("  mvn exec:java -Dexec.mainClass=\"com.java.ere.entry.ExportToNeo4jMain\"");
             System.err.println("  mvn exec:java -Dexec.mainClass=\"com.java.ere.entry.ExportToNeo4jMain\" -Dexec.args=\"<input.json>\"");
             System.err.println("  mvn exec:java -Dexec.mainClass=\"com.java.ere.entry.ExportToNeo4jMain\" -Dexec.args=\"<input.json> <output.cypher>\"");
+            System.err.println("  mvn exec:java -Dexec.mainClass=\"com.java.ere.entry.ExportToNeo4jMain\" -Dexec.args=\"<input.json> <输出目录> --shards 4\"");
         }
     }
     
@@ -0,0 +1,79 @@
+package com.java.ere.entry;
+
+import java.io.FileWriter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.java.ere.Entity;
+import com.java.ere.EntityJsonAdapter;
+import com.java.ere.diff.GraphChangeSet;
+import com.java.ere.diff.GraphSnapshotDiffer;
+import com.java.ere.export.Neo4jExporter;
+
+/**
+ * 图谱快照diff入口程序
+ * 比较两次构建生成的 analysis-result_*.json，输出结构化变更集，可选生成增量同步Cypher脚本
+ */
+public class GraphDiffMain {
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            printUsage();
+            System.exit(1);
+        }
+
+        String oldJson = args[0];
+        String newJson = args[1];
+        String outputFile = "extract_out/graph-diff.json";
+        String cypherFile = null;
+
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--output") && i + 1 < args.length) {
+                outputFile = args[++i];
+            } else if (args[i].equals("--cypher") && i + 1 < args.length) {
+                cypherFile = args[++i];
+            }
+        }
+
+        try {
+            System.out.println("===============================================");
+            System.out.println("Java ERE - 图谱快照diff");
+            System.out.println("===============================================");
+
+            long startTime = System.currentTimeMillis();
+            GraphChangeSet changeSet = new GraphSnapshotDiffer().diff(oldJson, newJson);
+            long endTime = System.currentTimeMillis();
+
+            changeSet.printSummary();
+            System.out.println("比较耗时: " + (endTime - startTime) / 1000.0 + " 秒");
+
+            // 变更集使用紧凑格式输出
+            Gson gson = new GsonBuilder()
+                .registerTypeAdapter(Entity.class, new EntityJsonAdapter())
+                .create();
+            java.io.File parent = new java.io.File(outputFile).getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            try (FileWriter writer = new FileWriter(outputFile)) {
+                gson.toJson(changeSet, writer);
+            }
+            System.out.println("✓ 变更集已保存到: " + outputFile);
+
+            if (cypherFile != null) {
+                Neo4jExporter.exportChangeSetToCypher(changeSet, cypherFile);
+            }
+
+        } catch (Exception e) {
+            System.err.println("❌ 图谱diff失败: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("用法: GraphDiffMain <旧快照.json> <新快照.json> [--output <变更集.json>] [--cypher <增量同步.cypher>]");
+        System.err.println("示例:");
+        System.err.println("  mvn exec:java -Dexec.mainClass=\"com.java.ere.entry.GraphDiffMain\" \\");
+        System.err.println("    -Dexec.args=\"extract_out/analysis-result_demo_20250101_120000.json extract_out/analysis-result_demo_20250102_120000.json --cypher extract_out/neo4j-sync.cypher\"");
+    }
+}
@@ -0,0 +1,52 @@
+package com.java.ere.entry;
+
+import com.java.ere.analytics.ImpactClosureIndex;
+
+/**
+ * 影响闭包索引生成入口程序
+ * 基于 analysis-result_*.json 离线计算每个方法/字段的完整传递上游，供查询服务直接查表
+ */
+public class ImpactIndexMain {
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            printUsage();
+            System.exit(1);
+        }
+
+        String inputJson = args[0];
+        String outputFile = "extract_out/impact-index.json";
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--output") && i + 1 < args.length) {
+                outputFile = args[++i];
+            }
+        }
+
+        try {
+            System.out.println("===============================================");
+            System.out.println("Java ERE - 影响闭包索引");
+            System.out.println("===============================================");
+
+            long startTime = System.currentTimeMillis();
+            ImpactClosureIndex index = ImpactClosureIndex.build(inputJson);
+            index.save(outputFile);
+            long endTime = System.currentTimeMillis();
+
+            System.out.println("节点数: " + index.size() + ", 强连通分量: " + index.componentCount());
+            System.out.println("总耗时: " + (endTime - startTime) / 1000.0 + " 秒");
+            System.out.println("✓ 索引已保存到: " + outputFile);
+
+        } catch (Exception e) {
+            System.err.println("❌ 生成影响闭包索引失败: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("用法: ImpactIndexMain <分析结果.json> [--output <索引文件>]");
+        System.err.println("示例:");
+        System.err.println("  mvn exec:java -Dexec.mainClass=\"com.java.ere.entry.ImpactIndexMain\" \\");
+        System.err.println("    -Dexec.args=\"extract_out/analysis-result_demo_20250101_120000.json --output extract_out/impact-index.json\"");
+    }
+}
@@ -1,17 +1,32 @@
 package com.java.ere.export;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import com.java.ere.Entity;
 import com.java.ere.EntityJsonAdapter;
+import com.java.ere.analytics.GraphAnalytics;
+import com.java.ere.diff.GraphChangeSet;
 
 /**
  * Neo4j 导出器
@@ -19,6 +34,12 @@ import com.java.ere.EntityJsonAdapter;
  */
 public class Neo4jExporter {
     
+    // 节点分片中每条 UNWIND 语句携带的节点数（每条语句是一个事务）
+    private static final int NODE_BATCH_SIZE = 500;
+    
+    // 关系分片中每条 UNWIND 语句携带的关系数（每条语句是一个事务）
+    private static final int RELATION_BATCH_SIZE = 500;
+    
     /**
      * 将JSON文件转换为Cypher脚本
      */
@@ -26,47 +47,315 @@ public class Neo4jExporter {
         System.out.println("==================== Neo4j 导出 ====================");
         System.out.println("读取文件: " + jsonFilePath);
         
-        // 读取JSON文件（使用支持count的适配器）
+        Map<String, Entity> entities = loadEntities(jsonFilePath);
+        System.out.println("实体数量: " + entities.size());
+        
+        // 生成Cypher脚本
+        String graphVersion = computeGraphVersion(jsonFilePath);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(cypherFilePath))) {
+            writeCypherScript(writer, entities, graphVersion, new File(jsonFilePath).getName());
+        }
+        System.out.println("图谱版本: " + graphVersion);
+        
+        System.out.println("Cypher脚本已生成: " + cypherFilePath);
+        System.out.println("\n执行方式:");
+        System.out.println("1. 打开 Neo4j Browser: http://localhost:7474");
+        System.out.println("2. 复制脚本内容并执行");
+        System.out.println("3. 或者使用命令: cat " + cypherFilePath + " | cypher-shell -u neo4j -p password");
+        System.out.println("====================================================\n");
+    }
+    
+    /**
+     * 读取JSON文件（使用支持count的适配器）
+     */
+    private static Map<String, Entity> loadEntities(String jsonFilePath) throws IOException {
         Gson gson = new GsonBuilder()
             .registerTypeAdapter(Entity.class, new EntityJsonAdapter())
             .create();
         Type type = new TypeToken<Map<String, Entity>>(){}.getType();
-        Map<String, Entity> entities;
         
         try (FileReader reader = new FileReader(jsonFilePath)) {
-            entities = gson.fromJson(reader, type);
+            return gson.fromJson(reader, type);
         }
+    }
+    
+    /**
+     * 将JSON文件转换为分片Cypher脚本，供多个cypher-shell会话并发导入
+     * 输出目录结构：
+     *   00-schema.cypher               清库 + 约束/索引，必须最先单独执行
+     *   10-nodes-NN.cypher             节点分片（按实体ID哈希），彼此独立可并发；
+     *                                  每条语句以 UNWIND 批量写入同一标签的节点并用 MERGE，可整体重试
+     *   20-rels-TYPE-NN.cypher         关系分片（按关系类型 + 源节点ID哈希），须在全部节点导入后并发执行；
+     *                                  每条语句以 UNWIND 批量写入并用 MERGE，可整体重试（并发死锁时）
+     *   90-version.cypher              图谱版本标记，全部分片导入完成后最后执行
+     */
+    public static void exportToCypherShards(String jsonFilePath, String outputDir, int shardCount) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("分片数必须大于0: " + shardCount);
+        }
+        
+        System.out.println("==================== Neo4j 分片导出 ====================");
+        System.out.println("读取文件: " + jsonFilePath);
         
+        Map<String, Entity> entities = loadEntities(jsonFilePath);
         System.out.println("实体数量: " + entities.size());
+        System.out.println("分片数量: " + shardCount);
         
-        // 生成Cypher脚本
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(cypherFilePath))) {
-            writeCypherScript(writer, entities);
+        File dir = new File(outputDir);
+        if (!dir.exists()) {
+            dir.mkdirs();
         }
         
-        System.out.println("Cypher脚本已生成: " + cypherFilePath);
+        // 1. schema分片
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(dir, "00-schema.cypher")))) {
+            writeSchemaSection(writer, collectLabels(entities));
+        }
+        
+        // 2. 节点分片：同一实体只会落在一个分片中，分片之间没有写冲突
+        NodeBatchWriter[] nodeWriters = new NodeBatchWriter[shardCount];
+        int[] nodeCounts = new int[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                nodeWriters[i] = new NodeBatchWriter(new File(dir, String.format("10-nodes-%02d.cypher", i)));
+            }
+            for (Entity entity : entities.values()) {
+                int shard = shardOf(entity.getId(), shardCount);
+                nodeWriters[shard].add(entity);
+                nodeCounts[shard]++;
+            }
+        } finally {
+            closeAll(nodeWriters);
+        }
+        
+        // 3. 关系分片：按关系类型拆分，再按源节点哈希拆分，同一源节点的关系集中在一个会话中写入，减少锁竞争
+        //    目标节点仍可能被多个会话同时加锁，发生死锁的语句整体回滚，分片可以重新执行
+        Map<String, RelationBatchWriter[]> relationWriters = new TreeMap<>();
+        int relationTotal = 0;
+        try {
+            for (Entity entity : entities.values()) {
+                int shard = shardOf(entity.getId(), shardCount);
+                for (String relationType : entity.getRelations().keySet()) {
+                    String relationTypeUpper = relationType.toUpperCase();
+                    RelationBatchWriter[] writers = relationWriters.computeIfAbsent(relationTypeUpper, k -> new RelationBatchWriter[shardCount]);
+                    if (writers[shard] == null) {
+                        writers[shard] = new RelationBatchWriter(
+                            new File(dir, String.format("20-rels-%s-%02d.cypher", relationTypeUpper, shard)), relationTypeUpper);
+                    }
+                    for (Map.Entry<String, Integer> target : entity.getRelationsByType(relationType).entrySet()) {
+                        writers[shard].add(entity.getId(), target.getKey(), target.getValue());
+                        relationTotal++;
+                    }
+                }
+            }
+        } finally {
+            for (RelationBatchWriter[] writers : relationWriters.values()) {
+                closeAll(writers);
+            }
+        }
+        
+        // 4. 版本标记：最后写入，查询端据此判断缓存是否失效
+        String graphVersion = computeGraphVersion(jsonFilePath);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(dir, "90-version.cypher")))) {
+            writeGraphVersion(writer, graphVersion, new File(jsonFilePath).getName());
+        }
+        
+        System.out.println("节点分片: " + Arrays.toString(nodeCounts));
+        System.out.println("关系类型: " + relationWriters.keySet() + "，共 " + relationTotal + " 个关系");
+        System.out.println("分片脚本已生成: " + dir.getPath());
         System.out.println("\n执行方式:");
-        System.out.println("1. 打开 Neo4j Browser: http://localhost:7474");
-        System.out.println("2. 复制脚本内容并执行");
-        System.out.println("3. 或者使用命令: cat " + cypherFilePath + " | cypher-shell -u neo4j -p password");
+        System.out.println("  SHARD_DIR=" + dir.getPath() + " PARALLELISM=" + shardCount + " bash docs/neo4j-import-script.sh");
         System.out.println("====================================================\n");
     }
     
     /**
-     * 生成Cypher脚本内容
+     * 分片号：按ID哈希取模
      */
-    private static void writeCypherScript(BufferedWriter writer, Map<String, Entity> entities) throws IOException {
+    private static int shardOf(String id, int shardCount) {
+        return Math.floorMod(id.hashCode(), shardCount);
+    }
+    
+    /**
+     * 节点分片写入器：按标签攒批，同一标签的节点攒够一批后写成一条 UNWIND 语句
+     * 用 MERGE 而不是 CREATE，语句失败后重新执行整个分片不会产生重复节点
+     */
+    private static class NodeBatchWriter implements Closeable {
+        private final BufferedWriter writer;
+        private final Map<String, List<String>> rowsByLabel = new TreeMap<>();
+
+        NodeBatchWriter(File file) throws IOException {
+            this.writer = new BufferedWriter(new FileWriter(file));
+            writer.write("// 节点分片，每条语句一个事务，可重复执行；失败时重新执行本文件即可\n");
+        }
+
+        void add(Entity entity) throws IOException {
+            List<String> rows = rowsByLabel.computeIfAbsent(entity.getType(), k -> new ArrayList<>());
+            rows.add(String.format("{id: '%s', props: %s}", escapeCypher(entity.getId()), toCypherProperties(entity)));
+            if (rows.size() >= NODE_BATCH_SIZE) {
+                flush(entity.getType(), rows);
+            }
+        }
+
+        private void flush(String label, List<String> rows) throws IOException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            // 标签顺序：Entity在前，具体类型在后，确保具体类型的样式优先级更高
+            writer.write("UNWIND [\n  " + String.join(",\n  ", rows) + "\n] AS row\n");
+            writer.write("MERGE (n:Entity:" + label + " {id: row.id}) SET n += row.props;\n");
+            rows.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (Map.Entry<String, List<String>> entry : rowsByLabel.entrySet()) {
+                    flush(entry.getKey(), entry.getValue());
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+    
+    /**
+     * 关系分片写入器：同一分片的关系攒够一批后写成一条 UNWIND 语句
+     * 用 MERGE 而不是 CREATE，语句失败（如并发死锁）后重新执行整个分片不会产生重复关系
+     */
+    private static class RelationBatchWriter implements Closeable {
+        private final BufferedWriter writer;
+        private final String relationType;
+        private final List<String> rows = new ArrayList<>();
+
+        RelationBatchWriter(File file, String relationType) throws IOException {
+            this.writer = new BufferedWriter(new FileWriter(file));
+            this.relationType = relationType;
+            writer.write("// 关系分片: " + relationType + "，每条语句一个事务，可重复执行；失败（如死锁）时重新执行本文件即可\n");
+        }
+
+        void add(String sourceId, String targetId, int count) throws IOException {
+            rows.add(String.format("{s: '%s', t: '%s', c: %d}", escapeCypher(sourceId), escapeCypher(targetId), count));
+            if (rows.size() >= RELATION_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (rows.isEmpty()) {
+                return;
+            }
+            writer.write("UNWIND [\n  " + String.join(",\n  ", rows) + "\n] AS row\n");
+            writer.write("MATCH (a:Entity {id: row.s}), (b:Entity {id: row.t})\n");
+            writer.write("MERGE (a)-[r:" + relationType + "]->(b) SET r.count = row.c;\n");
+            rows.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                writer.close();
+            }
+        }
+    }
+    
+    private static void closeAll(Closeable[] writers) throws IOException {
+        IOException first = null;
+        for (Closeable writer : writers) {
+            if (writer == null) {
+                continue;
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+    
+    /**
+     * 计算图谱版本：分析结果JSON内容的SHA-256前16位
+     * 同一快照重复导出得到相同版本，查询端缓存可以跨导入复用
+     */
+    public static String computeGraphVersion(String jsonFilePath) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(jsonFilePath))) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 写入图谱版本标记节点（不带Entity标签，不影响实体查询）
+     */
+    private static void writeGraphVersion(BufferedWriter writer, String graphVersion, String source) throws IOException {
+        writer.write("// ==================== 图谱版本 ====================\n");
+        writer.write(String.format(
+            "MERGE (v:GraphVersion {id: 'current'}) SET v.version = '%s', v.source = '%s', v.updatedAt = datetime();\n\n",
+            escapeCypher(graphVersion), escapeCypher(source)));
+    }
+    
+    /**
+     * 生成清库、约束与索引语句
+     */
+    private static void writeSchemaSection(BufferedWriter writer, Set<String> labels) throws IOException {
         // 清空数据库（可选，谨慎使用）
         writer.write("// ==================== 清空现有数据 ====================\n");
         writer.write("// 注意：这会删除数据库中所有节点和关系！\n");
         writer.write("// 如果不想清空，请注释掉下面这行\n");
         writer.write("MATCH (n) DETACH DELETE n;\n\n");
         
-        // 创建索引（提升性能）
-        writer.write("// ==================== 创建索引 ====================\n");
-        writer.write("CREATE INDEX entity_id IF NOT EXISTS FOR (n:Entity) ON (n.id);\n");
+        // 唯一约束（自带唯一索引）：所有按id的查找和关系导入都走索引，避免全图扫描
+        writer.write("// ==================== 创建约束与索引 ====================\n");
+        writer.write("// 旧版本在 Entity.id 上创建的是普通索引，与唯一约束冲突，需先删除\n");
+        writer.write("DROP INDEX entity_id IF EXISTS;\n");
+        writer.write("CREATE CONSTRAINT entity_id_unique IF NOT EXISTS FOR (n:Entity) REQUIRE n.id IS UNIQUE;\n");
+        for (String label : labels) {
+            writer.write(String.format(
+                "CREATE CONSTRAINT %s_id_unique IF NOT EXISTS FOR (n:%s) REQUIRE n.id IS UNIQUE;\n",
+                label.toLowerCase(), label
+            ));
+        }
         writer.write("CREATE INDEX method_name IF NOT EXISTS FOR (n:Method) ON (n.name);\n");
-        writer.write("CREATE INDEX class_name IF NOT EXISTS FOR (n:ClassOrInterface) ON (n.name);\n\n");
+        // 签名未知时按 (owner, name) 一次查出所有重载
+        writer.write("CREATE INDEX method_owner_name IF NOT EXISTS FOR (n:Method) ON (n.owner, n.name);\n");
+        writer.write("CREATE INDEX class_name IF NOT EXISTS FOR (n:ClassOrInterface) ON (n.name);\n");
+        // 等待索引上线后再导入数据，否则前面的MATCH仍可能退化为扫描
+        writer.write("CALL db.awaitIndexes(300);\n\n");
+    }
+    
+    /**
+     * 图谱中出现的所有实体标签（排序，保证脚本稳定）
+     */
+    private static Set<String> collectLabels(Map<String, Entity> entities) {
+        Set<String> labels = new TreeSet<>();
+        for (Entity entity : entities.values()) {
+            labels.add(entity.getType());
+        }
+        return labels;
+    }
+    
+    /**
+     * 生成Cypher脚本内容
+     */
+    private static void writeCypherScript(BufferedWriter writer, Map<String, Entity> entities,
+                                          String graphVersion, String source) throws IOException {
+        writeSchemaSection(writer, collectLabels(entities));
         
         // 统计各类型实体数量
         int totalEntities = entities.size();
@@ -112,6 +401,8 @@ public class Neo4jExporter {
         }
         writer.write(String.format("// 所有 %d 个关系创建完成\n\n", relationCount));
         
+        writeGraphVersion(writer, graphVersion, source);
+        
         // 验证查询
         writer.write("// ==================== 验证查询 ====================\n");
         writer.write("// 查看所有节点类型统计\n");
@@ -128,31 +419,41 @@ public class Neo4jExporter {
      * 生成创建节点的Cypher语句
      */
     private static void writeCypherNode(BufferedWriter writer, Entity entity) throws IOException {
-        // 转义ID和属性中的特殊字符
-        String escapedId = escapeCypher(entity.getId());
-        String entityType = entity.getType();
-        
-        // 构建CREATE语句
         // 标签顺序：Entity在前，具体类型在后，确保具体类型的样式优先级更高
-        StringBuilder cypher = new StringBuilder();
-        cypher.append("CREATE (n:Entity:").append(entityType).append(" {");
-        cypher.append("id: '").append(escapedId).append("'");
-        cypher.append(", type: '").append(entityType).append("'");
+        writer.write("CREATE (n:Entity:" + entity.getType() + " " + toCypherProperties(entity) + ");\n");
+    }
+    
+    /**
+     * 生成按ID合并节点的Cypher语句：节点已存在时只覆盖属性、补上标签，重复执行不会产生重复节点
+     */
+    private static void writeCypherNodeMerge(BufferedWriter writer, Entity entity) throws IOException {
+        writer.write(String.format("MERGE (n:Entity {id: '%s'}) SET n:%s, n += %s;\n",
+            escapeCypher(entity.getId()), entity.getType(), toCypherProperties(entity)));
+    }
+    
+    /**
+     * 生成节点属性的map字面量：id、type、普通属性（分析指标为数值）、列表属性（compact图谱结构下的参数类型、异常、注解等）
+     */
+    private static String toCypherProperties(Entity entity) {
+        StringBuilder cypher = new StringBuilder("{");
+        cypher.append("id: '").append(escapeCypher(entity.getId())).append("'");
+        cypher.append(", type: '").append(entity.getType()).append("'");
         
-        // 添加属性
         if (entity.getProperties() != null && !entity.getProperties().isEmpty()) {
             for (Map.Entry<String, String> prop : entity.getProperties().entrySet()) {
                 String key = prop.getKey();
                 String value = prop.getValue();
                 if (value != null) {
-                    cypher.append(", ").append(key).append(": '");
-                    cypher.append(escapeCypher(value)).append("'");
+                    cypher.append(", ").append(key).append(": ").append(toCypherValue(key, value));
                 }
             }
         }
         
-        cypher.append("});\n");
-        writer.write(cypher.toString());
+        for (Map.Entry<String, List<String>> prop : entity.getListProperties().entrySet()) {
+            cypher.append(", ").append(prop.getKey()).append(": ").append(toCypherList(prop.getValue()));
+        }
+        
+        return cypher.append("}").toString();
     }
     
     /**
@@ -163,30 +464,164 @@ public class Neo4jExporter {
             return 0;
         }
         
+        int count = 0;
+        for (String relationType : entity.getRelations().keySet()) {
+            count += writeCypherRelationsOfType(writer, entity, relationType);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * 生成实体某一类型关系的Cypher语句
+     */
+    private static int writeCypherRelationsOfType(BufferedWriter writer, Entity entity, String relationType) throws IOException {
         int count = 0;
         String escapedSourceId = escapeCypher(entity.getId());
+        String relationTypeUpper = relationType.toUpperCase();  // Neo4j关系类型通常大写
         
-        for (Map.Entry<String, java.util.List<String>> relation : entity.getRelations().entrySet()) {
-            String relationType = relation.getKey();
-            String relationTypeUpper = relationType.toUpperCase();  // Neo4j关系类型通常大写
-            
-            // 获取该类型的所有关系及其计数
-            Map<String, Integer> relationCounts = entity.getRelationsByType(relationType);
+        // 获取该类型的所有关系及其计数
+        Map<String, Integer> relationCounts = entity.getRelationsByType(relationType);
+        
+        for (Map.Entry<String, Integer> target : relationCounts.entrySet()) {
+            String escapedTargetId = escapeCypher(target.getKey());
+            int relationCount = target.getValue();
             
-            for (String targetId : relation.getValue()) {
-                String escapedTargetId = escapeCypher(targetId);
-                int relationCount = relationCounts.getOrDefault(targetId, 1);
-                
-                // 构建MATCH + CREATE关系语句（带count属性）
+            // 构建MATCH + CREATE关系语句（带count属性）
+            writer.write(String.format(
+                "MATCH (a:Entity {id: '%s'}), (b:Entity {id: '%s'}) CREATE (a)-[:%s {count: %d}]->(b);\n",
+                escapedSourceId, escapedTargetId, relationTypeUpper, relationCount
+            ));
+            count++;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * 将图谱变更集导出为增量同步Cypher脚本
+     * 只对发生变化的节点和关系执行写操作，无需清空数据库重新导入；
+     * 新增节点和关系用 MERGE 写入，脚本中途失败或被重复执行时不会产生重复节点和关系
+     */
+    public static void exportChangeSetToCypher(GraphChangeSet changeSet, String cypherFilePath) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(cypherFilePath))) {
+            writer.write("// ==================== 增量同步 ====================\n");
+            writer.write("// 旧快照: " + changeSet.getOldSnapshot() + "\n");
+            writer.write("// 新快照: " + changeSet.getNewSnapshot() + "\n\n");
+            // 旧版本导入的图谱没有该索引，增量同步时补建
+            writer.write("CREATE INDEX method_owner_name IF NOT EXISTS FOR (n:Method) ON (n.owner, n.name);\n\n");
+
+            // 1. 先删除关系和节点，避免与后续新增冲突
+            writer.write("// ==================== 删除关系 ====================\n");
+            for (GraphChangeSet.RelationChange relation : changeSet.getRemovedRelations()) {
+                writer.write(String.format(
+                    "MATCH (a:Entity {id: '%s'})-[r:%s]->(b:Entity {id: '%s'}) DELETE r;\n",
+                    escapeCypher(relation.getSource()), relation.getType().toUpperCase(), escapeCypher(relation.getTarget())
+                ));
+            }
+
+            writer.write("\n// ==================== 删除节点 ====================\n");
+            for (String entityId : changeSet.getRemovedEntities()) {
+                writer.write(String.format("MATCH (n:Entity {id: '%s'}) DETACH DELETE n;\n", escapeCypher(entityId)));
+            }
+
+            // 2. 新增节点
+            writer.write("\n// ==================== 新增节点 ====================\n");
+            for (Entity entity : changeSet.getAddedEntities()) {
+                writeCypherNodeMerge(writer, entity);
+            }
+
+            // 3. 修改节点属性
+            writer.write("\n// ==================== 修改节点 ====================\n");
+            for (GraphChangeSet.EntityChange change : changeSet.getModifiedEntities()) {
+                writeCypherNodeUpdate(writer, change);
+            }
+
+            // 4. 关系count变化与新增关系
+            writer.write("\n// ==================== 更新关系count ====================\n");
+            for (GraphChangeSet.RelationChange relation : changeSet.getCountChangedRelations()) {
+                writer.write(String.format(
+                    "MATCH (a:Entity {id: '%s'})-[r:%s]->(b:Entity {id: '%s'}) SET r.count = %d;\n",
+                    escapeCypher(relation.getSource()), relation.getType().toUpperCase(),
+                    escapeCypher(relation.getTarget()), relation.getNewCount()
+                ));
+            }
+
+            writer.write("\n// ==================== 新增关系 ====================\n");
+            for (GraphChangeSet.RelationChange relation : changeSet.getAddedRelations()) {
                 writer.write(String.format(
-                    "MATCH (a:Entity {id: '%s'}), (b:Entity {id: '%s'}) CREATE (a)-[:%s {count: %d}]->(b);\n",
-                    escapedSourceId, escapedTargetId, relationTypeUpper, relationCount
+                    "MATCH (a:Entity {id: '%s'}), (b:Entity {id: '%s'}) MERGE (a)-[r:%s]->(b) SET r.count = %d;\n",
+                    escapeCypher(relation.getSource()), escapeCypher(relation.getTarget()),
+                    relation.getType().toUpperCase(), relation.getNewCount()
                 ));
-                count++;
+            }
+
+            // 5. 更新图谱版本标记
+            if (changeSet.getNewSnapshot() != null && new File(changeSet.getNewSnapshot()).exists()) {
+                writer.write("\n");
+                writeGraphVersion(writer, computeGraphVersion(changeSet.getNewSnapshot()),
+                    new File(changeSet.getNewSnapshot()).getName());
             }
         }
-        
-        return count;
+
+        System.out.println("增量同步Cypher脚本已生成: " + cypherFilePath);
+    }
+
+    /**
+     * 生成修改节点属性/标签的Cypher语句
+     */
+    private static void writeCypherNodeUpdate(BufferedWriter writer, GraphChangeSet.EntityChange change) throws IOException {
+        StringBuilder cypher = new StringBuilder();
+        cypher.append("MATCH (n:Entity {id: '").append(escapeCypher(change.getId())).append("'})");
+
+        List<String> assignments = new ArrayList<>();
+        if (change.getOldType() != null) {
+            cypher.append(" REMOVE n:").append(change.getOldType());
+            assignments.add("n:" + change.getType());
+            assignments.add("n.type = '" + change.getType() + "'");
+        }
+        for (Map.Entry<String, String> prop : change.getChangedProperties().entrySet()) {
+            if (prop.getValue() != null) {
+                assignments.add("n." + prop.getKey() + " = " + toCypherValue(prop.getKey(), prop.getValue()));
+            }
+        }
+        for (Map.Entry<String, List<String>> prop : change.getChangedListProperties().entrySet()) {
+            assignments.add("n." + prop.getKey() + " = " + toCypherList(prop.getValue()));
+        }
+        if (!assignments.isEmpty()) {
+            cypher.append(" SET ").append(String.join(", ", assignments));
+        }
+        if (!change.getRemovedProperties().isEmpty()) {
+            List<String> removals = new ArrayList<>();
+            for (String key : change.getRemovedProperties()) {
+                removals.add("n." + key);
+            }
+            cypher.append(" REMOVE ").append(String.join(", ", removals));
+        }
+
+        cypher.append(";\n");
+        writer.write(cypher.toString());
+    }
+    
+    /**
+     * 生成属性值字面量：图分析指标写为数值，其余写为字符串
+     */
+    private static String toCypherValue(String key, String value) {
+        if (GraphAnalytics.isNumericProperty(key)) {
+            return value;
+        }
+        return "'" + escapeCypher(value) + "'";
+    }
+    
+    /**
+     * 生成Cypher字符串列表字面量，如 ['String', 'int']
+     */
+    private static String toCypherList(List<String> values) {
+        List<String> items = new ArrayList<>();
+        for (String value : values) {
+            items.add("'" + escapeCypher(value) + "'");
+        }
+        return "[" + String.join(", ", items) + "]";
     }
     
     /**
@@ -0,0 +1,73 @@
+package com.java.ere.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.java.ere.Entity;
+import com.java.ere.EntityJsonAdapter;
+
+/**
+ * analysis-result_*.json 流式读取器
+ * 逐个实体读取，不把整个JSON树加载到内存，适合大图谱快照
+ */
+public class AnalysisResultReader implements Iterator<Entity>, Closeable {
+
+    private final JsonReader reader;
+    private final Gson gson;
+
+    public AnalysisResultReader(String jsonFilePath) throws IOException {
+        this.reader = new JsonReader(new BufferedReader(new FileReader(jsonFilePath)));
+        this.gson = new GsonBuilder()
+            .registerTypeAdapter(Entity.class, new EntityJsonAdapter())
+            .create();
+        reader.beginObject();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return reader.peek() == JsonToken.NAME;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Entity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            reader.nextName();  // key与实体ID相同，以实体内的id为准
+            return gson.fromJson(reader, Entity.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 遍历快照中的所有实体
+     */
+    public static void forEachEntity(String jsonFilePath, Consumer<Entity> consumer) throws IOException {
+        try (AnalysisResultReader resultReader = new AnalysisResultReader(jsonFilePath)) {
+            while (resultReader.hasNext()) {
+                consumer.accept(resultReader.next());
+            }
+        }
+    }
+}
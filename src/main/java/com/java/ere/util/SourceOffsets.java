@@ -0,0 +1,159 @@
+package com.java.ere.util;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.Node;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 源文件位置换算：JavaParser 的 (行, 列) 转换为UTF-8字节偏移
+ * 提取实体时记录每个类、方法、字段在文件中的字节区间和内容哈希，
+ * 查询端按区间直接读取文件切片，不必重新解析整个文件
+ *
+ * 与JavaParser一致：\r\n、\r、\n 都算一个换行；列号从1开始，按UTF-16字符计（制表符算1列）
+ */
+public class SourceOffsets {
+
+    // CodeParser写入的位置属性（数值，导出Cypher时不加引号）
+    public static final Set<String> NUMERIC_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList("beginLine", "endLine", "beginOffset", "endOffset")));
+
+    private final byte[] content;
+    private final String text;
+    private final List<Integer> lineStarts = new ArrayList<>();  // 每行第一个字符的下标（0开始）
+    private final int[] byteOffsets;                             // 字符下标 -> 字节偏移，纯ASCII文件为null
+    private final boolean exact;                                 // 解码后能原样编码回文件内容（不含非法UTF-8序列）
+
+    public SourceOffsets(byte[] content) {
+        this.content = content;
+        this.text = new String(content, StandardCharsets.UTF_8);
+
+        lineStarts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                i++;
+            }
+            if (c == '\r' || c == '\n') {
+                lineStarts.add(i + 1);
+            }
+        }
+
+        if (text.length() == content.length) {
+            byteOffsets = null;
+        } else {
+            byteOffsets = new int[text.length() + 1];
+            int offset = 0;
+            for (int i = 0; i < text.length(); i++) {
+                byteOffsets[i] = offset;
+                char c = text.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    // 代理对编码为4个字节，低位代理与高位代理共用起始偏移
+                    byteOffsets[++i] = offset;
+                    offset += 4;
+                } else {
+                    offset += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+                }
+            }
+            byteOffsets[text.length()] = offset;
+        }
+        exact = byteOffsets == null || Arrays.equals(text.getBytes(StandardCharsets.UTF_8), content);
+    }
+
+    /**
+     * 解码后的文件内容（交给JavaParser解析，保证位置与字节内容对应）
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * 字节偏移是否可用：文件含非法UTF-8序列时字符与字节无法一一对应，只能记录行号
+     */
+    public boolean hasByteOffsets() {
+        return exact;
+    }
+
+    /**
+     * 位置所在字符的起始字节偏移
+     */
+    public int beginOffset(Position position) {
+        return toByteOffset(charIndex(position));
+    }
+
+    /**
+     * 位置所在字符之后的字节偏移（区间右端，不含）
+     */
+    public int endOffset(Position position) {
+        int index = charIndex(position);
+        if (index < text.length() && Character.isHighSurrogate(text.charAt(index))) {
+            index++;
+        }
+        return toByteOffset(Math.min(index + 1, text.length()));
+    }
+
+    /**
+     * begin 到 end（含 end 所在字符）之间的原始文本，不要求字节偏移可用
+     */
+    public String text(Position begin, Position end) {
+        int beginIndex = charIndex(begin);
+        int endIndex = charIndex(end);
+        if (endIndex < text.length() && Character.isHighSurrogate(text.charAt(endIndex))) {
+            endIndex++;
+        }
+        return text.substring(beginIndex, Math.max(beginIndex, Math.min(endIndex + 1, text.length())));
+    }
+
+    /**
+     * 声明的起始位置：有声明前的Javadoc/注释时从注释开始（与 toString() 输出的内容范围一致）
+     */
+    public static Position declarationBegin(Node node) {
+        Position begin = node.getRange().get().begin;
+        return node.getComment()
+            .flatMap(Node::getRange)
+            .map(commentRange -> commentRange.begin)
+            .filter(commentBegin -> commentBegin.isBefore(begin))
+            .orElse(begin);
+    }
+
+    /**
+     * [beginOffset, endOffset) 区间内容的哈希
+     */
+    public String contentHash(int beginOffset, int endOffset) {
+        return contentHash(content, beginOffset, endOffset - beginOffset);
+    }
+
+    /**
+     * 内容哈希：SHA-256前16位（十六进制）
+     */
+    public static String contentHash(byte[] bytes, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes, offset, length);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int charIndex(Position position) {
+        int line = Math.max(1, Math.min(position.line, lineStarts.size()));
+        return Math.min(lineStarts.get(line - 1) + Math.max(position.column, 1) - 1, text.length());
+    }
+
+    private int toByteOffset(int charIndex) {
+        return byteOffsets == null ? charIndex : byteOffsets[charIndex];
+    }
+}
@@ -0,0 +1,227 @@
+package com.java.ere.util;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 源码快照：一次分析所读取的全部源文件，打包为一个按内容寻址的文件
+ * 查询端从快照读取源码，保证与图谱中记录的位置一致（工作区可能已修改），读取只是一次内存映射查找
+ *
+ * 文件格式：
+ *   "SRCPACK1"（8字节） | 各文件内容（相同内容只存一份） | 索引JSON（UTF-8） | 索引起始偏移（8字节）
+ * 索引：path -> 内容哈希，内容哈希 -> [偏移, 长度]；path 与图谱中实体的 filePath 一致
+ */
+public class SourceSnapshot {
+
+    public static final String FILE_SUFFIX = ".srcpack";
+
+    private static final byte[] MAGIC = "SRCPACK1".getBytes(StandardCharsets.US_ASCII);
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final Index index;
+
+    /**
+     * 快照索引（Gson序列化）
+     */
+    private static class Index {
+        String projectRoot;
+        Map<String, String> files = new TreeMap<>();          // path -> 内容哈希
+        Map<String, long[]> blobs = new LinkedHashMap<>();    // 内容哈希 -> [偏移, 长度]
+    }
+
+    private SourceSnapshot(File file, MappedByteBuffer buffer, Index index) {
+        this.file = file;
+        this.buffer = buffer;
+        this.index = index;
+    }
+
+    /**
+     * 打开快照文件（整个文件只读映射到内存）
+     *
+     * @throws IOException 文件不存在、格式不正确或超过2GB
+     */
+    public static SourceSnapshot open(String path) throws IOException {
+        File file = new File(path);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("源码快照超过2GB，无法映射: " + path);
+            }
+            if (size < MAGIC.length + 8) {
+                throw new IOException("不是源码快照文件: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是源码快照文件: " + path);
+            }
+            long indexOffset = buffer.getLong((int) size - 8);
+            if (indexOffset < MAGIC.length || indexOffset > size - 8) {
+                throw new IOException("源码快照索引位置无效: " + path);
+            }
+            byte[] indexBytes = new byte[(int) (size - 8 - indexOffset)];
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) indexOffset);
+            view.get(indexBytes);
+            Index index = new Gson().fromJson(new String(indexBytes, StandardCharsets.UTF_8), Index.class);
+            return new SourceSnapshot(file, buffer, index);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getProjectRoot() {
+        return index.projectRoot;
+    }
+
+    public int getFileCount() {
+        return index.files.size();
+    }
+
+    public int getBlobCount() {
+        return index.blobs.size();
+    }
+
+    public boolean contains(String path) {
+        return path != null && index.files.containsKey(normalize(path));
+    }
+
+    /**
+     * 文件内容哈希（SHA-256前16位），不在快照中时返回null
+     */
+    public String getContentHash(String path) {
+        return path == null ? null : index.files.get(normalize(path));
+    }
+
+    /**
+     * 文件字节数（不读取内容），不在快照中时返回-1
+     */
+    public long length(String path) {
+        long[] blob = blobOf(path);
+        return blob == null ? -1 : blob[1];
+    }
+
+    /**
+     * 读取整个文件，不在快照中时返回null
+     */
+    public byte[] read(String path) {
+        long[] blob = blobOf(path);
+        return blob == null ? null : copy(blob[0], (int) blob[1]);
+    }
+
+    /**
+     * 读取文件的 [beginOffset, endOffset) 字节，不在快照中或区间超出文件时返回null
+     */
+    public byte[] read(String path, int beginOffset, int endOffset) {
+        long[] blob = blobOf(path);
+        if (blob == null || beginOffset < 0 || endOffset < beginOffset || endOffset > blob[1]) {
+            return null;
+        }
+        return copy(blob[0] + beginOffset, endOffset - beginOffset);
+    }
+
+    private long[] blobOf(String path) {
+        String hash = getContentHash(path);
+        return hash == null ? null : index.blobs.get(hash);
+    }
+
+    private byte[] copy(long offset, int length) {
+        // duplicate() 持有独立的position，多线程同时读取互不影响
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 统一路径分隔符，与 CodeParser 记录的 filePath 一致
+     */
+    private static String normalize(String path) {
+        return path.replace('\\', '/');
+    }
+
+    /**
+     * 快照构建器：分析过程中逐个加入源文件，结束后一次写出
+     * 相同内容的文件只保存一份
+     */
+    public static class Builder {
+        private final String projectRoot;
+        private final Map<String, String> files = new TreeMap<>();
+        private final Map<String, byte[]> blobs = new LinkedHashMap<>();
+        private long totalBytes;
+
+        public Builder(String projectRoot) {
+            this.projectRoot = projectRoot;
+        }
+
+        /**
+         * 加入一个源文件（同一路径重复加入时以最后一次为准）
+         */
+        public synchronized void add(String path, byte[] content) {
+            String hash = SourceOffsets.contentHash(content, 0, content.length);
+            files.put(normalize(path), hash);
+            if (!blobs.containsKey(hash)) {
+                blobs.put(hash, content);
+                totalBytes += content.length;
+            }
+        }
+
+        public synchronized int getFileCount() {
+            return files.size();
+        }
+
+        /**
+         * 写出快照文件（先写临时文件再原子改名，写出过程中不影响已有的同名快照）
+         */
+        public synchronized void writeTo(String path) throws IOException {
+            File target = new File(path);
+            File parent = target.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            File temp = new File(target.getPath() + ".tmp");
+
+            Index index = new Index();
+            index.projectRoot = projectRoot;
+            index.files.putAll(files);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.write(MAGIC);
+                long offset = MAGIC.length;
+                for (Map.Entry<String, byte[]> blob : blobs.entrySet()) {
+                    out.write(blob.getValue());
+                    index.blobs.put(blob.getKey(), new long[]{offset, blob.getValue().length});
+                    offset += blob.getValue().length;
+                }
+                out.write(new Gson().toJson(index).getBytes(StandardCharsets.UTF_8));
+                out.writeLong(offset);
+            }
+            // 原子替换：读取方看到的要么是旧快照，要么是完整的新快照
+            Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("[源码快照] 已保存 " + files.size() + " 个文件（" + blobs.size() + " 份不同内容，"
+                + totalBytes / 1024 + " KB）: " + path);
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package com.java.extractor;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.java.extractor.source.CompilationUnitCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,6 +20,19 @@ import java.util.Optional;
  */
 public class MethodExtractor {
     
+    private final CompilationUnitCache parseCache;
+    
+    public MethodExtractor() {
+        this(CompilationUnitCache.shared());
+    }
+    
+    /**
+     * @param parseCache 源文件解析缓存，批量提取同一文件中的多个方法时只解析一次
+     */
+    public MethodExtractor(CompilationUnitCache parseCache) {
+        this.parseCache = parseCache;
+    }
+    
     /**
      * 从文件中提取指定方法的代码
      * 
@@ -35,7 +48,7 @@ public class MethodExtractor {
             }
             
             // 解析文件
-            CompilationUnit cu = StaticJavaParser.parse(file);
+            CompilationUnit cu = parseCache.parse(file);
             
             // 查找方法
             Optional<MethodDeclaration> methodOpt = findMethod(cu, location);
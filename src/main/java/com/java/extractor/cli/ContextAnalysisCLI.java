@@ -1,8 +1,12 @@
 package com.java.extractor.cli;
 
+import com.java.ere.util.SourceSnapshot;
 import com.java.extractor.model.ContextOutput;
+import com.java.extractor.query.GraphQueryService;
+import com.java.extractor.query.InMemoryGraphQueryService;
 import com.java.extractor.query.Neo4jQueryService;
 import com.java.extractor.service.ContextAnalysisService;
+import com.java.extractor.service.ContextOutputWriter;
 
 /**
  * 上下文分析命令行入口
@@ -10,7 +14,22 @@ import com.java.extractor.service.ContextAnalysisService;
  */
 public class ContextAnalysisCLI {
     
+    // 通用选项（--cache-size <n> / --cache-file <file> / --graph <analysis.json> / --source-snapshot <file> / --parallelism <n> / --snippet-table / --budget <n> / --budget-unit <u> / --max-neighbors <n> / --hub-threshold <n> / --hub-strategy <s> / --format <f>），可出现在任意位置
+    private static int cacheSize = Neo4jQueryService.DEFAULT_CACHE_SIZE;
+    private static String cacheFile = null;
+    private static String graphFile = null;
+    private static String snapshotFile = null;
+    private static int parallelism = 1;
+    private static boolean snippetTable = false;
+    private static int budget = 0;
+    private static String budgetUnit = "tokens";
+    private static int maxNeighbors = 0;
+    private static int hubThreshold = 0;
+    private static String hubStrategy = "sample";
+    private static String outputFormat = ContextOutputWriter.FORMAT_JSON;
+    
     public static void main(String[] args) {
+        args = parseCommonOptions(args);
         if (args.length < 2) {
             printUsage();
             System.exit(1);
@@ -61,18 +80,20 @@ public class ContextAnalysisCLI {
         System.out.println("输入文件: " + generatedInputPath);
         System.out.println("输出文件: " + outputPath);
         System.out.println("项目根路径: " + projectRoot);
-        System.out.println("Neo4j连接: " + neo4jUri);
+        System.out.println(graphFile != null ? "内存图谱: " + graphFile : "Neo4j连接: " + neo4jUri);
         
-        try (Neo4jQueryService neo4jService = new Neo4jQueryService(neo4jUri, neo4jUser, neo4jPassword)) {
-            // 测试Neo4j连接
-            if (!neo4jService.testConnection()) {
-                System.err.println("Neo4j连接失败，请检查连接配置");
-                System.exit(1);
-            }
-            
-            ContextAnalysisService analysisService = new ContextAnalysisService(neo4jService, projectRoot);
+        try (GraphQueryService graphService = openGraphService(neo4jUri, neo4jUser, neo4jPassword)) {
+            ContextAnalysisService analysisService = new ContextAnalysisService(graphService, projectRoot);
+            analysisService.setSnippetTable(snippetTable);
+            analysisService.setContextBudget(budget, budgetUnit);
+            analysisService.setFanOutGuard(maxNeighbors, hubThreshold, hubStrategy);
+            openSourceSnapshot(analysisService);
             ContextOutput result = analysisService.analyzeClassContext(generatedInputPath, className);
-            analysisService.saveToFile(result, outputPath);
+            analysisService.saveToFile(result, outputPath, outputFormat);
+            if (graphService.getCache() != null) {
+                graphService.getCache().printStats();
+            }
+            analysisService.getSourceExtractor().printStats();
             
             System.out.println("分析完成！");
             
@@ -105,18 +126,24 @@ public class ContextAnalysisCLI {
         System.out.println("输入文件: " + generatedInputPath);
         System.out.println("输出文件: " + outputPath);
         System.out.println("项目根路径: " + projectRoot);
-        System.out.println("Neo4j连接: " + neo4jUri);
+        System.out.println(graphFile != null ? "内存图谱: " + graphFile : "Neo4j连接: " + neo4jUri);
         
-        try (Neo4jQueryService neo4jService = new Neo4jQueryService(neo4jUri, neo4jUser, neo4jPassword)) {
-            // 测试Neo4j连接
-            if (!neo4jService.testConnection()) {
-                System.err.println("Neo4j连接失败，请检查连接配置");
-                System.exit(1);
+        try (GraphQueryService graphService = openGraphService(neo4jUri, neo4jUser, neo4jPassword)) {
+            ContextAnalysisService analysisService = new ContextAnalysisService(graphService, projectRoot);
+            analysisService.setSnippetTable(snippetTable);
+            analysisService.setContextBudget(budget, budgetUnit);
+            analysisService.setFanOutGuard(maxNeighbors, hubThreshold, hubStrategy);
+            openSourceSnapshot(analysisService);
+            // 各类共用同一个查询服务（连接池与查询缓存），在有界线程池中并发分析
+            analysisService.setConcurrency(parallelism);
+            // 每个类分析完立即写出，内存中不保留整个结果
+            try (ContextOutputWriter writer = analysisService.openWriter(outputPath, outputFormat)) {
+                analysisService.analyzeAllClasses(generatedInputPath, writer);
             }
-            
-            ContextAnalysisService analysisService = new ContextAnalysisService(neo4jService, projectRoot);
-            ContextOutput result = analysisService.analyzeAllClasses(generatedInputPath);
-            analysisService.saveToFile(result, outputPath);
+            if (graphService.getCache() != null) {
+                graphService.getCache().printStats();
+            }
+            analysisService.getSourceExtractor().printStats();
             
             System.out.println("分析完成！");
             
@@ -127,6 +154,73 @@ public class ContextAnalysisCLI {
         }
     }
     
+    /**
+     * 指定了 --source-snapshot 时从源码快照读取源码
+     */
+    private static void openSourceSnapshot(ContextAnalysisService analysisService) throws java.io.IOException {
+        if (snapshotFile == null) {
+            return;
+        }
+        SourceSnapshot snapshot = SourceSnapshot.open(snapshotFile);
+        analysisService.getSourceExtractor().setSourceSnapshot(snapshot);
+        System.out.println("源码快照: " + snapshotFile + " (" + snapshot.getFileCount() + " 个文件)");
+    }
+    
+    /**
+     * 打开图谱查询服务：指定了 --graph 时加载内存图谱，否则连接Neo4j
+     */
+    private static GraphQueryService openGraphService(String neo4jUri, String neo4jUser, String neo4jPassword) throws java.io.IOException {
+        if (graphFile != null) {
+            return new InMemoryGraphQueryService(graphFile);
+        }
+        
+        Neo4jQueryService neo4jService = new Neo4jQueryService(neo4jUri, neo4jUser, neo4jPassword);
+        // 测试Neo4j连接
+        if (!neo4jService.testConnection()) {
+            System.err.println("Neo4j连接失败，请检查连接配置");
+            System.exit(1);
+        }
+        neo4jService.configureCache(cacheSize, cacheFile);
+        return neo4jService;
+    }
+    
+    /**
+     * 解析通用选项，返回剩余的位置参数
+     */
+    private static String[] parseCommonOptions(String[] args) {
+        java.util.List<String> positional = new java.util.ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                cacheSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--cache-file") && i + 1 < args.length) {
+                cacheFile = args[++i];
+            } else if (args[i].equals("--graph") && i + 1 < args.length) {
+                graphFile = args[++i];
+            } else if (args[i].equals("--source-snapshot") && i + 1 < args.length) {
+                snapshotFile = args[++i];
+            } else if (args[i].equals("--parallelism") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--snippet-table")) {
+                snippetTable = true;
+            } else if (args[i].equals("--budget") && i + 1 < args.length) {
+                budget = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--budget-unit") && i + 1 < args.length) {
+                budgetUnit = args[++i];
+            } else if (args[i].equals("--max-neighbors") && i + 1 < args.length) {
+                maxNeighbors = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--hub-threshold") && i + 1 < args.length) {
+                hubThreshold = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--hub-strategy") && i + 1 < args.length) {
+                hubStrategy = args[++i];
+            } else if (args[i].equals("--format") && i + 1 < args.length) {
+                outputFormat = args[++i];
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        return positional.toArray(new String[0]);
+    }
+    
     private static void printUsage() {
         System.out.println("上下文分析工具");
         System.out.println("用法:");
@@ -134,6 +228,15 @@ public class ContextAnalysisCLI {
         System.out.println("    - 分析指定类的上下文信息");
         System.out.println("  analyze-all <generated_input.json路径> [输出文件路径] [项目根路径] [neo4j-uri] [neo4j-user] [neo4j-password]");
         System.out.println("    - 分析所有类的上下文信息");
+        System.out.println("  通用选项: --cache-size <n> 查询缓存条目上限(0为关闭)  --cache-file <file> 查询缓存磁盘文件");
+        System.out.println("            --graph <analysis.json> 从分析结果JSON加载内存图谱查询，不连接Neo4j");
+        System.out.println("            --source-snapshot <file> 从源码快照（.srcpack）读取源码，与图谱一致，不读工作区");
+        System.out.println("            --parallelism <n> analyze-all 同时分析的类数量(默认: 1，顺序执行)");
+        System.out.println("            --snippet-table 源码集中输出到顶层 snippets 片段表，上下文中只引用片段key");
+        System.out.println("            --budget <n> 每个Field/Method/Class上下文的上下游源码预算，0为不限制  --budget-unit <u> tokens(默认) 或 bytes");
+        System.out.println("            --max-neighbors <n> 每个上下文每个方向最多保留的上下游数，0为不限制(默认)");
+        System.out.println("            --hub-threshold <n> 直接邻居数达到n的实体视为热点(默认: 0，关闭)  --hub-strategy <s> sample(默认) 或 skip");
+        System.out.println("            --format <f> 输出格式: json(默认) 或 ndjson(每行一个类)，analyze-all 逐类写出");
         System.out.println();
         System.out.println("示例:");
         System.out.println("  java -cp target/classes com.java.extractor.cli.ContextAnalysisCLI analyze-class generated_input.json MyClass");
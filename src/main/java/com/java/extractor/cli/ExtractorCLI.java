@@ -2,18 +2,34 @@ package com.java.extractor.cli;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.java.ere.analytics.ImpactClosureIndex;
+import com.java.ere.util.SourceSnapshot;
 import com.java.extractor.CodeLocation;
 import com.java.extractor.ExtractResult;
 import com.java.extractor.MethodExtractor;
+import com.java.extractor.model.CallPath;
 import com.java.extractor.model.ChangeAnalysis;
+import com.java.extractor.model.QueryConfig;
+import com.java.extractor.query.GraphQueryService;
+import com.java.extractor.query.InMemoryGraphQueryService;
 import com.java.extractor.query.Neo4jQueryService;
 import com.java.extractor.service.ChangeAnalysisService;
 import com.java.extractor.service.DiffAnalysisService;
+import com.java.extractor.service.DiffPipelineService;
 import com.java.extractor.source.SourceExtractor;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,6 +38,7 @@ import java.util.Map;
  * 用法:
  *   java -cp ... com.java.extractor.cli.ExtractorCLI extract-method <file> <class> <method>
  *   java -cp ... com.java.extractor.cli.ExtractorCLI analyze-changes --input <input.json> --output <output.json>
+ *   java -cp ... com.java.extractor.cli.ExtractorCLI find-path --from <id> --to <id>
  * 
  * 示例:
  *   java -cp ... com.java.extractor.cli.ExtractorCLI extract-method \
@@ -52,6 +69,22 @@ public class ExtractorCLI {
                 handleAnalyzeChanges(args);
                 break;
                 
+            case "pipeline":
+                handlePipeline(args);
+                break;
+                
+            case "serve":
+                handleServe(args);
+                break;
+                
+            case "find-path":
+                handleFindPath(args);
+                break;
+                
+            case "verify-plans":
+                handleVerifyPlans(args);
+                break;
+                
             case "help":
             case "--help":
             case "-h":
@@ -158,6 +191,17 @@ public class ExtractorCLI {
     private static void handleAnalyzeChanges(String[] args) {
         String inputFile = null;
         String outputFile = null;
+        int cacheSize = Neo4jQueryService.DEFAULT_CACHE_SIZE;
+        String cacheFile = null;
+        Integer concurrency = null;
+        String graphFile = null;
+        String impactIndexFile = null;
+        Integer maxNeighbors = null;
+        Integer hubThreshold = null;
+        String hubStrategy = null;
+        String snapshotFile = null;
+        Integer budget = null;
+        String budgetUnit = null;
         
         // 解析参数
         for (int i = 1; i < args.length; i++) {
@@ -167,6 +211,39 @@ public class ExtractorCLI {
             } else if (args[i].equals("--output") && i + 1 < args.length) {
                 outputFile = args[i + 1];
                 i++;
+            } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                cacheSize = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--cache-file") && i + 1 < args.length) {
+                cacheFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--concurrency") && i + 1 < args.length) {
+                concurrency = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--graph") && i + 1 < args.length) {
+                graphFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--impact-index") && i + 1 < args.length) {
+                impactIndexFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--max-neighbors") && i + 1 < args.length) {
+                maxNeighbors = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--hub-threshold") && i + 1 < args.length) {
+                hubThreshold = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--hub-strategy") && i + 1 < args.length) {
+                hubStrategy = args[i + 1];
+                i++;
+            } else if (args[i].equals("--source-snapshot") && i + 1 < args.length) {
+                snapshotFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--budget") && i + 1 < args.length) {
+                budget = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--budget-unit") && i + 1 < args.length) {
+                budgetUnit = args[i + 1];
+                i++;
             }
         }
         
@@ -184,6 +261,27 @@ public class ExtractorCLI {
             // 读取输入JSON
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
             AnalysisInput request = gson.fromJson(new FileReader(inputFile), AnalysisInput.class);
+            if (concurrency != null) {
+                request.getQueryConfig().setConcurrency(concurrency);
+            }
+            if (impactIndexFile != null) {
+                request.getQueryConfig().setIncludeTransitiveUpstream(true);
+            }
+            if (maxNeighbors != null) {
+                request.getQueryConfig().setMaxNeighbors(maxNeighbors);
+            }
+            if (hubThreshold != null) {
+                request.getQueryConfig().setHubDegreeThreshold(hubThreshold);
+            }
+            if (hubStrategy != null) {
+                request.getQueryConfig().setHubStrategy(hubStrategy);
+            }
+            if (budget != null) {
+                request.getQueryConfig().setContextBudget(budget);
+            }
+            if (budgetUnit != null) {
+                request.getQueryConfig().setBudgetUnit(budgetUnit);
+            }
             
             System.out.println("===============================================");
             System.out.println("变更分析工具");
@@ -194,26 +292,34 @@ public class ExtractorCLI {
             System.out.println("变更数量: " + request.getChanges().size());
             System.out.println();
             
-            // 测试Neo4j连接
-            System.out.println("[1/3] 连接Neo4j...");
-            Neo4jQueryService neo4jService = new Neo4jQueryService(
-                request.getNeo4jConfig().getUri(),
-                request.getNeo4jConfig().getUser(),
-                request.getNeo4jConfig().getPassword()
-            );
-            
-            if (!neo4jService.testConnection()) {
+            System.out.println(graphFile != null ? "[1/3] 加载内存图谱..." : "[1/3] 连接Neo4j...");
+            GraphQueryService graphService = openGraphService(graphFile, request.getNeo4jConfig(), cacheSize, cacheFile);
+            if (graphService == null) {
                 System.err.println("Neo4j连接失败！");
                 System.exit(1);
             }
-            System.out.println("✓ Neo4j连接成功");
+            if (graphFile == null) {
+                // 传递上游来自离线生成的影响闭包索引（内存图谱模式下自动构建）
+                if (impactIndexFile != null) {
+                    ((Neo4jQueryService) graphService).setImpactIndex(ImpactClosureIndex.load(impactIndexFile));
+                    System.out.println("✓ 影响闭包索引已加载: " + impactIndexFile);
+                } else if (request.getQueryConfig().isIncludeTransitiveUpstream()) {
+                    System.err.println("queryConfig.includeTransitiveUpstream 需要通过 --impact-index 指定影响闭包索引");
+                    System.exit(1);
+                }
+            }
             System.out.println();
             
             // 创建服务
             System.out.println("[2/3] 初始化服务...");
             SourceExtractor sourceExtractor = new SourceExtractor(request.getProjectRoot());
+            if (snapshotFile != null) {
+                SourceSnapshot snapshot = SourceSnapshot.open(snapshotFile);
+                sourceExtractor.setSourceSnapshot(snapshot);
+                System.out.println("✓ 源码快照已加载: " + snapshotFile + " (" + snapshot.getFileCount() + " 个文件)");
+            }
             ChangeAnalysisService analysisService = new ChangeAnalysisService(
-                neo4jService, 
+                graphService, 
                 sourceExtractor, 
                 request.getQueryConfig()
             );
@@ -244,13 +350,347 @@ public class ExtractorCLI {
                 gson.toJson(output, writer);
             }
             System.out.println("✓ 结果已保存");
+            if (graphService.getCache() != null) {
+                graphService.getCache().printStats();
+            }
+            sourceExtractor.printStats();
             System.out.println("===============================================");
             
             // 关闭连接
-            neo4jService.close();
+            graphService.close();
+            
+            System.exit(0);
+            
+        } catch (Exception e) {
+            System.err.println("执行失败: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * 处理 pipeline 命令
+     * git diff 直接到变更分析结果，各阶段流水线并行，不经过中间JSON（--intermediate 指定时额外写出，仅用于调试）
+     */
+    private static void handlePipeline(String[] args) {
+        String diffFile = null;
+        String projectRoot = null;
+        String outputFile = null;
+        String intermediateFile = null;
+        int batchSize = DiffPipelineService.DEFAULT_BATCH_SIZE;
+        String graphFile = null;
+        String neo4jUri = "bolt://localhost:7687";
+        String neo4jUser = "neo4j";
+        String neo4jPassword = "password";
+        int cacheSize = Neo4jQueryService.DEFAULT_CACHE_SIZE;
+        String cacheFile = null;
+        String snapshotFile = null;
+        QueryConfig queryConfig = new QueryConfig();
+        
+        // 解析参数
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--diff") && i + 1 < args.length) {
+                diffFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--project") && i + 1 < args.length) {
+                projectRoot = args[i + 1];
+                i++;
+            } else if (args[i].equals("--output") && i + 1 < args.length) {
+                outputFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--intermediate") && i + 1 < args.length) {
+                intermediateFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--batch-size") && i + 1 < args.length) {
+                batchSize = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--graph") && i + 1 < args.length) {
+                graphFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--neo4j-uri") && i + 1 < args.length) {
+                neo4jUri = args[i + 1];
+                i++;
+            } else if (args[i].equals("--neo4j-user") && i + 1 < args.length) {
+                neo4jUser = args[i + 1];
+                i++;
+            } else if (args[i].equals("--neo4j-password") && i + 1 < args.length) {
+                neo4jPassword = args[i + 1];
+                i++;
+            } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                cacheSize = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--cache-file") && i + 1 < args.length) {
+                cacheFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--source-snapshot") && i + 1 < args.length) {
+                snapshotFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--concurrency") && i + 1 < args.length) {
+                queryConfig.setConcurrency(Integer.parseInt(args[i + 1]));
+                i++;
+            } else if (args[i].equals("--max-neighbors") && i + 1 < args.length) {
+                queryConfig.setMaxNeighbors(Integer.parseInt(args[i + 1]));
+                i++;
+            } else if (args[i].equals("--hub-threshold") && i + 1 < args.length) {
+                queryConfig.setHubDegreeThreshold(Integer.parseInt(args[i + 1]));
+                i++;
+            } else if (args[i].equals("--hub-strategy") && i + 1 < args.length) {
+                queryConfig.setHubStrategy(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--budget") && i + 1 < args.length) {
+                queryConfig.setContextBudget(Integer.parseInt(args[i + 1]));
+                i++;
+            } else if (args[i].equals("--budget-unit") && i + 1 < args.length) {
+                queryConfig.setBudgetUnit(args[i + 1]);
+                i++;
+            }
+        }
+        
+        if (diffFile == null || projectRoot == null || outputFile == null) {
+            System.err.println("Error: --diff, --project and --output are required");
+            System.err.println("Usage: pipeline --diff <file> --project <path> --output <file> [options]");
+            System.exit(1);
+        }
+        
+        AnalysisInput.Neo4jConfig neo4jConfig = new AnalysisInput.Neo4jConfig();
+        neo4jConfig.setUri(neo4jUri);
+        neo4jConfig.setUser(neo4jUser);
+        neo4jConfig.setPassword(neo4jPassword);
+        
+        System.out.println("===============================================");
+        System.out.println("变更分析流水线");
+        System.out.println("===============================================");
+        System.out.println("Diff文件: " + diffFile);
+        System.out.println("项目根目录: " + projectRoot);
+        System.out.println("输出文件: " + outputFile);
+        System.out.println();
+        
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try {
+            GraphQueryService graphService = openGraphService(graphFile, neo4jConfig, cacheSize, cacheFile);
+            if (graphService == null) {
+                System.err.println("Neo4j连接失败！");
+                System.exit(1);
+            }
+            
+            SourceExtractor sourceExtractor = new SourceExtractor(projectRoot);
+            if (snapshotFile != null) {
+                SourceSnapshot snapshot = SourceSnapshot.open(snapshotFile);
+                sourceExtractor.setSourceSnapshot(snapshot);
+                System.out.println("✓ 源码快照已加载: " + snapshotFile + " (" + snapshot.getFileCount() + " 个文件)");
+            }
+            DiffPipelineService pipeline = new DiffPipelineService(
+                new DiffAnalysisService(),
+                new ChangeAnalysisService(graphService, sourceExtractor, queryConfig),
+                batchSize
+            );
+            if (intermediateFile != null) {
+                Map<String, String> config = new HashMap<>();
+                config.put("uri", neo4jUri);
+                config.put("user", neo4jUser);
+                config.put("password", neo4jPassword);
+                pipeline.setIntermediateOutput(intermediateFile, config);
+            }
+            
+            // 结果逐个写出，格式与 analyze-changes 的输出相同
+            int count;
+            try (JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(outputFile), StandardCharsets.UTF_8)))) {
+                writer.beginObject();
+                writer.name("changes").beginArray();
+                count = pipeline.run(diffFile, projectRoot, analysis -> gson.toJson(analysis, ChangeAnalysis.class, writer));
+                writer.endArray();
+                writer.endObject();
+            }
+            
+            System.out.println("✓ 结果已保存到: " + outputFile + "（" + count + " 个变更）");
+            if (graphService.getCache() != null) {
+                graphService.getCache().printStats();
+            }
+            sourceExtractor.printStats();
+            System.out.println("===============================================");
+            graphService.close();
+            System.exit(0);
             
+        } catch (Exception e) {
+            System.err.println("执行失败: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * 处理 serve 命令
+     * 常驻进程，从标准输入（或 Unix socket）读取 JSON-lines 请求，缓存和图谱连接在请求之间保留
+     */
+    private static void handleServe(String[] args) {
+        String socketPath = null;
+        String graphFile = null;
+        String neo4jUri = "bolt://localhost:7687";
+        String neo4jUser = "neo4j";
+        String neo4jPassword = "password";
+        int cacheSize = Neo4jQueryService.DEFAULT_CACHE_SIZE;
+        String cacheFile = null;
+        String snapshotFile = null;
+        
+        // 解析参数
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--socket") && i + 1 < args.length) {
+                socketPath = args[i + 1];
+                i++;
+            } else if (args[i].equals("--graph") && i + 1 < args.length) {
+                graphFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--neo4j-uri") && i + 1 < args.length) {
+                neo4jUri = args[i + 1];
+                i++;
+            } else if (args[i].equals("--neo4j-user") && i + 1 < args.length) {
+                neo4jUser = args[i + 1];
+                i++;
+            } else if (args[i].equals("--neo4j-password") && i + 1 < args.length) {
+                neo4jPassword = args[i + 1];
+                i++;
+            } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                cacheSize = Integer.parseInt(args[i + 1]);
+                i++;
+            } else if (args[i].equals("--cache-file") && i + 1 < args.length) {
+                cacheFile = args[i + 1];
+                i++;
+            } else if (args[i].equals("--source-snapshot") && i + 1 < args.length) {
+                snapshotFile = args[i + 1];
+                i++;
+            }
+        }
+        
+        AnalysisInput.Neo4jConfig neo4jConfig = new AnalysisInput.Neo4jConfig();
+        neo4jConfig.setUri(neo4jUri);
+        neo4jConfig.setUser(neo4jUser);
+        neo4jConfig.setPassword(neo4jPassword);
+        
+        ExtractorServer server = new ExtractorServer(graphFile, neo4jConfig, cacheSize, cacheFile, snapshotFile);
+        try {
+            if (socketPath != null) {
+                server.serveSocket(socketPath);
+            } else {
+                server.serveStdio();
+            }
             System.exit(0);
+        } catch (Exception e) {
+            System.err.println("执行失败: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * 打开图谱查询服务：指定了分析结果JSON时加载内存图谱，否则连接Neo4j并配置查询缓存
+     *
+     * @return Neo4j连接失败时返回null
+     * @throws IOException 分析结果JSON读取失败
+     */
+    static GraphQueryService openGraphService(String graphFile, AnalysisInput.Neo4jConfig neo4jConfig,
+                                              int cacheSize, String cacheFile) throws IOException {
+        if (graphFile != null) {
+            // 直接加载分析结果，不连接数据库
+            GraphQueryService graphService = new InMemoryGraphQueryService(graphFile);
+            System.out.println("✓ 内存图谱加载完成");
+            return graphService;
+        }
+        
+        GraphQueryService graphService = new Neo4jQueryService(
+            neo4jConfig.getUri(),
+            neo4jConfig.getUser(),
+            neo4jConfig.getPassword()
+        );
+        if (!graphService.testConnection()) {
+            graphService.close();
+            return null;
+        }
+        System.out.println("✓ Neo4j连接成功");
+        graphService.configureCache(cacheSize, cacheFile);
+        return graphService;
+    }
+    
+    /**
+     * 处理 find-path 命令
+     * 查询两个实体之间的k条最短调用链
+     */
+    private static void handleFindPath(String[] args) {
+        String fromId = null;
+        String toId = null;
+        int maxHops = 6;
+        int k = 5;
+        long timeoutMs = 5000;
+        List<String> relationTypes = new ArrayList<>();
+        String graphFile = null;
+        String outputFile = null;
+        String neo4jUri = "bolt://localhost:7687";
+        String neo4jUser = "neo4j";
+        String neo4jPassword = "password";
+        
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--from") && i + 1 < args.length) {
+                fromId = args[++i];
+            } else if (args[i].equals("--to") && i + 1 < args.length) {
+                toId = args[++i];
+            } else if (args[i].equals("--max-hops") && i + 1 < args.length) {
+                maxHops = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--k") && i + 1 < args.length) {
+                k = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--timeout-ms") && i + 1 < args.length) {
+                timeoutMs = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--relations") && i + 1 < args.length) {
+                relationTypes = Arrays.asList(args[++i].split(","));
+            } else if (args[i].equals("--graph") && i + 1 < args.length) {
+                graphFile = args[++i];
+            } else if (args[i].equals("--output") && i + 1 < args.length) {
+                outputFile = args[++i];
+            } else if (args[i].equals("--neo4j-uri") && i + 1 < args.length) {
+                neo4jUri = args[++i];
+            } else if (args[i].equals("--neo4j-user") && i + 1 < args.length) {
+                neo4jUser = args[++i];
+            } else if (args[i].equals("--neo4j-password") && i + 1 < args.length) {
+                neo4jPassword = args[++i];
+            }
+        }
+        
+        if (fromId == null || toId == null) {
+            System.err.println("Error: --from and --to are required");
+            System.exit(1);
+        }
+        
+        try (GraphQueryService graphService = graphFile != null
+                ? new InMemoryGraphQueryService(graphFile)
+                : new Neo4jQueryService(neo4jUri, neo4jUser, neo4jPassword)) {
+            if (!graphService.testConnection()) {
+                System.err.println("Neo4j连接失败！");
+                System.exit(1);
+            }
+            
+            long startTime = System.currentTimeMillis();
+            List<CallPath> paths = graphService.findCallPaths(fromId, toId, relationTypes, maxHops, k, timeoutMs);
+            long elapsed = System.currentTimeMillis() - startTime;
             
+            System.out.println("起点: " + fromId);
+            System.out.println("终点: " + toId);
+            if (paths.isEmpty()) {
+                System.out.println("未找到 " + maxHops + " 跳以内的路径");
+            } else {
+                System.out.println("路径: " + paths.size() + " 条, " + paths.get(0).getLength() + " ~ "
+                    + paths.get(paths.size() - 1).getLength() + " 跳");
+                for (int i = 0; i < paths.size(); i++) {
+                    System.out.println("  " + (i + 1) + ". " + paths.get(i));
+                }
+            }
+            System.out.println("耗时: " + elapsed + "ms");
+            
+            if (outputFile != null) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().create();
+                try (FileWriter writer = new FileWriter(outputFile)) {
+                    gson.toJson(paths, writer);
+                }
+                System.out.println("✓ 结果已保存到: " + outputFile);
+            }
         } catch (Exception e) {
             System.err.println("执行失败: " + e.getMessage());
             e.printStackTrace();
@@ -258,6 +698,34 @@ public class ExtractorCLI {
         }
     }
     
+    /**
+     * 处理 verify-plans 命令
+     * 对所有查询形态执行EXPLAIN，确认没有全图扫描
+     */
+    private static void handleVerifyPlans(String[] args) {
+        String neo4jUri = "bolt://localhost:7687";
+        String neo4jUser = "neo4j";
+        String neo4jPassword = "password";
+        
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--neo4j-uri") && i + 1 < args.length) {
+                neo4jUri = args[++i];
+            } else if (args[i].equals("--neo4j-user") && i + 1 < args.length) {
+                neo4jUser = args[++i];
+            } else if (args[i].equals("--neo4j-password") && i + 1 < args.length) {
+                neo4jPassword = args[++i];
+            }
+        }
+        
+        try (Neo4jQueryService neo4jService = new Neo4jQueryService(neo4jUri, neo4jUser, neo4jPassword)) {
+            neo4jService.verifyQueryPlans();
+            System.out.println("✓ 所有查询均使用索引");
+        } catch (Exception e) {
+            System.err.println("查询计划校验失败: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
     /**
      * 打印使用说明
      */
@@ -275,10 +743,54 @@ public class ExtractorCLI {
         System.out.println();
         System.out.println("  2. analyze-changes --input <input.json> --output <output.json>");
         System.out.println("     分析代码变更的上下游影响");
+        System.out.println("     Options:");
+        System.out.println("       --cache-size <n>         查询缓存条目上限，0为关闭 (默认: " + Neo4jQueryService.DEFAULT_CACHE_SIZE + ")");
+        System.out.println("       --cache-file <file>      查询缓存磁盘文件，图谱版本不变时跨次运行复用");
+        System.out.println("       --concurrency <n>        并发分析的分片数上限，覆盖queryConfig.concurrency (默认: 1)");
+        System.out.println("       --graph <analysis.json>  从分析结果JSON加载内存图谱查询，不连接Neo4j");
+        System.out.println("       --impact-index <file>    影响闭包索引（ImpactIndexMain生成），输出每个变更的完整传递上游");
+        System.out.println("       --max-neighbors <n>      每个变更每个方向最多返回的上下游数，0为不限制 (默认: 0)");
+        System.out.println("       --hub-threshold <n>      直接邻居数达到n的变更实体视为热点 (默认: 0，关闭)");
+        System.out.println("       --hub-strategy <s>       热点实体处理方式: sample 保留前hubSampleSize个, skip 不返回 (默认: sample)");
+        System.out.println("       --source-snapshot <file> 从源码快照（.srcpack）读取源码，与图谱一致，不读工作区");
+        System.out.println("       --budget <n>             每个变更的源码预算（变更实体+上下游），0为不限制 (默认: 0)");
+        System.out.println("       --budget-unit <u>        预算单位: tokens 按每4字节1个估算, bytes (默认: tokens)");
         System.out.println();
         System.out.println("  3. extract-method <file> <class> <method> [signature]");
         System.out.println("     从文件中提取指定方法的代码");
         System.out.println();
+        System.out.println("  4. find-path --from <entityId> --to <entityId> [options]");
+        System.out.println("     查询两个实体之间的k条最短调用链（沿关系方向，无环，按跳数从小到大）");
+        System.out.println("     Options:");
+        System.out.println("       --max-hops <n>           最大跳数 (默认: 6)");
+        System.out.println("       --k <n>                  最多返回的路径数 (默认: 5)");
+        System.out.println("       --timeout-ms <ms>        时间预算，0为不限制 (默认: 5000)");
+        System.out.println("       --relations <types>      允许经过的关系类型，逗号分隔 (默认: CALLS)");
+        System.out.println("       --graph <analysis.json>  从分析结果JSON加载内存图谱查询，不连接Neo4j");
+        System.out.println("       --output <file>          路径结果JSON文件");
+        System.out.println("       --neo4j-uri/--neo4j-user/--neo4j-password  同 parse-diff");
+        System.out.println();
+        System.out.println("  5. verify-plans [--neo4j-uri <uri>] [--neo4j-user <user>] [--neo4j-password <pass>]");
+        System.out.println("     对查询执行EXPLAIN，计划中出现AllNodesScan则失败");
+        System.out.println();
+        System.out.println("  6. pipeline --diff <file> --project <path> --output <output.json> [options]");
+        System.out.println("     git diff 直接到变更分析结果（解析、提取、查询、源码提取流水线并行），输出格式同 analyze-changes");
+        System.out.println("     Options:");
+        System.out.println("       --intermediate <file>    同时写出中间文件（parse-diff 的输出格式），仅用于调试");
+        System.out.println("       --batch-size <n>         每批查询图谱的变更数 (默认: " + DiffPipelineService.DEFAULT_BATCH_SIZE + ")");
+        System.out.println("       --graph/--neo4j-uri/--neo4j-user/--neo4j-password  同 parse-diff、analyze-changes");
+        System.out.println("       --cache-size/--cache-file/--concurrency/--source-snapshot/--max-neighbors");
+        System.out.println("       --hub-threshold/--hub-strategy/--budget/--budget-unit  同 analyze-changes");
+        System.out.println();
+        System.out.println("  7. serve [--socket <path>] [options]");
+        System.out.println("     常驻进程：逐行读取JSON请求（extract-method/parse-diff/analyze-changes/stats/ping/shutdown），逐行输出JSON响应");
+        System.out.println("     解析缓存、查询缓存、图谱连接在请求之间保留");
+        System.out.println("     Options:");
+        System.out.println("       --socket <path>          监听Unix socket（默认从标准输入读取、向标准输出响应）");
+        System.out.println("       --graph <analysis.json>  所有查询使用内存图谱，不连接Neo4j");
+        System.out.println("       --neo4j-uri/--neo4j-user/--neo4j-password  请求中没有neo4jConfig时使用 (默认同 parse-diff)");
+        System.out.println("       --cache-size/--cache-file/--source-snapshot  同 analyze-changes");
+        System.out.println();
         System.out.println("Examples:");
         System.out.println("  # 解析git diff");
         System.out.println("  mvn exec:java -Dexec.mainClass=\"com.java.extractor.cli.ExtractorCLI\" \\");
@@ -288,6 +800,14 @@ public class ExtractorCLI {
         System.out.println("  mvn exec:java -Dexec.mainClass=\"com.java.extractor.cli.ExtractorCLI\" \\");
         System.out.println("    -Dexec.args=\"analyze-changes --input generated_input.json --output output.json\"");
         System.out.println();
+        System.out.println("  # 一步完成：git diff -> 分析结果");
+        System.out.println("  mvn exec:java -Dexec.mainClass=\"com.java.extractor.cli.ExtractorCLI\" \\");
+        System.out.println("    -Dexec.args=\"pipeline --diff git_diff.txt --project /path/to/project --output output.json\"");
+        System.out.println();
+        System.out.println("  # 查询调用链");
+        System.out.println("  mvn exec:java -Dexec.mainClass=\"com.java.extractor.cli.ExtractorCLI\" \\");
+        System.out.println("    -Dexec.args=\"find-path --from method_com.a.A_handle() --to method_com.b.B_save(String) --max-hops 4\"");
+        System.out.println();
         System.out.println("  # 提取方法");
         System.out.println("  mvn exec:java -Dexec.mainClass=\"com.java.extractor.cli.ExtractorCLI\" \\");
         System.out.println("    -Dexec.args=\"extract-method src/main/java/Test.java Test method\"");
@@ -0,0 +1,376 @@
+package com.java.extractor.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.java.ere.util.SourceSnapshot;
+import com.java.extractor.CodeLocation;
+import com.java.extractor.ExtractResult;
+import com.java.extractor.MethodExtractor;
+import com.java.extractor.model.ChangeAnalysis;
+import com.java.extractor.model.ChangeInfo;
+import com.java.extractor.model.QueryConfig;
+import com.java.extractor.query.GraphQueryService;
+import com.java.extractor.query.QueryResultCache;
+import com.java.extractor.service.ChangeAnalysisService;
+import com.java.extractor.service.DiffAnalysisService;
+import com.java.extractor.source.CompilationUnitCache;
+import com.java.extractor.source.SourceExtractor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 常驻服务（ExtractorCLI serve）
+ * Python 编排脚本每调用一次 extract-method 都要付出JVM启动、类加载、JavaParser预热和文件解析的代价。
+ * serve 模式下一个进程持续读取 JSON-lines 请求（每行一个请求，每行一个响应），
+ * 解析缓存、查询缓存、图谱连接、源码快照在请求之间保留
+ *
+ * 请求：{"id": 任意值（原样返回）, "command": ..., 参数...}
+ *   extract-method：file, className, methodName, signature（可选）
+ *   parse-diff：diff, project, output（可选，不指定时输入JSON内容在响应中）, neo4jConfig（可选）
+ *   analyze-changes：input（输入JSON路径）或 request（输入JSON内容），output（可选，不指定时结果在响应中）
+ *   stats：请求数与缓存命中统计；ping；shutdown：处理完当前请求后退出
+ * 响应：{"id": ..., "success": true, "result": ..., "elapsedMs": n}，失败时 {"id": ..., "success": false, "error": ...}
+ *
+ * 标准输入输出模式下 stdout 只输出响应，各服务的日志转到 stderr；
+ * Unix socket 模式下每个连接一个线程，所有请求串行处理
+ */
+public class ExtractorServer {
+
+    private final String graphFile;
+    private final AnalysisInput.Neo4jConfig defaultNeo4jConfig;
+    private final int cacheSize;
+    private final String cacheFile;
+    private final String snapshotFile;
+
+    private final Gson gson = new Gson();
+    private final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
+    private final MethodExtractor methodExtractor = new MethodExtractor();
+
+    // 以下在首次用到时创建，之后的请求复用
+    private DiffAnalysisService diffService;
+    private SourceSnapshot snapshot;
+    private final Map<String, GraphQueryService> graphServices = new LinkedHashMap<>();   // 图谱来源 -> 查询服务
+    private final Map<String, SourceExtractor> sourceExtractors = new HashMap<>();        // 项目根目录 -> 源码提取器
+
+    private volatile boolean running = true;
+    private volatile ServerSocketChannel serverChannel;
+    private long requestCount;
+    private long failureCount;
+
+    /**
+     * @param graphFile          分析结果JSON（不为null时所有查询使用内存图谱，不连接Neo4j）
+     * @param defaultNeo4jConfig 请求中没有 neo4jConfig 时使用的连接配置
+     * @param snapshotFile       源码快照（可为null）
+     */
+    public ExtractorServer(String graphFile, AnalysisInput.Neo4jConfig defaultNeo4jConfig,
+                           int cacheSize, String cacheFile, String snapshotFile) {
+        this.graphFile = graphFile;
+        this.defaultNeo4jConfig = defaultNeo4jConfig;
+        this.cacheSize = cacheSize;
+        this.cacheFile = cacheFile;
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * 从标准输入读取请求，响应写到标准输出，标准输入结束或收到 shutdown 后返回
+     */
+    public void serveStdio() throws IOException {
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        System.err.println("[服务] 就绪，从标准输入读取请求");
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8));
+            serve(in, out);
+        } finally {
+            close();
+            System.setOut(stdout);
+        }
+    }
+
+    /**
+     * 监听 Unix socket，每个连接一个线程，收到 shutdown 后返回
+     */
+    public void serveSocket(String socketPath) throws IOException {
+        Path path = Paths.get(socketPath);
+        Files.deleteIfExists(path);
+        AtomicInteger clientCount = new AtomicInteger();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            serverChannel = server;
+            System.out.println("[服务] 就绪，监听 Unix socket: " + socketPath);
+            while (running) {
+                SocketChannel client = server.accept();
+                Thread thread = new Thread(() -> serveClient(client), "extractor-client-" + clientCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (ClosedChannelException e) {
+            if (running) {
+                throw e;
+            }
+            // shutdown 请求关闭了监听
+        } finally {
+            Files.deleteIfExists(path);
+            close();
+        }
+    }
+
+    private void serveClient(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            serve(in, out);
+        } catch (IOException e) {
+            System.err.println("[服务] 连接异常: " + e.getMessage());
+        }
+    }
+
+    private void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while (running && (line = in.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            out.write(handle(line));
+            out.write('\n');
+            out.flush();
+        }
+        if (!running && serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * 处理一行请求，返回一行响应（不含换行），请求失败不影响后续请求
+     */
+    public synchronized String handle(String line) {
+        long start = System.currentTimeMillis();
+        JsonElement id = null;
+        JsonElement result = null;
+        String error = null;
+        try {
+            JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+            id = request.get("id");
+            result = dispatch(param(request, "command"), request);
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            System.err.println("[服务] 请求失败: " + error);
+            failureCount++;
+        }
+        requestCount++;
+
+        JsonObject response = new JsonObject();
+        response.add("id", id);
+        response.addProperty("success", error == null);
+        if (error == null) {
+            response.add("result", result);
+        } else {
+            response.addProperty("error", error);
+        }
+        response.addProperty("elapsedMs", System.currentTimeMillis() - start);
+        return gson.toJson(response);
+    }
+
+    private JsonElement dispatch(String command, JsonObject request) throws IOException {
+        switch (command) {
+            case "extract-method":
+                return extractMethod(request);
+            case "parse-diff":
+                return parseDiff(request);
+            case "analyze-changes":
+                return analyzeChanges(request);
+            case "stats":
+                return stats();
+            case "ping":
+                return new JsonPrimitive("pong");
+            case "shutdown":
+                running = false;
+                return new JsonPrimitive("shutdown");
+            default:
+                throw new IllegalArgumentException("未知命令: " + command);
+        }
+    }
+
+    private JsonElement extractMethod(JsonObject request) {
+        CodeLocation location = new CodeLocation(
+            param(request, "className"), param(request, "methodName"), optionalParam(request, "signature"));
+        ExtractResult result = methodExtractor.extractMethod(param(request, "file"), location);
+        return gson.toJsonTree(result);
+    }
+
+    private JsonElement parseDiff(JsonObject request) throws IOException {
+        String projectRoot = param(request, "project");
+        Map<String, String> neo4jConfig = new HashMap<>();
+        AnalysisInput.Neo4jConfig config = request.has("neo4jConfig")
+            ? gson.fromJson(request.get("neo4jConfig"), AnalysisInput.Neo4jConfig.class)
+            : defaultNeo4jConfig;
+        neo4jConfig.put("uri", config.getUri());
+        neo4jConfig.put("user", config.getUser());
+        neo4jConfig.put("password", config.getPassword());
+
+        if (diffService == null) {
+            diffService = new DiffAnalysisService();
+        }
+        List<ChangeInfo> changes = diffService.extractChanges(param(request, "diff"), projectRoot);
+        Map<String, Object> inputData = diffService.buildInputData(changes, projectRoot, neo4jConfig);
+        return writeOrReturn(optionalParam(request, "output"), inputData, changes.size());
+    }
+
+    private JsonElement analyzeChanges(JsonObject request) throws IOException {
+        AnalysisInput input;
+        if (request.has("request")) {
+            input = gson.fromJson(request.get("request"), AnalysisInput.class);
+        } else {
+            try (FileReader reader = new FileReader(param(request, "input"))) {
+                input = gson.fromJson(reader, AnalysisInput.class);
+            }
+        }
+        if (input == null || input.getProjectRoot() == null || input.getChanges() == null) {
+            throw new IllegalArgumentException("输入缺少 projectRoot 或 changes");
+        }
+        QueryConfig queryConfig = input.getQueryConfig() != null ? input.getQueryConfig() : new QueryConfig();
+
+        ChangeAnalysisService analysisService = new ChangeAnalysisService(
+            graphService(input.getNeo4jConfig()), sourceExtractor(input.getProjectRoot()), queryConfig);
+        List<ChangeAnalysis> analyses = analysisService.analyzeChanges(input.getChanges());
+        return writeOrReturn(optionalParam(request, "output"), new AnalysisOutput(analyses), analyses.size());
+    }
+
+    /**
+     * 指定了输出文件时写出（格式与对应命令的输出文件相同），响应中只返回文件路径和变更数；否则结果直接放在响应中
+     */
+    private JsonElement writeOrReturn(String outputFile, Object result, int changeCount) throws IOException {
+        if (outputFile == null) {
+            return gson.toJsonTree(result);
+        }
+        try (FileWriter writer = new FileWriter(outputFile)) {
+            prettyGson.toJson(result, writer);
+        }
+        JsonObject summary = new JsonObject();
+        summary.addProperty("output", outputFile);
+        summary.addProperty("changes", changeCount);
+        return summary;
+    }
+
+    private JsonElement stats() {
+        CompilationUnitCache parseCache = CompilationUnitCache.shared();
+        JsonObject stats = new JsonObject();
+        stats.addProperty("requests", requestCount);
+        stats.addProperty("failures", failureCount);
+        stats.addProperty("parseCacheHits", parseCache.getHits());
+        stats.addProperty("parseCacheMisses", parseCache.getMisses());
+        stats.addProperty("parseCacheEntries", parseCache.size());
+
+        long queryHits = 0;
+        long queryMisses = 0;
+        for (GraphQueryService graphService : graphServices.values()) {
+            QueryResultCache cache = graphService.getCache();
+            if (cache != null) {
+                queryHits += cache.getHits();
+                queryMisses += cache.getMisses();
+            }
+        }
+        stats.addProperty("graphConnections", graphServices.size());
+        stats.addProperty("queryCacheHits", queryHits);
+        stats.addProperty("queryCacheMisses", queryMisses);
+        return stats;
+    }
+
+    /**
+     * 图谱查询服务：指定了内存图谱时始终使用它；否则按连接配置复用Neo4j连接（请求中没有配置时使用默认配置）
+     *
+     * @throws IllegalStateException Neo4j连接失败
+     */
+    private GraphQueryService graphService(AnalysisInput.Neo4jConfig requestConfig) throws IOException {
+        AnalysisInput.Neo4jConfig config = requestConfig != null && requestConfig.getUri() != null
+            ? requestConfig : defaultNeo4jConfig;
+        String key = graphFile != null
+            ? graphFile
+            : config.getUri() + "|" + config.getUser() + "|" + config.getPassword();
+
+        GraphQueryService graphService = graphServices.get(key);
+        if (graphService == null) {
+            graphService = ExtractorCLI.openGraphService(graphFile, config, cacheSize, cacheFile);
+            if (graphService == null) {
+                throw new IllegalStateException("Neo4j连接失败: " + config.getUri());
+            }
+            graphServices.put(key, graphService);
+        }
+        return graphService;
+    }
+
+    private SourceExtractor sourceExtractor(String projectRoot) throws IOException {
+        SourceExtractor sourceExtractor = sourceExtractors.get(projectRoot);
+        if (sourceExtractor == null) {
+            sourceExtractor = new SourceExtractor(projectRoot);
+            if (snapshotFile != null) {
+                if (snapshot == null) {
+                    snapshot = SourceSnapshot.open(snapshotFile);
+                    System.out.println("✓ 源码快照已加载: " + snapshotFile + " (" + snapshot.getFileCount() + " 个文件)");
+                }
+                sourceExtractor.setSourceSnapshot(snapshot);
+            }
+            sourceExtractors.put(projectRoot, sourceExtractor);
+        }
+        return sourceExtractor;
+    }
+
+    /**
+     * 关闭图谱连接（查询缓存的磁盘层在此写出），输出统计信息
+     */
+    private synchronized void close() {
+        System.out.println("[服务] 退出，共处理请求: " + requestCount + "，失败: " + failureCount);
+        CompilationUnitCache.shared().printStats();
+        List<GraphQueryService> services = new ArrayList<>(graphServices.values());
+        graphServices.clear();
+        for (GraphQueryService graphService : services) {
+            if (graphService.getCache() != null) {
+                graphService.getCache().printStats();
+            }
+            graphService.close();
+        }
+    }
+
+    private static String param(JsonObject request, String name) {
+        String value = optionalParam(request, name);
+        if (value == null) {
+            throw new IllegalArgumentException("缺少参数: " + name);
+        }
+        return value;
+    }
+
+    private static String optionalParam(JsonObject request, String name) {
+        JsonElement value = request.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Git Diff解析器
@@ -20,7 +21,18 @@ public class GitDiffParser {
      */
     public List<DiffHunk> parse(String diffFilePath) throws IOException {
         List<DiffHunk> hunks = new ArrayList<>();
+        parse(diffFilePath, hunks::add);
+        return hunks;
+    }
 
+    /**
+     * 流式解析git diff文件：每读完一个diff块立即交给 consumer，不保留已解析的块
+     * 同一文件的diff块按出现顺序连续交付
+     *
+     * @param diffFilePath diff文件路径
+     * @param consumer     diff块的处理
+     */
+    public void parse(String diffFilePath, Consumer<DiffHunk> consumer) throws IOException {
         try (
             BufferedReader reader = new BufferedReader(
                 new FileReader(diffFilePath)
@@ -49,7 +61,7 @@ public class GitDiffParser {
                             !currentHunk.getRemovedLines().isEmpty() ||
                             !currentHunk.getContextLines().isEmpty())
                     ) {
-                        hunks.add(currentHunk);
+                        consumer.accept(currentHunk);
                     }
                     // 重置文件级别的状态
                     currentHunk = null;
@@ -101,7 +113,7 @@ public class GitDiffParser {
                             !currentHunk.getRemovedLines().isEmpty() ||
                             !currentHunk.getContextLines().isEmpty()
                         ) {
-                            hunks.add(currentHunk);
+                            consumer.accept(currentHunk);
                         }
                     }
 
@@ -161,11 +173,9 @@ public class GitDiffParser {
                     !currentHunk.getRemovedLines().isEmpty() ||
                     !currentHunk.getContextLines().isEmpty())
             ) {
-                hunks.add(currentHunk);
+                consumer.accept(currentHunk);
             }
         }
-
-        return hunks;
     }
 
     /**
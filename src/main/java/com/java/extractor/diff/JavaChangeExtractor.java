@@ -8,7 +8,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -16,6 +15,7 @@ import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
 import com.java.extractor.filter.CodeLineFilterConfig;
 import com.java.extractor.model.ChangeInfo;
+import com.java.extractor.source.CompilationUnitCache;
 import com.java.extractor.util.CodeLineFilter;
 
 /**
@@ -577,7 +577,7 @@ public class JavaChangeExtractor {
     }
 
     /**
-     * 解析源文件
+     * 解析源文件（共用进程内的解析缓存，同一文件的多个diff块只解析一次）
      */
     private CompilationUnit parseSourceFile(
         String projectRoot,
@@ -588,7 +588,7 @@ public class JavaChangeExtractor {
             if (!sourceFile.exists()) {
                 return null;
             }
-            return StaticJavaParser.parse(sourceFile);
+            return CompilationUnitCache.shared().parse(sourceFile);
         } catch (Exception e) {
             return null;
         }
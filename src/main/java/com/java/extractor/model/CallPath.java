@@ -0,0 +1,59 @@
+package com.java.extractor.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 调用路径
+ * 从起点到终点依次经过的实体，以及相邻实体之间的关系类型（relationTypes.size() == nodes.size() - 1）
+ */
+public class CallPath {
+    private List<EntityInfo> nodes = new ArrayList<>();     // 路径上的实体（含起点和终点）
+    private List<String> relationTypes = new ArrayList<>(); // 每一跳的关系类型
+
+    public CallPath() {
+    }
+
+    public CallPath(List<EntityInfo> nodes, List<String> relationTypes) {
+        this.nodes = nodes;
+        this.relationTypes = relationTypes;
+    }
+
+    /**
+     * 路径跳数
+     */
+    public int getLength() {
+        return relationTypes.size();
+    }
+
+    public List<EntityInfo> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<EntityInfo> nodes) {
+        this.nodes = nodes;
+    }
+
+    public List<String> getRelationTypes() {
+        return relationTypes;
+    }
+
+    public void setRelationTypes(List<String> relationTypes) {
+        this.relationTypes = relationTypes;
+    }
+
+    /**
+     * 形如 A.a() -CALLS-> B.b() -CALLS-> C.c()
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                sb.append(" -").append(relationTypes.get(i - 1)).append("-> ");
+            }
+            sb.append(nodes.get(i).getId());
+        }
+        return sb.toString();
+    }
+}
@@ -11,6 +11,13 @@ public class ChangeAnalysis {
     private EntityInfo changeEntity;        // 变更实体本身
     private List<EntityInfo> upstream;      // 上游实体
     private List<EntityInfo> downstream;    // 下游实体
+    private List<String> transitiveUpstream; // 传递上游实体ID（影响闭包，未启用时为null）
+    private Integer upstreamTotal;          // 截断前的上游总数，含多跳时被每跳上限截掉的（未查询上游时为null）
+    private Boolean upstreamTruncated;      // 上游是否被扇出保护或每跳上限截断
+    private Integer downstreamTotal;        // 截断前的下游总数，含多跳时被每跳上限截掉的（未查询下游时为null）
+    private Boolean downstreamTruncated;    // 下游是否被扇出保护或每跳上限截断
+    private Long budgetUsed;                // 已用的源码预算（未设置预算时为null）
+    private Integer budgetOmitted;          // 超出预算、未输出源码的上下游数
     
     public ChangeAnalysis() {
     }
@@ -53,6 +60,62 @@ public class ChangeAnalysis {
         this.downstream = downstream;
     }
     
+    public List<String> getTransitiveUpstream() {
+        return transitiveUpstream;
+    }
+    
+    public void setTransitiveUpstream(List<String> transitiveUpstream) {
+        this.transitiveUpstream = transitiveUpstream;
+    }
+    
+    public Integer getUpstreamTotal() {
+        return upstreamTotal;
+    }
+    
+    public void setUpstreamTotal(Integer upstreamTotal) {
+        this.upstreamTotal = upstreamTotal;
+    }
+    
+    public Boolean getUpstreamTruncated() {
+        return upstreamTruncated;
+    }
+    
+    public void setUpstreamTruncated(Boolean upstreamTruncated) {
+        this.upstreamTruncated = upstreamTruncated;
+    }
+    
+    public Integer getDownstreamTotal() {
+        return downstreamTotal;
+    }
+    
+    public void setDownstreamTotal(Integer downstreamTotal) {
+        this.downstreamTotal = downstreamTotal;
+    }
+    
+    public Boolean getDownstreamTruncated() {
+        return downstreamTruncated;
+    }
+    
+    public void setDownstreamTruncated(Boolean downstreamTruncated) {
+        this.downstreamTruncated = downstreamTruncated;
+    }
+    
+    public Long getBudgetUsed() {
+        return budgetUsed;
+    }
+    
+    public void setBudgetUsed(Long budgetUsed) {
+        this.budgetUsed = budgetUsed;
+    }
+    
+    public Integer getBudgetOmitted() {
+        return budgetOmitted;
+    }
+    
+    public void setBudgetOmitted(Integer budgetOmitted) {
+        this.budgetOmitted = budgetOmitted;
+    }
+    
     @Override
     public String toString() {
         return "ChangeAnalysis{" +
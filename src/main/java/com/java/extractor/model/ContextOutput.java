@@ -1,15 +1,15 @@
 package com.java.extractor.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
  * 上下文输出数据模型
  * 对应context_output.jsonc的数据结构
- * 直接以类名为key的Map结构
+ * 直接以类名为key的Map结构（保持类的加入顺序，输出顺序与输入一致）
  */
-public class ContextOutput extends HashMap<String, ContextOutput.ClassContext> {
+public class ContextOutput extends LinkedHashMap<String, ContextOutput.ClassContext> {
     
     public ContextOutput() {
         super();
@@ -52,6 +52,7 @@ public class ContextOutput extends HashMap<String, ContextOutput.ClassContext> {
     public static class EntityContext {
         private String fieldName;    // 字段名（仅Field类型使用）
         private String methodName;   // 方法名（仅Method类型使用）
+        private transient String methodSignature; // 方法签名（仅用于选择重载，不输出）
         private Changes changes;
         private List<String> upstream;
         private List<String> downstream;
@@ -78,6 +79,14 @@ public class ContextOutput extends HashMap<String, ContextOutput.ClassContext> {
             this.methodName = methodName;
         }
         
+        public String getMethodSignature() {
+            return methodSignature;
+        }
+        
+        public void setMethodSignature(String methodSignature) {
+            this.methodSignature = methodSignature;
+        }
+        
         public Changes getChanges() { return changes; }
         public void setChanges(Changes changes) { this.changes = changes; }
         
@@ -1,5 +1,10 @@
 package com.java.extractor.model;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 实体信息（从Neo4j查询得到）
  */
@@ -9,8 +14,18 @@ public class EntityInfo {
     private String name;              // 实体名称
     private String owner;             // 所属类（仅Method/Field有）
     private String filePath;          // 文件路径
+    private Integer beginLine;        // 起始行（图谱中有行号时填充）
+    private Integer endLine;          // 结束行
+    private Integer beginOffset;      // 源码在文件中的字节区间起点（含声明前的注释，图谱中有位置时填充）
+    private Integer endOffset;        // 字节区间终点（不含）
+    private String contentHash;       // 提取时字节区间内容的哈希，用于判断文件是否已修改
     private String relationshipType;  // 关系类型（如果是上下游查询结果）
+    private Integer relationCount;    // 该关系的count（调用/访问次数，上下游查询结果）
     private String sourceCode;        // 源码（后续填充）
+    private Integer distance;                 // 距变更实体的最短跳数（上下游查询结果）
+    private List<String> pathRelationTypes;   // 从变更实体到该实体经过的关系类型，按跳数排列
+    private Integer neighborTotal;            // 多跳查询中由该实体扩展下一跳时的未访问邻居总数（只在超出每跳上限被截断时填充）
+    private Map<String, Object> properties;   // 查询投影中的其他属性（无则为null，不输出）
 
     public EntityInfo() {}
 
@@ -36,12 +51,71 @@ public class EntityInfo {
     public String getFilePath() { return filePath; }
     public void setFilePath(String filePath) { this.filePath = filePath; }
 
+    public Integer getBeginLine() { return beginLine; }
+    public void setBeginLine(Integer beginLine) { this.beginLine = beginLine; }
+
+    public Integer getEndLine() { return endLine; }
+    public void setEndLine(Integer endLine) { this.endLine = endLine; }
+
+    public Integer getBeginOffset() { return beginOffset; }
+    public void setBeginOffset(Integer beginOffset) { this.beginOffset = beginOffset; }
+
+    public Integer getEndOffset() { return endOffset; }
+    public void setEndOffset(Integer endOffset) { this.endOffset = endOffset; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
     public String getRelationshipType() { return relationshipType; }
     public void setRelationshipType(String relationshipType) { this.relationshipType = relationshipType; }
 
+    public Integer getRelationCount() { return relationCount; }
+    public void setRelationCount(Integer relationCount) { this.relationCount = relationCount; }
+
     public String getSourceCode() { return sourceCode; }
     public void setSourceCode(String sourceCode) { this.sourceCode = sourceCode; }
 
+    public Integer getDistance() { return distance; }
+    public void setDistance(Integer distance) { this.distance = distance; }
+
+    public List<String> getPathRelationTypes() { return pathRelationTypes; }
+    public void setPathRelationTypes(List<String> pathRelationTypes) { this.pathRelationTypes = pathRelationTypes; }
+
+    public Integer getNeighborTotal() { return neighborTotal; }
+    public void setNeighborTotal(Integer neighborTotal) { this.neighborTotal = neighborTotal; }
+
+    public Map<String, Object> getProperties() { return properties; }
+    public void setProperties(Map<String, Object> properties) { this.properties = properties; }
+
+    public void addProperty(String key, Object value) {
+        if (properties == null) {
+            properties = new LinkedHashMap<>();
+        }
+        properties.put(key, value);
+    }
+
+    /**
+     * 深拷贝（列表、属性表都复制一份），用于查询缓存返回独立对象
+     */
+    public EntityInfo copy() {
+        EntityInfo copy = new EntityInfo(id, entity_type, name);
+        copy.owner = owner;
+        copy.filePath = filePath;
+        copy.beginLine = beginLine;
+        copy.endLine = endLine;
+        copy.beginOffset = beginOffset;
+        copy.endOffset = endOffset;
+        copy.contentHash = contentHash;
+        copy.relationshipType = relationshipType;
+        copy.relationCount = relationCount;
+        copy.sourceCode = sourceCode;
+        copy.distance = distance;
+        copy.pathRelationTypes = pathRelationTypes == null ? null : new ArrayList<>(pathRelationTypes);
+        copy.neighborTotal = neighborTotal;
+        copy.properties = properties == null ? null : new LinkedHashMap<>(properties);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "EntityInfo{" +
@@ -51,6 +125,7 @@ public class EntityInfo {
                 ", owner='" + owner + '\'' +
                 ", filePath='" + filePath + '\'' +
                 ", relationshipType='" + relationshipType + '\'' +
+                ", distance=" + distance +
                 '}';
     }
 }
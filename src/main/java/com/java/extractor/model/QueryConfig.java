@@ -1,5 +1,7 @@
 package com.java.extractor.model;
 
+import java.util.List;
+
 /**
  * 查询配置
  * 控制上下游查询的行为
@@ -9,6 +11,16 @@ public class QueryConfig {
     private boolean includeUpstream = true;     // 包含上游
     private boolean includeDownstream = true;   // 包含下游
     private boolean includeSourceCode = true;   // 包含源码
+    private int maxFanOutPerHop = 50;           // 多跳查询时每个节点每跳最多扩展的邻居数（<=0 不限制）
+    private List<String> projection;            // 查询返回的节点属性（为空时使用默认投影）
+    private int concurrency = 1;                // 并发分析的分片数上限（<=1 顺序执行）
+    private boolean includeTransitiveUpstream = false; // 包含完整的传递上游ID（需要影响闭包索引）
+    private int maxNeighbors = 0;               // 每个变更每个方向最多返回的上下游数（<=0 不限制）
+    private int hubDegreeThreshold = 0;         // 直接邻居数达到该值视为热点实体（<=0 关闭）
+    private String hubStrategy = "sample";      // 热点实体的处理方式：sample 只保留前 hubSampleSize 个，skip 不返回
+    private int hubSampleSize = 10;             // 热点实体采样保留的数量
+    private int contextBudget = 0;              // 每个变更的源码预算（变更实体+上下游，<=0 不限制）
+    private String budgetUnit = "tokens";       // 预算单位：tokens（按每4个UTF-8字节1个估算）或 bytes
     
     public QueryConfig() {
     }
@@ -54,6 +66,86 @@ public class QueryConfig {
         this.includeSourceCode = includeSourceCode;
     }
     
+    public int getMaxFanOutPerHop() {
+        return maxFanOutPerHop;
+    }
+    
+    public void setMaxFanOutPerHop(int maxFanOutPerHop) {
+        this.maxFanOutPerHop = maxFanOutPerHop;
+    }
+    
+    public List<String> getProjection() {
+        return projection;
+    }
+    
+    public void setProjection(List<String> projection) {
+        this.projection = projection;
+    }
+    
+    public int getConcurrency() {
+        return concurrency;
+    }
+    
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    
+    public boolean isIncludeTransitiveUpstream() {
+        return includeTransitiveUpstream;
+    }
+    
+    public void setIncludeTransitiveUpstream(boolean includeTransitiveUpstream) {
+        this.includeTransitiveUpstream = includeTransitiveUpstream;
+    }
+    
+    public int getMaxNeighbors() {
+        return maxNeighbors;
+    }
+    
+    public void setMaxNeighbors(int maxNeighbors) {
+        this.maxNeighbors = maxNeighbors;
+    }
+    
+    public int getHubDegreeThreshold() {
+        return hubDegreeThreshold;
+    }
+    
+    public void setHubDegreeThreshold(int hubDegreeThreshold) {
+        this.hubDegreeThreshold = hubDegreeThreshold;
+    }
+    
+    public String getHubStrategy() {
+        return hubStrategy;
+    }
+    
+    public void setHubStrategy(String hubStrategy) {
+        this.hubStrategy = hubStrategy;
+    }
+    
+    public int getHubSampleSize() {
+        return hubSampleSize;
+    }
+    
+    public void setHubSampleSize(int hubSampleSize) {
+        this.hubSampleSize = hubSampleSize;
+    }
+    
+    public int getContextBudget() {
+        return contextBudget;
+    }
+    
+    public void setContextBudget(int contextBudget) {
+        this.contextBudget = contextBudget;
+    }
+    
+    public String getBudgetUnit() {
+        return budgetUnit;
+    }
+    
+    public void setBudgetUnit(String budgetUnit) {
+        this.budgetUnit = budgetUnit;
+    }
+    
     @Override
     public String toString() {
         return "QueryConfig{" +
@@ -61,6 +153,16 @@ public class QueryConfig {
                 ", includeUpstream=" + includeUpstream +
                 ", includeDownstream=" + includeDownstream +
                 ", includeSourceCode=" + includeSourceCode +
+                ", maxFanOutPerHop=" + maxFanOutPerHop +
+                ", projection=" + projection +
+                ", concurrency=" + concurrency +
+                ", includeTransitiveUpstream=" + includeTransitiveUpstream +
+                ", maxNeighbors=" + maxNeighbors +
+                ", hubDegreeThreshold=" + hubDegreeThreshold +
+                ", hubStrategy='" + hubStrategy + '\'' +
+                ", hubSampleSize=" + hubSampleSize +
+                ", contextBudget=" + contextBudget +
+                ", budgetUnit='" + budgetUnit + '\'' +
                 '}';
     }
 }
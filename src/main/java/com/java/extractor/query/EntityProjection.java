@@ -0,0 +1,185 @@
+package com.java.extractor.query;
+
+import com.java.extractor.model.EntityInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 节点投影与EntityInfo之间的转换
+ * 各 GraphQueryService 实现共用，保证不同数据源返回的实体字段一致
+ */
+final class EntityProjection {
+
+    private static final Pattern PROPERTY_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern RELATION_TYPE = Pattern.compile("[A-Z_][A-Z0-9_]*");
+
+    private EntityProjection() {
+    }
+
+    /**
+     * 校验投影属性名，为空时返回默认投影
+     *
+     * @throws IllegalArgumentException 属性名不合法
+     */
+    static List<String> normalize(List<String> projection) {
+        if (projection == null || projection.isEmpty()) {
+            return GraphQueryService.DEFAULT_PROJECTION;
+        }
+        for (String property : projection) {
+            if (!PROPERTY_NAME.matcher(property).matches()) {
+                throw new IllegalArgumentException("非法的投影属性名: " + property);
+            }
+        }
+        return new ArrayList<>(projection);
+    }
+
+    /**
+     * 校验路径查询的关系类型（统一转大写，与导出的关系类型一致），为空时只走 CALLS
+     *
+     * @throws IllegalArgumentException 关系类型名不合法
+     */
+    static List<String> normalizeRelationTypes(List<String> relationTypes) {
+        List<String> normalized = new ArrayList<>();
+        if (relationTypes != null) {
+            for (String relationType : relationTypes) {
+                String upper = relationType.trim().toUpperCase();
+                if (!RELATION_TYPE.matcher(upper).matches()) {
+                    throw new IllegalArgumentException("非法的关系类型: " + relationType);
+                }
+                if (!normalized.contains(upper)) {
+                    normalized.add(upper);
+                }
+            }
+        }
+        if (normalized.isEmpty()) {
+            normalized.add("CALLS");
+        }
+        return normalized;
+    }
+
+    /**
+     * 上下游结果只包含方法、字段、类/接口节点
+     */
+    static boolean isTraversable(String id) {
+        return id != null && (id.startsWith("method_") || id.startsWith("field_")
+            || id.startsWith("class_") || id.startsWith("iface_"));
+    }
+
+    /**
+     * 将节点投影（map）转换为EntityInfo
+     * 标准属性填入对应字段，其余投影属性放入 properties；值为null的属性（节点上不存在）直接忽略
+     */
+    static EntityInfo toEntity(Map<String, Object> node, String relationshipType) {
+        EntityInfo entity = new EntityInfo();
+
+        // 获取基本属性
+        String id = asString(node.get("id"));
+        entity.setId(id);
+
+        // 获取类型：优先从ID前缀判断，其次从type属性
+        String entityType = inferTypeFromId(id);
+        if (entityType == null) {
+            entityType = asString(node.get("type"));
+        }
+        entity.setEntity_type(entityType);
+
+        for (Map.Entry<String, Object> property : node.entrySet()) {
+            Object value = property.getValue();
+            if (value == null) {
+                continue;
+            }
+            switch (property.getKey()) {
+                case "id":
+                case "type":
+                    break;
+                case "name":
+                    entity.setName(asString(value));
+                    break;
+                case "owner":
+                    entity.setOwner(asString(value));
+                    break;
+                case "filePath":
+                    entity.setFilePath(asString(value));
+                    break;
+                case "beginLine":
+                    entity.setBeginLine(asInteger(value));
+                    break;
+                case "endLine":
+                    entity.setEndLine(asInteger(value));
+                    break;
+                case "beginOffset":
+                    entity.setBeginOffset(asInteger(value));
+                    break;
+                case "endOffset":
+                    entity.setEndOffset(asInteger(value));
+                    break;
+                case "contentHash":
+                    entity.setContentHash(asString(value));
+                    break;
+                default:
+                    // 列表属性复制为ArrayList：驱动返回的不可变列表无法被Gson序列化，也避免与数据源共享
+                    entity.addProperty(property.getKey(),
+                        value instanceof List ? new ArrayList<Object>((List<?>) value) : value);
+            }
+        }
+
+        entity.setRelationshipType(relationshipType);
+        return entity;
+    }
+
+    /**
+     * 直接上下游的距离为1，路径只有一条关系
+     */
+    static List<EntityInfo> markDirectNeighbors(List<EntityInfo> entities) {
+        for (EntityInfo entity : entities) {
+            entity.setDistance(1);
+            List<String> path = new ArrayList<>();
+            path.add(entity.getRelationshipType());
+            entity.setPathRelationTypes(path);
+        }
+        return entities;
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 行号、偏移可能以数值或字符串形式存储
+     */
+    private static Integer asInteger(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 从ID推断实体类型
+     * ID格式: method_ClassName_methodName(...) 或 field_ClassName_fieldName 或 class_ClassName
+     */
+    private static String inferTypeFromId(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        if (id.startsWith("method_")) {
+            return "Method";
+        } else if (id.startsWith("field_")) {
+            return "Field";
+        } else if (id.startsWith("class_") || id.startsWith("iface_")) {
+            return "ClassOrInterface";
+        } else if (id.startsWith("param_")) {
+            return "Parameter";
+        }
+
+        return null;
+    }
+}
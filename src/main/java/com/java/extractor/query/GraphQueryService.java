@@ -0,0 +1,151 @@
+package com.java.extractor.query;
+
+import com.java.extractor.model.CallPath;
+import com.java.extractor.model.EntityInfo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图谱查询接口
+ * 实体、上下游查询的统一入口：Neo4jQueryService 查询图数据库，InMemoryGraphQueryService 直接加载分析结果JSON
+ *
+ * 上下游语义：非结构型关系（CALLS/ACCESSES等）沿边反向为上游、正向为下游；
+ * 结构型关系（IMPLEMENTS/EXTENDS/OVERRIDES）方向相反
+ */
+public interface GraphQueryService extends AutoCloseable {
+
+    // 查询结果默认投影的节点属性（id、type始终返回）；源码区间属性缺失时源码提取回退到解析文件
+    List<String> DEFAULT_PROJECTION = Collections.unmodifiableList(
+        Arrays.asList("name", "owner", "filePath", "beginLine", "endLine", "beginOffset", "endOffset", "contentHash"));
+
+    /**
+     * 设置查询结果投影的节点属性，为空时使用默认投影
+     *
+     * @throws IllegalArgumentException 属性名不合法
+     */
+    void setProjection(List<String> projection);
+
+    List<String> getProjection();
+
+    /**
+     * 查询实体本身的信息，不存在时返回null
+     */
+    EntityInfo queryEntity(String entityId);
+
+    /**
+     * 批量查询实体本身的信息
+     *
+     * @return 实体ID -> 实体信息（按输入顺序，不存在的ID不出现在结果中）
+     */
+    Map<String, EntityInfo> queryEntities(Collection<String> entityIds);
+
+    /**
+     * 按 (所属类, 方法名) 查询所有重载，一次索引查找返回多个方法名的结果
+     * 签名未知时使用，配合 MethodOverloads.select 按签名/参数个数提示选出最匹配的重载
+     *
+     * @return 方法名 -> 重载列表（按ID排序；按输入顺序，每个方法名都有一项）
+     */
+    Map<String, List<EntityInfo>> queryMethodOverloads(String owner, Collection<String> methodNames);
+
+    /**
+     * 按 (所属类, 方法名) 和签名提示解析方法实体，不存在时返回null
+     *
+     * @param signatureHint 参数类型提示（逗号分隔，未知类型写作 "?"），null或空时选参数最少的重载
+     */
+    default EntityInfo resolveMethod(String owner, String methodName, String signatureHint) {
+        List<EntityInfo> overloads = queryMethodOverloads(owner, Collections.singletonList(methodName)).get(methodName);
+        return MethodOverloads.select(overloads, signatureHint, null);
+    }
+
+    /**
+     * 查询上游（谁调用/访问/实现了我）
+     * 深度1：直接上下游；深度>1：逐跳扩展，从第二跳开始每个节点每跳最多扩展 maxFanOutPerHop 个邻居（<=0 表示不限制），
+     * 超出时保留关系count最大的（相同时按ID），被截断的节点在 neighborTotal 中记录截断前的邻居数；
+     * 直接邻居总是完整返回
+     */
+    List<EntityInfo> queryUpstream(String entityId, int depth, int maxFanOutPerHop);
+
+    /**
+     * 查询下游（我调用/访问/实现了谁），参数含义同 queryUpstream
+     */
+    List<EntityInfo> queryDownstream(String entityId, int depth, int maxFanOutPerHop);
+
+    /**
+     * 批量查询上游
+     *
+     * @return 实体ID -> 上游列表（按输入顺序，每个输入ID都有一项）
+     */
+    Map<String, List<EntityInfo>> queryUpstreamBatch(Collection<String> entityIds, int depth, int maxFanOutPerHop);
+
+    /**
+     * 批量查询下游
+     *
+     * @return 实体ID -> 下游列表（按输入顺序，每个输入ID都有一项）
+     */
+    Map<String, List<EntityInfo>> queryDownstreamBatch(Collection<String> entityIds, int depth, int maxFanOutPerHop);
+
+    /**
+     * 查询完整的传递上游（calls/accesses反向、overrides正向的闭包），只返回实体ID（字典序，不含自身）
+     * 基于预计算的影响闭包索引，不逐跳查询；实体不在索引中时返回空列表
+     *
+     * @throws IllegalStateException 未加载影响闭包索引
+     */
+    List<String> queryTransitiveUpstream(String entityId);
+
+    /**
+     * 查询两个实体之间的k条最短调用路径
+     * 从起点沿关系方向搜索到终点，只经过 relationTypes 中的关系，路径中节点不重复；
+     * 按跳数从小到大返回至多 k 条（最短跳数的不足k条时继续返回更长的路径），
+     * 跳数相同时按节点ID序列、再按关系类型序列的字典序排序
+     *
+     * @param relationTypes 允许经过的关系类型（如 CALLS、OVERRIDES），为空时只走 CALLS
+     * @param maxHops       最大跳数
+     * @param k             最多返回的路径数
+     * @param timeBudgetMs  时间预算（毫秒，<=0 不限制），超出时返回已找到的路径
+     * @throws IllegalArgumentException 关系类型名不合法
+     */
+    List<CallPath> findCallPaths(String fromId, String toId, List<String> relationTypes,
+                                 int maxHops, int k, long timeBudgetMs);
+
+    /**
+     * 查询上游，深度>1时不限制扇出
+     */
+    default List<EntityInfo> queryUpstream(String entityId, int depth) {
+        return queryUpstream(entityId, depth, 0);
+    }
+
+    /**
+     * 查询下游，深度>1时不限制扇出
+     */
+    default List<EntityInfo> queryDownstream(String entityId, int depth) {
+        return queryDownstream(entityId, depth, 0);
+    }
+
+    /**
+     * 配置查询缓存（不需要缓存的实现忽略）
+     *
+     * @param maxEntries 最大条目数，<=0 关闭缓存
+     * @param diskPath   磁盘层文件，为null时只缓存在内存中
+     */
+    default void configureCache(int maxEntries, String diskPath) {
+    }
+
+    /**
+     * 查询缓存（未启用或不支持时为null）
+     */
+    default QueryResultCache getCache() {
+        return null;
+    }
+
+    /**
+     * 测试数据源是否可用
+     */
+    boolean testConnection();
+
+    @Override
+    void close();
+}
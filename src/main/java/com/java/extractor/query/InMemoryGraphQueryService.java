@@ -0,0 +1,518 @@
+package com.java.extractor.query;
+
+import com.java.ere.Entity;
+import com.java.ere.analytics.GraphAnalytics;
+import com.java.ere.analytics.ImpactClosureIndex;
+import com.java.ere.util.AnalysisResultReader;
+import com.java.extractor.model.CallPath;
+import com.java.extractor.model.EntityInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 内存图谱查询服务
+ * 直接加载 analysis-result_*.json 建立邻接索引，无需启动Neo4j即可回答实体/上下游查询（适合CI等场景）
+ *
+ * 节点属性、关系类型（大写）与导出到Neo4j的图谱一致，上下游语义、多跳遍历的去重和扇出限制
+ * 与 Neo4jQueryService 相同；目标实体不存在的关系与Neo4j导入时一样被忽略
+ */
+public class InMemoryGraphQueryService implements GraphQueryService {
+
+    // 结构型关系：上下游方向与边方向相反
+    private static final Set<String> STRUCTURAL_RELATIONS =
+        new HashSet<>(Arrays.asList("IMPLEMENTS", "EXTENDS", "OVERRIDES"));
+
+    private final String analysisResultPath;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Map<String, List<Node>> methodsByOwnerAndName = new HashMap<>(); // "owner#name" -> 重载（按ID排序）
+    private List<String> projection = DEFAULT_PROJECTION;
+    private int relationCount;
+    private ImpactClosureIndex.Builder impactIndexBuilder = new ImpactClosureIndex.Builder();
+    private ImpactClosureIndex impactIndex;
+
+    /**
+     * 图中的一个节点：导出到Neo4j时的属性，以及按 (对端ID, 关系类型) 排序的出边/入边
+     */
+    private static class Node {
+        final String id;
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        final List<Edge> outgoing = new ArrayList<>();
+        final List<Edge> incoming = new ArrayList<>();
+
+        Node(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class Edge {
+        final String relType;
+        final Node node;
+        final Integer count;
+
+        Edge(String relType, Node node, Integer count) {
+            this.relType = relType;
+            this.node = node;
+            this.count = count;
+        }
+    }
+
+    private static final Comparator<Edge> EDGE_ORDER =
+        Comparator.<Edge, String>comparing(edge -> edge.node.id).thenComparing(edge -> edge.relType);
+
+    // 多跳遍历每跳截断时的顺序，与Neo4j的逐跳查询一致：关系count降序、节点ID、关系类型
+    private static final Comparator<Edge> FAN_OUT_ORDER =
+        Comparator.<Edge>comparingInt(edge -> edge.count == null ? 0 : edge.count).reversed().thenComparing(EDGE_ORDER);
+
+    /**
+     * @param analysisResultPath ConfigFileMain 输出的 analysis-result_*.json
+     */
+    public InMemoryGraphQueryService(String analysisResultPath) throws IOException {
+        this.analysisResultPath = analysisResultPath;
+        long startTime = System.currentTimeMillis();
+
+        // 目标实体可能出现在源实体之后，先记下关系，全部节点建好后再连边
+        // [源ID, 关系类型, 目标ID, count]
+        List<Object[]> relations = new ArrayList<>();
+        AnalysisResultReader.forEachEntity(analysisResultPath, entity -> {
+            Node node = toNode(entity);
+            nodes.put(entity.getId(), node);
+            String owner = entity.getProperties().get("owner");
+            String name = entity.getProperties().get("name");
+            if ("Method".equals(entity.getType()) && owner != null && name != null) {
+                methodsByOwnerAndName.computeIfAbsent(owner + "#" + name, key -> new ArrayList<>()).add(node);
+            }
+            impactIndexBuilder.add(entity);
+            for (String type : entity.getRelations().keySet()) {
+                for (Map.Entry<String, Integer> target : entity.getRelationsByType(type).entrySet()) {
+                    relations.add(new Object[]{entity.getId(), type.toUpperCase(), target.getKey(), target.getValue()});
+                }
+            }
+        });
+
+        for (Object[] relation : relations) {
+            Node source = nodes.get((String) relation[0]);
+            Node target = nodes.get((String) relation[2]);
+            if (target == null) {
+                continue;
+            }
+            String relType = (String) relation[1];
+            Integer count = (Integer) relation[3];
+            source.outgoing.add(new Edge(relType, target, count));
+            target.incoming.add(new Edge(relType, source, count));
+            relationCount++;
+        }
+        for (Node node : nodes.values()) {
+            node.outgoing.sort(EDGE_ORDER);
+            node.incoming.sort(EDGE_ORDER);
+        }
+        for (List<Node> overloads : methodsByOwnerAndName.values()) {
+            overloads.sort(Comparator.comparing(node -> node.id));
+        }
+
+        System.out.println("[内存图谱] 已加载 " + nodes.size() + " 个实体, " + relationCount + " 条关系, 耗时: "
+            + (System.currentTimeMillis() - startTime) + "ms (" + analysisResultPath + ")");
+    }
+
+    /**
+     * 按导出脚本的规则生成节点属性：id、type、普通属性（分析指标为数值）、列表属性
+     */
+    private static Node toNode(Entity entity) {
+        Node node = new Node(entity.getId());
+        node.properties.put("id", entity.getId());
+        node.properties.put("type", entity.getType());
+        for (Map.Entry<String, String> property : entity.getProperties().entrySet()) {
+            if (property.getValue() != null) {
+                node.properties.put(property.getKey(), toValue(property.getKey(), property.getValue()));
+            }
+        }
+        for (Map.Entry<String, List<String>> property : entity.getListProperties().entrySet()) {
+            node.properties.put(property.getKey(), new ArrayList<>(property.getValue()));
+        }
+        return node;
+    }
+
+    private static Object toValue(String key, String value) {
+        if (!GraphAnalytics.isNumericProperty(key)) {
+            return value;
+        }
+        try {
+            return value.contains(".") ? (Object) Double.valueOf(value) : (Object) Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    @Override
+    public void setProjection(List<String> projection) {
+        this.projection = EntityProjection.normalize(projection);
+    }
+
+    @Override
+    public List<String> getProjection() {
+        return projection;
+    }
+
+    @Override
+    public EntityInfo queryEntity(String entityId) {
+        Node node = nodes.get(entityId);
+        return node == null ? null : project(node, null);
+    }
+
+    @Override
+    public Map<String, EntityInfo> queryEntities(Collection<String> entityIds) {
+        Map<String, EntityInfo> results = new LinkedHashMap<>();
+        for (String entityId : entityIds) {
+            Node node = nodes.get(entityId);
+            if (node != null && !results.containsKey(entityId)) {
+                results.put(entityId, project(node, null));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Map<String, List<EntityInfo>> queryMethodOverloads(String owner, Collection<String> methodNames) {
+        Map<String, List<EntityInfo>> results = new LinkedHashMap<>();
+        for (String methodName : methodNames) {
+            List<EntityInfo> overloads = new ArrayList<>();
+            for (Node node : methodsByOwnerAndName.getOrDefault(owner + "#" + methodName, Collections.<Node>emptyList())) {
+                overloads.add(project(node, null));
+            }
+            results.put(methodName, overloads);
+        }
+        return results;
+    }
+
+    @Override
+    public List<EntityInfo> queryUpstream(String entityId, int depth, int maxFanOutPerHop) {
+        return queryNeighbors(entityId, true, depth, maxFanOutPerHop);
+    }
+
+    @Override
+    public List<EntityInfo> queryDownstream(String entityId, int depth, int maxFanOutPerHop) {
+        return queryNeighbors(entityId, false, depth, maxFanOutPerHop);
+    }
+
+    @Override
+    public Map<String, List<EntityInfo>> queryUpstreamBatch(Collection<String> entityIds, int depth, int maxFanOutPerHop) {
+        return queryNeighborsBatch(entityIds, true, depth, maxFanOutPerHop);
+    }
+
+    @Override
+    public Map<String, List<EntityInfo>> queryDownstreamBatch(Collection<String> entityIds, int depth, int maxFanOutPerHop) {
+        return queryNeighborsBatch(entityIds, false, depth, maxFanOutPerHop);
+    }
+
+    /**
+     * 影响闭包索引在首次查询时构建
+     */
+    @Override
+    public synchronized List<String> queryTransitiveUpstream(String entityId) {
+        if (impactIndex == null) {
+            impactIndex = impactIndexBuilder.build();
+            impactIndexBuilder = null;
+        }
+        return impactIndex.transitiveUpstream(entityId);
+    }
+
+    private Map<String, List<EntityInfo>> queryNeighborsBatch(Collection<String> entityIds, boolean upstream,
+                                                              int depth, int maxFanOutPerHop) {
+        Map<String, List<EntityInfo>> results = new LinkedHashMap<>();
+        for (String entityId : entityIds) {
+            if (!results.containsKey(entityId)) {
+                results.put(entityId, queryNeighbors(entityId, upstream, depth, maxFanOutPerHop));
+            }
+        }
+        return results;
+    }
+
+    private List<EntityInfo> queryNeighbors(String entityId, boolean upstream, int depth, int maxFanOutPerHop) {
+        Node origin = nodes.get(entityId);
+        if (origin == null) {
+            return new ArrayList<>();
+        }
+        if (depth <= 1) {
+            List<EntityInfo> neighbors = new ArrayList<>();
+            for (Edge edge : expand(origin, upstream)) {
+                EntityInfo entity = project(edge.node, edge.relType);
+                entity.setRelationCount(edge.count);
+                neighbors.add(entity);
+            }
+            return EntityProjection.markDirectNeighbors(neighbors);
+        }
+        return traverse(origin, upstream, depth, maxFanOutPerHop);
+    }
+
+    /**
+     * 多跳遍历（逐跳BFS）
+     * 与Neo4j的逐跳查询一致：从第二跳开始，每个前沿节点按 (关系count降序, 节点ID, 关系类型) 排序后取前 maxFanOutPerHop 个未访问邻居，
+     * 被截断的前沿节点记下截断前的邻居数；同一节点被多个前沿节点命中时取 (父节点ID, 关系类型) 最小的一条作为路径
+     */
+    private List<EntityInfo> traverse(Node origin, boolean upstream, int depth, int maxFanOutPerHop) {
+        List<EntityInfo> results = new ArrayList<>();
+        Map<String, List<String>> paths = new HashMap<>();
+        paths.put(origin.id, Collections.<String>emptyList());
+        Set<String> visited = new HashSet<>();
+        visited.add(origin.id);
+        Map<String, EntityInfo> entities = new HashMap<>();
+        List<Node> frontier = Collections.singletonList(origin);
+
+        for (int hop = 1; hop <= depth && !frontier.isEmpty(); hop++) {
+            int fanOut = hop == 1 ? 0 : maxFanOutPerHop;
+            // 节点ID -> [父节点, 关系类型, 节点, count]，按节点ID排序输出
+            TreeMap<String, Object[]> reached = new TreeMap<>();
+            for (Node parent : frontier) {
+                List<Edge> candidates = new ArrayList<>();
+                for (Edge edge : expand(parent, upstream)) {
+                    if (!visited.contains(edge.node.id)) {
+                        candidates.add(edge);
+                    }
+                }
+                candidates.sort(FAN_OUT_ORDER);
+                if (fanOut > 0 && candidates.size() > fanOut) {
+                    EntityInfo parentEntity = entities.get(parent.id);
+                    if (parentEntity != null) {
+                        parentEntity.setNeighborTotal(candidates.size());
+                    }
+                    candidates = candidates.subList(0, fanOut);
+                }
+                for (Edge edge : candidates) {
+                    Object[] via = reached.get(edge.node.id);
+                    if (via == null || isBefore(parent.id, edge.relType, (Node) via[0], (String) via[1])) {
+                        reached.put(edge.node.id, new Object[]{parent, edge.relType, edge.node, edge.count});
+                    }
+                }
+            }
+
+            List<Node> nextFrontier = new ArrayList<>();
+            for (Object[] via : reached.values()) {
+                Node parent = (Node) via[0];
+                String relType = (String) via[1];
+                Node node = (Node) via[2];
+
+                List<String> path = new ArrayList<>(paths.get(parent.id));
+                path.add(relType);
+                paths.put(node.id, path);
+
+                EntityInfo entity = project(node, relType);
+                entity.setRelationCount((Integer) via[3]);
+                entity.setDistance(hop);
+                entity.setPathRelationTypes(path);
+                results.add(entity);
+                entities.put(node.id, entity);
+                nextFrontier.add(node);
+            }
+            for (Node node : nextFrontier) {
+                visited.add(node.id);
+            }
+            frontier = nextFrontier;
+        }
+        return results;
+    }
+
+    /**
+     * k条最短调用路径（无环，跳数从小到大，跳数相同时按节点ID序列、再按关系类型序列排序，与Neo4j一致）：
+     * 先从终点反向BFS求各节点到终点的跳数，再按跳数逐个长度DFS枚举，
+     * 只走“已走跳数 + 到终点跳数 <= 当前长度”的节点，找满k条即停止
+     */
+    @Override
+    public List<CallPath> findCallPaths(String fromId, String toId, List<String> relationTypes,
+                                        int maxHops, int k, long timeBudgetMs) {
+        Set<String> types = new HashSet<>(EntityProjection.normalizeRelationTypes(relationTypes));
+        List<CallPath> paths = new ArrayList<>();
+        Node source = nodes.get(fromId);
+        Node target = nodes.get(toId);
+        if (source == null || target == null || source == target || maxHops < 1 || k < 1) {
+            return paths;
+        }
+        long deadline = timeBudgetMs > 0 ? System.currentTimeMillis() + timeBudgetMs : Long.MAX_VALUE;
+
+        // 1. 反向BFS：各节点沿允许的关系到终点的最短跳数（不超过 maxHops）
+        Map<Node, Integer> toTarget = new HashMap<>();
+        toTarget.put(target, 0);
+        List<Node> frontier = Collections.singletonList(target);
+        for (int depth = 1; depth <= maxHops && !frontier.isEmpty(); depth++) {
+            if (System.currentTimeMillis() > deadline) {
+                System.err.println("[路径查询] 超出时间预算: " + fromId + " -> " + toId);
+                return paths;
+            }
+            List<Node> next = new ArrayList<>();
+            for (Node node : frontier) {
+                for (Edge edge : node.incoming) {
+                    if (types.contains(edge.relType) && !toTarget.containsKey(edge.node)) {
+                        toTarget.put(edge.node, depth);
+                        next.add(edge.node);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        Integer shortest = toTarget.get(source);
+        if (shortest == null) {
+            return paths;
+        }
+
+        // 2. 按长度从短到长枚举无环路径
+        List<Node> pathNodes = new ArrayList<>();
+        Set<Node> onPath = new HashSet<>();
+        pathNodes.add(source);
+        onPath.add(source);
+        for (int length = shortest; length <= maxHops; length++) {
+            if (collectPaths(source, target, types, length, toTarget, pathNodes, onPath, paths, k, deadline)) {
+                break;
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * DFS枚举恰好 length 跳的无环路径：按节点ID顺序扩展（节点序列按字典序产生），
+     * 到达终点时再按关系类型展开相邻节点间的平行边
+     *
+     * @return 已找满k条或超出时间预算
+     */
+    private boolean collectPaths(Node current, Node target, Set<String> types, int length,
+                                 Map<Node, Integer> toTarget, List<Node> pathNodes, Set<Node> onPath,
+                                 List<CallPath> paths, int k, long deadline) {
+        int hops = pathNodes.size() - 1;
+        if (current == target) {
+            return hops == length && expandRelations(pathNodes, types, new ArrayList<>(), paths, k);
+        }
+        if (System.currentTimeMillis() > deadline) {
+            System.err.println("[路径查询] 超出时间预算，返回已找到的 " + paths.size() + " 条路径");
+            return true;
+        }
+
+        Node previous = null;
+        for (Edge edge : current.outgoing) {
+            // 出边按 (对端ID, 关系类型) 排序，同一对端只扩展一次
+            if (!types.contains(edge.relType) || edge.node == previous || onPath.contains(edge.node)) {
+                continue;
+            }
+            previous = edge.node;
+            Integer remaining = toTarget.get(edge.node);
+            if (remaining == null || hops + 1 + remaining > length) {
+                continue;
+            }
+            pathNodes.add(edge.node);
+            onPath.add(edge.node);
+            boolean done = collectPaths(edge.node, target, types, length, toTarget, pathNodes, onPath, paths, k, deadline);
+            pathNodes.remove(pathNodes.size() - 1);
+            onPath.remove(edge.node);
+            if (done) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 节点序列确定后，按关系类型的字典序展开每一跳的平行边
+     */
+    private boolean expandRelations(List<Node> pathNodes, Set<String> types, List<String> pathRelations,
+                                    List<CallPath> paths, int k) {
+        int hop = pathRelations.size();
+        if (hop == pathNodes.size() - 1) {
+            List<EntityInfo> entities = new ArrayList<>();
+            for (Node node : pathNodes) {
+                entities.add(project(node, null));
+            }
+            paths.add(new CallPath(entities, new ArrayList<>(pathRelations)));
+            return paths.size() >= k;
+        }
+        Node to = pathNodes.get(hop + 1);
+        for (Edge edge : pathNodes.get(hop).outgoing) {
+            if (edge.node != to || !types.contains(edge.relType)) {
+                continue;
+            }
+            pathRelations.add(edge.relType);
+            boolean done = expandRelations(pathNodes, types, pathRelations, paths, k);
+            pathRelations.remove(hop);
+            if (done) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBefore(String parentId, String relType, Node currentParent, String currentRelType) {
+        int cmp = parentId.compareTo(currentParent.id);
+        return cmp < 0 || (cmp == 0 && relType.compareTo(currentRelType) < 0);
+    }
+
+    /**
+     * 从节点扩展一跳，返回按 (对端ID, 关系类型) 排序的边
+     * 非结构型关系沿边反向（上游）/正向（下游）走，结构型关系方向相反
+     */
+    private List<Edge> expand(Node node, boolean upstream) {
+        List<Edge> plainEdges = upstream ? node.incoming : node.outgoing;
+        List<Edge> structuralEdges = upstream ? node.outgoing : node.incoming;
+
+        List<Edge> result = new ArrayList<>();
+        for (Edge edge : plainEdges) {
+            if (!STRUCTURAL_RELATIONS.contains(edge.relType) && EntityProjection.isTraversable(edge.node.id)) {
+                result.add(edge);
+            }
+        }
+        for (Edge edge : structuralEdges) {
+            if (STRUCTURAL_RELATIONS.contains(edge.relType) && EntityProjection.isTraversable(edge.node.id)) {
+                result.add(edge);
+            }
+        }
+        result.sort(EDGE_ORDER);
+        return result;
+    }
+
+    /**
+     * 按当前投影生成实体信息（id、type始终返回）
+     */
+    private EntityInfo project(Node node, String relationshipType) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        projected.put("id", node.properties.get("id"));
+        projected.put("type", node.properties.get("type"));
+        for (String property : projection) {
+            if (!projected.containsKey(property)) {
+                projected.put(property, node.properties.get(property));
+            }
+        }
+        return EntityProjection.toEntity(projected, relationshipType);
+    }
+
+    public int getEntityCount() {
+        return nodes.size();
+    }
+
+    public int getRelationCount() {
+        return relationCount;
+    }
+
+    /**
+     * 快照已加载即可用
+     */
+    @Override
+    public boolean testConnection() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        nodes.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryGraphQueryService{" + analysisResultPath + "}";
+    }
+}
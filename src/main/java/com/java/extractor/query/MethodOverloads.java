@@ -0,0 +1,180 @@
+package com.java.extractor.query;
+
+import com.java.extractor.model.EntityInfo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 方法重载选择
+ * 签名未知或只知道一部分时，从 (owner, name) 的所有重载中选出最匹配的一个
+ *
+ * 签名提示与方法ID括号内的格式相同（逗号分隔的参数类型），未知的参数类型写作 "?"；
+ * 类型比较忽略包名和空白，泛型参数不同时视为较弱的匹配
+ */
+public final class MethodOverloads {
+
+    public static final String ANY_TYPE = "?";
+
+    private static final Comparator<EntityInfo> ID_ORDER =
+        Comparator.comparing(entity -> entity.getId() == null ? "" : entity.getId());
+
+    private MethodOverloads() {
+    }
+
+    /**
+     * 从方法ID中解析参数类型，如 method_A_f(Map<String,Integer>,int) -> [Map<String,Integer>, int]
+     */
+    public static List<String> parameterTypes(String methodId) {
+        if (methodId == null) {
+            return new ArrayList<>();
+        }
+        int open = methodId.indexOf('(');
+        int close = methodId.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return new ArrayList<>();
+        }
+        return splitTypes(methodId.substring(open + 1, close));
+    }
+
+    /**
+     * 按顶层逗号拆分参数类型（泛型中的逗号不拆）
+     */
+    public static List<String> splitTypes(String signature) {
+        List<String> types = new ArrayList<>();
+        if (signature == null || signature.trim().isEmpty()) {
+            return types;
+        }
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < signature.length(); i++) {
+            char c = signature.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                types.add(signature.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        types.add(signature.substring(start).trim());
+        return types;
+    }
+
+    /**
+     * 选出最匹配的重载
+     * 依次比较：参数个数是否等于提示、匹配的参数类型数（完全一致计2，仅泛型不同计1）、参数个数差、参数个数、ID
+     * 没有任何提示时选参数最少的重载
+     *
+     * @param signatureHint  参数类型提示（可含 "?"），null或空表示未知
+     * @param parameterCount 参数个数提示，null表示未知；signatureHint 不为空时以其参数个数为准
+     * @return 最匹配的重载，无候选时返回null
+     */
+    public static EntityInfo select(List<EntityInfo> overloads, String signatureHint, Integer parameterCount) {
+        if (overloads == null || overloads.isEmpty()) {
+            return null;
+        }
+        List<String> hintTypes = splitTypes(signatureHint);
+        Integer expected = !hintTypes.isEmpty() ? Integer.valueOf(hintTypes.size()) : parameterCount;
+
+        EntityInfo best = null;
+        int[] bestScore = null;
+        for (EntityInfo overload : overloads) {
+            List<String> types = parameterTypes(overload.getId());
+            int[] score = {
+                expected != null && types.size() == expected ? 1 : 0,
+                typeMatches(hintTypes, types),
+                expected != null ? -Math.abs(types.size() - expected) : 0,
+                -types.size()
+            };
+            if (best == null || compare(score, bestScore) > 0
+                    || (compare(score, bestScore) == 0 && ID_ORDER.compare(overload, best) < 0)) {
+                best = overload;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 签名提示是否不完整（为空或含 "?"），不完整时才需要在重载中按提示挑选
+     */
+    public static boolean isPartialSignature(String signatureHint) {
+        if (signatureHint == null || signatureHint.trim().isEmpty()) {
+            return true;
+        }
+        for (String type : splitTypes(signatureHint)) {
+            if (type.isEmpty() || ANY_TYPE.equals(normalize(type))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 完整签名与方法ID的参数类型是否一致（忽略包名和空白；仅泛型参数不同视为一致，擦除后相同的方法不能重载）
+     */
+    public static boolean matchesSignature(String methodId, String signature) {
+        List<String> hintTypes = splitTypes(signature);
+        List<String> types = parameterTypes(methodId);
+        if (hintTypes.size() != types.size()) {
+            return false;
+        }
+        for (int i = 0; i < types.size(); i++) {
+            if (!eraseGenerics(normalize(hintTypes.get(i))).equals(eraseGenerics(normalize(types.get(i))))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    private static int typeMatches(List<String> hintTypes, List<String> types) {
+        int matches = 0;
+        for (int i = 0; i < hintTypes.size() && i < types.size(); i++) {
+            String hint = normalize(hintTypes.get(i));
+            if (hint.isEmpty() || ANY_TYPE.equals(hint)) {
+                continue;
+            }
+            String actual = normalize(types.get(i));
+            if (hint.equals(actual)) {
+                matches += 2;
+            } else if (eraseGenerics(hint).equals(eraseGenerics(actual))) {
+                matches += 1;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 去掉空白和包名：java.util.List<java.lang.String> -> List<String>
+     */
+    private static String normalize(String type) {
+        return type.replaceAll("\\s+", "").replaceAll("([A-Za-z_$][A-Za-z0-9_$]*\\.)+(?=[A-Za-z_$])", "");
+    }
+
+    private static String eraseGenerics(String type) {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        for (char c : type.toCharArray()) {
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
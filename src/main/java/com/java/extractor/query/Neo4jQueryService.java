@@ -1,116 +1,624 @@
 package com.java.extractor.query;
 
+import com.java.ere.analytics.ImpactClosureIndex;
+import com.java.extractor.model.CallPath;
 import com.java.extractor.model.EntityInfo;
 import org.neo4j.driver.*;
+import org.neo4j.driver.summary.Plan;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Neo4j查询服务
  */
-public class Neo4jQueryService implements AutoCloseable {
+public class Neo4jQueryService implements GraphQueryService {
 
+    // 结构型关系：上下游方向与边方向相反
+    private static final String STRUCTURAL_RELATIONS = "['IMPLEMENTS','EXTENDS','OVERRIDES']";
+
+    // 查询缓存默认容量；图谱版本标记的检查间隔
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final long VERSION_CHECK_INTERVAL_MS = 5000;
+
+    // 路径查询每个跳数最多取回的路径数（在本地排序后取前k条），防止热点之间的路径数失控
+    private static final int MAX_PATHS_PER_LENGTH = 1000;
+
+    // 同一跳数的路径按节点ID序列、再按关系类型序列排序，与 InMemoryGraphQueryService 一致
+    private static final Comparator<CallPath> PATH_ORDER = Comparator
+        .comparing(Neo4jQueryService::nodeIds, Neo4jQueryService::compareIds)
+        .thenComparing(CallPath::getRelationTypes, Neo4jQueryService::compareIds);
+
+    // Driver本身线程安全，每次查询独立开会话；以下字段可能被并发分析的工作线程读取
     private final Driver driver;
+    private volatile List<String> projection = DEFAULT_PROJECTION;
+    private volatile QueryResultCache cache = new QueryResultCache(DEFAULT_CACHE_SIZE, null);
+    private long lastVersionCheck;
+    private volatile ImpactClosureIndex impactIndex;
 
     public Neo4jQueryService(String uri, String user, String password) {
         this.driver = GraphDatabase.driver(uri, AuthTokens.basic(user, password));
     }
 
     /**
-     * 查询上游（谁调用/访问/实现了我）
-     * 深度1：直接上游
+     * 设置查询结果投影的节点属性
+     * 所有实体/上下游查询都以 map projection 一次返回这些属性，调用方无需再回查节点
+     */
+    @Override
+    public void setProjection(List<String> projection) {
+        this.projection = EntityProjection.normalize(projection);
+    }
+
+    @Override
+    public List<String> getProjection() {
+        return projection;
+    }
+
+    /**
+     * 配置查询缓存
+     *
+     * @param maxEntries 最大条目数，<=0 关闭缓存
+     * @param diskPath   磁盘层文件，为null时只缓存在内存中
+     */
+    @Override
+    public synchronized void configureCache(int maxEntries, String diskPath) {
+        this.cache = maxEntries > 0 ? new QueryResultCache(maxEntries, diskPath) : null;
+        this.lastVersionCheck = 0;
+    }
+
+    /**
+     * 查询缓存（未启用时为null）
+     */
+    @Override
+    public QueryResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 定期读取图谱版本标记并绑定到缓存，导入新图谱后缓存自动失效
+     */
+    private void refreshGraphVersion() {
+        QueryResultCache cache = this.cache;
+        if (cache == null) {
+            return;
+        }
+        // 多个线程同时到期时只由一个线程检查
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now - lastVersionCheck < VERSION_CHECK_INTERVAL_MS) {
+                return;
+            }
+            lastVersionCheck = now;
+        }
+        try (Session session = driver.session()) {
+            String version = session.executeRead(tx -> {
+                Result result = tx.run("MATCH (v:GraphVersion {id: 'current'}) RETURN v.version AS version");
+                return result.hasNext() ? result.next().get("version").asString(null) : null;
+            });
+            cache.bindVersion(version);
+        } catch (Exception e) {
+            System.err.println("读取图谱版本失败: " + e.getMessage());
+        }
+    }
+
+    private String cacheKey(String direction, String entityId, int depth, int maxFanOutPerHop) {
+        return QueryResultCache.key(direction, entityId, depth, maxFanOutPerHop, projection);
+    }
+
+    /**
+     * 先查缓存，未命中时执行查询并写入缓存；查询失败时返回空结果且不写缓存
      */
-    public List<EntityInfo> queryUpstream(String entityId, int depth) {
-        String cypher = buildUpstreamQuery(depth);
-        return executeQuery(cypher, entityId);
+    private List<EntityInfo> cached(String key, QueryLoader loader, String failureMessage) {
+        refreshGraphVersion();
+        if (cache != null) {
+            List<EntityInfo> hit = cache.get(key);
+            if (hit != null) {
+                return hit;
+            }
+        }
+        try {
+            List<EntityInfo> loaded = loader.load();
+            if (cache != null) {
+                cache.put(key, loaded);
+            }
+            return loaded;
+        } catch (Exception e) {
+            System.err.println(failureMessage + " - " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @FunctionalInterface
+    private interface QueryLoader {
+        List<EntityInfo> load() throws Exception;
     }
 
     /**
-     * 查询下游（我调用/访问/实现了谁）
-     * 深度1：直接下游
+     * 查询上游，深度>1时每个节点每跳最多扩展 maxFanOutPerHop 个邻居（<=0 表示不限制）
      */
-    public List<EntityInfo> queryDownstream(String entityId, int depth) {
-        String cypher = buildDownstreamQuery(depth);
-        return executeQuery(cypher, entityId);
+    @Override
+    public List<EntityInfo> queryUpstream(String entityId, int depth, int maxFanOutPerHop) {
+        if (depth <= 1) {
+            return cached(cacheKey("upstream", entityId, 1, 0),
+                () -> EntityProjection.markDirectNeighbors(executeQuery(buildUpstreamQuery(), entityId)),
+                "查询失败: " + entityId);
+        }
+        return queryUpstreamBatch(Collections.singletonList(entityId), depth, maxFanOutPerHop).get(entityId);
+    }
+
+    /**
+     * 查询下游，深度>1时每个节点每跳最多扩展 maxFanOutPerHop 个邻居（<=0 表示不限制）
+     */
+    @Override
+    public List<EntityInfo> queryDownstream(String entityId, int depth, int maxFanOutPerHop) {
+        if (depth <= 1) {
+            return cached(cacheKey("downstream", entityId, 1, 0),
+                () -> EntityProjection.markDirectNeighbors(executeQuery(buildDownstreamQuery(), entityId)),
+                "查询失败: " + entityId);
+        }
+        return queryDownstreamBatch(Collections.singletonList(entityId), depth, maxFanOutPerHop).get(entityId);
+    }
+
+    /**
+     * 设置影响闭包索引（ImpactIndexMain 基于同一份分析结果生成）
+     */
+    public void setImpactIndex(ImpactClosureIndex impactIndex) {
+        this.impactIndex = impactIndex;
+    }
+
+    @Override
+    public List<String> queryTransitiveUpstream(String entityId) {
+        ImpactClosureIndex index = impactIndex;
+        if (index == null) {
+            throw new IllegalStateException("未加载影响闭包索引，请先用 ImpactIndexMain 生成并通过 --impact-index 指定");
+        }
+        return index.transitiveUpstream(entityId);
     }
 
     /**
      * 查询实体本身的信息
      */
+    @Override
     public EntityInfo queryEntity(String entityId) {
-        String cypher = "MATCH (n) WHERE n.id = $entityId RETURN n";
+        String cypher = buildEntityQuery();
+
+        // 缓存中以0或1个元素的列表表示实体是否存在
+        List<EntityInfo> found = cached(cacheKey("entity", entityId, 0, 0), () -> {
+            try (Session session = driver.session()) {
+                return session.executeRead(tx -> {
+                    java.util.HashMap<String, Object> params = new java.util.HashMap<String, Object>();
+                    params.put("entityId", entityId);
+                    Result result = tx.run(cypher, params);
+
+                    List<EntityInfo> entities = new ArrayList<>();
+                    if (result.hasNext()) {
+                        org.neo4j.driver.Record record = result.next();
+                        EntityInfo entity = recordToEntity(record.get("n"), null);
+                        if (entity != null) {
+                            entities.add(entity);
+                        }
+                    }
+                    return entities;
+                });
+            }
+        }, "查询实体失败: " + entityId);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * 构建实体查询Cypher
+     * 所有查询都以 (:Entity {id}) 锚定起点，命中导出时创建的唯一约束索引，避免AllNodesScan
+     */
+    private String buildEntityQuery() {
+        return "MATCH (n:Entity {id: $entityId}) RETURN " + project("n") + " AS n";
+    }
+
+    /**
+     * 构建直接上游查询Cypher（多跳查询由调用方逐跳扩展）
+     */
+    private String buildUpstreamQuery() {
+        // 上游定义：
+        // 1) 非结构型关系（CALLS/ACCESSES等）：入边 (upstream)->(target)
+        // 2) 结构型关系（IMPLEMENTS/EXTENDS/OVERRIDES）：出边 (target)->(upstream) 也视为上游
+        return "MATCH (target:Entity {id: $entityId}) " +
+               "MATCH (upstream)-[r]->(target) " +
+               "WHERE NOT type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
+               "AND (upstream.id STARTS WITH 'method_' OR upstream.id STARTS WITH 'field_' OR upstream.id STARTS WITH 'class_' OR upstream.id STARTS WITH 'iface_') " +
+               "RETURN " + project("upstream") + " AS node, type(r) as relType, r.count AS relCount " +
+               "UNION " +
+               "MATCH (target:Entity {id: $entityId}) " +
+               "MATCH (target)-[r]->(upstream) " +
+               "WHERE type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
+               "AND (upstream.id STARTS WITH 'method_' OR upstream.id STARTS WITH 'field_' OR upstream.id STARTS WITH 'class_' OR upstream.id STARTS WITH 'iface_') " +
+               "RETURN " + project("upstream") + " AS node, type(r) as relType, r.count AS relCount";
+    }
+
+    /**
+     * 构建直接下游查询Cypher（多跳查询由调用方逐跳扩展）
+     */
+    private String buildDownstreamQuery() {
+        // 下游定义：
+        // 1) 非结构型关系：出边 (source)->(downstream)
+        // 2) 结构型关系（IMPLEMENTS/EXTENDS/OVERRIDES）：入边 (downstream)->(source) 也视为下游
+        return "MATCH (source:Entity {id: $entityId}) " +
+               "MATCH (source)-[r]->(downstream) " +
+               "WHERE NOT type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
+               "AND (downstream.id STARTS WITH 'method_' OR downstream.id STARTS WITH 'field_' OR downstream.id STARTS WITH 'class_' OR downstream.id STARTS WITH 'iface_') " +
+               "RETURN " + project("downstream") + " AS node, type(r) as relType, r.count AS relCount " +
+               "UNION " +
+               "MATCH (source:Entity {id: $entityId}) " +
+               "MATCH (downstream)-[r]->(source) " +
+               "WHERE type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
+               "AND (downstream.id STARTS WITH 'method_' OR downstream.id STARTS WITH 'field_' OR downstream.id STARTS WITH 'class_' OR downstream.id STARTS WITH 'iface_') " +
+               "RETURN " + project("downstream") + " AS node, type(r) as relType, r.count AS relCount";
+    }
+
+    /**
+     * 批量查询实体本身的信息，一次查询返回所有ID对应的实体
+     *
+     * @return 实体ID -> 实体信息（Neo4j中不存在的ID不出现在结果中）
+     */
+    @Override
+    public Map<String, EntityInfo> queryEntities(Collection<String> entityIds) {
+        refreshGraphVersion();
+        Map<String, EntityInfo> results = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String entityId : new LinkedHashSet<>(entityIds)) {
+            List<EntityInfo> hit = cache != null ? cache.get(cacheKey("entity", entityId, 0, 0)) : null;
+            if (hit == null) {
+                missing.add(entityId);
+            } else if (!hit.isEmpty()) {
+                results.put(entityId, hit.get(0));
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
 
         try (Session session = driver.session()) {
-            return session.executeRead(tx -> {
-                java.util.HashMap<String, Object> params = new java.util.HashMap<String, Object>();
-                params.put("entityId", entityId);
-                Result result = tx.run(cypher, params);
+            Map<String, Object> params = new HashMap<>();
+            params.put("ids", missing);
+            List<org.neo4j.driver.Record> records = session.executeRead(tx -> tx.run(buildEntitiesQuery(), params).list());
+            Map<String, EntityInfo> loaded = new HashMap<>();
+            for (org.neo4j.driver.Record record : records) {
+                EntityInfo entity = recordToEntity(record.get("n"), null);
+                if (entity != null) {
+                    loaded.put(record.get("entityId").asString(), entity);
+                }
+            }
+            for (String entityId : missing) {
+                EntityInfo entity = loaded.get(entityId);
+                if (cache != null) {
+                    cache.put(cacheKey("entity", entityId, 0, 0),
+                        entity == null ? Collections.<EntityInfo>emptyList() : Collections.singletonList(entity));
+                }
+                if (entity != null) {
+                    results.put(entityId, entity);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("批量查询实体失败: " + missing.size() + " 个 - " + e.getMessage());
+        }
 
-                if (result.hasNext()) {
-                    org.neo4j.driver.Record record = result.next();
-                    return recordToEntity(record.get("n").asNode(), null);
+        // 按输入顺序返回
+        Map<String, EntityInfo> ordered = new LinkedHashMap<>();
+        for (String entityId : entityIds) {
+            if (results.containsKey(entityId)) {
+                ordered.put(entityId, results.get(entityId));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 批量查询上游，每个方向一次 UNWIND $ids 查询（多跳时每跳一次）
+     *
+     * @return 实体ID -> 上游列表（按输入顺序，每个输入ID都有一项）
+     */
+    @Override
+    public Map<String, List<EntityInfo>> queryUpstreamBatch(Collection<String> entityIds, int depth, int maxFanOutPerHop) {
+        return queryNeighborsBatch(entityIds, true, depth, maxFanOutPerHop);
+    }
+
+    /**
+     * 批量查询下游，每个方向一次 UNWIND $ids 查询（多跳时每跳一次）
+     *
+     * @return 实体ID -> 下游列表（按输入顺序，每个输入ID都有一项）
+     */
+    @Override
+    public Map<String, List<EntityInfo>> queryDownstreamBatch(Collection<String> entityIds, int depth, int maxFanOutPerHop) {
+        return queryNeighborsBatch(entityIds, false, depth, maxFanOutPerHop);
+    }
+
+    private Map<String, List<EntityInfo>> queryNeighborsBatch(Collection<String> entityIds, boolean upstream,
+                                                              int depth, int maxFanOutPerHop) {
+        refreshGraphVersion();
+        String direction = upstream ? "upstream" : "downstream";
+        int effectiveDepth = Math.max(depth, 1);
+        int effectiveFanOut = effectiveDepth > 1 ? maxFanOutPerHop : 0;
+
+        // 命中缓存的直接填入，其余一次批量查询
+        Map<String, List<EntityInfo>> results = new LinkedHashMap<>();
+        Map<String, List<EntityInfo>> missing = new LinkedHashMap<>();
+        for (String entityId : entityIds) {
+            if (results.containsKey(entityId)) {
+                continue;
+            }
+            List<EntityInfo> hit = cache != null
+                ? cache.get(cacheKey(direction, entityId, effectiveDepth, effectiveFanOut)) : null;
+            if (hit != null) {
+                results.put(entityId, hit);
+            } else {
+                List<EntityInfo> neighbors = new ArrayList<>();
+                results.put(entityId, neighbors);
+                missing.put(entityId, neighbors);
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        try {
+            if (effectiveDepth > 1) {
+                traverse(missing, upstream, effectiveDepth, effectiveFanOut);
+            } else {
+                loadDirectNeighbors(missing, upstream);
+            }
+            if (cache != null) {
+                for (Map.Entry<String, List<EntityInfo>> entry : missing.entrySet()) {
+                    cache.put(cacheKey(direction, entry.getKey(), effectiveDepth, effectiveFanOut), entry.getValue());
                 }
-                return null;
-            });
+            }
         } catch (Exception e) {
-            System.err.println("查询实体失败: " + entityId + " - " + e.getMessage());
-            return null;
+            System.err.println("批量查询" + (upstream ? "上游" : "下游") + "失败: " + missing.size() + " 个 - " + e.getMessage());
+            for (List<EntityInfo> neighbors : missing.values()) {
+                neighbors.clear();
+            }
         }
+        return results;
     }
 
     /**
-     * 构建上游查询Cypher（深度1）
+     * 批量查询直接上下游，结果追加到 results 中对应起点的列表
      */
-    private String buildUpstreamQuery(int depth) {
-        if (depth == 1) {
-            // 上游定义：
-            // 1) 非结构型关系（CALLS/ACCESSES等）：入边 (upstream)->(target)
-            // 2) 结构型关系（IMPLEMENTS/EXTENDS/OVERRIDES）：出边 (target)->(upstream) 也视为上游
-            return "MATCH (upstream)-[r]->(target) " +
-                   "WHERE target.id = $entityId " +
-                   "AND NOT type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
-                   "AND (upstream.id STARTS WITH 'method_' OR upstream.id STARTS WITH 'field_' OR upstream.id STARTS WITH 'class_' OR upstream.id STARTS WITH 'iface_') " +
-                   "RETURN upstream AS node, type(r) as relType " +
-                   "UNION " +
-                   "MATCH (target)-[r]->(upstream) " +
-                   "WHERE target.id = $entityId " +
-                   "AND type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
-                   "AND (upstream.id STARTS WITH 'method_' OR upstream.id STARTS WITH 'field_' OR upstream.id STARTS WITH 'class_' OR upstream.id STARTS WITH 'iface_') " +
-                   "RETURN upstream AS node, type(r) as relType";
-        } else {
-            // 暂不支持多层深度
-            throw new UnsupportedOperationException("暂不支持深度 > 1 的查询");
+    private void loadDirectNeighbors(Map<String, List<EntityInfo>> results, boolean upstream) {
+        try (Session session = driver.session()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("ids", new ArrayList<>(results.keySet()));
+            List<org.neo4j.driver.Record> records =
+                session.executeRead(tx -> tx.run(buildNeighborsBatchQuery(upstream), params).list());
+            for (org.neo4j.driver.Record record : records) {
+                EntityInfo entity = recordToEntity(record.get("node"), record.get("relType").asString());
+                if (entity != null) {
+                    entity.setRelationCount(asCount(record.get("relCount")));
+                    results.get(record.get("entityId").asString()).add(entity);
+                }
+            }
+        }
+        for (List<EntityInfo> neighbors : results.values()) {
+            EntityProjection.markDirectNeighbors(neighbors);
         }
     }
 
     /**
-     * 构建下游查询Cypher（深度1）
+     * 多跳遍历（逐跳BFS，多个起点同时进行）
+     * 每一跳只发一次查询，前沿由 {origin, id} 组成；服务端按起点排除已访问节点并对同一节点去重，
+     * 因此每个节点对每个起点只会在其最短距离那一跳出现一次，不会像 [*1..n] 那样按路径数爆炸。
+     * 每跳上限从第二跳开始生效，被截断的前沿节点记下截断前的邻居数（EntityInfo.neighborTotal），供调用方报告
+     *
+     * @param results 起点ID -> 空结果列表，遍历结果追加到其中
+     * @throws org.neo4j.driver.exceptions.Neo4jException 查询失败，由调用方决定如何降级
      */
-    private String buildDownstreamQuery(int depth) {
-        if (depth == 1) {
-            // 下游定义：
-            // 1) 非结构型关系：出边 (source)->(downstream)
-            // 2) 结构型关系（IMPLEMENTS/EXTENDS/OVERRIDES）：入边 (downstream)->(source) 也视为下游
-            return "MATCH (source)-[r]->(downstream) " +
-                   "WHERE source.id = $entityId " +
-                   "AND NOT type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
-                   "AND (downstream.id STARTS WITH 'method_' OR downstream.id STARTS WITH 'field_' OR downstream.id STARTS WITH 'class_' OR downstream.id STARTS WITH 'iface_') " +
-                   "RETURN downstream AS node, type(r) as relType " +
-                   "UNION " +
-                   "MATCH (downstream)-[r]->(source) " +
-                   "WHERE source.id = $entityId " +
-                   "AND type(r) IN ['IMPLEMENTS','EXTENDS','OVERRIDES'] " +
-                   "AND (downstream.id STARTS WITH 'method_' OR downstream.id STARTS WITH 'field_' OR downstream.id STARTS WITH 'class_' OR downstream.id STARTS WITH 'iface_') " +
-                   "RETURN downstream AS node, type(r) as relType";
-        } else {
-            // 暂不支持多层深度
-            throw new UnsupportedOperationException("暂不支持深度 > 1 的查询");
+    private Map<String, List<EntityInfo>> traverse(Map<String, List<EntityInfo>> results, boolean upstream,
+                                                   int depth, int maxFanOutPerHop) {
+        String cypher = buildHopQuery(upstream);
+
+        Map<String, Map<String, List<String>>> paths = new HashMap<>();  // 起点 -> 节点ID -> 关系类型序列
+        Map<String, Map<String, EntityInfo>> reached = new HashMap<>();  // 起点 -> 节点ID -> 结果实体
+        Map<String, List<String>> visited = new HashMap<>();             // 起点 -> 已访问节点ID
+        List<Map<String, Object>> frontier = new ArrayList<>();
+        for (String origin : results.keySet()) {
+            Map<String, List<String>> originPaths = new HashMap<>();
+            originPaths.put(origin, new ArrayList<>());
+            paths.put(origin, originPaths);
+            reached.put(origin, new HashMap<>());
+            visited.put(origin, new ArrayList<>(Collections.singletonList(origin)));
+            frontier.add(frontierEntry(origin, origin));
+        }
+
+        try (Session session = driver.session()) {
+            for (int hop = 1; hop <= depth && !frontier.isEmpty(); hop++) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("frontier", frontier);
+                params.put("visited", visited);
+                // 第一跳不限制，直接邻居数（热点判断）和结果总数才是真实的
+                params.put("fanOut", hop == 1 ? 0 : maxFanOutPerHop);
+
+                List<org.neo4j.driver.Record> records = session.executeRead(tx -> tx.run(cypher, params).list());
+
+                List<Map<String, Object>> nextFrontier = new ArrayList<>();
+                for (org.neo4j.driver.Record record : records) {
+                    String origin = record.get("origin").asString();
+                    markTruncated(reached.get(origin), record.get("parents"), maxFanOutPerHop);
+
+                    String relType = record.get("relType").asString();
+                    EntityInfo entity = recordToEntity(record.get("node"), relType);
+                    if (entity == null || entity.getId() == null) {
+                        continue;
+                    }
+                    Map<String, List<String>> originPaths = paths.get(origin);
+                    List<String> path = new ArrayList<>(originPaths.get(record.get("parentId").asString()));
+                    path.add(relType);
+                    originPaths.put(entity.getId(), path);
+
+                    entity.setRelationCount(asCount(record.get("relCount")));
+                    entity.setDistance(hop);
+                    entity.setPathRelationTypes(path);
+                    results.get(origin).add(entity);
+                    reached.get(origin).put(entity.getId(), entity);
+                    nextFrontier.add(frontierEntry(origin, entity.getId()));
+                }
+
+                for (Map<String, Object> entry : nextFrontier) {
+                    visited.get((String) entry.get("origin")).add((String) entry.get("id"));
+                }
+                frontier = nextFrontier;
+            }
         }
+
+        return results;
     }
 
     /**
-     * 执行查询
+     * 邻居数超出每跳上限的前沿节点记下截断前的邻居数（起点本身不在结果中，不记录）
+     *
+     * @param parents [前沿节点ID, 截断前的邻居数] 列表
+     */
+    private static void markTruncated(Map<String, EntityInfo> reached, Value parents, int maxFanOutPerHop) {
+        if (maxFanOutPerHop <= 0 || parents == null || parents.isNull()) {
+            return;
+        }
+        for (Value parent : parents.values()) {
+            int total = parent.get(1).asInt();
+            EntityInfo frontierEntity = reached.get(parent.get(0).asString());
+            if (total > maxFanOutPerHop && frontierEntity != null) {
+                frontierEntity.setNeighborTotal(total);
+            }
+        }
+    }
+
+    private Map<String, Object> frontierEntry(String origin, String id) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("origin", origin);
+        entry.put("id", id);
+        return entry;
+    }
+
+    /**
+     * 按 (owner, name) 查询方法重载：UNWIND 方法名后走 Method(owner, name) 复合索引，一次查询返回所有方法名的重载
+     */
+    @Override
+    public Map<String, List<EntityInfo>> queryMethodOverloads(String owner, Collection<String> methodNames) {
+        refreshGraphVersion();
+        Map<String, List<EntityInfo>> results = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String methodName : methodNames) {
+            if (results.containsKey(methodName)) {
+                continue;
+            }
+            List<EntityInfo> hit = cache != null ? cache.get(cacheKey("overloads", owner + "#" + methodName, 0, 0)) : null;
+            if (hit == null) {
+                missing.add(methodName);
+                results.put(methodName, new ArrayList<>());
+            } else {
+                results.put(methodName, hit);
+            }
+        }
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        try (Session session = driver.session()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("owner", owner);
+            params.put("names", missing);
+            List<org.neo4j.driver.Record> records = session.executeRead(tx -> tx.run(buildOverloadsQuery(), params).list());
+            for (org.neo4j.driver.Record record : records) {
+                EntityInfo entity = recordToEntity(record.get("n"), null);
+                if (entity != null) {
+                    results.get(record.get("name").asString()).add(entity);
+                }
+            }
+            if (cache != null) {
+                for (String methodName : missing) {
+                    cache.put(cacheKey("overloads", owner + "#" + methodName, 0, 0), results.get(methodName));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("查询方法重载失败: " + owner + " " + missing + " - " + e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * 构建方法重载查询（结果按ID排序）
+     */
+    private String buildOverloadsQuery() {
+        return "UNWIND $names AS name " +
+               "MATCH (n:Method {owner: $owner, name: name}) " +
+               "RETURN name, " + project("n") + " AS n ORDER BY name, n.id";
+    }
+
+    /**
+     * 构建批量实体查询
+     */
+    private String buildEntitiesQuery() {
+        return "UNWIND $ids AS entityId " +
+               "MATCH (n:Entity {id: entityId}) " +
+               "RETURN entityId, " + project("n") + " AS n";
+    }
+
+    /**
+     * 构建批量直接上下游查询，与单实体的深度1查询语义一致（每个起点内按节点+关系类型去重）
+     */
+    private String buildNeighborsBatchQuery(boolean upstream) {
+        return "UNWIND $ids AS entityId " +
+               "MATCH (f:Entity {id: entityId}) " +
+               "CALL { " + buildExpandSubquery(upstream) + "} " +
+               "RETURN entityId, " + project("n") + " AS node, relType, relCount";
+    }
+
+    /**
+     * 构建单跳扩展查询
+     * 参数：$frontier 当前前沿 [{origin, id}]，$visited 起点 -> 已访问节点ID，$fanOut 每个前沿节点的扩展上限（<=0 不限制）
+     * 每个前沿节点的未访问邻居按 关系count降序、节点ID、关系类型 排序后取前 $fanOut 个
+     * 返回：每个起点的每个新节点一行（origin, node, parentId, relType, relCount, parents），
+     *       同一节点被多个前沿节点命中时取 parentId 最小的一条；parents 为命中该节点的 [前沿节点ID, 截断前的邻居数]
+     */
+    private String buildHopQuery(boolean upstream) {
+        return "UNWIND $frontier AS entry " +
+               "MATCH (f:Entity {id: entry.id}) " +
+               "CALL { " +
+               "WITH f, entry " +
+               "CALL { " + buildExpandSubquery(upstream) + "} " +
+               "WITH n, relType, relCount WHERE NOT n.id IN $visited[entry.origin] " +
+               "WITH n, relType, relCount ORDER BY coalesce(relCount, 0) DESC, n.id, relType " +
+               "WITH collect([n, relType, relCount]) AS candidates " +
+               "UNWIND CASE WHEN $fanOut > 0 THEN candidates[..$fanOut] ELSE candidates END AS candidate " +
+               "RETURN candidate[0] AS n, candidate[1] AS relType, candidate[2] AS relCount, size(candidates) AS total " +
+               "} " +
+               "WITH entry.origin AS origin, entry.id AS fid, n, relType, relCount, total ORDER BY fid, relType " +
+               "WITH origin, n, head(collect([fid, relType, relCount])) AS via, collect([fid, total]) AS parents " +
+               "RETURN origin, " + project("n") + " AS node, via[0] AS parentId, via[1] AS relType, via[2] AS relCount, parents " +
+               "ORDER BY origin, node.id";
+    }
+
+    /**
+     * 从节点 f 扩展一跳的子查询，返回 (n, relType, relCount)
+     * 非结构型关系沿边反向（上游）/正向（下游）走，结构型关系方向相反
+     */
+    private String buildExpandSubquery(boolean upstream) {
+        String plainPattern = upstream ? "(f)<-[r]-(n)" : "(f)-[r]->(n)";
+        String structuralPattern = upstream ? "(f)-[r]->(n)" : "(f)<-[r]-(n)";
+        String nodeFilter = "(n.id STARTS WITH 'method_' OR n.id STARTS WITH 'field_' OR n.id STARTS WITH 'class_' OR n.id STARTS WITH 'iface_')";
+
+        return "WITH f MATCH " + plainPattern + " WHERE NOT type(r) IN " + STRUCTURAL_RELATIONS + " AND " + nodeFilter + " " +
+               "RETURN n, type(r) AS relType, r.count AS relCount " +
+               "UNION " +
+               "WITH f MATCH " + structuralPattern + " WHERE type(r) IN " + STRUCTURAL_RELATIONS + " AND " + nodeFilter + " " +
+               "RETURN n, type(r) AS relType, r.count AS relCount ";
+    }
+
+    /**
+     * 执行查询（失败时抛出异常，由缓存包装统一处理，避免把失败的空结果写入缓存）
      */
     private List<EntityInfo> executeQuery(String cypher, String entityId) {
         List<EntityInfo> results = new ArrayList<>();
@@ -124,66 +632,177 @@ public class Neo4jQueryService implements AutoCloseable {
                 while (result.hasNext()) {
                     org.neo4j.driver.Record record = result.next();
 
-                    // 获取节点（upstream或downstream）
-                    Value nodeValue = record.get(0);
-                    if (!nodeValue.isNull() && nodeValue.type().equals(org.neo4j.driver.internal.types.InternalTypeSystem.TYPE_SYSTEM.NODE())) {
-                        org.neo4j.driver.types.Node node = nodeValue.asNode();
-
+                    // 获取节点投影（upstream或downstream）
+                    Value nodeValue = record.get("node");
+                    if (!nodeValue.isNull()) {
                         // 获取关系类型
                         String relType = record.get("relType").asString();
 
-                        EntityInfo entity = recordToEntity(node, relType);
+                        EntityInfo entity = recordToEntity(nodeValue, relType);
                         if (entity != null) {
+                            entity.setRelationCount(asCount(record.get("relCount")));
                             results.add(entity);
                         }
                     }
                 }
                 return null;
             });
-        } catch (Exception e) {
-            System.err.println("查询失败: " + entityId + " - " + e.getMessage());
-            e.printStackTrace();
         }
 
         return results;
     }
 
     /**
-     * 将Neo4j节点转换为EntityInfo
+     * 生成节点的 map projection，如 n {.id, .type, .name, .owner}
      */
-    private EntityInfo recordToEntity(org.neo4j.driver.types.Node node, String relationshipType) {
-        try {
-            EntityInfo entity = new EntityInfo();
+    private String project(String variable) {
+        StringBuilder sb = new StringBuilder(variable).append(" {.id, .type");
+        for (String property : projection) {
+            if (!"id".equals(property) && !"type".equals(property)) {
+                sb.append(", .").append(property);
+            }
+        }
+        return sb.append("}").toString();
+    }
+
+    /**
+     * k条最短调用路径：先用 allShortestPaths 取最短跳数的全部路径，不足k条时再逐个长度查询恰好该跳数的无环路径，
+     * 每个长度最多取回 MAX_PATHS_PER_LENGTH 条，在本地按节点ID序列、关系类型序列排序后取剩余条数，找满k条即停止。
+     * 时间预算作为各事务的剩余超时；后面的长度查询失败或超时时返回已找到的路径
+     * （某个长度的路径超过上限时，取回的是其中任意一部分，排序只在这部分内进行）
+     */
+    @Override
+    public List<CallPath> findCallPaths(String fromId, String toId, List<String> relationTypes,
+                                        int maxHops, int k, long timeBudgetMs) {
+        List<String> types = EntityProjection.normalizeRelationTypes(relationTypes);
+        List<CallPath> paths = new ArrayList<>();
+        if (fromId.equals(toId) || maxHops < 1 || k < 1) {
+            return paths;
+        }
+        long deadline = timeBudgetMs > 0 ? System.currentTimeMillis() + timeBudgetMs : Long.MAX_VALUE;
 
-            // 获取基本属性
-            String id = null;
-            if (node.containsKey("id")) {
-                id = node.get("id").asString();
-                entity.setId(id);
+        Map<String, Object> params = new HashMap<>();
+        params.put("fromId", fromId);
+        params.put("toId", toId);
+        params.put("limit", MAX_PATHS_PER_LENGTH);
+
+        try (Session session = driver.session()) {
+            // 1. 最短跳数的路径：allShortestPaths 只展开到最短跳数，不会按路径数爆炸
+            String shortestQuery = buildShortestPathsQuery(types, maxHops);
+            List<CallPath> shortest = toCallPaths(session.executeRead(
+                tx -> tx.run(shortestQuery, params).list(), remainingTime(deadline)));
+            if (shortest.isEmpty()) {
+                return paths;
             }
+            addSorted(paths, shortest, k);
 
-            // 获取类型：优先从ID前缀判断，其次从Label
-            String entityType = inferTypeFromId(id);
-            if (entityType == null && node.labels().iterator().hasNext()) {
-                entityType = node.labels().iterator().next();
+            // 2. 不足k条时逐个长度查询更长的路径，服务端不排序（LIMIT 可以提前结束），取回后在本地排序
+            for (int length = shortest.get(0).getLength() + 1; length <= maxHops && paths.size() < k; length++) {
+                String query = buildPathQuery(types, length);
+                addSorted(paths, toCallPaths(session.executeRead(
+                    tx -> tx.run(query, params).list(), remainingTime(deadline))), k);
             }
-            entity.setEntity_type(entityType);
+        } catch (Exception e) {
+            System.err.println("[路径查询] 查询失败或超出时间预算，返回已找到的 " + paths.size() + " 条路径: "
+                + fromId + " -> " + toId + " - " + e.getMessage());
+        }
+        return paths;
+    }
 
-            if (node.containsKey("name")) {
-                entity.setName(node.get("name").asString());
+    /**
+     * 同一跳数的路径按节点ID序列、关系类型序列排序后追加，总数不超过k
+     */
+    private static void addSorted(List<CallPath> paths, List<CallPath> sameLength, int k) {
+        sameLength.sort(PATH_ORDER);
+        for (CallPath path : sameLength) {
+            if (paths.size() >= k) {
+                return;
             }
+            paths.add(path);
+        }
+    }
 
-            if (node.containsKey("owner")) {
-                entity.setOwner(node.get("owner").asString());
+    /**
+     * 路径查询结果转换为 CallPath，含无法转换节点的路径整条丢弃（保证 nodes 与 relationTypes 对应）
+     */
+    private List<CallPath> toCallPaths(List<org.neo4j.driver.Record> records) {
+        List<CallPath> paths = new ArrayList<>();
+        for (org.neo4j.driver.Record record : records) {
+            List<EntityInfo> nodes = new ArrayList<>();
+            for (Value node : record.get("nodes").values()) {
+                EntityInfo entity = recordToEntity(node, null);
+                if (entity == null) {
+                    nodes = null;
+                    break;
+                }
+                nodes.add(entity);
             }
+            if (nodes != null) {
+                paths.add(new CallPath(nodes, record.get("relTypes").asList(Value::asString)));
+            }
+        }
+        return paths;
+    }
 
-            if (node.containsKey("filePath")) {
-                entity.setFilePath(node.get("filePath").asString());
+    private static int compareIds(List<String> a, List<String> b) {
+        for (int i = 0; i < a.size() && i < b.size(); i++) {
+            int cmp = a.get(i).compareTo(b.get(i));
+            if (cmp != 0) {
+                return cmp;
             }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
 
-            entity.setRelationshipType(relationshipType);
+    private static List<String> nodeIds(CallPath path) {
+        List<String> ids = new ArrayList<>();
+        for (EntityInfo node : path.getNodes()) {
+            ids.add(node.getId());
+        }
+        return ids;
+    }
 
-            return entity;
+    /**
+     * 截止时间前剩余的事务超时（无截止时间时不设置）
+     */
+    private static TransactionConfig remainingTime(long deadline) {
+        if (deadline == Long.MAX_VALUE) {
+            return TransactionConfig.empty();
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new IllegalStateException("超出时间预算");
+        }
+        return TransactionConfig.builder().withTimeout(Duration.ofMillis(remaining)).build();
+    }
+
+    /**
+     * 构建最短跳数的全部路径查询（关系类型已校验，最大跳数为整数，可直接拼入模式）
+     */
+    private String buildShortestPathsQuery(List<String> relationTypes, int maxHops) {
+        return "MATCH (a:Entity {id: $fromId}), (b:Entity {id: $toId}) " +
+               "MATCH p = allShortestPaths((a)-[:" + String.join("|", relationTypes) + "*.." + maxHops + "]->(b)) " +
+               "WITH p LIMIT $limit " +
+               "RETURN [n IN nodes(p) | " + project("n") + "] AS nodes, [r IN relationships(p) | type(r)] AS relTypes";
+    }
+
+    /**
+     * 构建恰好 length 跳的无环路径查询（不排序，由调用方在本地排序）
+     */
+    private String buildPathQuery(List<String> relationTypes, int length) {
+        return "MATCH (a:Entity {id: $fromId}), (b:Entity {id: $toId}) " +
+               "MATCH p = (a)-[:" + String.join("|", relationTypes) + "*" + length + ".." + length + "]->(b) " +
+               "WHERE all(i IN range(0, " + (length - 1) + ") WHERE NOT nodes(p)[i] IN nodes(p)[i + 1..]) " +
+               "WITH p LIMIT $limit " +
+               "RETURN [n IN nodes(p) | " + project("n") + "] AS nodes, [r IN relationships(p) | type(r)] AS relTypes";
+    }
+
+    /**
+     * 将节点投影（map）转换为EntityInfo
+     */
+    private EntityInfo recordToEntity(Value nodeValue, String relationshipType) {
+        try {
+            return EntityProjection.toEntity(nodeValue.asMap(), relationshipType);
         } catch (Exception e) {
             System.err.println("转换实体失败: " + e.getMessage());
             return null;
@@ -191,29 +810,81 @@ public class Neo4jQueryService implements AutoCloseable {
     }
 
     /**
-     * 从ID推断实体类型
-     * ID格式: method_ClassName_methodName(...) 或 field_ClassName_fieldName 或 class_ClassName
+     * 关系的count属性（旧图谱中可能没有）
      */
-    private String inferTypeFromId(String id) {
-        if (id == null) {
-            return null;
+    private Integer asCount(Value value) {
+        return value == null || value.isNull() ? null : value.asInt();
+    }
+
+    /**
+     * 校验查询计划：对所有查询形态执行EXPLAIN，计划中出现AllNodesScan即视为失败
+     * 通常是图谱导入时缺少约束/索引，或查询未按标签锚定导致
+     *
+     * @throws IllegalStateException 存在全图扫描的查询
+     */
+    public void verifyQueryPlans() {
+        Map<String, String> queryShapes = new LinkedHashMap<>();
+        queryShapes.put("entity", buildEntityQuery());
+        queryShapes.put("upstream", buildUpstreamQuery());
+        queryShapes.put("downstream", buildDownstreamQuery());
+        queryShapes.put("entities", buildEntitiesQuery());
+        queryShapes.put("upstream-batch", buildNeighborsBatchQuery(true));
+        queryShapes.put("downstream-batch", buildNeighborsBatchQuery(false));
+        queryShapes.put("upstream-hop", buildHopQuery(true));
+        queryShapes.put("downstream-hop", buildHopQuery(false));
+        queryShapes.put("call-path-shortest", buildShortestPathsQuery(Collections.singletonList("CALLS"), 6));
+        queryShapes.put("call-path", buildPathQuery(Collections.singletonList("CALLS"), 3));
+        queryShapes.put("method-overloads", buildOverloadsQuery());
+
+        List<String> failures = new ArrayList<>();
+        try (Session session = driver.session()) {
+            for (Map.Entry<String, String> shape : queryShapes.entrySet()) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("entityId", "method_Plan_check()");
+                params.put("ids", Collections.singletonList("method_Plan_check()"));
+                params.put("frontier", Collections.singletonList(frontierEntry("method_Plan_check()", "method_Plan_check()")));
+                params.put("visited", Collections.singletonMap("method_Plan_check()", Collections.singletonList("method_Plan_check()")));
+                params.put("fanOut", 1);
+                params.put("fromId", "method_Plan_check()");
+                params.put("toId", "method_Plan_target()");
+                params.put("limit", 1);
+                params.put("owner", "Plan");
+                params.put("names", Collections.singletonList("check"));
+                Plan plan = session.run("EXPLAIN " + shape.getValue(), params).consume().plan();
+
+                List<String> operators = new ArrayList<>();
+                collectOperators(plan, operators);
+                boolean fullScan = operators.stream().anyMatch(op -> op.startsWith("AllNodesScan"));
+                System.out.println("[查询计划] " + shape.getKey() + ": " + (fullScan ? "❌ " : "✓ ") + operators);
+                if (fullScan) {
+                    failures.add(shape.getKey());
+                }
+            }
         }
 
-        if (id.startsWith("method_")) {
-            return "Method";
-        } else if (id.startsWith("field_")) {
-            return "Field";
-        } else if (id.startsWith("class_") || id.startsWith("iface_")) {
-            return "ClassOrInterface";
-        } else if (id.startsWith("param_")) {
-            return "Parameter";
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("查询计划包含AllNodesScan: " + failures + "，请确认已执行导出脚本中的约束/索引语句");
         }
+    }
 
-        return null;
+    /**
+     * 递归收集计划树中的所有算子
+     */
+    private void collectOperators(Plan plan, List<String> operators) {
+        if (plan == null) {
+            return;
+        }
+        operators.add(plan.operatorType());
+        for (Plan child : plan.children()) {
+            collectOperators(child, operators);
+        }
     }
 
     @Override
     public void close() {
+        if (cache != null) {
+            cache.saveToDisk();
+        }
         if (driver != null) {
             driver.close();
         }
@@ -222,6 +893,7 @@ public class Neo4jQueryService implements AutoCloseable {
     /**
      * 测试连接
      */
+    @Override
     public boolean testConnection() {
         try (Session session = driver.session()) {
             session.executeRead(tx -> {
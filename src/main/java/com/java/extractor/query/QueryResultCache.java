@@ -0,0 +1,194 @@
+package com.java.extractor.query;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.java.extractor.model.EntityInfo;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 查询结果LRU缓存
+ * 按 (方向, 实体ID, 深度, 扇出上限, 投影) 缓存实体/上下游查询结果，容量有上限，超出时淘汰最久未使用的条目
+ *
+ * 缓存绑定图谱版本（导出脚本写入的 GraphVersion 节点），版本变化时整体失效；
+ * 可选的磁盘层在关闭时保存、版本一致时加载，使缓存在多次CLI调用之间复用
+ * 存取时都做深拷贝，调用方修改结果（如填充源码）不会污染缓存
+ */
+public class QueryResultCache {
+
+    private final int maxEntries;
+    private final String diskPath;
+    private final LinkedHashMap<String, List<EntityInfo>> entries;
+
+    private String graphVersion;
+    private boolean diskLoaded;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param diskPath   磁盘层文件路径，为null时只使用内存
+     */
+    public QueryResultCache(int maxEntries, String diskPath) {
+        this.maxEntries = maxEntries;
+        this.diskPath = diskPath;
+        this.entries = new LinkedHashMap<String, List<EntityInfo>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<EntityInfo>> eldest) {
+                if (size() > QueryResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 生成缓存键
+     */
+    public static String key(String direction, String entityId, int depth, int maxFanOutPerHop, List<String> projection) {
+        return direction + "|" + depth + "|" + maxFanOutPerHop + "|" + String.join(",", projection) + "|" + entityId;
+    }
+
+    /**
+     * 绑定当前图谱版本：版本变化时清空缓存；首次得到版本时尝试加载磁盘层
+     */
+    public synchronized void bindVersion(String version) {
+        if (!Objects.equals(version, graphVersion)) {
+            if (!entries.isEmpty()) {
+                System.out.println("[查询缓存] 图谱版本变化 " + graphVersion + " -> " + version + "，清空 " + entries.size() + " 条缓存");
+            }
+            entries.clear();
+            graphVersion = version;
+        }
+        if (!diskLoaded && diskPath != null && version != null) {
+            diskLoaded = true;
+            loadFromDisk();
+        }
+    }
+
+    /**
+     * 读取缓存，未命中返回null
+     */
+    public synchronized List<EntityInfo> get(String key) {
+        List<EntityInfo> cached = entries.get(key);
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copyOf(cached);
+    }
+
+    public synchronized void put(String key, List<EntityInfo> value) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        entries.put(key, copyOf(value));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static List<EntityInfo> copyOf(List<EntityInfo> source) {
+        List<EntityInfo> copy = new ArrayList<>(source.size());
+        for (EntityInfo entity : source) {
+            copy.add(entity.copy());
+        }
+        return copy;
+    }
+
+    // ==================== 磁盘层 ====================
+
+    /**
+     * 磁盘层文件内容
+     */
+    private static class DiskSnapshot {
+        String graphVersion;
+        LinkedHashMap<String, List<EntityInfo>> entries;
+    }
+
+    private void loadFromDisk() {
+        File file = new File(diskPath);
+        if (!file.exists()) {
+            return;
+        }
+        try (Reader reader = new FileReader(file)) {
+            DiskSnapshot snapshot = new Gson().fromJson(reader, DiskSnapshot.class);
+            if (snapshot == null || snapshot.entries == null || !Objects.equals(snapshot.graphVersion, graphVersion)) {
+                System.out.println("[查询缓存] 磁盘缓存版本不一致，忽略: " + diskPath);
+                return;
+            }
+            // 按文件中的LRU顺序放回，最近使用的条目在最后
+            for (Map.Entry<String, List<EntityInfo>> entry : snapshot.entries.entrySet()) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+            System.out.println("[查询缓存] 从磁盘加载 " + entries.size() + " 条缓存: " + diskPath);
+        } catch (Exception e) {
+            System.err.println("[查询缓存] 读取磁盘缓存失败: " + diskPath + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存到磁盘层（未配置磁盘层或图谱没有版本标记时跳过）
+     */
+    public synchronized void saveToDisk() {
+        if (diskPath == null || graphVersion == null) {
+            return;
+        }
+        DiskSnapshot snapshot = new DiskSnapshot();
+        snapshot.graphVersion = graphVersion;
+        snapshot.entries = new LinkedHashMap<>(entries);
+
+        File file = new File(diskPath);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new FileWriter(file)) {
+            new GsonBuilder().create().toJson(snapshot, writer);
+            System.out.println("[查询缓存] 已保存 " + entries.size() + " 条缓存到: " + diskPath);
+        } catch (IOException e) {
+            System.err.println("[查询缓存] 保存磁盘缓存失败: " + diskPath + " - " + e.getMessage());
+        }
+    }
+
+    // ==================== 统计 ====================
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized String getGraphVersion() { return graphVersion; }
+
+    /**
+     * 命中率（无访问时为0）
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized void printStats() {
+        System.out.println(String.format("[查询缓存] 命中: %d, 未命中: %d, 命中率: %.1f%%, 淘汰: %d, 当前条目: %d/%d, 图谱版本: %s",
+            hits, misses, getHitRate() * 100, evictions, entries.size(), maxEntries, graphVersion));
+    }
+}
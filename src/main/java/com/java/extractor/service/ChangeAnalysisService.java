@@ -1,11 +1,19 @@
 package com.java.extractor.service;
 
 import com.java.extractor.model.*;
-import com.java.extractor.query.Neo4jQueryService;
+import com.java.extractor.query.GraphQueryService;
+import com.java.extractor.query.MethodOverloads;
 import com.java.extractor.source.SourceExtractor;
+import com.java.extractor.util.ConcurrentUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 变更分析服务
@@ -13,117 +21,293 @@ import java.util.List;
  */
 public class ChangeAnalysisService {
 
-    private final Neo4jQueryService neo4jService;
+    // 并发模式下每个分片的最大变更数：分片越小，查询与源码提取的重叠越充分
+    private static final int MAX_CHUNK_SIZE = 50;
+
+    private final GraphQueryService graphService;
     private final SourceExtractor sourceExtractor;
     private final QueryConfig queryConfig;
 
-    public ChangeAnalysisService(Neo4jQueryService neo4jService,
+    public ChangeAnalysisService(GraphQueryService graphService,
                                   SourceExtractor sourceExtractor,
                                   QueryConfig queryConfig) {
-        this.neo4jService = neo4jService;
+        this.graphService = graphService;
         this.sourceExtractor = sourceExtractor;
         this.queryConfig = queryConfig;
+        graphService.setProjection(queryConfig.getProjection());
+        FanOutGuard.checkHubStrategy(queryConfig.getHubStrategy());
+        ContextBudget.checkUnit(queryConfig.getBudgetUnit());
     }
 
     /**
      * 分析单个变更
      */
     public ChangeAnalysis analyzeChange(ChangeInfo change) {
-        System.out.println("分析变更: " + change);
+        return analyzeChanges(Collections.singletonList(change)).get(0);
+    }
+
+    /**
+     * 批量分析变更
+     * queryConfig.concurrency <= 1 时整批处理；否则把变更切成分片，在有界线程池中并发处理，
+     * 一个分片在提取源码时其他分片的图查询仍在进行，结果按输入顺序合并。
+     * 并发时不输出逐个变更的明细日志，改为每完成约10%的分片输出一次汇总进度
+     */
+    public List<ChangeAnalysis> analyzeChanges(List<ChangeInfo> changes) {
+        int concurrency = queryConfig.getConcurrency();
+        if (concurrency <= 1 || changes.size() <= 1) {
+            return analyzeChunk(changes);
+        }
+
+        int chunkSize = Math.min(MAX_CHUNK_SIZE, (changes.size() + concurrency - 1) / concurrency);
+        List<List<ChangeInfo>> chunks = ConcurrentUtil.partition(changes, chunkSize);
+        System.out.println("[并发分析] 变更数: " + changes.size() + ", 分片数: " + chunks.size() + ", 并发数: " + concurrency);
+
+        AtomicInteger finishedChunks = new AtomicInteger();
+        AtomicInteger finishedChanges = new AtomicInteger();
+        int progressStep = Math.max(1, chunks.size() / 10);
+        long startTime = System.currentTimeMillis();
+        List<ChangeAnalysis> analyses = new ArrayList<>(changes.size());
+        for (List<ChangeAnalysis> chunkResult : ConcurrentUtil.mapInOrder(chunks, concurrency, "change-analysis", chunk -> {
+            try {
+                return analyzeChunk(chunk);
+            } finally {
+                int doneChanges = finishedChanges.addAndGet(chunk.size());
+                int done = finishedChunks.incrementAndGet();
+                if (done % progressStep == 0 || done == chunks.size()) {
+                    System.out.println("[并发分析] 进度: " + doneChanges + "/" + changes.size()
+                        + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+                }
+            }
+        })) {
+            analyses.addAll(chunkResult);
+        }
+        return analyses;
+    }
+
+    /**
+     * 分析一批变更
+     * 先用批量接口一次性查询所有变更实体及其上下游（每个方向一次UNWIND查询），再逐个组装结果
+     */
+    private List<ChangeAnalysis> analyzeChunk(List<ChangeInfo> changes) {
+        // 1. 获取实体ID
+        List<String> entityIds = new ArrayList<>();
+        for (ChangeInfo change : changes) {
+            String entityId = change.toEntityId();
+            if (entityId != null) {
+                entityIds.add(entityId);
+            }
+        }
+
+        // 2. 批量查询变更实体本身（未命中的方法按重载解析），再按图谱中的实际ID查询上下游
+        Map<String, EntityInfo> changeEntities = queryChangeEntities(changes, entityIds);
+        List<String> graphIds = new ArrayList<>();
+        for (String entityId : entityIds) {
+            EntityInfo entity = changeEntities.get(entityId);
+            graphIds.add(entity != null ? entity.getId() : entityId);
+        }
+        Map<String, List<EntityInfo>> upstreams = queryConfig.isIncludeUpstream()
+            ? graphService.queryUpstreamBatch(graphIds, queryConfig.getDepth(), queryConfig.getMaxFanOutPerHop())
+            : Collections.emptyMap();
+        Map<String, List<EntityInfo>> downstreams = queryConfig.isIncludeDownstream()
+            ? graphService.queryDownstreamBatch(graphIds, queryConfig.getDepth(), queryConfig.getMaxFanOutPerHop())
+            : Collections.emptyMap();
+
+        List<ChangeAnalysis> analyses = new ArrayList<>();
+        for (ChangeInfo change : changes) {
+            analyses.add(assembleAnalysis(change, changeEntities, upstreams, downstreams));
+        }
+
+        return analyses;
+    }
+
+    /**
+     * 批量查询变更实体
+     * 方法ID包含参数类型，签名为空或与图谱不一致时精确ID查不到：按 (类名, 方法名) 一次查出该类这些方法的所有重载，
+     * 再以变更中的签名作为提示选出最匹配的重载。
+     * 只有签名不完整（为空或含 "?"）时才按提示挑选；签名完整时只接受参数类型一致的重载
+     * （如新增的 f(String,int) 不能解析成已有的 f()），都不一致时按未在图谱中找到处理
+     *
+     * @return 变更的实体ID -> 图谱中的实体（解析到的重载ID可能与变更的实体ID不同）
+     */
+    private Map<String, EntityInfo> queryChangeEntities(List<ChangeInfo> changes, List<String> entityIds) {
+        Map<String, EntityInfo> changeEntities = new LinkedHashMap<>(graphService.queryEntities(entityIds));
+
+        Map<String, Set<String>> missingMethods = new LinkedHashMap<>();  // 类名 -> 方法名
+        for (ChangeInfo change : changes) {
+            String entityId = change.toEntityId();
+            if (entityId != null && entityId.startsWith("method_") && !changeEntities.containsKey(entityId)
+                    && change.getClassName() != null && change.getMethodName() != null) {
+                missingMethods.computeIfAbsent(change.getClassName(), owner -> new LinkedHashSet<>()).add(change.getMethodName());
+            }
+        }
+        if (missingMethods.isEmpty()) {
+            return changeEntities;
+        }
+
+        Map<String, Map<String, List<EntityInfo>>> overloadsByOwner = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : missingMethods.entrySet()) {
+            overloadsByOwner.put(entry.getKey(), graphService.queryMethodOverloads(entry.getKey(), entry.getValue()));
+        }
+        for (ChangeInfo change : changes) {
+            String entityId = change.toEntityId();
+            Map<String, List<EntityInfo>> overloads = overloadsByOwner.get(change.getClassName());
+            if (entityId == null || changeEntities.containsKey(entityId) || overloads == null) {
+                continue;
+            }
+            List<EntityInfo> candidates = overloads.get(change.getMethodName());
+            String signature = change.getMethodSignature();
+            if (candidates != null && !MethodOverloads.isPartialSignature(signature)) {
+                List<EntityInfo> matching = new ArrayList<>();
+                for (EntityInfo candidate : candidates) {
+                    if (MethodOverloads.matchesSignature(candidate.getId(), signature)) {
+                        matching.add(candidate);
+                    }
+                }
+                candidates = matching;
+            }
+            EntityInfo resolved = MethodOverloads.select(candidates, signature, null);
+            if (resolved != null) {
+                log("[重载解析] " + entityId + " -> " + resolved.getId());
+                changeEntities.put(entityId, resolved);
+            }
+        }
+        return changeEntities;
+    }
+
+    /**
+     * 用批量查询的结果组装单个变更的分析
+     */
+    private ChangeAnalysis assembleAnalysis(ChangeInfo change,
+                                            Map<String, EntityInfo> changeEntities,
+                                            Map<String, List<EntityInfo>> upstreams,
+                                            Map<String, List<EntityInfo>> downstreams) {
+        log("分析变更: " + change);
 
         ChangeAnalysis analysis = new ChangeAnalysis();
         analysis.setChange(change);
 
-        // 1. 获取实体ID
         String entityId = change.toEntityId();
         if (entityId == null) {
             System.err.println("无法生成实体ID: " + change);
             return analysis;
         }
 
-        // 2. 查询变更实体本身
-        EntityInfo changeEntity = neo4jService.queryEntity(entityId);
+        // 变更实体本身；上下游按图谱中的实际ID（可能是解析出的重载）查找
+        EntityInfo changeEntity = changeEntities.get(entityId);
+        String graphId = entityId;
         if (changeEntity == null) {
-            System.err.println("未在Neo4j中找到实体: " + entityId);
+            System.err.println("未在图谱中找到实体: " + entityId);
             // 即使未找到，也可以尝试直接从源码提取
             changeEntity = createFallbackEntity(change);
+        } else {
+            graphId = changeEntity.getId();
         }
 
-        // 3. 提取变更实体的源码
+        // 设置了预算时，变更实体本身的源码总是输出并先计入预算，上下游按优先级装入剩余预算
+        ContextBudget budget = queryConfig.isIncludeSourceCode()
+            ? ContextBudget.create(queryConfig.getContextBudget(), queryConfig.getBudgetUnit())
+            : null;
+
+        // 提取变更实体的源码
         if (queryConfig.isIncludeSourceCode() && changeEntity != null) {
             String sourceCode = sourceExtractor.extractSourceCode(changeEntity);
             changeEntity.setSourceCode(sourceCode);
+            if (budget != null) {
+                budget.charge(sourceCode);
+            }
         }
 
         analysis.setChangeEntity(changeEntity);
 
-        // 4. 查询上游
+        // 上游（先经扇出保护截断，再提取源码）
+        // 同一方法在多个diff块中修改时会有多个变更共用一份查询结果，各自复制后再截断、填充源码，互不覆盖
+        List<EntityInfo> neighbors = new ArrayList<>();
         if (queryConfig.isIncludeUpstream()) {
-            List<EntityInfo> upstream = neo4jService.queryUpstream(entityId, queryConfig.getDepth());
-
-            // 提取上游源码
-            if (queryConfig.isIncludeSourceCode()) {
-                for (EntityInfo entity : upstream) {
-                    // 如果没有filePath，尝试查询获取
-                    if (entity.getFilePath() == null || entity.getFilePath().isEmpty()) {
-                        EntityInfo fullEntity = neo4jService.queryEntity(entity.getId());
-                        if (fullEntity != null && fullEntity.getFilePath() != null) {
-                            entity.setFilePath(fullEntity.getFilePath());
-                        }
-                    }
-
-                    String sourceCode = sourceExtractor.extractSourceCode(entity);
-                    entity.setSourceCode(sourceCode);
-                }
-            }
-
+            List<EntityInfo> all = copyOf(upstreams.getOrDefault(graphId, Collections.emptyList()));
+            List<EntityInfo> upstream = FanOutGuard.limit(all, queryConfig, "上游 " + graphId, this::log);
+            int total = FanOutGuard.total(all, queryConfig.getMaxFanOutPerHop());
+            neighbors.addAll(upstream);
             analysis.setUpstream(upstream);
-            System.out.println("  上游数量: " + upstream.size());
+            analysis.setUpstreamTotal(total);
+            analysis.setUpstreamTruncated(upstream.size() < total);
+            log("  上游数量: " + upstream.size() + (upstream.size() < total ? " / " + total : ""));
         }
 
-        // 5. 查询下游
+        // 下游
         if (queryConfig.isIncludeDownstream()) {
-            List<EntityInfo> downstream = neo4jService.queryDownstream(entityId, queryConfig.getDepth());
-
-            // 提取下游源码
-            if (queryConfig.isIncludeSourceCode()) {
-                for (EntityInfo entity : downstream) {
-                    // 如果没有filePath，尝试查询获取
-                    if (entity.getFilePath() == null || entity.getFilePath().isEmpty()) {
-                        EntityInfo fullEntity = neo4jService.queryEntity(entity.getId());
-                        if (fullEntity != null && fullEntity.getFilePath() != null) {
-                            entity.setFilePath(fullEntity.getFilePath());
-                        }
-                    }
+            List<EntityInfo> all = copyOf(downstreams.getOrDefault(graphId, Collections.emptyList()));
+            List<EntityInfo> downstream = FanOutGuard.limit(all, queryConfig, "下游 " + graphId, this::log);
+            int total = FanOutGuard.total(all, queryConfig.getMaxFanOutPerHop());
+            neighbors.addAll(downstream);
+            analysis.setDownstream(downstream);
+            analysis.setDownstreamTotal(total);
+            analysis.setDownstreamTruncated(downstream.size() < total);
+            log("  下游数量: " + downstream.size() + (downstream.size() < total ? " / " + total : ""));
+        }
 
-                    String sourceCode = sourceExtractor.extractSourceCode(entity);
-                    entity.setSourceCode(sourceCode);
-                }
-            }
+        if (budget != null) {
+            fillSourceCode(neighbors, budget);
+            analysis.setBudgetUsed(budget.getUsed());
+            analysis.setBudgetOmitted(budget.getOmitted());
+            log("  " + budget.summary());
+        } else {
+            fillSourceCode(neighbors);
+        }
 
-            analysis.setDownstream(downstream);
-            System.out.println("  下游数量: " + downstream.size());
+        // 完整传递上游（影响闭包索引，只返回ID）
+        if (queryConfig.isIncludeTransitiveUpstream()) {
+            List<String> transitiveUpstream = graphService.queryTransitiveUpstream(graphId);
+            analysis.setTransitiveUpstream(transitiveUpstream);
+            log("  传递上游数量: " + transitiveUpstream.size());
         }
 
         return analysis;
     }
 
+    private static List<EntityInfo> copyOf(List<EntityInfo> entities) {
+        List<EntityInfo> copies = new ArrayList<>(entities.size());
+        for (EntityInfo entity : entities) {
+            copies.add(entity.copy());
+        }
+        return copies;
+    }
+
     /**
-     * 批量分析变更
+     * 逐个变更的明细日志，并发分析时不输出（由汇总进度代替）
      */
-    public List<ChangeAnalysis> analyzeChanges(List<ChangeInfo> changes) {
-        List<ChangeAnalysis> analyses = new ArrayList<>();
+    private void log(String message) {
+        if (queryConfig.getConcurrency() <= 1) {
+            System.out.println(message);
+        }
+    }
 
-        for (ChangeInfo change : changes) {
-            ChangeAnalysis analysis = analyzeChange(change);
-            analyses.add(analysis);
+    /**
+     * 提取上下游实体的源码
+     */
+    private void fillSourceCode(List<EntityInfo> entities) {
+        if (!queryConfig.isIncludeSourceCode()) {
+            return;
+        }
+        // 上下游查询已通过投影返回filePath等属性，不再逐个回查节点
+        for (EntityInfo entity : entities) {
+            String sourceCode = sourceExtractor.extractSourceCode(entity);
+            entity.setSourceCode(sourceCode);
         }
+    }
 
-        return analyses;
+    /**
+     * 在预算内提取上下游实体的源码，上游、下游共用一个预算，超出预算的实体源码为null
+     */
+    private void fillSourceCode(List<EntityInfo> entities, ContextBudget budget) {
+        Map<EntityInfo, String> selected = budget.assemble(entities, sourceExtractor,
+            sourceExtractor::extractSourceCode, sourceExtractor::extractClassSkeleton);
+        for (EntityInfo entity : entities) {
+            entity.setSourceCode(selected.get(entity));
+        }
     }
 
     /**
-     * 创建降级实体（当Neo4j中找不到时）
+     * 创建降级实体（当图谱中找不到时）
      */
     private EntityInfo createFallbackEntity(ChangeInfo change) {
         EntityInfo entity = new EntityInfo();
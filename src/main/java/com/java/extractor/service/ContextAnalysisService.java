@@ -1,16 +1,30 @@
 package com.java.extractor.service;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.java.ere.util.SourceOffsets;
+import com.java.ere.util.SourceSnapshot;
 import com.java.extractor.model.ContextOutput;
 import com.java.extractor.model.EntityInfo;
+import com.java.extractor.model.QueryConfig;
 import com.java.extractor.parser.EntityIdGenerator;
-import com.java.extractor.query.Neo4jQueryService;
+import com.java.extractor.query.GraphQueryService;
+import com.java.extractor.query.MethodOverloads;
 import com.java.extractor.source.SourceExtractor;
+import com.java.extractor.util.ConcurrentUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * 上下文分析服务
@@ -19,15 +33,91 @@ import java.util.List;
 public class ContextAnalysisService {
     
     private final GitChangeExtractor gitChangeExtractor;
-    private final Neo4jQueryService neo4jQueryService;
+    private final GraphQueryService graphQueryService;
     private final SourceExtractor sourceExtractor;
-    private final Gson gson;
+    private int concurrency = 1;
+    private boolean snippetTable = false;
+    private int contextBudget = 0;
+    private String budgetUnit = ContextBudget.UNIT_TOKENS;
+    // 上下游扇出保护（只使用 maxNeighbors/hubDegreeThreshold/hubStrategy/hubSampleSize）
+    private final QueryConfig fanOutConfig = new QueryConfig();
     
-    public ContextAnalysisService(Neo4jQueryService neo4jQueryService, String projectRoot) {
+    // 片段表模式下整次运行共用的片段（片段表在输出最后写出）
+    private final SnippetStore sharedSnippets = new SnippetStore();
+    
+    /**
+     * 已提取的源码片段，同一实体只提取一次
+     * 片段表模式下整次运行共用一个；否则每个类一个，类分析完即丢弃，源码不会在整次运行中累积
+     */
+    private static final class SnippetStore {
+        // 片段key（实体ID#内容哈希）-> 源码
+        final Map<String, String> sources = new ConcurrentHashMap<>();
+        // 实体ID#图谱内容哈希 -> 片段key
+        final Map<String, String> entityKeys = new ConcurrentHashMap<>();
+    }
+    
+    public ContextAnalysisService(GraphQueryService graphQueryService, String projectRoot) {
         this.gitChangeExtractor = new GitChangeExtractor();
-        this.neo4jQueryService = neo4jQueryService;
+        this.graphQueryService = graphQueryService;
         this.sourceExtractor = new SourceExtractor(projectRoot);
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    }
+    
+    /**
+     * 设置批量分析时同时分析的类数量（<=1 顺序执行）
+     * 并发分析时不再逐类输出明细日志，改为汇总进度，避免多个线程争用标准输出
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    
+    public int getConcurrency() {
+        return concurrency;
+    }
+    
+    /**
+     * 设置是否以片段表输出：源码集中放在顶层 snippets 中，各上下文只引用片段key
+     * 热点被调方、公共基类在结果中只出现一次
+     */
+    public void setSnippetTable(boolean snippetTable) {
+        this.snippetTable = snippetTable;
+    }
+    
+    public boolean isSnippetTable() {
+        return snippetTable;
+    }
+    
+    /**
+     * 设置每个Field/Method/Class上下文的源码预算（上下游共用，<=0 不限制）
+     * 上下游按距离、关系类型、调用次数排序后依次装入，放不下的类改用类骨架，其余不输出
+     *
+     * @param unit tokens（按每4个UTF-8字节1个估算）或 bytes
+     * @throws IllegalArgumentException 单位不合法
+     */
+    public void setContextBudget(int contextBudget, String unit) {
+        ContextBudget.checkUnit(unit);
+        this.contextBudget = contextBudget;
+        this.budgetUnit = unit;
+    }
+    
+    /**
+     * 设置上下游扇出保护，含义与 analyze-changes 相同：每个上下文每个方向最多保留 maxNeighbors 个（<=0 不限制），
+     * 直接邻居数达到 hubDegreeThreshold（<=0 关闭）的热点实体按 hubStrategy 处理（sample 只保留前几个，skip 不返回）
+     * 都未配置时上下游保持查询返回的顺序
+     *
+     * @throws IllegalArgumentException hubStrategy 不是 sample 或 skip
+     */
+    public void setFanOutGuard(int maxNeighbors, int hubDegreeThreshold, String hubStrategy) {
+        FanOutGuard.checkHubStrategy(hubStrategy);
+        fanOutConfig.setMaxNeighbors(maxNeighbors);
+        fanOutConfig.setHubDegreeThreshold(hubDegreeThreshold);
+        fanOutConfig.setHubStrategy(hubStrategy);
+    }
+    
+    /**
+     * 源码提取服务（切片与解析缓存统计）
+     */
+    public SourceExtractor getSourceExtractor() {
+        return sourceExtractor;
     }
     
     /**
@@ -38,10 +128,16 @@ public class ContextAnalysisService {
      * @return 上下文分析结果
      */
     public ContextOutput analyzeClassContext(String generatedInputPath, String targetClassName) {
-        System.out.println("开始分析类: " + targetClassName);
-        
         // 1. 从generated_input.json提取变更信息
         ContextOutput.ClassContext classContext = gitChangeExtractor.extractClassChanges(generatedInputPath, targetClassName);
+        return analyzeClassContext(targetClassName, classContext);
+    }
+    
+    /**
+     * 基于已提取的变更信息分析类的上下文
+     */
+    private ContextOutput analyzeClassContext(String targetClassName, ContextOutput.ClassContext classContext) {
+        log("开始分析类: " + targetClassName);
         
         // 2. 查询Neo4j获取上下游关系并提取源码
         enrichWithNeo4jData(targetClassName, classContext);
@@ -53,115 +149,198 @@ public class ContextAnalysisService {
         ContextOutput result = new ContextOutput();
         result.put(targetClassName, classContext);
         
-        System.out.println("完成分析类: " + targetClassName);
+        log("完成分析类: " + targetClassName);
         return result;
     }
     
     /**
      * 使用Neo4j数据丰富上下文信息
+     * 先收集该类所有Field/Method/Class的实体ID，上游、下游各一次批量查询，再回填到各上下文
      */
     private void enrichWithNeo4jData(String className, ContextOutput.ClassContext classContext) {
-        // 处理Field实体（列表）
+        // 上下文 -> 要查询的实体ID（签名未知的方法可能对应多个重载）
+        Map<ContextOutput.EntityContext, List<String>> upstreamTargets = new LinkedHashMap<>();
+        Map<ContextOutput.EntityContext, List<String>> downstreamTargets = new LinkedHashMap<>();
+        
+        // 处理Field实体（列表）：Field只有上游，没有下游
         if (classContext.getField() != null) {
-            enrichFieldContexts(className, classContext.getField());
+            for (ContextOutput.EntityContext fieldContext : classContext.getField()) {
+                String fieldName = fieldContext.getFieldName();
+                if (fieldName == null || fieldName.isEmpty()) {
+                    log("跳过Field上下文查询，fieldName为空: " + className);
+                    continue;
+                }
+                upstreamTargets.put(fieldContext,
+                    Collections.singletonList(EntityIdGenerator.generateFieldId(className, fieldName)));
+            }
         }
         
-        // 处理Method实体（列表）
+        // 处理Method实体（列表）：Method有上游和下游
+        // 方法ID包含参数类型，先按 (类名, 方法名) 一次查出所有重载，有签名时取最匹配的重载，没有时取全部重载
         if (classContext.getMethod() != null) {
-            enrichMethodContexts(className, classContext.getMethod());
+            Set<String> methodNames = new LinkedHashSet<>();
+            for (ContextOutput.EntityContext methodContext : classContext.getMethod()) {
+                String methodName = methodContext.getMethodName();
+                if (methodName == null || methodName.isEmpty()) {
+                    log("跳过Method上下文查询，methodName为空: " + className);
+                    continue;
+                }
+                methodNames.add(methodName);
+            }
+            Map<String, List<EntityInfo>> overloads = methodNames.isEmpty()
+                ? Collections.<String, List<EntityInfo>>emptyMap()
+                : graphQueryService.queryMethodOverloads(className, methodNames);
+            for (ContextOutput.EntityContext methodContext : classContext.getMethod()) {
+                if (!methodNames.contains(methodContext.getMethodName())) {
+                    continue;
+                }
+                List<String> methodIds = selectMethodIds(overloads.get(methodContext.getMethodName()),
+                    methodContext.getMethodSignature());
+                if (methodIds.isEmpty()) {
+                    log("未在图谱中找到方法: " + className + "." + methodContext.getMethodName());
+                    continue;
+                }
+                upstreamTargets.put(methodContext, methodIds);
+                downstreamTargets.put(methodContext, methodIds);
+            }
         }
         
-        // 处理ClassOrInterface实体
+        // 处理ClassOrInterface实体：Class有上游和下游
         if (classContext.getClassOrInterface() != null) {
-            enrichClassContext(className, classContext.getClassOrInterface());
+            List<String> classIds = Collections.singletonList(EntityIdGenerator.generateClassId(className));
+            upstreamTargets.put(classContext.getClassOrInterface(), classIds);
+            downstreamTargets.put(classContext.getClassOrInterface(), classIds);
         }
-    }
-    /**
-     * 丰富Field上下文（Field只有上游，没有下游）
-     */
-    private void enrichFieldContexts(String className, List<ContextOutput.EntityContext> fieldContexts) {
-        for (ContextOutput.EntityContext fieldContext : fieldContexts) {
-            try {
-                String fieldName = fieldContext.getFieldName();
-                if (fieldName == null || fieldName.isEmpty()) {
-                    System.out.println("跳过Field上下文查询，fieldName为空: " + className);
-                    continue;
+        
+        SnippetStore snippets = snippetTable ? sharedSnippets : new SnippetStore();
+        try {
+            Map<String, List<EntityInfo>> upstreams =
+                graphQueryService.queryUpstreamBatch(distinctIds(upstreamTargets), 1, 0);
+            Map<String, List<EntityInfo>> downstreams =
+                graphQueryService.queryDownstreamBatch(distinctIds(downstreamTargets), 1, 0);
+            
+            Set<ContextOutput.EntityContext> contexts = new LinkedHashSet<>(upstreamTargets.keySet());
+            contexts.addAll(downstreamTargets.keySet());
+            for (ContextOutput.EntityContext context : contexts) {
+                List<EntityInfo> upstream = upstreamTargets.containsKey(context)
+                    ? mergeNeighbors(upstreams, upstreamTargets.get(context)) : null;
+                List<EntityInfo> downstream = downstreamTargets.containsKey(context)
+                    ? mergeNeighbors(downstreams, downstreamTargets.get(context)) : null;
+                if (FanOutGuard.isEnabled(fanOutConfig)) {
+                    String label = labelOf(className, context);
+                    upstream = upstream != null ? FanOutGuard.limit(upstream, fanOutConfig, "上游 " + label, this::log) : null;
+                    downstream = downstream != null ? FanOutGuard.limit(downstream, fanOutConfig, "下游 " + label, this::log) : null;
+                }
+                // 设置了预算时上下游共用一个预算，只提取装得下的源码
+                Map<EntityInfo, String> selected = contextBudget > 0
+                    ? assembleWithinBudget(className, upstream, downstream, snippets) : null;
+                if (upstream != null) {
+                    context.setUpstream(extractSourceCodes(upstream, selected, snippets));
+                }
+                if (downstream != null) {
+                    context.setDownstream(extractSourceCodes(downstream, selected, snippets));
                 }
-
-                String fieldId = EntityIdGenerator.generateFieldId(className, fieldName);
-                List<EntityInfo> upstreamEntities = neo4jQueryService.queryUpstream(fieldId, 1);
-                List<String> upstreamSources = extractSourceCodes(upstreamEntities);
-                fieldContext.setUpstream(upstreamSources);
-
-                System.out.println("Field " + className + "." + fieldName + " 上游数量: " + upstreamSources.size());
-            } catch (Exception e) {
-                System.err.println("丰富Field上下文失败: " + className + " - " + e.getMessage());
+            }
+        } catch (Exception e) {
+            System.err.println("丰富上下文失败: " + className + " - " + e.getMessage());
+        }
+        
+        for (ContextOutput.EntityContext context : upstreamTargets.keySet()) {
+            if (context.getFieldName() != null) {
+                log("Field " + className + "." + context.getFieldName()
+                    + " 上游数量: " + sizeOf(context.getUpstream()));
+            } else if (context.getMethodName() != null) {
+                log("Method " + className + "." + context.getMethodName()
+                    + " 上游数量: " + sizeOf(context.getUpstream()) + ", 下游数量: " + sizeOf(context.getDownstream()));
             }
         }
     }
+    
     /**
-     * 丰富Method上下文（Method有上游和下游）
+     * 签名已知时只取最匹配的重载，未知时取全部重载
+     * 签名完整（不含 "?"）时只接受参数类型一致的重载，都不一致时不取任何重载
      */
-    private void enrichMethodContexts(String className, List<ContextOutput.EntityContext> methodContexts) {
-        for (ContextOutput.EntityContext methodContext : methodContexts) {
-            try {
-                String methodName = methodContext.getMethodName();
-                if (methodName == null || methodName.isEmpty()) {
-                    System.out.println("跳过Method上下文查询，methodName为空: " + className);
-                    continue;
+    private List<String> selectMethodIds(List<EntityInfo> overloads, String signatureHint) {
+        List<String> methodIds = new ArrayList<>();
+        if (overloads == null || overloads.isEmpty()) {
+            return methodIds;
+        }
+        if (signatureHint != null && !signatureHint.trim().isEmpty()) {
+            List<EntityInfo> candidates = overloads;
+            if (!MethodOverloads.isPartialSignature(signatureHint)) {
+                candidates = new ArrayList<>();
+                for (EntityInfo overload : overloads) {
+                    if (MethodOverloads.matchesSignature(overload.getId(), signatureHint)) {
+                        candidates.add(overload);
+                    }
                 }
-
-                String methodId = EntityIdGenerator.generateMethodId(className, methodName, ""); // 签名暂时为空
-
-                List<EntityInfo> upstreamEntities = neo4jQueryService.queryUpstream(methodId, 1);
-                List<String> upstreamSources = extractSourceCodes(upstreamEntities);
-                methodContext.setUpstream(upstreamSources);
-
-                List<EntityInfo> downstreamEntities = neo4jQueryService.queryDownstream(methodId, 1);
-                List<String> downstreamSources = extractSourceCodes(downstreamEntities);
-                methodContext.setDownstream(downstreamSources);
-
-                System.out.println("Method " + className + "." + methodName + " 上游数量: " + upstreamSources.size() + ", 下游数量: " + downstreamSources.size());
-            } catch (Exception e) {
-                System.err.println("丰富Method上下文失败: " + className + " - " + e.getMessage());
             }
+            EntityInfo selected = MethodOverloads.select(candidates, signatureHint, null);
+            if (selected != null) {
+                methodIds.add(selected.getId());
+            }
+            return methodIds;
+        }
+        for (EntityInfo overload : overloads) {
+            methodIds.add(overload.getId());
+        }
+        return methodIds;
+    }
+    
+    private String labelOf(String className, ContextOutput.EntityContext context) {
+        if (context.getFieldName() != null) {
+            return className + "." + context.getFieldName();
+        }
+        if (context.getMethodName() != null) {
+            return className + "." + context.getMethodName() + "()";
+        }
+        return className;
+    }
+    
+    private Set<String> distinctIds(Map<ContextOutput.EntityContext, List<String>> targets) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (List<String> targetIds : targets.values()) {
+            ids.addAll(targetIds);
         }
+        return ids;
     }
     
     /**
-     * 丰富ClassOrInterface上下文（Class有上游和下游）
+     * 合并多个实体（重载）的上下游，同一实体只保留一次
      */
-    private void enrichClassContext(String className, ContextOutput.EntityContext classContext) {
-        try {
-            // 构建Class的实体ID
-            String classId = EntityIdGenerator.generateClassId(className);
-            
-            // 查询上游（谁依赖了这个类）
-            List<EntityInfo> upstreamEntities = neo4jQueryService.queryUpstream(classId, 1);
-            List<String> upstreamSources = extractSourceCodes(upstreamEntities);
-            classContext.setUpstream(upstreamSources);
-            
-            // 查询下游（这个类依赖了谁）
-            List<EntityInfo> downstreamEntities = neo4jQueryService.queryDownstream(classId, 1);
-            List<String> downstreamSources = extractSourceCodes(downstreamEntities);
-            classContext.setDownstream(downstreamSources);
-            
-        } catch (Exception e) {
-            System.err.println("丰富Class上下文失败: " + className + " - " + e.getMessage());
+    private List<EntityInfo> mergeNeighbors(Map<String, List<EntityInfo>> neighbors, List<String> ids) {
+        Map<String, EntityInfo> merged = new LinkedHashMap<>();
+        for (String id : ids) {
+            for (EntityInfo entity : neighbors.getOrDefault(id, Collections.<EntityInfo>emptyList())) {
+                merged.putIfAbsent(entity.getId(), entity);
+            }
         }
+        return new ArrayList<>(merged.values());
+    }
+    
+    private int sizeOf(List<String> list) {
+        return list == null ? 0 : list.size();
     }
     
     /**
      * 从实体列表中提取源码
      */
-    private List<String> extractSourceCodes(List<EntityInfo> entities) {
+    private List<String> extractSourceCodes(List<EntityInfo> entities, Map<EntityInfo, String> selected,
+                                            SnippetStore snippets) {
         List<String> sourceCodes = new ArrayList<>();
         
         for (EntityInfo entity : entities) {
+            if (selected != null) {
+                // 预算内装入的源码（或片段key），按原顺序输出
+                if (selected.containsKey(entity)) {
+                    sourceCodes.add(selected.get(entity));
+                }
+                continue;
+            }
             try {
-                String sourceCode = sourceExtractor.extractSourceCode(entity);
-                if (sourceCode != null && !sourceCode.trim().isEmpty()) {
-                    sourceCodes.add(sourceCode);
+                String key = snippetKeyOf(entity, snippets);
+                if (key != null) {
+                    sourceCodes.add(snippetTable ? key : snippets.sources.get(key));
                 }
             } catch (Exception e) {
                 System.err.println("提取源码失败: " + entity.getId() + " - " + e.getMessage());
@@ -171,6 +350,86 @@ public class ContextAnalysisService {
         return sourceCodes;
     }
     
+    /**
+     * 提取实体源码并登记为片段，返回片段key；同一 (实体ID, 内容哈希) 只提取一次，源码为空时返回null
+     * 图谱中有内容哈希时直接使用，否则按提取出的源码计算
+     */
+    private String snippetKeyOf(EntityInfo entity, SnippetStore snippets) {
+        String entityKey = entity.getId() + "#" + (entity.getContentHash() != null ? entity.getContentHash() : "");
+        String key = snippets.entityKeys.get(entityKey);
+        if (key != null) {
+            return key;
+        }
+        
+        String sourceCode = sourceExtractor.extractSourceCode(entity);
+        if (sourceCode == null || sourceCode.trim().isEmpty()) {
+            return null;
+        }
+        key = entity.getContentHash() != null ? entityKey : entity.getId() + "#" + hashOf(sourceCode);
+        snippets.sources.putIfAbsent(key, sourceCode);
+        snippets.entityKeys.putIfAbsent(entityKey, key);
+        return key;
+    }
+    
+    /**
+     * 在预算内为一个上下文的上下游装入源码
+     *
+     * @return 实体 -> 输出的源码（片段表模式下为片段key），未装入的实体不在结果中
+     */
+    private Map<EntityInfo, String> assembleWithinBudget(String className, List<EntityInfo> upstream,
+                                                         List<EntityInfo> downstream, SnippetStore snippets) {
+        List<EntityInfo> neighbors = new ArrayList<>();
+        if (upstream != null) {
+            neighbors.addAll(upstream);
+        }
+        if (downstream != null) {
+            neighbors.addAll(downstream);
+        }
+        
+        ContextBudget budget = ContextBudget.create(contextBudget, budgetUnit);
+        Map<EntityInfo, String> skeletonKeys = new IdentityHashMap<>();
+        Map<EntityInfo, String> selected = budget.assemble(neighbors, sourceExtractor,
+            entity -> {
+                String key = snippetKeyOf(entity, snippets);
+                return key == null ? null : snippets.sources.get(key);
+            },
+            entity -> {
+                String skeleton = sourceExtractor.extractClassSkeleton(entity);
+                if (skeleton != null) {
+                    String key = entity.getId() + "#" + hashOf(skeleton);
+                    snippets.sources.putIfAbsent(key, skeleton);
+                    skeletonKeys.put(entity, key);
+                }
+                return skeleton;
+            });
+        log("  " + className + " " + budget.summary());
+        
+        if (!snippetTable) {
+            return selected;
+        }
+        Map<EntityInfo, String> keys = new IdentityHashMap<>();
+        for (Map.Entry<EntityInfo, String> entry : selected.entrySet()) {
+            EntityInfo entity = entry.getKey();
+            // 完整源码已在 snippetKeyOf 中登记，这里只是查表
+            keys.put(entity, skeletonKeys.containsKey(entity) ? skeletonKeys.get(entity) : snippetKeyOf(entity, snippets));
+        }
+        return keys;
+    }
+    
+    private String hashOf(String sourceCode) {
+        byte[] bytes = sourceCode.getBytes(StandardCharsets.UTF_8);
+        return SourceOffsets.contentHash(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * 逐类明细日志，并发分析时不输出（由汇总进度代替）
+     */
+    private void log(String message) {
+        if (concurrency <= 1) {
+            System.out.println(message);
+        }
+    }
+    
     /**
      * 提取最新源码（仅该类源码）
      * 通过类名和文件路径提取整个类的源码
@@ -179,21 +438,27 @@ public class ContextAnalysisService {
         try {
             String filePath = classContext.getFilePath();
             if (filePath == null || filePath.isEmpty()) {
-                System.out.println("类 " + className + " 的文件路径为空，跳过源码提取");
+                log("类 " + className + " 的文件路径为空，跳过源码提取");
                 return;
             }
             
-            System.out.println("提取最新源码: " + className + " from " + filePath);
+            log("提取最新源码: " + className + " from " + filePath);
             
             // 读取整个文件内容
             String sourceCode = extractClassSourceCode(filePath);
             if (sourceCode != null && !sourceCode.trim().isEmpty()) {
                 // latestSourceCode是数组，将源码作为列表的一个元素
                 classContext.getLatestSourceCode().clear();
-                classContext.getLatestSourceCode().add(sourceCode);
-                System.out.println("成功提取最新源码，长度: " + sourceCode.length() + " 字符");
+                if (snippetTable) {
+                    String key = filePath + "#" + hashOf(sourceCode);
+                    sharedSnippets.sources.putIfAbsent(key, sourceCode);
+                    classContext.getLatestSourceCode().add(key);
+                } else {
+                    classContext.getLatestSourceCode().add(sourceCode);
+                }
+                log("成功提取最新源码，长度: " + sourceCode.length() + " 字符");
             } else {
-                System.out.println("未提取到源码");
+                log("未提取到源码");
             }
         } catch (Exception e) {
             System.err.println("提取最新源码失败: " + className + " - " + e.getMessage());
@@ -205,6 +470,12 @@ public class ContextAnalysisService {
      */
     private String extractClassSourceCode(String filePath) {
         try {
+            // 设置了源码快照且快照中有该文件时从快照读取，与图谱保持一致
+            SourceSnapshot snapshot = sourceExtractor.getSourceSnapshot();
+            if (snapshot != null && snapshot.contains(filePath)) {
+                return sourceExtractor.readSource(filePath);
+            }
+            
             // 解析文件路径：优先支持绝对路径；若为相对路径，则基于projectRoot解析
             java.io.File file = resolveFilePath(filePath);
             if (!file.exists()) {
@@ -245,41 +516,89 @@ public class ContextAnalysisService {
      * 将分析结果保存到JSON文件
      */
     public void saveToFile(ContextOutput contextOutput, String outputPath) {
-        try (java.io.FileWriter writer = new java.io.FileWriter(outputPath)) {
-            gson.toJson(contextOutput, writer);
-            System.out.println("上下文分析结果已保存到: " + outputPath);
-            
-            // 显示文件统计信息
-            java.io.File file = new java.io.File(outputPath);
-            System.out.println("文件大小: " + String.format("%.2f KB", file.length() / 1024.0));
-            
-            // 统计分析的类数量
-            int classCount = contextOutput.size();
-            System.out.println("分析的类数量: " + classCount);
-            
+        saveToFile(contextOutput, outputPath, ContextOutputWriter.FORMAT_JSON);
+    }
+    
+    /**
+     * 将分析结果保存到文件
+     *
+     * @param format json 或 ndjson
+     */
+    public void saveToFile(ContextOutput contextOutput, String outputPath, String format) {
+        try (ContextOutputWriter writer = openWriter(outputPath, format)) {
+            writer.write(contextOutput);
         } catch (IOException e) {
             System.err.println("保存文件失败: " + outputPath + " - " + e.getMessage());
         }
     }
     
+    /**
+     * 打开流式输出（片段表模式与本服务的设置一致），配合 analyzeAllClasses(generatedInputPath, writer) 逐类写出
+     *
+     * @param format json 或 ndjson
+     */
+    public ContextOutputWriter openWriter(String outputPath, String format) throws IOException {
+        return new ContextOutputWriter(outputPath, format, snippetTable ? sharedSnippets.sources::get : null);
+    }
+    
     /**
      * 批量分析所有类
+     * concurrency > 1 时各类在有界线程池中并发分析（图查询与源码提取相互重叠），结果仍按类出现顺序合并
      */
     public ContextOutput analyzeAllClasses(String generatedInputPath) {
-        List<String> allClassNames = gitChangeExtractor.getAllClassNames(generatedInputPath);
-        System.out.println("发现 " + allClassNames.size() + " 个类需要分析");
-        
         ContextOutput result = new ContextOutput();
-        
-        for (String className : allClassNames) {
+        analyzeAllClasses(generatedInputPath, result::putAll);
+        return result;
+    }
+    
+    /**
+     * 批量分析所有类，每个类完成后立即按输入顺序写出，已写出的类不再保留在内存中
+     */
+    public void analyzeAllClasses(String generatedInputPath, ContextOutputWriter writer) {
+        analyzeAllClasses(generatedInputPath, classResult -> {
             try {
-                ContextOutput singleClassResult = analyzeClassContext(generatedInputPath, className);
-                result.putAll(singleClassResult);
-            } catch (Exception e) {
-                System.err.println("分析类失败: " + className + " - " + e.getMessage());
+                writer.write(classResult);
+            } catch (IOException e) {
+                throw new UncheckedIOException("写出上下文失败", e);
             }
+        });
+    }
+    
+    private void analyzeAllClasses(String generatedInputPath, Consumer<ContextOutput> consumer) {
+        // 输入文件只读取一遍，按类名归集变更后逐类分析
+        Map<String, ContextOutput.ClassContext> classChanges = gitChangeExtractor.indexClassChanges(generatedInputPath);
+        List<String> allClassNames = new ArrayList<>(classChanges.keySet());
+        // 分析时取出该类的变更，写出后不再引用
+        Map<String, ContextOutput.ClassContext> pending = new ConcurrentHashMap<>(classChanges);
+        classChanges.clear();
+        System.out.println("发现 " + allClassNames.size() + " 个类需要分析");
+        if (concurrency > 1) {
+            System.out.println("[并发分析] 并发数: " + concurrency);
         }
         
-        return result;
+        // 并发时每完成约10%的类输出一次汇总进度
+        AtomicInteger finished = new AtomicInteger();
+        int progressStep = Math.max(1, allClassNames.size() / 10);
+        long startTime = System.currentTimeMillis();
+        ConcurrentUtil.forEachInOrder(allClassNames, concurrency, "context-analysis",
+            className -> {
+                try {
+                    return analyzeClassContext(className, pending.remove(className));
+                } catch (Exception e) {
+                    System.err.println("分析类失败: " + className + " - " + e.getMessage());
+                    return null;
+                } finally {
+                    int done = finished.incrementAndGet();
+                    if (concurrency > 1 && (done % progressStep == 0 || done == allClassNames.size())) {
+                        System.out.println("[并发分析] 进度: " + done + "/" + allClassNames.size()
+                            + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms");
+                    }
+                }
+            },
+            classResult -> {
+                if (classResult != null) {
+                    consumer.accept(classResult);
+                }
+            });
     }
 }
@@ -0,0 +1,175 @@
+package com.java.extractor.service;
+
+import com.java.extractor.model.EntityInfo;
+import com.java.extractor.source.SourceExtractor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 上下文预算
+ * 分析结果交给下游的LLM评审，总量有硬性上限。每个变更的源码（变更实体本身 + 上下游）按字节或token计入预算：
+ * 上下游按 距离升序、关系类型（调用/重写/实现 > 字段访问 > 类型引用 > 其他）、关系count降序、ID升序 依次装入，
+ * 整个文件放不下的类改用类骨架（字段与方法签名），其余放不下的不输出源码。
+ * 方法、字段按图谱中的字节区间，类按文件大小预估，预估放不下时不读取文件；预算用完后不再读取任何源码
+ */
+final class ContextBudget {
+
+    static final String UNIT_BYTES = "bytes";
+    static final String UNIT_TOKENS = "tokens";
+
+    // token按平均每4个UTF-8字节1个估算
+    private static final int BYTES_PER_TOKEN = 4;
+
+    private static final Comparator<EntityInfo> PRIORITY = Comparator
+        .comparing((EntityInfo entity) -> entity.getDistance() == null ? Integer.MAX_VALUE : entity.getDistance())
+        .thenComparing(entity -> relationRank(entity.getRelationshipType()))
+        .thenComparing(entity -> entity.getRelationCount() == null ? 0 : entity.getRelationCount(), Comparator.reverseOrder())
+        .thenComparing(entity -> entity.getId() == null ? "" : entity.getId());
+
+    private final long limit;
+    private final boolean tokens;
+    private long used;
+    private int omitted;
+    private int skeletons;
+
+    private ContextBudget(long limit, boolean tokens) {
+        this.limit = limit;
+        this.tokens = tokens;
+    }
+
+    /**
+     * 创建一个变更的预算
+     *
+     * @param limit 预算（<=0 表示不限制，返回null）
+     * @param unit  tokens 或 bytes
+     * @throws IllegalArgumentException 单位不合法
+     */
+    static ContextBudget create(int limit, String unit) {
+        checkUnit(unit);
+        return limit > 0 ? new ContextBudget(limit, !UNIT_BYTES.equalsIgnoreCase(unit)) : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException 单位不是 tokens 或 bytes
+     */
+    static void checkUnit(String unit) {
+        if (!UNIT_TOKENS.equalsIgnoreCase(unit) && !UNIT_BYTES.equalsIgnoreCase(unit)) {
+            throw new IllegalArgumentException("预算单位只能是 tokens 或 bytes: " + unit);
+        }
+    }
+
+    /**
+     * 计入必须输出的源码（如变更实体本身，超出预算也计入）
+     */
+    void charge(String source) {
+        if (source != null) {
+            used += cost(source);
+        }
+    }
+
+    /**
+     * 按优先级为上下游装入源码
+     *
+     * @param extract  读取实体的完整源码
+     * @param skeleton 读取类骨架（整个类放不下时使用）
+     * @return 实体 -> 装入的源码（完整源码或类骨架），未装入的实体不在结果中
+     */
+    Map<EntityInfo, String> assemble(List<EntityInfo> entities, SourceExtractor sourceExtractor,
+                                     Function<EntityInfo, String> extract, Function<EntityInfo, String> skeleton) {
+        List<EntityInfo> ranked = new ArrayList<>(entities);
+        ranked.sort(PRIORITY);
+
+        Map<EntityInfo, String> selected = new IdentityHashMap<>();
+        for (EntityInfo entity : ranked) {
+            if (used >= limit) {
+                // 预算用完，剩余实体都不读取
+                omitted++;
+                continue;
+            }
+
+            long estimate = sourceExtractor.estimateSourceSize(entity);
+            boolean overBudget = estimate >= 0 && costOfBytes(estimate) > limit - used;
+            String source = overBudget ? null : extract.apply(entity);
+            if (source != null && cost(source) > limit - used) {
+                // 无法预估大小的实体读取后才知道放不下
+                overBudget = true;
+                source = null;
+            }
+            if (overBudget && "ClassOrInterface".equals(entity.getEntity_type())) {
+                String classSkeleton = skeleton.apply(entity);
+                if (classSkeleton != null && cost(classSkeleton) <= limit - used) {
+                    source = classSkeleton;
+                    overBudget = false;
+                    skeletons++;
+                }
+            }
+
+            if (overBudget) {
+                omitted++;
+            } else if (source != null && !source.trim().isEmpty()) {
+                used += cost(source);
+                selected.put(entity, source);
+            }
+        }
+        return selected;
+    }
+
+    long getUsed() {
+        return used;
+    }
+
+    long getLimit() {
+        return limit;
+    }
+
+    int getOmitted() {
+        return omitted;
+    }
+
+    int getSkeletons() {
+        return skeletons;
+    }
+
+    String summary() {
+        return "预算: " + used + "/" + limit + " " + (tokens ? UNIT_TOKENS : UNIT_BYTES)
+            + ", 类骨架: " + skeletons + ", 省略源码: " + omitted;
+    }
+
+    private long cost(String source) {
+        return costOfBytes(source.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private long costOfBytes(long bytes) {
+        return tokens ? (bytes + BYTES_PER_TOKEN - 1) / BYTES_PER_TOKEN : bytes;
+    }
+
+    /**
+     * 关系类型优先级：行为上直接耦合的调用、重写、实现最重要，其次是字段访问，再次是类型引用
+     */
+    private static int relationRank(String relationType) {
+        if (relationType == null) {
+            return 3;
+        }
+        switch (relationType.toUpperCase()) {
+            case "CALLS":
+            case "OVERRIDES":
+            case "IMPLEMENTS":
+            case "EXTENDS":
+                return 0;
+            case "ACCESSES":
+                return 1;
+            case "RETURNS":
+            case "HAS_PARAMETER":
+            case "THROWS":
+                return 2;
+            default:
+                return 3;
+        }
+    }
+}
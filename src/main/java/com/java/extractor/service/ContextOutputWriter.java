@@ -0,0 +1,168 @@
+package com.java.extractor.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.java.extractor.model.ContextOutput;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 上下文分析结果流式写出
+ * 每个类分析完立即写出并刷新，已写出的类不再保留在内存中，分析过程中可以 tail 输出文件查看已完成的类
+ *
+ * json：格式与整体序列化相同（类名 -> 上下文）；片段表模式下为 {"classes": {...}, "snippets": {...}}，片段表在最后写出
+ * ndjson：每行一个类 {"className": ..., "context": {...}}；片段表模式下附带该类首次引用的片段 "snippets": {...}
+ */
+public class ContextOutputWriter implements Closeable {
+
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private final String outputPath;
+    private final boolean ndjson;
+    private final Function<String, String> snippetSources;   // 片段key -> 源码，不使用片段表时为null
+    private final Gson gson;
+    private final Writer out;
+    private final JsonWriter json;                           // 仅json格式使用
+
+    private final Set<String> writtenSnippets = new LinkedHashSet<>();  // 已引用的片段key（按首次引用顺序）
+    private int classCount;
+
+    /**
+     * @param format         json 或 ndjson
+     * @param snippetSources 片段表模式下按key查源码，为null时上下文中直接是源码
+     * @throws IllegalArgumentException 格式不合法
+     */
+    public ContextOutputWriter(String outputPath, String format, Function<String, String> snippetSources) throws IOException {
+        if (!FORMAT_JSON.equalsIgnoreCase(format) && !FORMAT_NDJSON.equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("输出格式只能是 json 或 ndjson: " + format);
+        }
+        this.outputPath = outputPath;
+        this.ndjson = FORMAT_NDJSON.equalsIgnoreCase(format);
+        this.snippetSources = snippetSources;
+        this.gson = ndjson ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath), StandardCharsets.UTF_8));
+
+        if (ndjson) {
+            this.json = null;
+        } else {
+            this.json = gson.newJsonWriter(out);
+            json.beginObject();
+            if (snippetSources != null) {
+                json.name("classes").beginObject();
+            }
+        }
+    }
+
+    /**
+     * 写出一个或多个类的上下文并刷新到文件
+     */
+    public synchronized void write(ContextOutput classResult) throws IOException {
+        for (Map.Entry<String, ContextOutput.ClassContext> entry : classResult.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        out.flush();
+    }
+
+    private void write(String className, ContextOutput.ClassContext classContext) throws IOException {
+        List<String> newSnippets = new ArrayList<>();
+        if (snippetSources != null) {
+            for (String key : snippetKeys(classContext)) {
+                if (writtenSnippets.add(key)) {
+                    newSnippets.add(key);
+                }
+            }
+        }
+
+        if (ndjson) {
+            JsonObject line = new JsonObject();
+            line.addProperty("className", className);
+            line.add("context", gson.toJsonTree(classContext));
+            if (!newSnippets.isEmpty()) {
+                line.add("snippets", gson.toJsonTree(lookup(newSnippets)));
+            }
+            out.write(gson.toJson(line));
+            out.write('\n');
+        } else {
+            json.name(className);
+            gson.toJson(classContext, ContextOutput.ClassContext.class, json);
+        }
+        classCount++;
+    }
+
+    /**
+     * 结束输出（json格式补全对象并写出片段表），输出统计信息
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (!ndjson) {
+                if (snippetSources != null) {
+                    json.endObject();
+                    json.name("snippets");
+                    gson.toJson(lookup(writtenSnippets), Map.class, json);
+                }
+                json.endObject();
+            }
+            out.flush();
+        } finally {
+            out.close();
+        }
+
+        if (snippetSources != null) {
+            System.out.println("[片段表] 不同片段: " + writtenSnippets.size());
+        }
+        System.out.println("上下文分析结果已保存到: " + outputPath);
+        System.out.println("文件大小: " + String.format("%.2f KB", new File(outputPath).length() / 1024.0));
+        System.out.println("分析的类数量: " + classCount);
+    }
+
+    private Map<String, String> lookup(Iterable<String> keys) {
+        Map<String, String> snippets = new LinkedHashMap<>();
+        for (String key : keys) {
+            snippets.put(key, snippetSources.apply(key));
+        }
+        return snippets;
+    }
+
+    /**
+     * 类上下文中引用的片段key（按出现顺序）
+     */
+    private static Set<String> snippetKeys(ContextOutput.ClassContext classContext) {
+        Set<String> keys = new LinkedHashSet<>();
+        List<ContextOutput.EntityContext> contexts = new ArrayList<>();
+        if (classContext.getClassOrInterface() != null) {
+            contexts.add(classContext.getClassOrInterface());
+        }
+        contexts.addAll(classContext.getField());
+        contexts.addAll(classContext.getMethod());
+        for (ContextOutput.EntityContext context : contexts) {
+            addAll(keys, context.getUpstream());
+            addAll(keys, context.getDownstream());
+        }
+        addAll(keys, classContext.getLatestSourceCode());
+        return keys;
+    }
+
+    private static void addAll(Set<String> keys, List<String> values) {
+        if (values != null) {
+            keys.addAll(values);
+        }
+    }
+}
@@ -26,6 +26,7 @@ public class DiffAnalysisService {
 
     private final GitDiffParser diffParser;
     private final JavaChangeExtractor changeExtractor;
+    private final CompositeChangeFilter changeFilter;
     private final Gson gson;
 
     public DiffAnalysisService() {
@@ -39,6 +40,7 @@ public class DiffAnalysisService {
 
         // 使用代码行过滤器创建变更提取器
         this.changeExtractor = new JavaChangeExtractor(codeLineFilter);
+        this.changeFilter = new CompositeChangeFilter(filterConfig);
         this.gson = new GsonBuilder().setPrettyPrinting().create();
     }
 
@@ -64,41 +66,7 @@ public class DiffAnalysisService {
         System.out.println();
 
         try {
-            // 1. 解析git diff
-            System.out.println("[1/3] 解析git diff...");
-            List<DiffHunk> hunks = diffParser.parse(diffFilePath);
-            System.out.println("  发现 " + hunks.size() + " 个diff块");
-            System.out.println();
-
-            // 2. 提取Java变更
-            System.out.println("[2/3] 提取Java变更...");
-            List<ChangeInfo> allChanges = new ArrayList<>();
-
-            for (DiffHunk hunk : hunks) {
-                System.out.println("  处理文件: " + hunk.getFilePath());
-                System.out.println("    类名: " + hunk.getClassName());
-                System.out.println(
-                    "    新增行: " +
-                        hunk.getAddedLines().size() +
-                        ", 删除行: " +
-                        hunk.getRemovedLines().size()
-                );
-
-                List<ChangeInfo> changes = changeExtractor.extractChanges(
-                    hunk,
-                    projectRoot
-                );
-                allChanges.addAll(changes);
-            }
-
-            // 后处理：合并跨 hunk 的 ClassOrInterface 记录
-            allChanges = postProcessChanges(allChanges);
-
-            System.out.println();
-            System.out.println("  共提取 " + allChanges.size() + " 个变更");
-
-            // 应用过滤器
-            allChanges = applyFilters(allChanges);
+            List<ChangeInfo> allChanges = extractChanges(diffFilePath, projectRoot);
 
             System.out.println();
 
@@ -129,20 +97,71 @@ public class DiffAnalysisService {
     }
 
     /**
-     * 应用过滤器
+     * 解析Git Diff并提取Java变更（合并跨 hunk 的类记录、应用过滤器）
+     *
+     * @param diffFilePath git diff文件路径
+     * @param projectRoot 项目根目录
+     * @return 过滤后的变更
+     * @throws IOException diff文件读取失败
      */
-    private List<ChangeInfo> applyFilters(List<ChangeInfo> changes) {
-        try {
-            // 加载过滤器配置
-            FilterConfig filterConfig = FilterConfigLoader.loadConfig();
+    public List<ChangeInfo> extractChanges(String diffFilePath, String projectRoot) throws IOException {
+        // 1. 解析git diff
+        System.out.println("[1/3] 解析git diff...");
+        List<DiffHunk> hunks = diffParser.parse(diffFilePath);
+        System.out.println("  发现 " + hunks.size() + " 个diff块");
+        System.out.println();
 
-            // 创建组合过滤器
-            CompositeChangeFilter filter = new CompositeChangeFilter(
-                filterConfig
+        // 2. 提取Java变更
+        System.out.println("[2/3] 提取Java变更...");
+        List<ChangeInfo> allChanges = new ArrayList<>();
+
+        for (DiffHunk hunk : hunks) {
+            System.out.println("  处理文件: " + hunk.getFilePath());
+            System.out.println("    类名: " + hunk.getClassName());
+            System.out.println(
+                "    新增行: " +
+                    hunk.getAddedLines().size() +
+                    ", 删除行: " +
+                    hunk.getRemovedLines().size()
             );
 
-            // 应用过滤
-            return filter.filter(changes);
+            List<ChangeInfo> changes = changeExtractor.extractChanges(
+                hunk,
+                projectRoot
+            );
+            allChanges.addAll(changes);
+        }
+
+        // 后处理：合并跨 hunk 的 ClassOrInterface 记录
+        allChanges = postProcessChanges(allChanges);
+
+        System.out.println();
+        System.out.println("  共提取 " + allChanges.size() + " 个变更");
+
+        // 应用过滤器
+        allChanges = applyFilters(allChanges);
+
+        return allChanges;
+    }
+
+    /**
+     * 提取同一文件的所有diff块中的变更，并合并跨 hunk 的 ClassOrInterface 记录（不过滤）
+     * 供流水线按文件逐个处理，结果与整体提取后合并相同（同一个类的记录只出现在同一文件中）
+     */
+    List<ChangeInfo> extractFileChanges(List<DiffHunk> fileHunks, String projectRoot) {
+        List<ChangeInfo> changes = new ArrayList<>();
+        for (DiffHunk hunk : fileHunks) {
+            changes.addAll(changeExtractor.extractChanges(hunk, projectRoot));
+        }
+        return postProcessChanges(changes);
+    }
+
+    /**
+     * 应用过滤器
+     */
+    List<ChangeInfo> applyFilters(List<ChangeInfo> changes) {
+        try {
+            return changeFilter.filter(changes);
         } catch (Exception e) {
             System.err.println("[过滤器] 应用过滤失败: " + e.getMessage());
             System.out.println("[过滤器] 跳过过滤，返回原始数据");
@@ -211,12 +230,28 @@ public class DiffAnalysisService {
     /**
      * 生成输入JSON文件
      */
-    private void generateInputJson(
+    void generateInputJson(
         List<ChangeInfo> changes,
         String projectRoot,
         Map<String, String> neo4jConfig,
         String outputPath
     ) throws IOException {
+        Map<String, Object> inputData = buildInputData(changes, projectRoot, neo4jConfig);
+
+        // 写入文件
+        try (FileWriter writer = new FileWriter(outputPath)) {
+            gson.toJson(inputData, writer);
+        }
+    }
+
+    /**
+     * 生成输入数据（generated_input.json 的内容）
+     */
+    public Map<String, Object> buildInputData(
+        List<ChangeInfo> changes,
+        String projectRoot,
+        Map<String, String> neo4jConfig
+    ) {
         Map<String, Object> inputData = new HashMap<>();
         inputData.put("projectRoot", projectRoot);
         inputData.put("neo4jConfig", neo4jConfig);
@@ -235,11 +270,7 @@ public class DiffAnalysisService {
         queryConfig.put("includeDownstream", true);
         queryConfig.put("includeSourceCode", true);
         inputData.put("queryConfig", queryConfig);
-
-        // 写入文件
-        try (FileWriter writer = new FileWriter(outputPath)) {
-            gson.toJson(inputData, writer);
-        }
+        return inputData;
     }
 
     /**
@@ -0,0 +1,225 @@
+package com.java.extractor.service;
+
+import com.java.extractor.diff.DiffHunk;
+import com.java.extractor.diff.GitDiffParser;
+import com.java.extractor.model.ChangeAnalysis;
+import com.java.extractor.model.ChangeInfo;
+import com.java.extractor.util.ConcurrentUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Git Diff到变更分析的一站式流水线：git_diff.txt → 分析结果，不经过 generated_input.json
+ *
+ * 各阶段在独立线程中运行，阶段之间是有界队列，前一阶段产出即交给后一阶段，队列满时前一阶段等待：
+ *   解析diff（按文件分组）→ 提取变更（合并、过滤）→ 按批查询图谱并提取源码 → 调用方线程交付结果
+ * 与 parse-diff + analyze-changes 两步的结果相同，只是变更按文件顺序输出
+ * （两步方式中所有 ClassOrInterface 记录排在最后）；中间文件只在需要调试时写出
+ */
+public class DiffPipelineService {
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    // 每个队列最多积压的元素数（文件或批次），超出时上游阶段等待
+    private static final int QUEUE_CAPACITY = 4;
+    // 调用方线程等待结果时检查其他阶段是否失败的间隔
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final DiffAnalysisService diffService;
+    private final ChangeAnalysisService analysisService;
+    private final int batchSize;
+
+    private String intermediatePath;
+    private Map<String, String> neo4jConfig;
+
+    private volatile int hunkCount;
+    private volatile int fileCount;
+    private volatile int changeCount;
+    private volatile int batchCount;
+
+    /**
+     * @param batchSize 每批查询图谱的变更数
+     * @throws IllegalArgumentException batchSize <= 0
+     */
+    public DiffPipelineService(DiffAnalysisService diffService, ChangeAnalysisService analysisService, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("批大小必须大于0: " + batchSize);
+        }
+        this.diffService = diffService;
+        this.analysisService = analysisService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 同时写出中间文件（与 parse-diff 的输出格式相同，用于调试），所有变更提取完后写出
+     */
+    public void setIntermediateOutput(String path, Map<String, String> neo4jConfig) {
+        this.intermediatePath = path;
+        this.neo4jConfig = neo4jConfig;
+    }
+
+    /**
+     * 执行流水线，分析结果按变更顺序在调用方线程中交给 consumer
+     *
+     * @return 分析的变更数
+     * @throws IOException diff文件或中间文件读写失败
+     */
+    public int run(String diffFilePath, String projectRoot, Consumer<ChangeAnalysis> consumer) throws IOException {
+        BlockingQueue<List<DiffHunk>> files = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<List<ChangeInfo>> batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<List<ChangeAnalysis>> results = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        long start = System.currentTimeMillis();
+        ExecutorService stages = Executors.newFixedThreadPool(3, ConcurrentUtil.daemonThreadFactory("diff-pipeline"));
+        try {
+            stages.submit(() -> runStage(failure, () -> parseStage(diffFilePath, files)));
+            stages.submit(() -> runStage(failure, () -> extractStage(files, batches, projectRoot)));
+            stages.submit(() -> runStage(failure, () -> analyzeStage(batches, results)));
+
+            int analyzed = 0;
+            while (true) {
+                List<ChangeAnalysis> batch = results.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                rethrow(failure.get());
+                if (batch == null) {
+                    continue;
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (ChangeAnalysis analysis : batch) {
+                    consumer.accept(analysis);
+                }
+                analyzed += batch.size();
+            }
+
+            System.out.println("[流水线] diff块: " + hunkCount + ", 文件: " + fileCount + ", 变更: " + changeCount
+                + ", 批次: " + batchCount + ", 耗时: " + (System.currentTimeMillis() - start) + "ms");
+            return analyzed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("流水线被中断", e);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    /**
+     * 阶段1：流式解析diff，同一文件的diff块凑齐后作为一组交给下一阶段
+     */
+    private void parseStage(String diffFilePath, BlockingQueue<List<DiffHunk>> files) throws Exception {
+        AtomicReference<List<DiffHunk>> current = new AtomicReference<>(new ArrayList<>());
+        new GitDiffParser().parse(diffFilePath, hunk -> {
+            hunkCount++;
+            List<DiffHunk> fileHunks = current.get();
+            if (!fileHunks.isEmpty() && !fileHunks.get(0).getFilePath().equals(hunk.getFilePath())) {
+                put(files, fileHunks);
+                fileHunks = new ArrayList<>();
+                current.set(fileHunks);
+            }
+            fileHunks.add(hunk);
+        });
+        if (!current.get().isEmpty()) {
+            files.put(current.get());
+        }
+        files.put(Collections.emptyList());
+    }
+
+    /**
+     * 阶段2：逐个文件提取变更（合并跨 hunk 的类记录、应用过滤器），凑满一批交给下一阶段
+     */
+    private void extractStage(BlockingQueue<List<DiffHunk>> files, BlockingQueue<List<ChangeInfo>> batches,
+                              String projectRoot) throws Exception {
+        List<ChangeInfo> allChanges = intermediatePath != null ? new ArrayList<>() : null;
+        List<ChangeInfo> pending = new ArrayList<>();
+        for (List<DiffHunk> fileHunks = files.take(); !fileHunks.isEmpty(); fileHunks = files.take()) {
+            fileCount++;
+            List<ChangeInfo> changes = diffService.extractFileChanges(fileHunks, projectRoot);
+            changes = diffService.applyFilters(changes);
+            changeCount += changes.size();
+            if (allChanges != null) {
+                allChanges.addAll(changes);
+            }
+
+            pending.addAll(changes);
+            while (pending.size() >= batchSize) {
+                batches.put(new ArrayList<>(pending.subList(0, batchSize)));
+                pending = new ArrayList<>(pending.subList(batchSize, pending.size()));
+            }
+        }
+        if (!pending.isEmpty()) {
+            batches.put(pending);
+        }
+        if (allChanges != null) {
+            // 在结束标记之前写出，保证流水线返回时中间文件已完整
+            diffService.generateInputJson(allChanges, projectRoot, neo4jConfig, intermediatePath);
+            System.out.println("[流水线] 中间文件已保存到: " + intermediatePath);
+        }
+        batches.put(Collections.emptyList());
+    }
+
+    /**
+     * 阶段3：按批查询图谱（变更实体、上下游）并提取源码
+     */
+    private void analyzeStage(BlockingQueue<List<ChangeInfo>> batches,
+                              BlockingQueue<List<ChangeAnalysis>> results) throws Exception {
+        for (List<ChangeInfo> batch = batches.take(); !batch.isEmpty(); batch = batches.take()) {
+            batchCount++;
+            results.put(analysisService.analyzeChanges(batch));
+        }
+        results.put(Collections.emptyList());
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * 执行一个阶段，失败时记录异常（调用方线程发现后停止所有阶段）
+     */
+    private static void runStage(AtomicReference<Throwable> failure, Stage stage) {
+        try {
+            stage.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private static <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("流水线被中断", e);
+        }
+    }
+
+    private static void rethrow(Throwable cause) throws IOException {
+        if (cause == null) {
+            return;
+        }
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException("流水线执行失败: " + cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,106 @@
+package com.java.extractor.service;
+
+import com.java.extractor.model.EntityInfo;
+import com.java.extractor.model.QueryConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 上下游扇出保护
+ * 工具方法、公共基类等热点实体可能有成千上万个上游，全部返回会逐个解析调用方源码、输出体积失控。
+ * 结果按 距离升序、关系count降序、ID升序 排序后截断到 maxNeighbors；
+ * 直接邻居数达到 hubDegreeThreshold 的热点实体按 hubStrategy 整体跳过（skip）或只保留排在最前的样本（sample）
+ */
+final class FanOutGuard {
+
+    static final String HUB_SKIP = "skip";
+    static final String HUB_SAMPLE = "sample";
+
+    // 离变更越近、调用次数越多越靠前；ID保证结果稳定
+    private static final Comparator<EntityInfo> RANK = Comparator
+        .comparing((EntityInfo entity) -> entity.getDistance() == null ? Integer.MAX_VALUE : entity.getDistance())
+        .thenComparing(entity -> entity.getRelationCount() == null ? 0 : entity.getRelationCount(), Comparator.reverseOrder())
+        .thenComparing(entity -> entity.getId() == null ? "" : entity.getId());
+
+    private FanOutGuard() {
+    }
+
+    /**
+     * @throws IllegalArgumentException 热点处理方式不是 sample 或 skip
+     */
+    static void checkHubStrategy(String hubStrategy) {
+        if (!HUB_SAMPLE.equalsIgnoreCase(hubStrategy) && !HUB_SKIP.equalsIgnoreCase(hubStrategy)) {
+            throw new IllegalArgumentException("queryConfig.hubStrategy 只能是 sample 或 skip: " + hubStrategy);
+        }
+    }
+
+    /**
+     * 是否配置了截断或热点保护（都未配置时调用方可以跳过排序，保持原有顺序）
+     */
+    static boolean isEnabled(QueryConfig config) {
+        return config.getMaxNeighbors() > 0 || config.getHubDegreeThreshold() > 0;
+    }
+
+    /**
+     * 排序并按配置截断，返回新列表（截断前的总数见 total）
+     * 热点判断基于直接邻居数，查询的每跳上限不作用于第一跳，所以是真实的度数
+     *
+     * @param label 日志中的说明，如 "上游 method_A_a()"
+     * @param log   截断、热点日志的输出（调用方的日志方法，并发分析时静默）
+     */
+    static List<EntityInfo> limit(List<EntityInfo> neighbors, QueryConfig config, String label, Consumer<String> log) {
+        List<EntityInfo> ranked = new ArrayList<>(neighbors);
+        ranked.sort(RANK);
+
+        int limit = config.getMaxNeighbors() > 0 ? config.getMaxNeighbors() : Integer.MAX_VALUE;
+        int threshold = config.getHubDegreeThreshold();
+        if (threshold > 0) {
+            int degree = directDegree(ranked);
+            if (degree >= threshold) {
+                if (HUB_SKIP.equalsIgnoreCase(config.getHubStrategy())) {
+                    log.accept("[扇出保护] 热点实体，跳过" + label + ": 直接邻居 " + degree + " >= " + threshold);
+                    return new ArrayList<>();
+                }
+                limit = Math.min(limit, Math.max(config.getHubSampleSize(), 0));
+                log.accept("[扇出保护] 热点实体，采样" + label + ": 直接邻居 " + degree + " >= " + threshold
+                    + "，保留前 " + Math.min(limit, ranked.size()) + " 个");
+            }
+        }
+
+        if (ranked.size() <= limit) {
+            return ranked;
+        }
+        log.accept("[扇出保护] 截断" + label + ": " + ranked.size() + " -> " + limit);
+        return new ArrayList<>(ranked.subList(0, limit));
+    }
+
+    /**
+     * 截断前的总数：查询返回的数量，加上多跳查询中被每跳上限截掉的邻居数
+     * （按前沿节点的 neighborTotal 累计，被截掉的节点可能经其他节点到达，是上界）
+     */
+    static int total(List<EntityInfo> neighbors, int maxFanOutPerHop) {
+        int total = neighbors.size();
+        if (maxFanOutPerHop <= 0) {
+            return total;
+        }
+        for (EntityInfo entity : neighbors) {
+            if (entity.getNeighborTotal() != null && entity.getNeighborTotal() > maxFanOutPerHop) {
+                total += entity.getNeighborTotal() - maxFanOutPerHop;
+            }
+        }
+        return total;
+    }
+
+    private static int directDegree(List<EntityInfo> ranked) {
+        int degree = 0;
+        for (EntityInfo entity : ranked) {
+            if (entity.getDistance() != null && entity.getDistance() == 1) {
+                degree++;
+            }
+        }
+        return degree;
+    }
+}
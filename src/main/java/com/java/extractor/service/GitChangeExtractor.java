@@ -3,11 +3,22 @@ package com.java.extractor.service;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.java.extractor.model.ContextOutput;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Git变更提取器
@@ -26,56 +37,111 @@ public class GitChangeExtractor {
      * @return 该类的变更信息映射
      */
     public ContextOutput.ClassContext extractClassChanges(String generatedInputPath, String targetClassName) {
-        ContextOutput.ClassContext classContext = new ContextOutput.ClassContext();
+        ContextOutput.ClassContext classContext = newClassContext();
         
-        // 初始化 ClassOrInterface 上下文（字段、方法为列表，构造函数已初始化）
-        classContext.setClassOrInterface(new ContextOutput.EntityContext());
+        try {
+            forEachChange(generatedInputPath, changeObject -> {
+                // 检查是否是目标类的变更
+                if (targetClassName.equals(classNameOf(changeObject))) {
+                    addChange(changeObject, classContext);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("读取generated_input.json失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return classContext;
+    }
+    
+    /**
+     * 一次流式读取generated_input.json，按类名归集所有变更
+     * 批量分析时用它代替逐个类调用 extractClassChanges，输入文件只读取、解析一遍
+     * 
+     * @param generatedInputPath generated_input.json文件路径
+     * @return 类名 -> 该类的变更信息（按类名首次出现的顺序）
+     */
+    public Map<String, ContextOutput.ClassContext> indexClassChanges(String generatedInputPath) {
+        Map<String, ContextOutput.ClassContext> index = new LinkedHashMap<>();
         
         try {
-            // 读取整个JSON文件
-            String content = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(generatedInputPath)));
-            JsonObject rootObject = JsonParser.parseString(content).getAsJsonObject();
-            
-            // 获取changes数组
-            if (rootObject.has("changes") && rootObject.get("changes").isJsonArray()) {
-                JsonArray changesArray = rootObject.get("changes").getAsJsonArray();
-                
-                for (JsonElement changeElement : changesArray) {
-                    if (changeElement.isJsonObject()) {
-                        JsonObject changeObject = changeElement.getAsJsonObject();
-                        
-                        // 检查是否是目标类的变更
-                        if (changeObject.has("className") && targetClassName.equals(changeObject.get("className").getAsString())) {
-                            String entityType = changeObject.get("entity_type").getAsString();
-
-                            if ("Field".equals(entityType)) {
-                                ContextOutput.EntityContext item = new ContextOutput.EntityContext();
-                                extractChangesFromNode(changeObject, item);
-                                classContext.getField().add(item);
-                            } else if ("Method".equals(entityType)) {
-                                ContextOutput.EntityContext item = new ContextOutput.EntityContext();
-                                extractChangesFromNode(changeObject, item);
-                                classContext.getMethod().add(item);
-                            } else if ("ClassOrInterface".equals(entityType)) {
-                                // 聚合到单个 ClassOrInterface 上下文
-                                appendChangesToClass(changeObject, classContext);
-                                // 同时记录类的 filePath（如果存在）
-                                if (changeObject.has("filePath")) {
-                                    classContext.setFilePath(changeObject.get("filePath").getAsString());
-                                }
-                            }
-                        }
-                    }
+            forEachChange(generatedInputPath, changeObject -> {
+                String className = classNameOf(changeObject);
+                if (className != null) {
+                    addChange(changeObject, index.computeIfAbsent(className, k -> newClassContext()));
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("读取generated_input.json失败: " + e.getMessage());
             e.printStackTrace();
         }
         
+        return index;
+    }
+    
+    /**
+     * 流式遍历changes数组中的每个变更对象，其他顶层字段直接跳过，内存中每次只保留一个变更
+     */
+    private void forEachChange(String generatedInputPath, Consumer<JsonObject> consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new BufferedInputStream(new FileInputStream(generatedInputPath)), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"changes".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    JsonElement changeElement = JsonParser.parseReader(reader);
+                    if (changeElement.isJsonObject()) {
+                        consumer.accept(changeElement.getAsJsonObject());
+                    }
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+    }
+    
+    private ContextOutput.ClassContext newClassContext() {
+        ContextOutput.ClassContext classContext = new ContextOutput.ClassContext();
+        // 初始化 ClassOrInterface 上下文（字段、方法为列表，构造函数已初始化）
+        classContext.setClassOrInterface(new ContextOutput.EntityContext());
         return classContext;
     }
     
+    private String classNameOf(JsonObject changeObject) {
+        JsonElement className = changeObject.get("className");
+        return className == null || className.isJsonNull() ? null : className.getAsString();
+    }
+    
+    /**
+     * 把一条变更加入所属类的上下文
+     */
+    private void addChange(JsonObject changeObject, ContextOutput.ClassContext classContext) {
+        JsonElement entityTypeElement = changeObject.get("entity_type");
+        String entityType = entityTypeElement == null || entityTypeElement.isJsonNull()
+            ? null : entityTypeElement.getAsString();
+
+        if ("Field".equals(entityType)) {
+            ContextOutput.EntityContext item = new ContextOutput.EntityContext();
+            extractChangesFromNode(changeObject, item);
+            classContext.getField().add(item);
+        } else if ("Method".equals(entityType)) {
+            ContextOutput.EntityContext item = new ContextOutput.EntityContext();
+            extractChangesFromNode(changeObject, item);
+            classContext.getMethod().add(item);
+        } else if ("ClassOrInterface".equals(entityType)) {
+            // 聚合到单个 ClassOrInterface 上下文
+            appendChangesToClass(changeObject, classContext);
+            // 同时记录类的 filePath（如果存在）
+            if (changeObject.has("filePath")) {
+                classContext.setFilePath(changeObject.get("filePath").getAsString());
+            }
+        }
+    }
+    
     /**
      * 从JSON节点中提取变更信息
      */
@@ -88,26 +154,19 @@ public class GitChangeExtractor {
             entityContext.setFieldName(node.get("fieldName").getAsString());
         } else if ("Method".equals(entityType) && node.has("methodName")) {
             entityContext.setMethodName(node.get("methodName").getAsString());
+            if (node.has("methodSignature") && !node.get("methodSignature").isJsonNull()) {
+                entityContext.setMethodSignature(node.get("methodSignature").getAsString());
+            }
         }
         
         // 提取addedLines
         List<String> addedLines = new ArrayList<>();
-        if (node.has("addedLines") && node.get("addedLines").isJsonArray()) {
-            JsonArray addedArray = node.get("addedLines").getAsJsonArray();
-            for (JsonElement element : addedArray) {
-                addedLines.add(element.getAsString());
-            }
-        }
+        appendLines(node, "addedLines", addedLines);
         changes.setAddedLines(addedLines);
         
         // 提取removedLines
         List<String> removedLines = new ArrayList<>();
-        if (node.has("removedLines") && node.get("removedLines").isJsonArray()) {
-            JsonArray removedArray = node.get("removedLines").getAsJsonArray();
-            for (JsonElement element : removedArray) {
-                removedLines.add(element.getAsString());
-            }
-        }
+        appendLines(node, "removedLines", removedLines);
         changes.setRemovedLines(removedLines);
         
         entityContext.setChanges(changes);
@@ -139,18 +198,20 @@ public class GitChangeExtractor {
         }
 
         // 追加新增行
-        if (node.has("addedLines") && node.get("addedLines").isJsonArray()) {
-            JsonArray addedArray = node.get("addedLines").getAsJsonArray();
-            for (JsonElement element : addedArray) {
-                ctx.getChanges().getAddedLines().add(element.getAsString());
-            }
-        }
+        appendLines(node, "addedLines", ctx.getChanges().getAddedLines());
 
         // 追加删除行
-        if (node.has("removedLines") && node.get("removedLines").isJsonArray()) {
-            JsonArray removedArray = node.get("removedLines").getAsJsonArray();
-            for (JsonElement element : removedArray) {
-                ctx.getChanges().getRemovedLines().add(element.getAsString());
+        appendLines(node, "removedLines", ctx.getChanges().getRemovedLines());
+    }
+
+    /**
+     * 把 node 中字符串数组字段 key 的元素追加到 lines（字段不存在或不是数组时不变）
+     */
+    private void appendLines(JsonObject node, String key, List<String> lines) {
+        JsonElement array = node.get(key);
+        if (array != null && array.isJsonArray()) {
+            for (JsonElement element : array.getAsJsonArray()) {
+                lines.add(element.getAsString());
             }
         }
     }
@@ -159,38 +220,23 @@ public class GitChangeExtractor {
      * 获取generated_input.json中所有涉及的类名
      * 
      * @param generatedInputPath generated_input.json文件路径
-     * @return 类名列表
+     * @return 类名列表（按首次出现的顺序）
      */
     public List<String> getAllClassNames(String generatedInputPath) {
-        List<String> classNames = new ArrayList<>();
+        Set<String> classNames = new LinkedHashSet<>();
         
         try {
-            // 读取整个JSON文件
-            String content = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(generatedInputPath)));
-            JsonObject rootObject = JsonParser.parseString(content).getAsJsonObject();
-            
-            // 获取changes数组
-            if (rootObject.has("changes") && rootObject.get("changes").isJsonArray()) {
-                JsonArray changesArray = rootObject.get("changes").getAsJsonArray();
-                
-                for (JsonElement changeElement : changesArray) {
-                    if (changeElement.isJsonObject()) {
-                        JsonObject changeObject = changeElement.getAsJsonObject();
-                        
-                        if (changeObject.has("className")) {
-                            String className = changeObject.get("className").getAsString();
-                            if (!classNames.contains(className)) {
-                                classNames.add(className);
-                            }
-                        }
-                    }
+            forEachChange(generatedInputPath, changeObject -> {
+                String className = classNameOf(changeObject);
+                if (className != null) {
+                    classNames.add(className);
                 }
-            }
+            });
         } catch (Exception e) {
             System.err.println("读取generated_input.json失败: " + e.getMessage());
             e.printStackTrace();
         }
         
-        return classNames;
+        return new ArrayList<>(classNames);
     }
 }
@@ -0,0 +1,187 @@
+package com.java.extractor.source;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.java.ere.util.SourceOffsets;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 源文件解析结果LRU缓存
+ * 同一个文件常被多个上下游实体引用（如同一个Service类中的几十个调用方），每次都重新解析代价很高。
+ * 按绝对路径缓存 CompilationUnit，命中时校验修改时间和文件大小，文件变化后重新解析（源码快照中的文件按内容哈希缓存）；
+ * 容量有上限，超出时淘汰最久未使用的条目。
+ * 同时保留解析时读到的文件内容，切片失效时按声明位置截取原文所需的 SourceOffsets 在首次使用时构建，
+ * 与 CompilationUnit 的位置一一对应，同一文件的多个实体不再重复读文件、重建行表
+ *
+ * SourceExtractor、MethodExtractor、JavaChangeExtractor 默认共用进程内的同一个实例（shared()），
+ * 缓存的 CompilationUnit 只做只读遍历，调用方不能修改
+ */
+public class CompilationUnitCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final CompilationUnitCache SHARED = new CompilationUnitCache(DEFAULT_MAX_ENTRIES);
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CachedUnit> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class CachedUnit {
+        final long lastModified;
+        final long size;
+        final ParsedSource source;
+
+        CachedUnit(long lastModified, long size, ParsedSource source) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.source = source;
+        }
+    }
+
+    /**
+     * 一个源文件的解析结果及解析时的文件内容
+     */
+    public static final class ParsedSource {
+        private final CompilationUnit unit;
+        private final byte[] content;
+        private SourceOffsets offsets;
+
+        ParsedSource(CompilationUnit unit, byte[] content) {
+            this.unit = unit;
+            this.content = content;
+        }
+
+        public CompilationUnit getUnit() {
+            return unit;
+        }
+
+        /**
+         * 解析时文件内容的位置换算（首次调用时构建）
+         */
+        public synchronized SourceOffsets getOffsets() {
+            if (offsets == null) {
+                offsets = new SourceOffsets(content);
+            }
+            return offsets;
+        }
+    }
+
+    public CompilationUnitCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CachedUnit>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUnit> eldest) {
+                if (size() > CompilationUnitCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 进程内共享的缓存
+     */
+    public static CompilationUnitCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * 解析文件，(路径, 修改时间, 大小) 未变时直接返回缓存的结果
+     *
+     * @throws IOException 文件不存在或读取失败
+     * @throws com.github.javaparser.ParseProblemException 语法错误
+     */
+    public CompilationUnit parse(File file) throws IOException {
+        return parseSource(file).getUnit();
+    }
+
+    /**
+     * 解析文件并保留文件内容，(路径, 修改时间, 大小) 未变时直接返回缓存的结果
+     *
+     * @throws IOException 文件不存在或读取失败
+     * @throws com.github.javaparser.ParseProblemException 语法错误
+     */
+    public ParsedSource parseSource(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long size = file.length();
+
+        ParsedSource cached = lookup(path, lastModified, size);
+        if (cached != null) {
+            return cached;
+        }
+        // 解析放在锁外，不阻塞其他文件的查找；同一文件被并发解析时以后写入的为准
+        ParsedSource source = parseContent(Files.readAllBytes(file.toPath()));
+        store(path, lastModified, size, source);
+        return source;
+    }
+
+    /**
+     * 解析不在工作区中的源码（如源码快照中的文件），按内容哈希缓存，内容不变所以无需校验
+     *
+     * @param content 缓存未命中时提供文件内容
+     * @throws com.github.javaparser.ParseProblemException 语法错误
+     */
+    public ParsedSource parseSource(String contentHash, Supplier<byte[]> content) {
+        String key = "#" + contentHash;
+        ParsedSource cached = lookup(key, 0, 0);
+        if (cached != null) {
+            return cached;
+        }
+        ParsedSource source = parseContent(content.get());
+        store(key, 0, 0, source);
+        return source;
+    }
+
+    /**
+     * 按UTF-8解码后解析（与 SourceOffsets 的解码一致，位置可直接换算）
+     */
+    private static ParsedSource parseContent(byte[] content) {
+        return new ParsedSource(StaticJavaParser.parse(new String(content, StandardCharsets.UTF_8)), content);
+    }
+
+    private synchronized ParsedSource lookup(String key, long lastModified, long size) {
+        CachedUnit cached = entries.get(key);
+        if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+            hits++;
+            return cached.source;
+        }
+        misses++;
+        return null;
+    }
+
+    private synchronized void store(String key, long lastModified, long size, ParsedSource source) {
+        entries.put(key, new CachedUnit(lastModified, size, source));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public synchronized void printStats() {
+        System.out.println(String.format("[解析缓存] 命中: %d, 未命中: %d, 命中率: %.1f%%, 淘汰: %d, 当前条目: %d/%d",
+            hits, misses, getHitRate() * 100, evictions, entries.size(), maxEntries));
+    }
+}
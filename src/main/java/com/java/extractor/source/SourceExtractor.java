@@ -1,31 +1,92 @@
 package com.java.extractor.source;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.TypeParameter;
+import com.java.ere.util.SourceOffsets;
+import com.java.ere.util.SourceSnapshot;
 import com.java.extractor.model.EntityInfo;
+import com.java.extractor.query.MethodOverloads;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 源码提取服务
+ * 方法、字段优先按图谱中记录的字节区间直接读取文件切片；区间缺失或内容哈希不一致（文件已修改）时回退到解析文件
+ * 设置了源码快照时，快照中有的文件从快照读取（与图谱一致），不访问工作区
  */
 public class SourceExtractor {
 
+    // 不小于该大小的文件用内存映射读取切片
+    private static final long MMAP_THRESHOLD = 1024 * 1024;
+
     private final String projectRoot;
+    private final CompilationUnitCache parseCache;
+    private SourceSnapshot snapshot;
+
+    private final AtomicLong slices = new AtomicLong();        // 直接切片成功
+    private final AtomicLong staleSlices = new AtomicLong();   // 区间内容已变化，回退解析
+    private final AtomicLong missingRanges = new AtomicLong(); // 图谱中没有区间，回退解析
 
     public SourceExtractor(String projectRoot) {
+        this(projectRoot, CompilationUnitCache.shared());
+    }
+
+    /**
+     * @param parseCache 源文件解析缓存，同一文件的多个实体只解析一次
+     */
+    public SourceExtractor(String projectRoot, CompilationUnitCache parseCache) {
         this.projectRoot = projectRoot;
+        this.parseCache = parseCache;
     }
     
     public String getProjectRoot() {
         return projectRoot;
     }
 
+    public CompilationUnitCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * 设置源码快照（ConfigFileMain 在结果JSON旁生成的 .srcpack 文件），为null时只读工作区
+     * 需在开始提取前设置
+     */
+    public void setSourceSnapshot(SourceSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public SourceSnapshot getSourceSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 输出切片与解析缓存的统计
+     */
+    public void printStats() {
+        System.out.println("[源码切片] 直接切片: " + slices.get() + ", 文件已修改回退解析: " + staleSlices.get()
+            + ", 无区间回退解析: " + missingRanges.get()
+            + (snapshot != null ? ", 源码快照: " + snapshot.getFile().getPath() : ""));
+        parseCache.printStats();
+    }
+
     /**
      * 为实体提取源码
      */
@@ -60,15 +121,22 @@ public class SourceExtractor {
      * 提取方法源码
      */
     private String extractMethodSource(EntityInfo entity) throws Exception {
-        File file = resolveFile(entity.getFilePath());
-        if (!file.exists()) {
-            System.err.println("文件不存在: " + file.getAbsolutePath());
+        if (!sourceExists(entity.getFilePath())) {
             return null;
         }
 
-        CompilationUnit cu = StaticJavaParser.parse(file);
+        String slice = sliceSource(entity);
+        if (slice != null) {
+            return slice;
+        }
+
+        CompilationUnitCache.ParsedSource source = parseSource(entity.getFilePath());
+        CompilationUnit cu = source.getUnit();
         String owner = entity.getOwner();
         String methodName = entity.getName();
+        // 实体ID带参数类型时按参数类型选择重载，都不一致（如签名已修改）时取第一个同名方法
+        boolean hasSignature = entity.getId() != null && entity.getId().indexOf('(') >= 0;
+        MethodDeclaration firstMatch = null;
 
         // 查找方法
         for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
@@ -88,8 +156,15 @@ public class SourceExtractor {
                 }
             }
 
-            // 提取完整方法体
-            return method.toString();
+            if (!hasSignature || MethodOverloads.matchesSignature(entity.getId(), parameterSignature(method))) {
+                return declarationSource(source, method);
+            }
+            if (firstMatch == null) {
+                firstMatch = method;
+            }
+        }
+        if (firstMatch != null) {
+            return declarationSource(source, firstMatch);
         }
 
         System.err.println("未找到方法: " + entity.getId());
@@ -100,29 +175,37 @@ public class SourceExtractor {
      * 提取类源码
      */
     private String extractClassSource(EntityInfo entity) throws Exception {
-        File file = resolveFile(entity.getFilePath());
-        if (!file.exists()) {
-            System.err.println("文件不存在: " + file.getAbsolutePath());
+        if (!sourceExists(entity.getFilePath())) {
             return null;
         }
 
         // 对于类，返回整个文件内容
-        return new String(Files.readAllBytes(file.toPath()));
+        return readSource(entity.getFilePath());
     }
 
     /**
      * 提取字段源码
      */
     private String extractFieldSource(EntityInfo entity) throws Exception {
-        File file = resolveFile(entity.getFilePath());
-        if (!file.exists()) {
-            System.err.println("文件不存在: " + file.getAbsolutePath());
+        if (!sourceExists(entity.getFilePath())) {
             return null;
         }
 
-        CompilationUnit cu = StaticJavaParser.parse(file);
-        String owner = entity.getOwner();
+        String slice = sliceSource(entity);
+        if (slice != null) {
+            return slice;
+        }
+
+        CompilationUnitCache.ParsedSource source = parseSource(entity.getFilePath());
+        CompilationUnit cu = source.getUnit();
         String fieldName = entity.getName();
+        // 字段节点没有owner属性，从ID（field_类名_字段名）中取类名，区分同一文件中不同类的同名字段
+        String owner = entity.getOwner();
+        String id = entity.getId();
+        if (owner == null && id != null && fieldName != null && id.startsWith("field_")
+                && id.endsWith("_" + fieldName) && id.length() > "field_".length() + fieldName.length() + 1) {
+            owner = id.substring("field_".length(), id.length() - fieldName.length() - 1);
+        }
 
         // 查找字段
         for (FieldDeclaration field : cu.findAll(FieldDeclaration.class)) {
@@ -146,13 +229,202 @@ public class SourceExtractor {
             }
 
             // 提取字段声明
-            return field.toString();
+            return declarationSource(source, field);
         }
 
         System.err.println("未找到字段: " + entity.getId());
         return null;
     }
 
+    /**
+     * 方法声明的参数类型签名，格式与方法ID括号内相同（如 Map<String,Integer>,int）
+     */
+    private static String parameterSignature(MethodDeclaration method) {
+        StringBuilder signature = new StringBuilder();
+        method.getParameters().forEach(param -> {
+            if (signature.length() > 0) {
+                signature.append(',');
+            }
+            signature.append(param.getType().asString());
+        });
+        return signature.toString();
+    }
+
+    /**
+     * 按声明在文件中的位置截取原始源码（含声明前的注释，格式与切片相同），而不是 toString() 重新打印的代码
+     * 位置换算用解析缓存中与 CompilationUnit 同一份的文件内容，不重新读文件
+     */
+    private static String declarationSource(CompilationUnitCache.ParsedSource source, Node declaration) {
+        if (!declaration.getRange().isPresent()) {
+            return declaration.toString();
+        }
+        return dedent(source.getOffsets().text(SourceOffsets.declarationBegin(declaration),
+            declaration.getRange().get().end));
+    }
+
+    /**
+     * 按实体的字节区间读取源码切片（提取时的原始文本，含声明前的注释）
+     *
+     * @return 切片内容；图谱中没有区间、或区间内容与提取时的哈希不一致时返回null
+     */
+    private String sliceSource(EntityInfo entity) throws IOException {
+        Integer beginOffset = entity.getBeginOffset();
+        Integer endOffset = entity.getEndOffset();
+        if (beginOffset == null || endOffset == null || entity.getContentHash() == null) {
+            missingRanges.incrementAndGet();
+            return null;
+        }
+
+        byte[] bytes = inSnapshot(entity.getFilePath())
+            ? snapshot.read(entity.getFilePath(), beginOffset, endOffset)
+            : readRange(resolveFile(entity.getFilePath()), beginOffset, endOffset);
+        if (bytes == null || !entity.getContentHash().equals(SourceOffsets.contentHash(bytes, 0, bytes.length))) {
+            staleSlices.incrementAndGet();
+            return null;
+        }
+        slices.incrementAndGet();
+        return dedent(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 去掉切片第2行起的公共缩进（切片从声明处开始，首行本身没有缩进）
+     */
+    private static String dedent(String source) {
+        String[] lines = source.split("\n", -1);
+        int indent = Integer.MAX_VALUE;
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].trim().isEmpty()) {
+                indent = Math.min(indent, leadingWhitespace(lines[i]));
+            }
+        }
+        if (indent == Integer.MAX_VALUE || indent == 0) {
+            return source;
+        }
+        StringBuilder sb = new StringBuilder(lines[0]);
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            // 空白行可能比公共缩进短
+            sb.append('\n').append(line.substring(Math.min(indent, leadingWhitespace(line))));
+        }
+        return sb.toString();
+    }
+
+    private static int leadingWhitespace(String line) {
+        int count = 0;
+        while (count < line.length() && (line.charAt(count) == ' ' || line.charAt(count) == '\t')) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 读取文件的 [beginOffset, endOffset) 字节，大文件用内存映射，区间超出文件时返回null
+     */
+    private static byte[] readRange(File file, int beginOffset, int endOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (beginOffset < 0 || endOffset < beginOffset || endOffset > size) {
+                return null;
+            }
+            byte[] bytes = new byte[endOffset - beginOffset];
+            if (size >= MMAP_THRESHOLD) {
+                channel.map(FileChannel.MapMode.READ_ONLY, beginOffset, bytes.length).get(bytes);
+                return bytes;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, beginOffset + buffer.position()) < 0) {
+                    return null;
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * 预估实体源码的字节数，不读取文件：方法、字段按图谱中的字节区间，类按文件大小
+     *
+     * @return 字节数；无法预估（图谱中没有区间、文件不存在）时返回-1
+     */
+    public long estimateSourceSize(EntityInfo entity) {
+        if (entity == null || entity.getFilePath() == null || entity.getEntity_type() == null) {
+            return -1;
+        }
+        if ("ClassOrInterface".equals(entity.getEntity_type())) {
+            if (inSnapshot(entity.getFilePath())) {
+                return snapshot.length(entity.getFilePath());
+            }
+            File file = resolveFile(entity.getFilePath());
+            return file.isFile() ? file.length() : -1;
+        }
+        if (entity.getBeginOffset() != null && entity.getEndOffset() != null) {
+            return Math.max(0, entity.getEndOffset() - entity.getBeginOffset());
+        }
+        return -1;
+    }
+
+    /**
+     * 提取类骨架：类声明、字段和方法签名，不含方法体（整个文件放不下时代替类源码）
+     */
+    public String extractClassSkeleton(EntityInfo classEntity) {
+        if (classEntity == null || classEntity.getFilePath() == null || !sourceExists(classEntity.getFilePath())) {
+            return null;
+        }
+
+        try {
+            CompilationUnit cu = parseSource(classEntity.getFilePath()).getUnit();
+            for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+                if (!classDecl.getNameAsString().equals(classEntity.getName())) {
+                    continue;
+                }
+
+                StringBuilder skeleton = new StringBuilder();
+                skeleton.append("// 类骨架: ").append(classDecl.getNameAsString()).append("（仅保留字段与方法签名）\n");
+                for (Modifier modifier : classDecl.getModifiers()) {
+                    skeleton.append(modifier.getKeyword().asString()).append(" ");
+                }
+                skeleton.append(classDecl.isInterface() ? "interface " : "class ").append(classDecl.getNameAsString());
+                if (classDecl.getTypeParameters().isNonEmpty()) {
+                    skeleton.append("<");
+                    for (int i = 0; i < classDecl.getTypeParameters().size(); i++) {
+                        TypeParameter typeParameter = classDecl.getTypeParameters().get(i);
+                        skeleton.append(i > 0 ? ", " : "").append(typeParameter);
+                    }
+                    skeleton.append(">");
+                }
+                appendTypes(skeleton, " extends ", classDecl.getExtendedTypes());
+                appendTypes(skeleton, " implements ", classDecl.getImplementedTypes());
+                skeleton.append(" {\n");
+
+                for (BodyDeclaration<?> member : classDecl.getMembers()) {
+                    if (member instanceof FieldDeclaration) {
+                        FieldDeclaration field = ((FieldDeclaration) member).clone();
+                        field.removeComment();
+                        skeleton.append("    ").append(field.toString().replace("\n", "\n    ")).append("\n");
+                    } else if (member instanceof ConstructorDeclaration) {
+                        skeleton.append("    ").append(((ConstructorDeclaration) member).getDeclarationAsString(true, true, true).trim()).append(";\n");
+                    } else if (member instanceof MethodDeclaration) {
+                        skeleton.append("    ").append(((MethodDeclaration) member).getDeclarationAsString(true, true, true).trim()).append(";\n");
+                    } else if (member instanceof TypeDeclaration) {
+                        skeleton.append("    // 内部类型: ").append(((TypeDeclaration<?>) member).getNameAsString()).append("\n");
+                    }
+                }
+                skeleton.append("}\n");
+                return skeleton.toString();
+            }
+            System.err.println("未找到类: " + classEntity.getId());
+        } catch (Exception e) {
+            System.err.println("提取类骨架失败: " + classEntity.getId() + " - " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static void appendTypes(StringBuilder sb, String keyword, List<ClassOrInterfaceType> types) {
+        for (int i = 0; i < types.size(); i++) {
+            sb.append(i == 0 ? keyword : ", ").append(types.get(i));
+        }
+    }
+
     /**
      * 提取方法所在类的上下文（类声明+字段）
      */
@@ -162,12 +434,11 @@ public class SourceExtractor {
         }
 
         try {
-            File file = resolveFile(methodEntity.getFilePath());
-            if (!file.exists()) {
+            if (!inSnapshot(methodEntity.getFilePath()) && !resolveFile(methodEntity.getFilePath()).exists()) {
                 return null;
             }
 
-            CompilationUnit cu = StaticJavaParser.parse(file);
+            CompilationUnit cu = parseSource(methodEntity.getFilePath()).getUnit();
             String owner = methodEntity.getOwner();
 
             // 查找类
@@ -196,6 +467,45 @@ public class SourceExtractor {
         return null;
     }
 
+    private boolean inSnapshot(String path) {
+        return snapshot != null && snapshot.contains(path);
+    }
+
+    /**
+     * 源文件是否可读（在快照中或工作区中存在），不可读时输出错误
+     */
+    private boolean sourceExists(String path) {
+        if (inSnapshot(path)) {
+            return true;
+        }
+        File file = resolveFile(path);
+        if (!file.exists()) {
+            System.err.println("文件不存在: " + file.getAbsolutePath());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 读取整个源文件：快照中有时从快照读取，否则读工作区
+     */
+    public String readSource(String path) throws IOException {
+        if (inSnapshot(path)) {
+            return new String(snapshot.read(path), StandardCharsets.UTF_8);
+        }
+        return new String(Files.readAllBytes(resolveFile(path).toPath()));
+    }
+
+    /**
+     * 解析源文件：快照中的文件按内容哈希缓存，工作区文件按路径和修改时间缓存
+     */
+    private CompilationUnitCache.ParsedSource parseSource(String path) throws IOException {
+        if (inSnapshot(path)) {
+            return parseCache.parseSource(snapshot.getContentHash(path), () -> snapshot.read(path));
+        }
+        return parseCache.parseSource(resolveFile(path));
+    }
+
     /**
      * 解析文件路径：优先支持绝对路径；若为相对路径，则基于projectRoot解析
      */
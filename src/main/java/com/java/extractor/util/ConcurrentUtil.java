@@ -0,0 +1,135 @@
+package com.java.extractor.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 并发工具类
+ *
+ * 功能：在有界线程池中并发处理一组任务，结果按输入顺序返回或交付
+ */
+public class ConcurrentUtil {
+
+    private ConcurrentUtil() {
+    }
+
+    /**
+     * 并发执行 task，返回与 items 一一对应的结果列表
+     * concurrency <= 1 或只有一个任务时直接在当前线程顺序执行
+     *
+     * @param items       输入列表
+     * @param concurrency 同时执行的任务数上限
+     * @param threadName  工作线程名前缀
+     * @param task        处理单个输入的任务，抛出的异常会在调用线程中重新抛出
+     */
+    public static <T, R> List<R> mapInOrder(List<T> items, int concurrency, String threadName, Function<T, R> task) {
+        List<R> results = new ArrayList<>(items.size());
+        if (concurrency <= 1 || items.size() <= 1) {
+            for (T item : items) {
+                results.add(task.apply(item));
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(concurrency, items.size()), daemonThreadFactory(threadName));
+        try {
+            List<Future<R>> futures = new ArrayList<>(items.size());
+            for (T item : items) {
+                futures.add(executor.submit(() -> task.apply(item)));
+            }
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("并发任务被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("并发任务执行失败: " + cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 并发执行 task，在调用线程中按输入顺序把结果交给 consumer：前面的结果都已交付时，完成的结果立即交付
+     * 同时执行或等待交付的任务不超过 2 * concurrency 个，已交付的结果不再被引用，内存只与窗口大小有关
+     * concurrency <= 1 或只有一个任务时直接在当前线程顺序执行
+     *
+     * @param task     处理单个输入的任务，抛出的异常会在调用线程中重新抛出
+     * @param consumer 结果的处理（在调用线程中执行）
+     */
+    public static <T, R> void forEachInOrder(List<T> items, int concurrency, String threadName,
+                                             Function<T, R> task, Consumer<R> consumer) {
+        if (concurrency <= 1 || items.size() <= 1) {
+            for (T item : items) {
+                consumer.accept(task.apply(item));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(concurrency, items.size()), daemonThreadFactory(threadName));
+        try {
+            Deque<Future<R>> window = new ArrayDeque<>();
+            int next = 0;
+            while (next < items.size() || !window.isEmpty()) {
+                while (next < items.size() && window.size() < 2 * concurrency) {
+                    T item = items.get(next++);
+                    window.add(executor.submit(() -> task.apply(item)));
+                }
+                consumer.accept(window.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("并发任务被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("并发任务执行失败: " + cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 将列表按固定大小切分（最后一段可能不足）
+     */
+    public static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        int step = Math.max(1, size);
+        for (int from = 0; from < items.size(); from += step) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + step)));
+        }
+        return chunks;
+    }
+
+    /**
+     * 守护线程工厂，线程名为 threadName-序号
+     */
+    public static ThreadFactory daemonThreadFactory(String threadName) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
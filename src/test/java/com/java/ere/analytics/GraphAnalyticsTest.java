@@ -0,0 +1,75 @@
+package com.java.ere.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.java.ere.Entity;
+
+import junit.framework.TestCase;
+
+/**
+ * 图分析指标：PageRank按节点数归一化后平均值为1，环上各节点相等
+ */
+public class GraphAnalyticsTest extends TestCase {
+
+    public void testPageRankMeanIsOne() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int n = 2 + random.nextInt(200);
+            Map<String, Entity> entities = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                entities.put(methodId(i), new Entity(methodId(i), "Method"));
+            }
+            // 部分方法无出边；部分调用指向未建节点的方法或非方法实体，不应计入
+            entities.put("type_T", new Entity("type_T", "ClassOrInterface"));
+            for (int i = 0; i < n; i++) {
+                Entity method = entities.get(methodId(i));
+                int calls = random.nextInt(4);
+                for (int j = 0; j < calls; j++) {
+                    method.addRelation("calls", methodId(random.nextInt(n)));
+                }
+                if (random.nextInt(5) == 0) {
+                    method.addRelation("calls", "method_External_x()");
+                }
+                if (random.nextInt(5) == 0) {
+                    method.addRelation("calls", "type_T");
+                }
+            }
+
+            GraphAnalytics.compute(entities);
+
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                double rank = Double.parseDouble(entities.get(methodId(i)).getProperties().get("pagerank"));
+                assertTrue(rank > 0);
+                sum += rank;
+            }
+            // 每个值保留6位小数，舍入误差不超过 5e-7
+            assertEquals("round " + round + ", n=" + n, 1.0, sum / n, 1e-6);
+            assertNull(entities.get("type_T").getProperties().get("pagerank"));
+        }
+    }
+
+    public void testPageRankOnCycleIsUniform() {
+        Map<String, Entity> entities = new HashMap<>();
+        int n = 5;
+        for (int i = 0; i < n; i++) {
+            Entity method = new Entity(methodId(i), "Method");
+            method.addRelation("calls", methodId((i + 1) % n));
+            entities.put(method.getId(), method);
+        }
+
+        GraphAnalytics.compute(entities);
+
+        for (int i = 0; i < n; i++) {
+            Map<String, String> properties = entities.get(methodId(i)).getProperties();
+            assertEquals("1.000000", properties.get("pagerank"));
+            assertEquals("5", properties.get("scc_size"));
+        }
+    }
+
+    private static String methodId(int i) {
+        return "method_C_m" + i + "()";
+    }
+}
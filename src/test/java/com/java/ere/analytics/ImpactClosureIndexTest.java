@@ -0,0 +1,129 @@
+package com.java.ere.analytics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.java.ere.Entity;
+
+import junit.framework.TestCase;
+
+/**
+ * 传递影响闭包索引：与逐个节点反向BFS的结果对比
+ */
+public class ImpactClosureIndexTest extends TestCase {
+
+    public void testRandomDagMatchesBreadthFirstSearch() {
+        Random random = new Random(37);
+        for (int round = 0; round < 20; round++) {
+            int n = 5 + random.nextInt(60);
+            // 只从编号小的节点调用编号大的节点，保证无环
+            Map<String, Entity> entities = randomCallGraph(random, n, true);
+            ImpactClosureIndex index = ImpactClosureIndex.build(entities);
+
+            assertEquals(n, index.size());
+            assertEquals(n, index.componentCount());
+            assertClosureMatches(entities, index);
+        }
+    }
+
+    /**
+     * 有环时同一分量中的其他节点也算上游
+     */
+    public void testRandomGraphWithCyclesMatchesBreadthFirstSearch() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            Map<String, Entity> entities = randomCallGraph(random, 5 + random.nextInt(60), false);
+            assertClosureMatches(entities, ImpactClosureIndex.build(entities));
+        }
+    }
+
+    public void testCycleWithTail() {
+        Map<String, Entity> entities = new LinkedHashMap<>();
+        Entity a = method(entities, "method_A_a()");
+        Entity b = method(entities, "method_B_b()");
+        Entity c = method(entities, "method_C_c()");
+        Entity d = method(entities, "method_D_d()");
+        a.addRelation("calls", b.getId());
+        b.addRelation("calls", a.getId());
+        b.addRelation("calls", c.getId());
+        c.addRelation("calls", d.getId());
+        ImpactClosureIndex index = ImpactClosureIndex.build(entities);
+
+        assertEquals(3, index.componentCount());
+        assertEquals(Arrays.asList("method_A_a()", "method_B_b()", "method_C_c()"), index.transitiveUpstream("method_D_d()"));
+        assertEquals(Arrays.asList("method_B_b()"), index.transitiveUpstream("method_A_a()"));
+        assertEquals(Arrays.asList("method_A_a()"), index.transitiveUpstream("method_B_b()"));
+        assertTrue(index.transitiveUpstream("method_X_x()").isEmpty());
+    }
+
+    /**
+     * overrides 沿边正向：父类方法的调用方经由它受子类方法变更的影响
+     */
+    public void testOverridesPointsToUpstream() {
+        Map<String, Entity> entities = new LinkedHashMap<>();
+        Entity impl = method(entities, "method_Impl_run()");
+        Entity api = method(entities, "method_Api_run()");
+        Entity caller = method(entities, "method_Caller_call()");
+        impl.addRelation("overrides", api.getId());
+        caller.addRelation("calls", api.getId());
+        ImpactClosureIndex index = ImpactClosureIndex.build(entities);
+
+        assertEquals(Arrays.asList("method_Api_run()", "method_Caller_call()"), index.transitiveUpstream("method_Impl_run()"));
+        assertEquals(Arrays.asList("method_Caller_call()"), index.transitiveUpstream("method_Api_run()"));
+    }
+
+    private static Map<String, Entity> randomCallGraph(Random random, int n, boolean acyclic) {
+        Map<String, Entity> entities = new LinkedHashMap<>();
+        List<Entity> methods = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            methods.add(method(entities, String.format("method_M_m%03d()", i)));
+        }
+        for (int i = 0; i < n; i++) {
+            int calls = random.nextInt(4);
+            for (int j = 0; j < calls; j++) {
+                int target = acyclic ? i + 1 + random.nextInt(n) : random.nextInt(n);
+                if (target < n && target != i) {
+                    methods.get(i).addRelation("calls", methods.get(target).getId());
+                }
+            }
+        }
+        return entities;
+    }
+
+    private static Entity method(Map<String, Entity> entities, String id) {
+        Entity entity = new Entity(id, "Method");
+        entities.put(id, entity);
+        return entity;
+    }
+
+    private static void assertClosureMatches(Map<String, Entity> entities, ImpactClosureIndex index) {
+        Map<String, List<String>> callers = new LinkedHashMap<>();
+        for (Entity entity : entities.values()) {
+            callers.computeIfAbsent(entity.getId(), id -> new ArrayList<>());
+            for (String callee : entity.getRelationsByType("calls").keySet()) {
+                callers.computeIfAbsent(callee, id -> new ArrayList<>()).add(entity.getId());
+            }
+        }
+        for (String id : entities.keySet()) {
+            TreeSet<String> expected = new TreeSet<>();
+            Deque<String> queue = new ArrayDeque<>();
+            queue.add(id);
+            while (!queue.isEmpty()) {
+                for (String caller : callers.get(queue.poll())) {
+                    if (expected.add(caller)) {
+                        queue.add(caller);
+                    }
+                }
+            }
+            expected.remove(id);
+            assertEquals(id, new ArrayList<>(expected), index.transitiveUpstream(id));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.java.ere.analytics;
+
+import junit.framework.TestCase;
+
+/**
+ * Tarjan强连通分量
+ */
+public class StronglyConnectedComponentsTest extends TestCase {
+
+    /**
+     * 环 0 -> 1 -> 2 -> 0 加一条尾巴 2 -> 3 -> 4：环缩成一个分量，尾巴上每个节点各自一个分量
+     */
+    public void testCycleWithTail() {
+        int[][] successors = {
+            {1},
+            {2},
+            {0, 3},
+            {4},
+            {}
+        };
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(successors);
+
+        assertEquals(3, scc.componentCount());
+        int cycle = scc.componentOf(0);
+        assertEquals(cycle, scc.componentOf(1));
+        assertEquals(cycle, scc.componentOf(2));
+        assertEquals(3, scc.componentSize(cycle));
+        assertEquals(1, scc.componentSize(scc.componentOf(3)));
+        assertEquals(1, scc.componentSize(scc.componentOf(4)));
+
+        // 逆拓扑序：能到达的分量编号更小
+        assertTrue(scc.componentOf(4) < scc.componentOf(3));
+        assertTrue(scc.componentOf(3) < cycle);
+    }
+
+    public void testSelfContainedNodes() {
+        int[][] successors = {{}, {}, {}};
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(successors);
+
+        assertEquals(3, scc.componentCount());
+        assertTrue(scc.componentOf(0) != scc.componentOf(1));
+        assertTrue(scc.componentOf(1) != scc.componentOf(2));
+    }
+
+    /**
+     * 长链不会因递归过深而栈溢出
+     */
+    public void testLongChain() {
+        int n = 200000;
+        int[][] successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            successors[i] = i + 1 < n ? new int[]{i + 1} : new int[0];
+        }
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(successors);
+
+        assertEquals(n, scc.componentCount());
+        assertTrue(scc.componentOf(n - 1) < scc.componentOf(0));
+    }
+}
@@ -0,0 +1,160 @@
+package com.java.ere.diff;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.java.ere.Entity;
+import com.java.ere.EntityJsonAdapter;
+
+import junit.framework.TestCase;
+
+/**
+ * 图谱快照diff：实体增删改、关系增删与count变化；有序快照走归并，无序快照走索引，结果相同
+ */
+public class GraphSnapshotDifferTest extends TestCase {
+
+    private final List<File> files = new ArrayList<>();
+
+    @Override
+    protected void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public void testAddRemoveModifySorted() throws IOException {
+        assertChanges(new GraphSnapshotDiffer().diff(write(oldSnapshot(), false), write(newSnapshot(), false)));
+    }
+
+    public void testAddRemoveModifyUnsorted() throws IOException {
+        assertChanges(new GraphSnapshotDiffer().diff(write(oldSnapshot(), true), write(newSnapshot(), true)));
+    }
+
+    public void testIdenticalSnapshots() throws IOException {
+        GraphChangeSet changes = new GraphSnapshotDiffer().diff(write(oldSnapshot(), false), write(oldSnapshot(), true));
+
+        assertTrue(changes.getAddedEntities().isEmpty());
+        assertTrue(changes.getRemovedEntities().isEmpty());
+        assertTrue(changes.getModifiedEntities().isEmpty());
+        assertTrue(changes.getAddedRelations().isEmpty());
+        assertTrue(changes.getRemovedRelations().isEmpty());
+        assertTrue(changes.getCountChangedRelations().isEmpty());
+    }
+
+    private static void assertChanges(GraphChangeSet changes) {
+        // 新增实体及其关系
+        assertEquals(1, changes.getAddedEntities().size());
+        assertEquals("method_C_c()", changes.getAddedEntities().get(0).getId());
+
+        // 删除实体及其关系
+        assertEquals(Arrays.asList("method_B_b()"), changes.getRemovedEntities());
+
+        // 修改：属性值变化、新增属性、删除属性、类型变化
+        assertEquals(2, changes.getModifiedEntities().size());
+        GraphChangeSet.EntityChange method = modified(changes, "method_A_a()");
+        assertNull(method.getOldType());
+        assertEquals("20", method.getChangedProperties().get("endLine"));
+        assertEquals("void", method.getChangedProperties().get("returnType"));
+        assertEquals(Arrays.asList("purpose"), method.getRemovedProperties());
+        GraphChangeSet.EntityChange type = modified(changes, "type_T");
+        assertEquals("ClassOrInterface", type.getOldType());
+        assertEquals("Interface", type.getType());
+
+        // 关系（无序快照按文件顺序输出，先按ID排序再比较）：A->B 随B删除，A->C 新增（C自身的关系也算新增），A->D count 1 -> 3
+        assertEquals(2, changes.getAddedRelations().size());
+        assertRelation(sorted(changes.getAddedRelations()).get(0), "method_A_a()", "calls", "method_C_c()", 0, 1);
+        assertRelation(sorted(changes.getAddedRelations()).get(1), "method_C_c()", "calls", "method_D_d()", 0, 1);
+        assertEquals(2, changes.getRemovedRelations().size());
+        assertRelation(sorted(changes.getRemovedRelations()).get(0), "method_A_a()", "calls", "method_B_b()", 1, 0);
+        assertRelation(sorted(changes.getRemovedRelations()).get(1), "method_B_b()", "calls", "method_D_d()", 2, 0);
+        assertEquals(1, changes.getCountChangedRelations().size());
+        assertRelation(sorted(changes.getCountChangedRelations()).get(0), "method_A_a()", "calls", "method_D_d()", 1, 3);
+    }
+
+    private static GraphChangeSet.EntityChange modified(GraphChangeSet changes, String id) {
+        for (GraphChangeSet.EntityChange change : changes.getModifiedEntities()) {
+            if (change.getId().equals(id)) {
+                return change;
+            }
+        }
+        fail("未找到修改的实体: " + id);
+        return null;
+    }
+
+    private static List<GraphChangeSet.RelationChange> sorted(List<GraphChangeSet.RelationChange> relations) {
+        List<GraphChangeSet.RelationChange> sorted = new ArrayList<>(relations);
+        sorted.sort(Comparator.comparing(GraphChangeSet.RelationChange::getSource)
+            .thenComparing(GraphChangeSet.RelationChange::getTarget));
+        return sorted;
+    }
+
+    private static void assertRelation(GraphChangeSet.RelationChange change, String source, String type,
+                                       String target, int oldCount, int newCount) {
+        assertEquals(source, change.getSource());
+        assertEquals(type, change.getType());
+        assertEquals(target, change.getTarget());
+        assertEquals(oldCount, change.getOldCount());
+        assertEquals(newCount, change.getNewCount());
+    }
+
+    private static List<Entity> oldSnapshot() {
+        Entity a = new Entity("method_A_a()", "Method");
+        a.addProperty("endLine", "10");
+        a.addProperty("purpose", "旧说明");
+        a.addRelation("calls", "method_B_b()");
+        a.addRelation("calls", "method_D_d()");
+        Entity b = new Entity("method_B_b()", "Method");
+        b.addRelation("calls", "method_D_d()");
+        b.addRelation("calls", "method_D_d()");
+        Entity d = new Entity("method_D_d()", "Method");
+        Entity t = new Entity("type_T", "ClassOrInterface");
+        return Arrays.asList(a, b, d, t);
+    }
+
+    private static List<Entity> newSnapshot() {
+        Entity a = new Entity("method_A_a()", "Method");
+        a.addProperty("endLine", "20");
+        a.addProperty("returnType", "void");
+        a.addRelation("calls", "method_C_c()");
+        for (int i = 0; i < 3; i++) {
+            a.addRelation("calls", "method_D_d()");
+        }
+        Entity c = new Entity("method_C_c()", "Method");
+        c.addRelation("calls", "method_D_d()");
+        Entity d = new Entity("method_D_d()", "Method");
+        Entity t = new Entity("type_T", "Interface");
+        return Arrays.asList(a, c, d, t);
+    }
+
+    /**
+     * 按 ConfigFileMain 的格式写出快照；reversed 为 true 时按ID倒序写出（无序快照）
+     */
+    private String write(List<Entity> entities, boolean reversed) throws IOException {
+        List<Entity> ordered = new ArrayList<>(entities);
+        if (reversed) {
+            Collections.reverse(ordered);
+        }
+        Map<String, Entity> snapshot = new LinkedHashMap<>();
+        for (Entity entity : ordered) {
+            snapshot.put(entity.getId(), entity);
+        }
+        File file = File.createTempFile("snapshot", ".json");
+        files.add(file);
+        Gson gson = new GsonBuilder().registerTypeAdapter(Entity.class, new EntityJsonAdapter()).create();
+        try (Writer writer = new FileWriter(file)) {
+            gson.toJson(snapshot, writer);
+        }
+        return file.getPath();
+    }
+}
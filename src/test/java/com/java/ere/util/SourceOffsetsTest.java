@@ -0,0 +1,99 @@
+package com.java.ere.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import junit.framework.TestCase;
+
+/**
+ * 位置换算：多字节UTF-8字符、代理对、\r\n/\r换行下 (行, 列) 到字节偏移的对应
+ */
+public class SourceOffsetsTest extends TestCase {
+
+    public void testAsciiOffsets() {
+        SourceOffsets offsets = offsets("ab\ncd\n");
+
+        assertTrue(offsets.hasByteOffsets());
+        assertEquals(0, offsets.beginOffset(new Position(1, 1)));
+        assertEquals(3, offsets.beginOffset(new Position(2, 1)));
+        assertEquals(5, offsets.endOffset(new Position(2, 2)));
+    }
+
+    public void testMultiByteCharacters() {
+        // "中" 3字节，"é" 2字节，"😀" 为代理对，4字节
+        SourceOffsets offsets = offsets("a中é😀b\nx");
+
+        assertEquals(0, offsets.beginOffset(new Position(1, 1)));
+        assertEquals(1, offsets.beginOffset(new Position(1, 2)));
+        assertEquals(4, offsets.endOffset(new Position(1, 2)));
+        assertEquals(4, offsets.beginOffset(new Position(1, 3)));
+        assertEquals(6, offsets.beginOffset(new Position(1, 4)));
+        assertEquals(10, offsets.endOffset(new Position(1, 4)));
+        assertEquals(10, offsets.beginOffset(new Position(1, 6)));
+        assertEquals(12, offsets.beginOffset(new Position(2, 1)));
+        assertEquals("中é😀", offsets.text(new Position(1, 2), new Position(1, 4)));
+    }
+
+    public void testCrLfAndCrLineBreaks() {
+        SourceOffsets offsets = offsets("a\r\n中\rb\nc");
+
+        assertEquals(3, offsets.beginOffset(new Position(2, 1)));
+        assertEquals(6, offsets.endOffset(new Position(2, 1)));
+        assertEquals(7, offsets.beginOffset(new Position(3, 1)));
+        assertEquals(9, offsets.beginOffset(new Position(4, 1)));
+        assertEquals("中\rb", offsets.text(new Position(2, 1), new Position(3, 1)));
+    }
+
+    public void testInvalidUtf8DisablesByteOffsets() {
+        // "中" 后跟非法字节 0xFF：解码为替换字符后无法还原原始字节
+        SourceOffsets offsets = new SourceOffsets(new byte[]{(byte) 0xE4, (byte) 0xB8, (byte) 0xAD, (byte) 0xFF, '\n', 'b'});
+
+        assertFalse(offsets.hasByteOffsets());
+        assertEquals("b", offsets.text(new Position(2, 1), new Position(2, 1)));
+    }
+
+    /**
+     * 按JavaParser解析出的位置截取字节，应与声明的原始文本一致
+     */
+    public void testParsedDeclarationsMatchByteSlices() {
+        String source = "class A {\r\n"
+            + "    /** 注释 😀 */\r\n"
+            + "    String s = \"中文\";\r\n"
+            + "\r\n"
+            + "    // 说明\r\n"
+            + "    void f() {\r\n"
+            + "        g(\"é\");\r\n"
+            + "    }\r\n"
+            + "}\r\n";
+        byte[] content = source.getBytes(StandardCharsets.UTF_8);
+        SourceOffsets offsets = new SourceOffsets(content);
+        CompilationUnit unit = StaticJavaParser.parse(offsets.getText());
+
+        FieldDeclaration field = unit.findFirst(FieldDeclaration.class).get();
+        assertSlice(content, offsets, SourceOffsets.declarationBegin(field), field.getRange().get().end,
+            "/** 注释 😀 */\r\n    String s = \"中文\";");
+
+        MethodDeclaration method = unit.findFirst(MethodDeclaration.class).get();
+        assertSlice(content, offsets, SourceOffsets.declarationBegin(method), method.getRange().get().end,
+            "// 说明\r\n    void f() {\r\n        g(\"é\");\r\n    }");
+        assertSlice(content, offsets, method.getRange().get().begin, method.getRange().get().end,
+            "void f() {\r\n        g(\"é\");\r\n    }");
+    }
+
+    private static void assertSlice(byte[] content, SourceOffsets offsets, Position begin, Position end,
+                                    String expected) {
+        byte[] slice = Arrays.copyOfRange(content, offsets.beginOffset(begin), offsets.endOffset(end));
+        assertEquals(expected, new String(slice, StandardCharsets.UTF_8));
+        assertEquals(expected, offsets.text(begin, end));
+    }
+
+    private static SourceOffsets offsets(String text) {
+        return new SourceOffsets(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
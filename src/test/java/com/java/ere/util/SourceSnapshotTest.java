@@ -0,0 +1,158 @@
+package com.java.ere.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * 源码快照的写出与读取：路径索引、相同内容去重、多字节UTF-8内容按字节区间读取、不在快照中的路径
+ */
+public class SourceSnapshotTest extends TestCase {
+
+    private static final String A = "class A {\n    void f() {}\n}\n";
+    private static final String B = "// 中文注释 😀\nclass B {\n    String s = \"é\";\n}\n";
+
+    private final List<File> files = new ArrayList<>();
+
+    @Override
+    protected void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public void testRoundTrip() throws IOException {
+        SourceSnapshot snapshot = write(builder());
+
+        assertEquals("/work/demo", snapshot.getProjectRoot());
+        assertEquals(3, snapshot.getFileCount());
+        // A.java 与 copy/A.java 内容相同，只存一份
+        assertEquals(2, snapshot.getBlobCount());
+
+        assertTrue(snapshot.contains("src/A.java"));
+        assertTrue(snapshot.contains("src/pkg/B.java"));
+        assertTrue(snapshot.contains("src/copy/A.java"));
+        assertEquals(A, new String(snapshot.read("src/A.java"), StandardCharsets.UTF_8));
+        assertEquals(B, new String(snapshot.read("src/pkg/B.java"), StandardCharsets.UTF_8));
+        assertEquals(A, new String(snapshot.read("src/copy/A.java"), StandardCharsets.UTF_8));
+        assertEquals(A.length(), snapshot.length("src/A.java"));
+    }
+
+    public void testContentHash() throws IOException {
+        SourceSnapshot snapshot = write(builder());
+        byte[] b = B.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(SourceOffsets.contentHash(b, 0, b.length), snapshot.getContentHash("src/pkg/B.java"));
+        assertEquals(16, snapshot.getContentHash("src/A.java").length());
+        assertEquals(snapshot.getContentHash("src/A.java"), snapshot.getContentHash("src/copy/A.java"));
+        assertFalse(snapshot.getContentHash("src/A.java").equals(snapshot.getContentHash("src/pkg/B.java")));
+    }
+
+    public void testMultiByteRangeRead() throws IOException {
+        SourceSnapshot snapshot = write(builder());
+        byte[] b = B.getBytes(StandardCharsets.UTF_8);
+
+        // 长度与偏移都按字节计算："中文注释" 每个字符3字节，"😀" 4字节
+        assertEquals(b.length, snapshot.length("src/pkg/B.java"));
+        assertTrue(snapshot.length("src/pkg/B.java") > B.length());
+        int begin = B.substring(0, B.indexOf("中")).getBytes(StandardCharsets.UTF_8).length;
+        assertEquals("中文注释", new String(snapshot.read("src/pkg/B.java", begin, begin + 12), StandardCharsets.UTF_8));
+        int emoji = B.substring(0, B.indexOf("😀")).getBytes(StandardCharsets.UTF_8).length;
+        assertEquals("😀", new String(snapshot.read("src/pkg/B.java", emoji, emoji + 4), StandardCharsets.UTF_8));
+
+        int classBegin = B.substring(0, B.indexOf("class")).getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(B.substring(B.indexOf("class")),
+            new String(snapshot.read("src/pkg/B.java", classBegin, b.length), StandardCharsets.UTF_8));
+        assertEquals(0, snapshot.read("src/pkg/B.java", 3, 3).length);
+    }
+
+    public void testMissingPathAndInvalidRange() throws IOException {
+        SourceSnapshot snapshot = write(builder());
+        int length = (int) snapshot.length("src/A.java");
+
+        assertFalse(snapshot.contains("src/Missing.java"));
+        assertFalse(snapshot.contains(null));
+        assertNull(snapshot.getContentHash("src/Missing.java"));
+        assertNull(snapshot.getContentHash(null));
+        assertEquals(-1, snapshot.length("src/Missing.java"));
+        assertNull(snapshot.read("src/Missing.java"));
+        assertNull(snapshot.read("src/Missing.java", 0, 1));
+
+        assertNull(snapshot.read("src/A.java", -1, 2));
+        assertNull(snapshot.read("src/A.java", 5, 4));
+        assertNull(snapshot.read("src/A.java", 0, length + 1));
+        assertEquals(length, snapshot.read("src/A.java", 0, length).length);
+    }
+
+    public void testPathSeparatorsAndLastAddWins() throws IOException {
+        SourceSnapshot.Builder builder = builder();
+        builder.add("src\\A.java", "class A2 {}\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, builder.getFileCount());
+        SourceSnapshot snapshot = write(builder);
+
+        assertTrue(snapshot.contains("src\\pkg\\B.java"));
+        assertEquals(B, new String(snapshot.read("src\\pkg\\B.java"), StandardCharsets.UTF_8));
+        assertEquals("class A2 {}\n", new String(snapshot.read("src/A.java"), StandardCharsets.UTF_8));
+        // 被覆盖的旧内容仍由 copy/A.java 引用
+        assertEquals(A, new String(snapshot.read("src/copy/A.java"), StandardCharsets.UTF_8));
+        assertEquals(3, snapshot.getBlobCount());
+    }
+
+    public void testRewriteReplacesSnapshot() throws IOException {
+        SourceSnapshot.Builder builder = builder();
+        File file = tempFile();
+        builder.writeTo(file.getPath());
+        builder.add("src/C.java", "class C {}\n".getBytes(StandardCharsets.UTF_8));
+        builder.writeTo(file.getPath());
+
+        SourceSnapshot snapshot = SourceSnapshot.open(file.getPath());
+        assertEquals(4, snapshot.getFileCount());
+        assertTrue(snapshot.contains("src/C.java"));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    public void testOpenRejectsOtherFiles() throws IOException {
+        File file = tempFile();
+        Files.write(file.toPath(), "not a source snapshot".getBytes(StandardCharsets.UTF_8));
+        try {
+            SourceSnapshot.open(file.getPath());
+            fail("非快照文件应抛出IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(file.getPath()));
+        }
+
+        Files.write(file.toPath(), Arrays.copyOf("SRCPACK1".getBytes(StandardCharsets.US_ASCII), 12));
+        try {
+            SourceSnapshot.open(file.getPath());
+            fail("过短的文件应抛出IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(file.getPath()));
+        }
+    }
+
+    private static SourceSnapshot.Builder builder() {
+        SourceSnapshot.Builder builder = new SourceSnapshot.Builder("/work/demo");
+        builder.add("src/A.java", A.getBytes(StandardCharsets.UTF_8));
+        builder.add("src\\pkg\\B.java", B.getBytes(StandardCharsets.UTF_8));
+        builder.add("src/copy/A.java", A.getBytes(StandardCharsets.UTF_8));
+        return builder;
+    }
+
+    private SourceSnapshot write(SourceSnapshot.Builder builder) throws IOException {
+        File file = tempFile();
+        builder.writeTo(file.getPath());
+        return SourceSnapshot.open(file.getPath());
+    }
+
+    private File tempFile() throws IOException {
+        File file = File.createTempFile("snapshot", SourceSnapshot.FILE_SUFFIX);
+        files.add(file);
+        return file;
+    }
+}
@@ -0,0 +1,371 @@
+package com.java.extractor.query;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.java.ere.Entity;
+import com.java.ere.EntityJsonAdapter;
+import com.java.extractor.model.CallPath;
+import com.java.extractor.model.EntityInfo;
+
+import junit.framework.TestCase;
+
+/**
+ * 内存图谱的查询：
+ * 实体查询按投影返回属性；上下游查询中结构型关系反向，多跳结果带距离和路径关系类型，从第二跳开始按count截断；
+ * 路径查询按跳数从小到大返回k条无环路径，跳数相同时按节点ID序列、关系类型序列的字典序
+ */
+public class InMemoryGraphQueryServiceTest extends TestCase {
+
+    private static final List<String> CALLS = Collections.singletonList("CALLS");
+    private static final List<String> CALLS_AND_OVERRIDES = Arrays.asList("CALLS", "OVERRIDES");
+
+    private final List<File> files = new ArrayList<>();
+
+    @Override
+    protected void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    public void testQueryEntity() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(typeGraph()));
+
+        EntityInfo entity = service.queryEntity("method_Impl.run");
+        assertEquals("method_Impl.run", entity.getId());
+        assertEquals("Method", entity.getEntity_type());
+        assertEquals("run", entity.getName());
+        assertEquals("Impl", entity.getOwner());
+        assertEquals("src/Impl.java", entity.getFilePath());
+        assertEquals(Integer.valueOf(10), entity.getBeginLine());
+        assertEquals(Integer.valueOf(14), entity.getEndLine());
+        assertNull(entity.getRelationshipType());
+        assertNull(entity.getDistance());
+        assertNull(service.queryEntity("method_missing"));
+
+        service.setProjection(Collections.singletonList("name"));
+        entity = service.queryEntity("method_Impl.run");
+        assertEquals("run", entity.getName());
+        assertNull(entity.getOwner());
+        assertNull(entity.getBeginLine());
+    }
+
+    public void testDirectNeighborsReverseStructuralRelations() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(typeGraph()));
+
+        // 覆写的父方法、调用者都是上游；注解不可遍历
+        List<EntityInfo> upstream = service.queryUpstream("method_Impl.run", 1, 0);
+        assertEquals(Arrays.asList(
+            "method_Api.run OVERRIDES 1", "method_Caller.a CALLS 3", "method_Caller.b CALLS 2"),
+            describeNeighbors(upstream));
+        for (EntityInfo entity : upstream) {
+            assertEquals(Integer.valueOf(1), entity.getDistance());
+            assertEquals(Collections.singletonList(entity.getRelationshipType()), entity.getPathRelationTypes());
+        }
+        assertEquals(Arrays.asList("field_Impl.f ACCESSES 1", "method_Util.x CALLS 1"),
+            describeNeighbors(service.queryDownstream("method_Impl.run", 1, 0)));
+
+        assertEquals(Arrays.asList("method_Impl.run OVERRIDES 1"),
+            describeNeighbors(service.queryDownstream("method_Api.run", 1, 0)));
+        assertTrue(service.queryUpstream("method_Api.run", 1, 0).isEmpty());
+        assertEquals(Arrays.asList("class_Base EXTENDS 1", "iface_Api IMPLEMENTS 1"),
+            describeNeighbors(service.queryUpstream("class_Impl", 1, 0)));
+        assertEquals(Arrays.asList("class_Impl EXTENDS 1"),
+            describeNeighbors(service.queryDownstream("class_Base", 1, 0)));
+        assertEquals(Arrays.asList("class_Impl IMPLEMENTS 1"),
+            describeNeighbors(service.queryDownstream("iface_Api", 1, 0)));
+        assertTrue(service.queryUpstream("method_missing", 2, 0).isEmpty());
+    }
+
+    public void testMultiHopDistanceAndPath() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(typeGraph()));
+
+        assertEquals(Arrays.asList(
+            "method_Impl.run 1 [CALLS]",
+            "method_Api.run 2 [CALLS, OVERRIDES]",
+            "method_Caller.a 2 [CALLS, CALLS]",
+            "method_Caller.b 2 [CALLS, CALLS]",
+            "method_Top 3 [CALLS, CALLS, CALLS]"),
+            describePaths(service.queryUpstream("method_Util.x", 3, 0)));
+        assertEquals(Arrays.asList(
+            "method_Impl.run 1 [OVERRIDES]",
+            "field_Impl.f 2 [OVERRIDES, ACCESSES]",
+            "method_Util.x 2 [OVERRIDES, CALLS]"),
+            describePaths(service.queryDownstream("method_Api.run", 3, 0)));
+
+        List<EntityInfo> upstream = service.queryUpstream("method_Util.x", 2, 0);
+        assertEquals(4, upstream.size());
+        assertEquals(Integer.valueOf(3), upstream.get(2).getRelationCount());
+        for (EntityInfo entity : upstream) {
+            assertNull(entity.getNeighborTotal());
+        }
+    }
+
+    public void testFanOutKeepsHighestCountsFromSecondHop() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(typeGraph()));
+
+        // 第二跳按count降序截断：Api.run的ID最小但count最小，被截掉
+        List<EntityInfo> upstream = service.queryUpstream("method_Util.x", 2, 2);
+        assertEquals(Arrays.asList(
+            "method_Impl.run 1 [CALLS]",
+            "method_Caller.a 2 [CALLS, CALLS]",
+            "method_Caller.b 2 [CALLS, CALLS]"),
+            describePaths(upstream));
+        assertEquals(Integer.valueOf(3), upstream.get(0).getNeighborTotal());
+        assertNull(upstream.get(1).getNeighborTotal());
+
+        // 第一跳不截断
+        assertEquals(3, service.queryUpstream("method_Impl.run", 1, 1).size());
+        List<EntityInfo> downstream = service.queryDownstream("method_Impl.run", 2, 1);
+        assertEquals(Arrays.asList("field_Impl.f 1 [ACCESSES]", "method_Util.x 1 [CALLS]"), describePaths(downstream));
+    }
+
+    public void testPathsOfIncreasingLength() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(sampleGraph()));
+
+        assertEquals(Arrays.asList(
+            "A -CALLS-> D",
+            "A -CALLS-> B -CALLS-> D",
+            "A -CALLS-> C -CALLS-> D",
+            "A -CALLS-> B -CALLS-> C -CALLS-> D"),
+            describe(service.findCallPaths("A", "D", CALLS, 5, 10, 0)));
+    }
+
+    public void testKAndMaxHopsLimitPaths() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(sampleGraph()));
+
+        assertEquals(Arrays.asList("A -CALLS-> D", "A -CALLS-> B -CALLS-> D"),
+            describe(service.findCallPaths("A", "D", CALLS, 5, 2, 0)));
+        assertEquals(3, service.findCallPaths("A", "D", CALLS, 2, 10, 0).size());
+        assertEquals(Arrays.asList("D -CALLS-> A"), describe(service.findCallPaths("D", "A", CALLS, 5, 10, 0)));
+        assertEquals(1, service.findCallPaths("B", "D", Collections.singletonList("OVERRIDES"), 1, 10, 0).size());
+        assertTrue(service.findCallPaths("D", "B", Collections.singletonList("OVERRIDES"), 5, 10, 0).isEmpty());
+        assertTrue(service.findCallPaths("A", "missing", CALLS, 5, 10, 0).isEmpty());
+    }
+
+    public void testParallelRelationsOrderedByType() throws IOException {
+        InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(sampleGraph()));
+
+        assertEquals(Arrays.asList(
+            "A -CALLS-> D",
+            "A -CALLS-> B -CALLS-> D",
+            "A -CALLS-> B -OVERRIDES-> D",
+            "A -CALLS-> C -CALLS-> D"),
+            describe(service.findCallPaths("A", "D", CALLS_AND_OVERRIDES, 5, 4, 0)));
+    }
+
+    public void testMatchesBruteForceOnRandomGraphs() throws IOException {
+        Random random = new Random(7);
+        for (int round = 0; round < 30; round++) {
+            int n = 3 + random.nextInt(8);
+            List<Entity> entities = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                entities.add(new Entity("m" + i, "Method"));
+            }
+            for (Entity entity : entities) {
+                for (int j = random.nextInt(4); j > 0; j--) {
+                    entity.addRelation(random.nextBoolean() ? "calls" : "overrides",
+                        "m" + random.nextInt(n));
+                }
+            }
+            InMemoryGraphQueryService service = new InMemoryGraphQueryService(write(entities));
+
+            for (int pair = 0; pair < 10; pair++) {
+                String from = "m" + random.nextInt(n);
+                String to = "m" + random.nextInt(n);
+                if (from.equals(to)) {
+                    continue;
+                }
+                List<String> types = random.nextBoolean() ? CALLS : CALLS_AND_OVERRIDES;
+                int maxHops = 1 + random.nextInt(5);
+                int k = 1 + random.nextInt(6);
+                List<String> expected = bruteForce(entities, from, to, types, maxHops);
+                expected = expected.subList(0, Math.min(k, expected.size()));
+                assertEquals("round " + round + ": " + from + " -> " + to + " " + types + " hops=" + maxHops + " k=" + k,
+                    expected, describe(service.findCallPaths(from, to, types, maxHops, k, 0)));
+            }
+        }
+    }
+
+    /**
+     * Impl继承Base、实现Api；Impl.run覆写Api.run，被Caller.a调用3次、Caller.b调用2次，Top调用两个Caller；
+     * Impl.run调用Util.x、访问字段f，并带有不可遍历的注解
+     */
+    private static List<Entity> typeGraph() {
+        Entity base = new Entity("class_Base", "Class");
+        Entity api = new Entity("iface_Api", "Interface");
+        Entity impl = new Entity("class_Impl", "Class");
+        impl.addRelation("extends", "class_Base");
+        impl.addRelation("implements", "iface_Api");
+        Entity apiRun = new Entity("method_Api.run", "Method");
+        Entity implRun = new Entity("method_Impl.run", "Method");
+        implRun.addProperty("name", "run");
+        implRun.addProperty("owner", "Impl");
+        implRun.addProperty("filePath", "src/Impl.java");
+        implRun.addProperty("beginLine", "10");
+        implRun.addProperty("endLine", "14");
+        implRun.addRelation("overrides", "method_Api.run");
+        implRun.addRelation("calls", "method_Util.x");
+        implRun.addRelation("accesses", "field_Impl.f");
+        implRun.addRelation("annotated_with", "annotation_Override");
+        Entity callerA = new Entity("method_Caller.a", "Method");
+        for (int i = 0; i < 3; i++) {
+            callerA.addRelation("calls", "method_Impl.run");
+        }
+        Entity callerB = new Entity("method_Caller.b", "Method");
+        callerB.addRelation("calls", "method_Impl.run");
+        callerB.addRelation("calls", "method_Impl.run");
+        Entity top = new Entity("method_Top", "Method");
+        top.addRelation("calls", "method_Caller.a");
+        top.addRelation("calls", "method_Caller.b");
+        return Arrays.asList(base, api, impl, apiRun, implRun, callerA, callerB, top,
+            new Entity("method_Util.x", "Method"), new Entity("field_Impl.f", "Field"),
+            new Entity("annotation_Override", "Annotation"));
+    }
+
+    /**
+     * A→B→C→D、A→C→D、A→D，B还有一条到D的overrides；C→A和D→A的回边不应产生重复节点
+     */
+    private static List<Entity> sampleGraph() {
+        Entity a = new Entity("A", "Method");
+        a.addRelation("calls", "B");
+        a.addRelation("calls", "C");
+        a.addRelation("calls", "D");
+        Entity b = new Entity("B", "Method");
+        b.addRelation("calls", "C");
+        b.addRelation("calls", "D");
+        b.addRelation("overrides", "D");
+        Entity c = new Entity("C", "Method");
+        c.addRelation("calls", "A");
+        c.addRelation("calls", "D");
+        Entity d = new Entity("D", "Method");
+        d.addRelation("calls", "A");
+        return Arrays.asList(a, b, c, d);
+    }
+
+    /**
+     * 枚举全部无环路径（含平行边），按跳数、节点ID序列、关系类型序列排序
+     */
+    private static List<String> bruteForce(List<Entity> entities, String from, String to,
+                                           List<String> types, int maxHops) {
+        Map<String, Entity> byId = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            byId.put(entity.getId(), entity);
+        }
+        List<List<String>[]> paths = new ArrayList<>();
+        List<String> nodes = new ArrayList<>();
+        nodes.add(from);
+        enumerate(byId, to, types, maxHops, nodes, new ArrayList<>(), paths);
+
+        paths.sort(Comparator.<List<String>[]>comparingInt(path -> path[1].size())
+            .thenComparing((p, q) -> compareLists(p[0], q[0]))
+            .thenComparing((p, q) -> compareLists(p[1], q[1])));
+        List<String> described = new ArrayList<>();
+        for (List<String>[] path : paths) {
+            described.add(describe(path[0], path[1]));
+        }
+        return described;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void enumerate(Map<String, Entity> byId, String to, List<String> types, int maxHops,
+                                  List<String> nodes, List<String> relations, List<List<String>[]> paths) {
+        String current = nodes.get(nodes.size() - 1);
+        if (current.equals(to)) {
+            paths.add(new List[]{new ArrayList<>(nodes), new ArrayList<>(relations)});
+            return;
+        }
+        if (relations.size() == maxHops) {
+            return;
+        }
+        Entity entity = byId.get(current);
+        for (String type : entity.getRelations().keySet()) {
+            if (!types.contains(type.toUpperCase())) {
+                continue;
+            }
+            for (String target : entity.getRelationsByType(type).keySet()) {
+                if (nodes.contains(target) || !byId.containsKey(target)) {
+                    continue;
+                }
+                nodes.add(target);
+                relations.add(type.toUpperCase());
+                enumerate(byId, to, types, maxHops, nodes, relations, paths);
+                nodes.remove(nodes.size() - 1);
+                relations.remove(relations.size() - 1);
+            }
+        }
+    }
+
+    private static int compareLists(List<String> a, List<String> b) {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int cmp = a.get(i).compareTo(b.get(i));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    private static List<String> describeNeighbors(List<EntityInfo> entities) {
+        List<String> described = new ArrayList<>();
+        for (EntityInfo entity : entities) {
+            described.add(entity.getId() + " " + entity.getRelationshipType() + " " + entity.getRelationCount());
+        }
+        return described;
+    }
+
+    private static List<String> describePaths(List<EntityInfo> entities) {
+        List<String> described = new ArrayList<>();
+        for (EntityInfo entity : entities) {
+            described.add(entity.getId() + " " + entity.getDistance() + " " + entity.getPathRelationTypes());
+        }
+        return described;
+    }
+
+    private static List<String> describe(List<CallPath> paths) {
+        List<String> described = new ArrayList<>();
+        for (CallPath path : paths) {
+            List<String> ids = new ArrayList<>();
+            for (EntityInfo node : path.getNodes()) {
+                ids.add(node.getId());
+            }
+            described.add(describe(ids, path.getRelationTypes()));
+        }
+        return described;
+    }
+
+    private static String describe(List<String> ids, List<String> relationTypes) {
+        StringBuilder sb = new StringBuilder(ids.get(0));
+        for (int i = 0; i < relationTypes.size(); i++) {
+            sb.append(" -").append(relationTypes.get(i)).append("-> ").append(ids.get(i + 1));
+        }
+        return sb.toString();
+    }
+
+    private String write(List<Entity> entities) throws IOException {
+        Map<String, Entity> snapshot = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            snapshot.put(entity.getId(), entity);
+        }
+        File file = File.createTempFile("graph", ".json");
+        files.add(file);
+        Gson gson = new GsonBuilder().registerTypeAdapter(Entity.class, new EntityJsonAdapter()).create();
+        try (Writer writer = new FileWriter(file)) {
+            gson.toJson(snapshot, writer);
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,101 @@
+package com.java.extractor.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.java.extractor.model.EntityInfo;
+
+import junit.framework.TestCase;
+
+/**
+ * 重载选择："?" 通配、泛型参数不同的弱匹配、包名和空白忽略
+ */
+public class MethodOverloadsTest extends TestCase {
+
+    private static final List<EntityInfo> OVERLOADS = overloads(
+        "method_A_f()",
+        "method_A_f(int)",
+        "method_A_f(String)",
+        "method_A_f(List<String>,int)",
+        "method_A_f(List<Integer>,String)",
+        "method_A_f(Map<String,Integer>,int,boolean)");
+
+    public void testParameterTypesKeepGenericCommas() {
+        assertEquals(Arrays.asList("Map<String,Integer>", "int"),
+            MethodOverloads.parameterTypes("method_A_f(Map<String,Integer>,int)"));
+        assertEquals(Arrays.asList("Map<String, List<Integer>>", "int[]"),
+            MethodOverloads.splitTypes(" Map<String, List<Integer>> , int[] "));
+        assertTrue(MethodOverloads.parameterTypes("method_A_f()").isEmpty());
+        assertTrue(MethodOverloads.parameterTypes("field_A_f").isEmpty());
+    }
+
+    public void testSelectWithWildcards() {
+        assertEquals("method_A_f(String)", select("String", null));
+        // "?" 不参与匹配，个数相同的重载按ID序选第一个
+        assertEquals("method_A_f(String)", select("?", null));
+        assertEquals("method_A_f(List<Integer>,String)", select("?,?", null));
+        // 已知的参数类型优先于ID序
+        assertEquals("method_A_f(int)", select("int", null));
+        assertEquals("method_A_f(List<String>,int)", select("?,int", null));
+        assertEquals("method_A_f(List<Integer>,String)", select("?,String", null));
+        assertEquals("method_A_f(Map<String,Integer>,int,boolean)", select("?,?,?", null));
+    }
+
+    public void testSelectPrefersExactGenericsOverErasure() {
+        List<EntityInfo> overloads = overloads("method_A_g(List<Integer>)", "method_A_g(List<String>)");
+
+        assertEquals("method_A_g(List<String>)",
+            MethodOverloads.select(overloads, "java.util.List<java.lang.String>", null).getId());
+        assertEquals("method_A_g(List<Integer>)",
+            MethodOverloads.select(overloads, "List< Integer >", null).getId());
+        // 擦除后相同只算弱匹配，仍按ID序选第一个
+        assertEquals("method_A_g(List<Integer>)",
+            MethodOverloads.select(overloads, "List<Long>", null).getId());
+        // 泛型弱匹配优于参数类型完全不匹配，完全一致优于弱匹配
+        assertEquals("method_A_f(List<String>,int)", select("List<Long>,int", null));
+        assertEquals("method_A_f(List<String>,int)", select("List<String>,?", null));
+    }
+
+    public void testSelectByParameterCount() {
+        assertEquals("method_A_f()", select(null, null));
+        assertEquals("method_A_f(String)", select("", 1));
+        assertEquals("method_A_f(List<Integer>,String)", select(null, 2));
+        // 没有恰好4个参数的重载时选参数个数最接近的
+        assertEquals("method_A_f(Map<String,Integer>,int,boolean)", select(null, 4));
+        // 签名提示的参数个数优先于 parameterCount
+        assertEquals("method_A_f(String)", select("String", 3));
+        assertNull(MethodOverloads.select(new ArrayList<>(), "int", null));
+    }
+
+    public void testIsPartialSignature() {
+        assertTrue(MethodOverloads.isPartialSignature(null));
+        assertTrue(MethodOverloads.isPartialSignature(" "));
+        assertTrue(MethodOverloads.isPartialSignature("int,?"));
+        assertTrue(MethodOverloads.isPartialSignature("int, "));
+        assertFalse(MethodOverloads.isPartialSignature("Map<String,?>"));
+        assertFalse(MethodOverloads.isPartialSignature("int,String"));
+    }
+
+    public void testMatchesSignature() {
+        assertTrue(MethodOverloads.matchesSignature("method_A_f(List<String>,int)", "java.util.List<String>, int"));
+        assertTrue(MethodOverloads.matchesSignature("method_A_f(List<String>,int)", "List,int"));
+        assertTrue(MethodOverloads.matchesSignature("method_A_f()", ""));
+        assertFalse(MethodOverloads.matchesSignature("method_A_f(List<String>,int)", "List<String>"));
+        assertFalse(MethodOverloads.matchesSignature("method_A_f(List<String>,int)", "Set<String>,int"));
+    }
+
+    private static String select(String signatureHint, Integer parameterCount) {
+        return MethodOverloads.select(OVERLOADS, signatureHint, parameterCount).getId();
+    }
+
+    private static List<EntityInfo> overloads(String... ids) {
+        List<EntityInfo> overloads = new ArrayList<>();
+        for (String id : ids) {
+            EntityInfo info = new EntityInfo();
+            info.setId(id);
+            overloads.add(info);
+        }
+        return overloads;
+    }
+}
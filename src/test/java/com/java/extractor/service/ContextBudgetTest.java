@@ -0,0 +1,178 @@
+package com.java.extractor.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.java.extractor.model.EntityInfo;
+import com.java.extractor.source.SourceExtractor;
+
+import junit.framework.TestCase;
+
+/**
+ * 上下文预算：按优先级装入上下游源码，预估放不下时不读取，整个类放不下时改用类骨架
+ */
+public class ContextBudgetTest extends TestCase {
+
+    private File projectRoot;
+    private SourceExtractor sourceExtractor;
+    private final List<String> extracted = new ArrayList<>();
+
+    @Override
+    protected void setUp() throws IOException {
+        projectRoot = Files.createTempDirectory("budget").toFile();
+        sourceExtractor = new SourceExtractor(projectRoot.getPath());
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : projectRoot.listFiles()) {
+            file.delete();
+        }
+        projectRoot.delete();
+    }
+
+    public void testCreate() {
+        assertNull(ContextBudget.create(0, "tokens"));
+        assertNotNull(ContextBudget.create(10, "BYTES"));
+        try {
+            ContextBudget.create(10, "lines");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testPriorityOrder() {
+        List<EntityInfo> entities = Arrays.asList(
+            entity("m_other", 1, "USES", 9),
+            entity("m_far", 2, "CALLS", 9),
+            entity("m_type", 1, "RETURNS", 9),
+            entity("m_access", 1, "ACCESSES", 1),
+            entity("m_call_b", 1, "CALLS", 5),
+            entity("m_call_a", 1, "CALLS", 5),
+            entity("m_call_many", 1, "OVERRIDES", 7),
+            entity("m_unknown", null, "CALLS", 9));
+
+        ContextBudget budget = ContextBudget.create(1000, "bytes");
+        Map<EntityInfo, String> selected = budget.assemble(entities, sourceExtractor, source(4), noSkeleton());
+
+        assertEquals(Arrays.asList("m_call_many", "m_call_a", "m_call_b", "m_access", "m_type", "m_other",
+            "m_far", "m_unknown"), extracted);
+        assertEquals(entities.size(), selected.size());
+        assertEquals(32, budget.getUsed());
+    }
+
+    public void testSkipsWhatDoesNotFitAndStopsWhenFull() {
+        EntityInfo first = entity("m_a", 1, "CALLS", 3);
+        EntityInfo tooLarge = entity("m_b", 1, "CALLS", 2);
+        EntityInfo small = entity("m_c", 1, "CALLS", 1);
+        EntityInfo last = entity("m_d", 2, "CALLS", 1);
+        Map<String, String> sources = new HashMap<>();
+        sources.put("m_a", "123456");
+        sources.put("m_b", "123456");
+        sources.put("m_c", "123");
+        sources.put("m_d", "1");
+
+        ContextBudget budget = ContextBudget.create(10, "bytes");
+        budget.charge("x");
+        Map<EntityInfo, String> selected = budget.assemble(Arrays.asList(last, small, tooLarge, first),
+            sourceExtractor, entity -> record(entity, sources.get(entity.getId())), noSkeleton());
+
+        // 放不下的 m_b 跳过，更小的 m_c 仍然装入；预算用完后 m_d 不再读取
+        assertEquals(Arrays.asList("m_a", "m_b", "m_c"), extracted);
+        assertEquals(2, selected.size());
+        assertTrue(selected.containsKey(first));
+        assertTrue(selected.containsKey(small));
+        assertEquals(10, budget.getUsed());
+        assertEquals(2, budget.getOmitted());
+    }
+
+    public void testEstimatedSizeAvoidsReading() {
+        EntityInfo method = entity("m_a", 1, "CALLS", 1);
+        method.setFilePath("A.java");
+        method.setBeginOffset(100);
+        method.setEndOffset(200);
+
+        ContextBudget budget = ContextBudget.create(50, "bytes");
+        Map<EntityInfo, String> selected = budget.assemble(Arrays.asList(method), sourceExtractor, source(10),
+            noSkeleton());
+
+        assertTrue(extracted.isEmpty());
+        assertTrue(selected.isEmpty());
+        assertEquals(1, budget.getOmitted());
+    }
+
+    public void testClassSkeletonFallback() throws IOException {
+        EntityInfo fits = classEntity("type_Fits", "Fits.java", 100);
+        EntityInfo tooLarge = classEntity("type_Large", "Large.java", 100);
+        Map<String, String> skeletons = new HashMap<>();
+        skeletons.put("type_Fits", "class Fits {}");
+        skeletons.put("type_Large", repeat('x', 200));
+
+        ContextBudget budget = ContextBudget.create(40, "bytes");
+        Map<EntityInfo, String> selected = budget.assemble(Arrays.asList(fits, tooLarge), sourceExtractor,
+            source(100), entity -> skeletons.get(entity.getId()));
+
+        // 文件大小超出预算，不读取完整源码
+        assertTrue(extracted.isEmpty());
+        assertEquals(1, selected.size());
+        assertEquals("class Fits {}", selected.get(fits));
+        assertEquals(1, budget.getSkeletons());
+        assertEquals(1, budget.getOmitted());
+    }
+
+    public void testTokenCost() {
+        ContextBudget budget = ContextBudget.create(100, "tokens");
+        budget.charge("12345");
+        // "中文" 为6字节，按4字节1个token向上取整
+        budget.charge("中文");
+        budget.charge(null);
+
+        assertEquals(4, budget.getUsed());
+    }
+
+    private Function<EntityInfo, String> source(int size) {
+        return entity -> record(entity, repeat('s', size));
+    }
+
+    private String record(EntityInfo entity, String source) {
+        extracted.add(entity.getId());
+        return source;
+    }
+
+    private static Function<EntityInfo, String> noSkeleton() {
+        return entity -> {
+            throw new AssertionError("不应读取类骨架: " + entity.getId());
+        };
+    }
+
+    private static EntityInfo entity(String id, Integer distance, String relationType, int count) {
+        EntityInfo entity = new EntityInfo(id, "Method", id);
+        entity.setDistance(distance);
+        entity.setRelationshipType(relationType);
+        entity.setRelationCount(count);
+        return entity;
+    }
+
+    private EntityInfo classEntity(String id, String fileName, int size) throws IOException {
+        Files.write(new File(projectRoot, fileName).toPath(), repeat('c', size).getBytes(StandardCharsets.UTF_8));
+        EntityInfo entity = new EntityInfo(id, "ClassOrInterface", id);
+        entity.setFilePath(fileName);
+        entity.setDistance(1);
+        entity.setRelationshipType("CALLS");
+        return entity;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
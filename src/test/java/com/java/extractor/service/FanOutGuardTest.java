@@ -0,0 +1,131 @@
+package com.java.extractor.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.java.extractor.model.EntityInfo;
+import com.java.extractor.model.QueryConfig;
+
+import junit.framework.TestCase;
+
+/**
+ * 扇出保护：按距离、关系count、ID排序后截断；热点实体跳过或采样；截断前总数含每跳上限截掉的邻居
+ */
+public class FanOutGuardTest extends TestCase {
+
+    private final List<String> logs = new ArrayList<>();
+
+    public void testRanking() {
+        List<EntityInfo> neighbors = Arrays.asList(
+            neighbor("m_far", 2, 100),
+            neighbor("m_b", 1, 3),
+            neighbor("m_a", 1, 3),
+            neighbor("m_many", 1, 9),
+            neighbor("m_none", 1, null),
+            neighbor("m_unknown", null, 50));
+
+        List<EntityInfo> ranked = FanOutGuard.limit(neighbors, config(0, 0, "sample"), "上游 X", logs::add);
+
+        assertEquals(Arrays.asList("m_many", "m_a", "m_b", "m_none", "m_far", "m_unknown"), ids(ranked));
+        assertTrue(logs.isEmpty());
+        // 不修改输入列表
+        assertEquals("m_far", neighbors.get(0).getId());
+    }
+
+    public void testTruncation() {
+        List<EntityInfo> neighbors = Arrays.asList(
+            neighbor("m_c", 1, 1), neighbor("m_b", 1, 2), neighbor("m_a", 1, 3), neighbor("m_d", 2, 5));
+
+        List<EntityInfo> limited = FanOutGuard.limit(neighbors, config(2, 0, "sample"), "上游 X", logs::add);
+
+        assertEquals(Arrays.asList("m_a", "m_b"), ids(limited));
+        assertEquals(Arrays.asList("[扇出保护] 截断上游 X: 4 -> 2"), logs);
+    }
+
+    public void testHubSkip() {
+        List<EntityInfo> neighbors = hub(60);
+
+        List<EntityInfo> limited = FanOutGuard.limit(neighbors, config(0, 60, "skip"), "上游 X", logs::add);
+
+        assertTrue(limited.isEmpty());
+        assertEquals(1, logs.size());
+        assertTrue(logs.get(0).startsWith("[扇出保护] 热点实体，跳过上游 X: 直接邻居 60 >= 60"));
+    }
+
+    public void testHubSample() {
+        List<EntityInfo> neighbors = hub(80);
+        QueryConfig config = config(50, 60, "SAMPLE");
+        config.setHubSampleSize(3);
+
+        List<EntityInfo> limited = FanOutGuard.limit(neighbors, config, "下游 X", logs::add);
+
+        // 调用次数最多的在前
+        assertEquals(Arrays.asList("m_79", "m_78", "m_77"), ids(limited));
+        assertTrue(logs.get(0).contains("保留前 3 个"));
+    }
+
+    public void testHubThresholdCountsOnlyDirectNeighbors() {
+        List<EntityInfo> neighbors = new ArrayList<>(hub(5));
+        for (int i = 0; i < 10; i++) {
+            neighbors.add(neighbor("m_far" + i, 2, 1));
+        }
+
+        List<EntityInfo> limited = FanOutGuard.limit(neighbors, config(0, 6, "skip"), "上游 X", logs::add);
+
+        assertEquals(15, limited.size());
+        assertTrue(logs.isEmpty());
+    }
+
+    public void testTotalIncludesPerHopTruncation() {
+        EntityInfo capped = neighbor("m_a", 1, 1);
+        capped.setNeighborTotal(8);
+        EntityInfo notCapped = neighbor("m_b", 1, 1);
+        List<EntityInfo> neighbors = Arrays.asList(capped, notCapped, neighbor("m_c", 2, 1));
+
+        assertEquals(3 + 8 - 5, FanOutGuard.total(neighbors, 5));
+        assertEquals(3, FanOutGuard.total(neighbors, 0));
+    }
+
+    public void testCheckHubStrategy() {
+        FanOutGuard.checkHubStrategy("Skip");
+        try {
+            FanOutGuard.checkHubStrategy("drop");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertFalse(FanOutGuard.isEnabled(config(0, 0, "sample")));
+        assertTrue(FanOutGuard.isEnabled(config(0, 10, "sample")));
+    }
+
+    private static List<EntityInfo> hub(int degree) {
+        List<EntityInfo> neighbors = new ArrayList<>();
+        for (int i = 0; i < degree; i++) {
+            neighbors.add(neighbor("m_" + i, 1, i));
+        }
+        return neighbors;
+    }
+
+    private static QueryConfig config(int maxNeighbors, int hubDegreeThreshold, String hubStrategy) {
+        QueryConfig config = new QueryConfig();
+        config.setMaxNeighbors(maxNeighbors);
+        config.setHubDegreeThreshold(hubDegreeThreshold);
+        config.setHubStrategy(hubStrategy);
+        return config;
+    }
+
+    private static EntityInfo neighbor(String id, Integer distance, Integer relationCount) {
+        EntityInfo entity = new EntityInfo(id, "Method", id);
+        entity.setDistance(distance);
+        entity.setRelationCount(relationCount);
+        return entity;
+    }
+
+    private static List<String> ids(List<EntityInfo> entities) {
+        List<String> ids = new ArrayList<>();
+        for (EntityInfo entity : entities) {
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+}